@@ -0,0 +1,89 @@
+package com.researchspace.snapgene.wclient;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.researchspace.apiutils.ApiError;
+
+import io.vavr.control.Either;
+
+/**
+ * downloadFile throughput against a local stub, for the in-memory and the
+ * streaming variants, over a pooled transport.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx1g")
+public class DownloadBenchmark {
+
+	@Param({ "10240", "1048576", "10485760", "52428800" })
+	int payloadBytes;
+
+	private LocalHttpStub stub;
+	private SnapgeneWSClientImpl client;
+	private Path target;
+
+	private static final OutputStream DISCARD = new OutputStream() {
+		@Override
+		public void write(int b) {
+		}
+
+		@Override
+		public void write(byte[] b, int off, int len) {
+		}
+	};
+
+	@Setup
+	public void setup() throws IOException {
+		stub = new LocalHttpStub(payloadBytes);
+		client = new SnapgeneWSClientImpl(stub.getUri(), SnapgeneTransportConfig.defaults(), () -> "benchmark");
+		client.init();
+		target = Files.createTempFile("download-benchmark", ".bin");
+	}
+
+	@TearDown
+	public void tearDown() throws IOException {
+		client.destroy();
+		stub.close();
+		Files.deleteIfExists(target);
+	}
+
+	@Benchmark
+	public byte[] downloadToByteArray() {
+		return orFail(client.downloadFile("benchmark.png"));
+	}
+
+	@Benchmark
+	public long downloadToPath() {
+		return orFail(client.downloadFile("benchmark.png", target));
+	}
+
+	@Benchmark
+	public long downloadToOutputStream() {
+		return orFail(client.downloadFile("benchmark.png", DISCARD));
+	}
+
+	private static <T> T orFail(Either<ApiError, T> result) {
+		return result.getOrElseThrow(error -> new IllegalStateException(error.getMessage()));
+	}
+
+}
@@ -0,0 +1,70 @@
+package com.researchspace.snapgene.wclient;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Minimal in-process Snapgene server for benchmarks: every download returns
+ * the same payload, every upload the same JSON response.
+ */
+class LocalHttpStub implements AutoCloseable {
+
+	static final byte[] RESPONSE_JSON = "{\"outputFileName\":\"benchmark.png\"}".getBytes(StandardCharsets.UTF_8);
+
+	private final HttpServer server;
+	private final ExecutorService executor;
+	private final byte[] payload;
+
+	LocalHttpStub(int payloadBytes) throws IOException {
+		payload = new byte[payloadBytes];
+		for (int i = 0; i < payload.length; i++) {
+			payload[i] = (byte) i;
+		}
+		server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+		server.createContext("/snapgene/status", exchange -> respond(exchange, "application/json",
+				"{\"status\":\"ok\"}".getBytes(StandardCharsets.UTF_8)));
+		server.createContext("/snapgene/downloadFile",
+				exchange -> respond(exchange, "application/octet-stream", payload));
+		server.createContext("/snapgene/", exchange -> {
+			drain(exchange.getRequestBody());
+			respond(exchange, "application/json", RESPONSE_JSON);
+		});
+		executor = Executors.newFixedThreadPool(4);
+		server.setExecutor(executor);
+		server.start();
+	}
+
+	URI getUri() {
+		return URI.create("http://localhost:" + server.getAddress().getPort());
+	}
+
+	@Override
+	public void close() {
+		server.stop(0);
+		executor.shutdownNow();
+	}
+
+	private static void respond(HttpExchange exchange, String contentType, byte[] body) throws IOException {
+		exchange.getResponseHeaders().add("Content-Type", contentType);
+		exchange.sendResponseHeaders(200, body.length);
+		try (OutputStream out = exchange.getResponseBody()) {
+			out.write(body);
+		}
+	}
+
+	private static void drain(InputStream in) throws IOException {
+		byte[] buffer = new byte[8192];
+		while (in.read(buffer) != -1) {
+			// discard
+		}
+	}
+}
@@ -0,0 +1,103 @@
+package com.researchspace.snapgene.wclient;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.URI;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.FormHttpMessageConverter;
+import org.springframework.util.LinkedMultiValueMap;
+import org.springframework.web.client.RestTemplate;
+
+import com.researchspace.zmq.snapgene.requests.GeneratePngMapConfig;
+
+/**
+ * Cost of building a multipart upload, and of serialising it (file part plus
+ * JSON config part) with the converters RestTemplate uses.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RequestConstructionBenchmark {
+
+	@Param({ "10240", "1048576" })
+	int inputBytes;
+
+	private SnapgeneWSClientImpl client;
+	private FormHttpMessageConverter formConverter;
+	private SnapgeneInput input;
+	private GeneratePngMapConfig config;
+
+	@Setup
+	public void setup() {
+		client = new SnapgeneWSClientImpl(URI.create("http://localhost:1"), SnapgeneTransportConfig.simple(),
+				() -> "benchmark");
+		client.init();
+		formConverter = new RestTemplate().getMessageConverters().stream()
+				.filter(FormHttpMessageConverter.class::isInstance).map(FormHttpMessageConverter.class::cast)
+				.findFirst().orElseThrow(IllegalStateException::new);
+		input = SnapgeneInput.of("benchmark.dna", new byte[inputBytes]);
+		config = GeneratePngMapConfig.builder().build();
+	}
+
+	@Benchmark
+	public HttpEntity<LinkedMultiValueMap<String, Object>> buildRequestEntity() {
+		return client.createFilePostRequestEntity(client.createFileMap(input, config));
+	}
+
+	@Benchmark
+	public long buildAndSerialiseRequest() throws IOException {
+		HttpEntity<LinkedMultiValueMap<String, Object>> entity = client
+				.createFilePostRequestEntity(client.createFileMap(input, config));
+		CountingOutputMessage message = new CountingOutputMessage();
+		formConverter.write(entity.getBody(), MediaType.MULTIPART_FORM_DATA, message);
+		return message.count;
+	}
+
+	// discards the serialised body, counting its size
+	private static class CountingOutputMessage implements HttpOutputMessage {
+		private final HttpHeaders headers = new HttpHeaders();
+		long count;
+
+		private final OutputStream body = new OutputStream() {
+			@Override
+			public void write(int b) {
+				count++;
+			}
+
+			@Override
+			public void write(byte[] b, int off, int len) {
+				count += len;
+			}
+		};
+
+		@Override
+		public OutputStream getBody() {
+			return body;
+		}
+
+		@Override
+		public HttpHeaders getHeaders() {
+			return headers;
+		}
+	}
+
+}
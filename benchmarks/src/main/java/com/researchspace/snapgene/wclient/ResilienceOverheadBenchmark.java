@@ -0,0 +1,73 @@
+package com.researchspace.snapgene.wclient;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.ResponseEntity;
+
+import com.researchspace.apiutils.ApiError;
+import com.researchspace.apiutils.rest.utils.SimpleResilienceFacade;
+
+import io.vavr.control.Either;
+
+/**
+ * Overhead of the retry and circuit breaker wrapper on a successful call,
+ * alone and as part of a status call to a local stub.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ResilienceOverheadBenchmark {
+
+	private final ResponseEntity<String> ok = ResponseEntity.ok("OK");
+	private final Supplier<ResponseEntity<String>> call = () -> ok;
+
+	private SimpleResilienceFacade facade;
+	private LocalHttpStub stub;
+	private SnapgeneWSClientImpl client;
+
+	@Setup
+	public void setup() throws IOException {
+		facade = new SimpleResilienceFacade(1000, 50);
+		stub = new LocalHttpStub(0);
+		client = new SnapgeneWSClientImpl(stub.getUri(), SnapgeneTransportConfig.defaults(), () -> "benchmark");
+		client.init();
+	}
+
+	@TearDown
+	public void tearDown() throws IOException {
+		client.destroy();
+		stub.close();
+	}
+
+	@Benchmark
+	public String direct() {
+		return call.get().getBody();
+	}
+
+	@Benchmark
+	public Either<ApiError, String> viaFacade() {
+		return facade.makeApiCall(call);
+	}
+
+	@Benchmark
+	public Either<ApiError, String> statusOverHttp() {
+		return client.status();
+	}
+
+}
@@ -0,0 +1,154 @@
+package com.researchspace.snapgene.wclient;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Client-side bulkhead whose limit on in-flight calls adapts to observed
+ * latency (additive increase, multiplicative decrease). Callers beyond the
+ * limit wait in a bounded queue, in arrival order, for up to a timeout. <br>
+ * One limiter may be shared by several endpoints that load the same server
+ * resource, e.g. all render endpoints.
+ */
+@Slf4j
+public class AdaptiveConcurrencyLimiter {
+
+	private final ConcurrencyLimitConfig config;
+	private final ReentrantLock lock = new ReentrantLock(true);
+	private final Condition permitReleased = lock.newCondition();
+	private final long latencyThresholdNanos;
+
+	// guarded by lock
+	private double limit;
+	private int inFlight;
+	private int queued;
+	private long rejected;
+
+	public AdaptiveConcurrencyLimiter(ConcurrencyLimitConfig config) {
+		if (config.getMinLimit() < 1 || config.getMinLimit() > config.getMaxLimit()) {
+			throw new IllegalArgumentException("minLimit must be between 1 and maxLimit");
+		}
+		this.config = config;
+		this.latencyThresholdNanos = TimeUnit.MILLISECONDS.toNanos(config.getLatencyThresholdMillis());
+		this.limit = Math.max(config.getMinLimit(), Math.min(config.getMaxLimit(), config.getInitialLimit()));
+	}
+
+	/**
+	 * Waits for a permit. Each successful acquire must be followed by
+	 * {@link #release()}.
+	 * 
+	 * @return <code>false</code> if the queue is full or the queue timeout
+	 *         expired
+	 */
+	public boolean tryAcquire() throws InterruptedException {
+		long remaining = TimeUnit.MILLISECONDS.toNanos(config.getQueueTimeoutMillis());
+		lock.lock();
+		try {
+			if (inFlight < getLimit() && queued == 0) {
+				inFlight++;
+				return true;
+			}
+			if (queued >= config.getMaxQueueSize()) {
+				rejected++;
+				return false;
+			}
+			queued++;
+			try {
+				while (inFlight >= getLimit()) {
+					if (remaining <= 0) {
+						rejected++;
+						return false;
+					}
+					remaining = permitReleased.awaitNanos(remaining);
+				}
+				inFlight++;
+				return true;
+			} finally {
+				queued--;
+			}
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	public void release() {
+		lock.lock();
+		try {
+			inFlight--;
+			permitReleased.signal();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Adjusts the limit from the outcome of one request.
+	 * 
+	 * @param latencyNanos duration of the request
+	 * @param overloaded   <code>true</code> if the request timed out or the
+	 *                     server reported it was overloaded
+	 */
+	public void onSample(long latencyNanos, boolean overloaded) {
+		lock.lock();
+		try {
+			int before = getLimit();
+			if (overloaded || latencyNanos > latencyThresholdNanos) {
+				limit = Math.max(config.getMinLimit(), limit * config.getBackoffRatio());
+			} else if (inFlight * 2 >= limit) {
+				limit = Math.min(config.getMaxLimit(), limit + 1);
+				permitReleased.signalAll();
+			}
+			if (getLimit() != before) {
+				log.debug("Concurrency limit {} -> {}", before, getLimit());
+			}
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * @return current maximum number of in-flight calls
+	 */
+	public int getLimit() {
+		lock.lock();
+		try {
+			return (int) limit;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	public int getInFlight() {
+		lock.lock();
+		try {
+			return inFlight;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	public int getQueued() {
+		lock.lock();
+		try {
+			return queued;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * @return calls rejected because the queue was full or timed out
+	 */
+	public long getRejectedCount() {
+		lock.lock();
+		try {
+			return rejected;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+}
@@ -0,0 +1,27 @@
+package com.researchspace.snapgene.wclient;
+
+import com.researchspace.apiutils.ApiError;
+
+import io.vavr.control.Either;
+import lombok.Value;
+
+/**
+ * Outcome of one item of a batch run by {@link SnapgeneBatchConverter}.
+ */
+@Value
+public class BatchItemResult<T> {
+	/**
+	 * 0-based position of the input in the batch
+	 */
+	int index;
+	/**
+	 * File name of the input
+	 */
+	String fileName;
+	Either<ApiError, T> result;
+	long durationMillis;
+
+	public boolean isSuccess() {
+		return result.isRight();
+	}
+}
@@ -0,0 +1,29 @@
+package com.researchspace.snapgene.wclient;
+
+import lombok.Value;
+
+/**
+ * Snapshot of the progress of a batch run by {@link SnapgeneBatchConverter}.
+ */
+@Value
+public class BatchProgress {
+	/**
+	 * Items started so far; for streamed input the total is not known in
+	 * advance.
+	 */
+	long submitted;
+	long succeeded;
+	long failed;
+	long elapsedMillis;
+
+	public long getCompleted() {
+		return succeeded + failed;
+	}
+
+	/**
+	 * @return completed items per second since the batch started
+	 */
+	public double getItemsPerSecond() {
+		return elapsedMillis == 0 ? 0 : getCompleted() * 1000.0 / elapsedMillis;
+	}
+}
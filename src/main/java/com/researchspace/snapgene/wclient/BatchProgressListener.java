@@ -0,0 +1,12 @@
+package com.researchspace.snapgene.wclient;
+
+/**
+ * Notified by {@link SnapgeneBatchConverter} as each item completes. Calls are
+ * serialized, but may come from any thread.
+ */
+@FunctionalInterface
+public interface BatchProgressListener {
+
+	void onProgress(BatchProgress progress);
+
+}
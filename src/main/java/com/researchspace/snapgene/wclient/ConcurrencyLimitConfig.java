@@ -0,0 +1,53 @@
+package com.researchspace.snapgene.wclient;
+
+import lombok.Builder;
+import lombok.Value;
+
+/**
+ * Settings for an {@link AdaptiveConcurrencyLimiter}. The limit grows by one
+ * while calls are fast and the limit is being used, and shrinks by
+ * {@link #backoffRatio} when a call is slow, times out or the server reports
+ * it is overloaded.
+ */
+@Value
+@Builder(toBuilder = true)
+public class ConcurrencyLimitConfig {
+
+	@Builder.Default
+	int initialLimit = 4;
+
+	@Builder.Default
+	int minLimit = 1;
+
+	@Builder.Default
+	int maxLimit = 32;
+
+	/**
+	 * Calls waiting for a permit beyond this many are rejected immediately.
+	 */
+	@Builder.Default
+	int maxQueueSize = 100;
+
+	/**
+	 * Maximum time a call waits for a permit before being rejected.
+	 */
+	@Builder.Default
+	long queueTimeoutMillis = 10_000;
+
+	/**
+	 * Calls slower than this count as a sign of overload.
+	 */
+	@Builder.Default
+	long latencyThresholdMillis = 5_000;
+
+	/**
+	 * Multiplier applied to the limit on overload, between 0 and 1.
+	 */
+	@Builder.Default
+	double backoffRatio = 0.9;
+
+	public static ConcurrencyLimitConfig defaults() {
+		return builder().build();
+	}
+
+}
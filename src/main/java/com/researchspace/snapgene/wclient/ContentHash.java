@@ -0,0 +1,74 @@
+package com.researchspace.snapgene.wclient;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Computes content hashes of sequence files, used as keys for caching results
+ * of Snapgene calls independently of file name or location.
+ */
+public final class ContentHash {
+
+	private static final int BUFFER_SIZE = 8192;
+	private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+	private ContentHash() {
+	}
+
+	/**
+	 * Streams the file through a SHA-256 digest.
+	 * 
+	 * @return lower-case hex SHA-256 of the file's content
+	 */
+	public static String sha256Hex(File file) throws IOException {
+		try (InputStream in = Files.newInputStream(file.toPath())) {
+			return sha256Hex(in);
+		}
+	}
+
+	/**
+	 * Reads the stream to the end through a SHA-256 digest. The stream is not
+	 * closed.
+	 * 
+	 * @return lower-case hex SHA-256 of the stream's content
+	 */
+	public static String sha256Hex(InputStream in) throws IOException {
+		MessageDigest digest = newDigest();
+		byte[] buffer = new byte[BUFFER_SIZE];
+		int read;
+		while ((read = in.read(buffer)) != -1) {
+			digest.update(buffer, 0, read);
+		}
+		return toHex(digest.digest());
+	}
+
+	/**
+	 * @return lower-case hex SHA-256 of the byte array
+	 */
+	public static String sha256Hex(byte[] content) {
+		return toHex(newDigest().digest(content));
+	}
+
+	private static MessageDigest newDigest() {
+		try {
+			return MessageDigest.getInstance("SHA-256");
+		} catch (NoSuchAlgorithmException e) {
+			// every JRE is required to support SHA-256
+			throw new IllegalStateException(e);
+		}
+	}
+
+	private static String toHex(byte[] bytes) {
+		char[] chars = new char[bytes.length * 2];
+		for (int i = 0; i < bytes.length; i++) {
+			chars[i * 2] = HEX[(bytes[i] >> 4) & 0xF];
+			chars[i * 2 + 1] = HEX[bytes[i] & 0xF];
+		}
+		return new String(chars);
+	}
+
+}
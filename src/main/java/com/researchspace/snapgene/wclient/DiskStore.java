@@ -0,0 +1,173 @@
+package com.researchspace.snapgene.wclient;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Size-bounded directory of files named <code>key + suffix</code>, with an
+ * in-memory index so lookups don't touch the file system. <br>
+ * Files found in the directory on construction are re-indexed by last-modified
+ * time, and reads update the last-modified time, so recency survives restarts.
+ * Files are only handed out as streams opened under the store's lock, so a
+ * concurrent eviction can't delete a file before its reader has opened it.
+ */
+@Slf4j
+class DiskStore {
+
+	private final Path directory;
+	private final String suffix;
+	private final long maxBytes;
+	// key -> file size, in eviction order (next to evict first)
+	private final LinkedHashMap<String, Long> index;
+	private long currentBytes;
+	private long evictionCount;
+
+	DiskStore(Path directory, String suffix, long maxBytes, EvictionPolicy policy) throws IOException {
+		if (maxBytes <= 0) {
+			throw new IllegalArgumentException("maxBytes must be > 0 but was " + maxBytes);
+		}
+		this.directory = directory;
+		this.suffix = suffix;
+		this.maxBytes = maxBytes;
+		this.index = new LinkedHashMap<>(16, 0.75f, policy.isAccessOrdered());
+		Files.createDirectories(directory);
+		loadExistingEntries();
+	}
+
+	/**
+	 * @return the stored content, to be closed by the caller, or empty if not
+	 *         stored
+	 */
+	synchronized Optional<InputStream> open(String key) {
+		if (index.get(key) == null) {
+			return Optional.empty();
+		}
+		Path stored = pathFor(key);
+		try {
+			InputStream content = Files.newInputStream(stored);
+			touch(stored);
+			return Optional.of(content);
+		} catch (NoSuchFileException e) {
+			// deleted behind our back
+			currentBytes -= index.remove(key);
+			return Optional.empty();
+		} catch (IOException e) {
+			log.warn("Could not open cached file {} - {}", stored, e.getMessage());
+			return Optional.empty();
+		}
+	}
+
+	void put(String key, byte[] content) throws IOException {
+		put(key, new ByteArrayInputStream(content));
+	}
+
+	void put(String key, InputStream content) throws IOException {
+		Path target = pathFor(key);
+		// write outside the lock, then publish atomically
+		Path tmp = Files.createTempFile(directory, key, ".tmp");
+		long size;
+		try {
+			size = Files.copy(content, tmp, StandardCopyOption.REPLACE_EXISTING);
+			Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		} finally {
+			Files.deleteIfExists(tmp);
+		}
+		synchronized (this) {
+			// re-inserted, so a replaced entry is the newest in FIFO order too
+			Long previous = index.remove(key);
+			index.put(key, size);
+			if (previous != null) {
+				currentBytes -= previous;
+			}
+			currentBytes += size;
+			evictIfNeeded(key);
+		}
+	}
+
+	synchronized int getEntryCount() {
+		return index.size();
+	}
+
+	synchronized long getSizeBytes() {
+		return currentBytes;
+	}
+
+	synchronized long getEvictionCount() {
+		return evictionCount;
+	}
+
+	private void evictIfNeeded(String justAdded) {
+		Iterator<Map.Entry<String, Long>> it = index.entrySet().iterator();
+		while (currentBytes > maxBytes && it.hasNext()) {
+			Map.Entry<String, Long> eldest = it.next();
+			// a single file larger than the store is still returned to its caller
+			if (eldest.getKey().equals(justAdded) && index.size() == 1) {
+				break;
+			}
+			it.remove();
+			currentBytes -= eldest.getValue();
+			evictionCount++;
+			try {
+				Files.deleteIfExists(pathFor(eldest.getKey()));
+				log.debug("Evicted {} from {}", eldest.getKey(), directory);
+			} catch (IOException e) {
+				log.warn("Could not delete evicted file {} - {}", eldest.getKey(), e.getMessage());
+			}
+		}
+	}
+
+	private void loadExistingEntries() throws IOException {
+		List<Path> existing = new ArrayList<>();
+		try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "*" + suffix)) {
+			files.forEach(existing::add);
+		}
+		existing.sort(Comparator.comparing(this::lastModified));
+		synchronized (this) {
+			for (Path p : existing) {
+				String name = p.getFileName().toString();
+				long size = Files.size(p);
+				index.put(name.substring(0, name.length() - suffix.length()), size);
+				currentBytes += size;
+			}
+			evictIfNeeded(null);
+		}
+		log.info("Loaded {} cached files ({} bytes) from {}", index.size(), currentBytes, directory);
+	}
+
+	private FileTime lastModified(Path p) {
+		try {
+			return Files.getLastModifiedTime(p);
+		} catch (IOException e) {
+			return FileTime.fromMillis(0);
+		}
+	}
+
+	private void touch(Path p) {
+		try {
+			Files.setLastModifiedTime(p, FileTime.fromMillis(System.currentTimeMillis()));
+		} catch (IOException e) {
+			log.debug("Could not update access time of {}", p);
+		}
+	}
+
+	private Path pathFor(String key) {
+		return directory.resolve(key + suffix);
+	}
+
+}
@@ -0,0 +1,78 @@
+package com.researchspace.snapgene.wclient;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Path;
+import java.util.Optional;
+
+/**
+ * Size-bounded on-disk cache of native .dna files produced by
+ * <code>importDNAFile</code>, keyed by the content hash of the original
+ * (non-native) input file. <br>
+ * An in-memory index, ordered by access, tracks the cached files so lookups
+ * don't touch the file system; the least recently used entries are deleted
+ * when the total size exceeds the configured maximum. Entries found in the
+ * cache directory on construction are re-indexed by last-modified time, so
+ * the cache survives restarts.
+ */
+public class DnaConversionCache {
+
+	static final String SUFFIX = ".dna";
+
+	private final DiskStore store;
+
+	/**
+	 * @param directory directory to hold cached .dna files, created if it
+	 *                  doesn't exist. Should not be shared with other content.
+	 * @param maxBytes  maximum total size of cached files
+	 */
+	public DnaConversionCache(Path directory, long maxBytes) throws IOException {
+		this.store = new DiskStore(directory, SUFFIX, maxBytes, EvictionPolicy.LRU);
+	}
+
+	/**
+	 * Looks up a previously converted native file. The file is opened before
+	 * it can be evicted, so the stream stays readable if it is evicted later.
+	 * 
+	 * @param contentHash hash of the original input, see {@link ContentHash}
+	 * @return the cached .dna content, to be closed by the caller, or empty if
+	 *         not cached
+	 */
+	public Optional<InputStream> open(String contentHash) {
+		return store.open(contentHash);
+	}
+
+	/**
+	 * Stores converted native .dna content, evicting least recently used entries
+	 * if needed.
+	 * 
+	 * @param contentHash      hash of the original input, see {@link ContentHash}
+	 * @param nativeDnaContent the converted .dna file content
+	 */
+	public void put(String contentHash, byte[] nativeDnaContent) throws IOException {
+		store.put(contentHash, nativeDnaContent);
+	}
+
+	/**
+	 * As {@link #put(String, byte[])}, copying from a stream, which is not
+	 * closed.
+	 */
+	public void put(String contentHash, InputStream nativeDnaContent) throws IOException {
+		store.put(contentHash, nativeDnaContent);
+	}
+
+	/**
+	 * @return number of cached files
+	 */
+	public int getEntryCount() {
+		return store.getEntryCount();
+	}
+
+	/**
+	 * @return total size in bytes of cached files
+	 */
+	public long getSizeBytes() {
+		return store.getSizeBytes();
+	}
+
+}
@@ -0,0 +1,285 @@
+package com.researchspace.snapgene.wclient;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Converts FASTA, GenBank and EMBL files to native .dna files in-process, as
+ * the server's importDNAFile would. The input is parsed incrementally and bases
+ * are written as they are read; the sequence segment's length is filled in
+ * once the record has been read. Only single-record files are imported; the
+ * sequence, topology and features are kept.
+ */
+final class DnaFileImporter {
+
+	// 'SnapGene', DNA sequence type, export and import versions
+	private static final byte[] COOKIE = { 9, 0, 0, 0, 14, 'S', 'n', 'a', 'p', 'G', 'e', 'n', 'e', 0, 1, 0, 14, 0, 14 };
+	private static final int DOUBLE_STRANDED = 2;
+	private static final int CIRCULAR = 1;
+	private static final Pattern RANGE = Pattern.compile("<?(\\d+)(?:\\.\\.>?(\\d+)|\\^(\\d+))?");
+	private static final String[] NAME_QUALIFIERS = { "label", "gene", "product", "locus_tag", "note" };
+
+	private DnaFileImporter() {
+	}
+
+	static boolean canImport(SequenceFormat format) {
+		return SequenceRecordParser.canParse(format);
+	}
+
+	/**
+	 * @return the .dna file content
+	 * @throws IOException if the input can't be read or holds other than one
+	 *                     non-empty record
+	 */
+	static byte[] toBytes(SnapgeneInput input, SequenceFormat format) throws IOException {
+		MemoryOutput out = new MemoryOutput();
+		write(input, format, out);
+		return out.toByteArray();
+	}
+
+	/**
+	 * Writes the .dna file to <code>target</code>, replacing its content.
+	 *
+	 * @throws IOException if the input can't be read or holds other than one
+	 *                     non-empty record
+	 */
+	static void toFile(SnapgeneInput input, SequenceFormat format, Path target) throws IOException {
+		try (FileChannel channel = FileChannel.open(target, StandardOpenOption.WRITE,
+				StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.CREATE)) {
+			FileOutput out = new FileOutput(channel);
+			write(input, format, out);
+			out.flush();
+		}
+	}
+
+	private static void write(SnapgeneInput input, SequenceFormat format, Output out) throws IOException {
+		if (!canImport(format)) {
+			throw new IOException(format + " files can only be imported by the server");
+		}
+		Writer writer = new Writer(out);
+		try (BufferedReader reader = new BufferedReader(
+				new InputStreamReader(input.openStream(), StandardCharsets.ISO_8859_1))) {
+			if (SequenceRecordParser.parse(reader, format, writer) == 0) {
+				throw new IOException("No sequence record in " + input.getFileName());
+			}
+		}
+	}
+
+	/**
+	 * Writes the segments of one record as the parser reports it.
+	 */
+	private static final class Writer implements SequenceRecordParser.Handler {
+		private final Output out;
+		private final List<SequenceRecordParser.Feature> features = new ArrayList<>();
+		private long sequenceSegment = -1;
+		private long bases;
+
+		Writer(Output out) {
+			this.out = out;
+		}
+
+		@Override
+		public void startRecord(String name, boolean circular) throws IOException {
+			if (sequenceSegment >= 0) {
+				throw new IOException("Multi-record files can only be imported by the server");
+			}
+			out.write(COOKIE, 0, COOKIE.length);
+			sequenceSegment = out.position();
+			// length is filled in at the end of the record
+			out.write(new byte[] { 0, 0, 0, 0, 0, (byte) (DOUBLE_STRANDED | (circular ? CIRCULAR : 0)) }, 0, 6);
+		}
+
+		@Override
+		public void feature(SequenceRecordParser.Feature feature) {
+			features.add(feature);
+		}
+
+		@Override
+		public void bases(byte[] chunk, int length) throws IOException {
+			out.write(chunk, 0, length);
+			bases += length;
+		}
+
+		@Override
+		public boolean endRecord() throws IOException {
+			if (bases == 0) {
+				throw new IOException("Empty sequence");
+			}
+			if (bases + 1 > Integer.MAX_VALUE) {
+				throw new IOException("Sequence too long for a .dna file");
+			}
+			out.patchInt(sequenceSegment + 1, (int) bases + 1);
+			byte[] xml = featuresXml(features, bases).getBytes(StandardCharsets.UTF_8);
+			out.write(new byte[] { (byte) SnapgeneFile.FEATURES_SEGMENT }, 0, 1);
+			out.write(ByteBuffer.allocate(4).putInt(xml.length).array(), 0, 4);
+			out.write(xml, 0, xml.length);
+			// read on, to reject further records
+			return true;
+		}
+	}
+
+	private static String featuresXml(List<SequenceRecordParser.Feature> features, long sequenceLength) {
+		StringBuilder xml = new StringBuilder("<?xml version=\"1.0\"?>");
+		List<String> written = new ArrayList<>();
+		for (SequenceRecordParser.Feature feature : features) {
+			String segments = segmentsXml(feature.getLocation(), sequenceLength);
+			if (segments.isEmpty()) {
+				continue;
+			}
+			StringBuilder entry = new StringBuilder("<Feature recentID=\"").append(written.size())
+					.append("\" name=\"").append(escape(featureName(feature))).append('"');
+			if (!feature.getKey().equals("source")) {
+				entry.append(" directionality=\"").append(feature.getLocation().contains("complement(") ? 2 : 1)
+						.append('"');
+			}
+			entry.append(" type=\"").append(escape(feature.getKey())).append("\">").append(segments);
+			for (Map.Entry<String, String> qualifier : feature.getQualifiers()) {
+				entry.append("<Q name=\"").append(escape(qualifier.getKey())).append("\"><V ")
+						.append(qualifier.getValue().matches("-?\\d{1,9}") ? "int" : "text").append("=\"")
+						.append(escape(qualifier.getValue())).append("\"/></Q>");
+			}
+			written.add(entry.append("</Feature>").toString());
+		}
+		xml.append("<Features nextValidID=\"").append(written.size()).append("\">");
+		written.forEach(xml::append);
+		return xml.append("</Features>").toString();
+	}
+
+	// empty if the location refers to other entries or lies outside the sequence
+	private static String segmentsXml(String location, long sequenceLength) {
+		if (location.contains(":")) {
+			return "";
+		}
+		StringBuilder segments = new StringBuilder();
+		Matcher range = RANGE.matcher(location);
+		while (range.find()) {
+			long start = Long.parseLong(range.group(1));
+			long end = range.group(2) != null ? Long.parseLong(range.group(2))
+					: range.group(3) != null ? Long.parseLong(range.group(3)) : start;
+			if (start < 1 || end < 1 || start > sequenceLength || end > sequenceLength) {
+				return "";
+			}
+			segments.append("<Segment range=\"").append(start).append('-').append(end)
+					.append("\" type=\"standard\"/>");
+		}
+		return segments.toString();
+	}
+
+	private static String featureName(SequenceRecordParser.Feature feature) {
+		for (String name : NAME_QUALIFIERS) {
+			for (Map.Entry<String, String> qualifier : feature.getQualifiers()) {
+				if (qualifier.getKey().equals(name) && !qualifier.getValue().isEmpty()) {
+					return qualifier.getValue();
+				}
+			}
+		}
+		return feature.getKey();
+	}
+
+	private static String escape(String text) {
+		StringBuilder sb = new StringBuilder(text.length());
+		for (char c : text.toCharArray()) {
+			switch (c) {
+			case '<':
+				sb.append("&lt;");
+				break;
+			case '>':
+				sb.append("&gt;");
+				break;
+			case '&':
+				sb.append("&amp;");
+				break;
+			case '"':
+				sb.append("&quot;");
+				break;
+			default:
+				if (c >= 0x20 || c == '\t') {
+					sb.append(c);
+				}
+			}
+		}
+		return sb.toString();
+	}
+
+	/**
+	 * Sequential output whose earlier bytes can be overwritten.
+	 */
+	private interface Output {
+		void write(byte[] bytes, int offset, int length) throws IOException;
+
+		long position();
+
+		void patchInt(long position, int value) throws IOException;
+	}
+
+	private static final class MemoryOutput extends ByteArrayOutputStream implements Output {
+		@Override
+		public long position() {
+			return size();
+		}
+
+		@Override
+		public void patchInt(long position, int value) {
+			byte[] bytes = ByteBuffer.allocate(4).putInt(value).array();
+			System.arraycopy(bytes, 0, buf, (int) position, 4);
+		}
+	}
+
+	private static final class FileOutput implements Output {
+		private final FileChannel channel;
+		private final ByteBuffer buffer = ByteBuffer.allocate(64 * 1024);
+		private long flushed;
+
+		FileOutput(FileChannel channel) {
+			this.channel = channel;
+		}
+
+		@Override
+		public void write(byte[] bytes, int offset, int length) throws IOException {
+			while (length > 0) {
+				if (!buffer.hasRemaining()) {
+					flush();
+				}
+				int n = Math.min(length, buffer.remaining());
+				buffer.put(bytes, offset, n);
+				offset += n;
+				length -= n;
+			}
+		}
+
+		@Override
+		public long position() {
+			return flushed + buffer.position();
+		}
+
+		@Override
+		public void patchInt(long position, int value) throws IOException {
+			flush();
+			ByteBuffer bytes = ByteBuffer.wrap(ByteBuffer.allocate(4).putInt(value).array());
+			while (bytes.hasRemaining()) {
+				channel.write(bytes, position + bytes.position());
+			}
+		}
+
+		void flush() throws IOException {
+			buffer.flip();
+			while (buffer.hasRemaining()) {
+				flushed += channel.write(buffer);
+			}
+			buffer.clear();
+		}
+	}
+
+}
@@ -0,0 +1,23 @@
+package com.researchspace.snapgene.wclient;
+
+import lombok.Value;
+
+/**
+ * A DNA sequence read locally from a sequence file, for in-process analysis.
+ */
+@Value
+public class DnaSequence {
+	/**
+	 * Record name from the file, or empty if none
+	 */
+	String name;
+	/**
+	 * Bases as ASCII letters, in the case used by the file
+	 */
+	byte[] bases;
+	boolean circular;
+
+	public int length() {
+		return bases.length;
+	}
+}
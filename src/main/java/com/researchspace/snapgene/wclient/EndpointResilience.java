@@ -0,0 +1,85 @@
+package com.researchspace.snapgene.wclient;
+
+import java.time.Duration;
+import java.util.function.Supplier;
+
+import org.springframework.http.ResponseEntity;
+
+import com.researchspace.apiutils.ApiError;
+
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerConfig;
+import io.github.resilience4j.core.IntervalFunction;
+import io.vavr.control.Either;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Retry and circuit breaker protection for calls to one endpoint, configured
+ * by a {@link ResiliencePolicy}, drawing retries from a shared
+ * {@link RetryBudget}. Non-retryable errors, such as most 4xx responses, fail
+ * after one attempt and don't count towards opening the breaker.
+ */
+@Slf4j
+public class EndpointResilience {
+
+	private final ResiliencePolicy policy;
+	private final CircuitBreaker circuitBreaker;
+	private final IntervalFunction backoff;
+	private final RetryBudget retryBudget;
+
+	public EndpointResilience(String name, ResiliencePolicy policy, RetryBudget retryBudget) {
+		this.policy = policy;
+		this.retryBudget = retryBudget;
+		this.circuitBreaker = CircuitBreaker.of(name,
+				CircuitBreakerConfig.custom().failureRateThreshold(policy.getFailureRateThreshold())
+						.slidingWindowSize(policy.getSlidingWindowSize())
+						.minimumNumberOfCalls(policy.getMinimumNumberOfCalls())
+						.waitDurationInOpenState(Duration.ofMillis(policy.getOpenStateMillis()))
+						.recordException(SnapgeneErrors::isServerFault).build());
+		this.backoff = IntervalFunction.ofExponentialRandomBackoff(policy.getInitialBackoffMillis(),
+				policy.getBackoffMultiplier(), policy.getBackoffRandomization());
+	}
+
+	/**
+	 * Makes the call, retrying retryable errors while the policy and the retry
+	 * budget allow.
+	 */
+	public <T> Either<ApiError, T> makeApiCall(Supplier<ResponseEntity<T>> restClient) {
+		retryBudget.onCall();
+		for (int attempt = 1;; attempt++) {
+			try {
+				return Either.right(circuitBreaker.executeSupplier(restClient).getBody());
+			} catch (RuntimeException e) {
+				if (attempt >= policy.getMaxAttempts() || !SnapgeneErrors.isRetryable(e)
+						|| !retryBudget.tryRetry()) {
+					return Either.left(SnapgeneErrors.toApiError(e));
+				}
+				long waitMillis = backoff.apply(attempt);
+				log.debug("{} attempt {} failed, retrying in {}ms - {}", circuitBreaker.getName(), attempt,
+						waitMillis, e.getMessage());
+				if (!sleep(waitMillis)) {
+					return Either.left(SnapgeneErrors.toApiError(e));
+				}
+			}
+		}
+	}
+
+	public CircuitBreaker getCircuitBreaker() {
+		return circuitBreaker;
+	}
+
+	public ResiliencePolicy getPolicy() {
+		return policy;
+	}
+
+	private static boolean sleep(long millis) {
+		try {
+			Thread.sleep(millis);
+			return true;
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return false;
+		}
+	}
+
+}
@@ -0,0 +1,255 @@
+package com.researchspace.snapgene.wclient;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * Finds restriction sites locally. <br>
+ * All recognition sites of an enzyme set are compiled into one Aho-Corasick
+ * automaton, with degenerate IUPAC bases expanded and the reverse complements
+ * of non-palindromic sites added, so both strands are scanned in a single pass
+ * over the forward strand. The automata of the most recently used enzyme
+ * lists are cached. Long
+ * sequences are scanned in parallel chunks, and sites of circular sequences may
+ * span the origin.
+ */
+public final class EnzymeFinder {
+
+	/**
+	 * Sequences at least this long are scanned in parallel chunks.
+	 */
+	static final int PARALLEL_THRESHOLD = 100_000;
+	private static final int CHUNK_SIZE = 1 << 16;
+
+	private static final int MAX_CACHED_AUTOMATA = 8;
+
+	private static final int[] BASE_CODE = new int[256];
+	// guarded by itself
+	private static final Map<List<RestrictionEnzyme>, SiteAutomaton> AUTOMATA = new LinkedHashMap<List<RestrictionEnzyme>, SiteAutomaton>(
+			16, 0.75f, true) {
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<List<RestrictionEnzyme>, SiteAutomaton> eldest) {
+			return size() > MAX_CACHED_AUTOMATA;
+		}
+	};
+	private static final Comparator<RestrictionSite> BY_POSITION = Comparator.comparingInt(RestrictionSite::getStart)
+			.thenComparing(site -> site.getEnzyme().getName());
+
+	static {
+		Arrays.fill(BASE_CODE, -1);
+		String[] bases = { "Aa", "Cc", "Gg", "TtUu" };
+		for (int code = 0; code < bases.length; code++) {
+			for (char c : bases[code].toCharArray()) {
+				BASE_CODE[c] = code;
+			}
+		}
+	}
+
+	private EnzymeFinder() {
+	}
+
+	/**
+	 * @return sites of enzymes cutting between 1 and the options' maximum
+	 *         number of times, ordered by start position
+	 */
+	public static List<RestrictionSite> find(DnaSequence sequence, EnzymeSearchOptions options) {
+		SiteAutomaton automaton = automaton(options);
+		byte[] bases = sequence.getBases();
+		int n = bases.length;
+		IntStream chunks = IntStream.range(0, (n + CHUNK_SIZE - 1) / CHUNK_SIZE);
+		if (n >= PARALLEL_THRESHOLD) {
+			chunks = chunks.parallel();
+		}
+		List<int[]> matches = chunks
+				.mapToObj(chunk -> automaton.scan(bases, sequence.isCircular(), chunk * CHUNK_SIZE,
+						Math.min(n, (chunk + 1) * CHUNK_SIZE)))
+				.flatMap(List::stream).collect(Collectors.toList());
+
+		Map<RestrictionEnzyme, List<RestrictionSite>> byEnzyme = new LinkedHashMap<>();
+		Set<List<Object>> seen = new HashSet<>();
+		for (int[] match : matches) {
+			RestrictionSite site = automaton.site(match[0], match[1], n, sequence.isCircular());
+			// a degenerate, non-palindromic site can match both strands in the same place
+			if (site != null
+					&& seen.add(Arrays.asList(site.getEnzyme(), site.getStart(), site.getTopCut()))) {
+				byEnzyme.computeIfAbsent(site.getEnzyme(), enzyme -> new ArrayList<>()).add(site);
+			}
+		}
+		return byEnzyme.values().stream().filter(sites -> sites.size() <= options.getMaximumCuts())
+				.flatMap(List::stream).sorted(BY_POSITION).collect(Collectors.toList());
+	}
+
+	static SiteAutomaton automaton(EnzymeSearchOptions options) {
+		List<RestrictionEnzyme> enzymes = options.getEnzymes().stream()
+				.filter(enzyme -> enzyme.getSite().length() >= options.getMinimumSiteLength())
+				.collect(Collectors.toList());
+		synchronized (AUTOMATA) {
+			return AUTOMATA.computeIfAbsent(enzymes, SiteAutomaton::new);
+		}
+	}
+
+	/**
+	 * A deterministic automaton over A, C, G, T whose outputs are site ids:
+	 * enzyme index * 2, + 1 for the reverse complement.
+	 */
+	static final class SiteAutomaton {
+		private static final String IUPAC = "ACGTRYSWKMBDHVN";
+		// bit 1 << base code of each base an IUPAC letter stands for
+		private static final int[] IUPAC_BASES = { 1, 2, 4, 8, 5, 10, 6, 9, 12, 3, 14, 13, 11, 7, 15 };
+
+		private final List<RestrictionEnzyme> enzymes;
+		private int[] next = new int[4 * 1024];
+		private int nodes = 1;
+		private final List<int[]> outputs = new ArrayList<>();
+		private final int maxLength;
+
+		SiteAutomaton(List<RestrictionEnzyme> enzymes) {
+			this.enzymes = new ArrayList<>(enzymes);
+			Arrays.fill(next, -1);
+			outputs.add(null);
+			int longest = 0;
+			for (int i = 0; i < enzymes.size(); i++) {
+				RestrictionEnzyme enzyme = enzymes.get(i);
+				insert(enzyme.getSite(), 0, 0, 2 * i);
+				if (!enzyme.isPalindromic()) {
+					insert(RestrictionEnzyme.reverseComplement(enzyme.getSite()), 0, 0, 2 * i + 1);
+				}
+				longest = Math.max(longest, enzyme.getSite().length());
+			}
+			this.maxLength = longest;
+			link();
+		}
+
+		int size() {
+			return nodes;
+		}
+
+		// expands degenerate bases while walking down the trie, sharing prefixes
+		private void insert(String site, int depth, int node, int siteId) {
+			if (depth == site.length()) {
+				outputs.set(node, append(outputs.get(node), new int[] { siteId }));
+				return;
+			}
+			int allowed = IUPAC_BASES[IUPAC.indexOf(site.charAt(depth))];
+			for (int base = 0; base < 4; base++) {
+				if ((allowed & 1 << base) != 0) {
+					int child = next[4 * node + base];
+					if (child < 0) {
+						child = addNode();
+						next[4 * node + base] = child;
+					}
+					insert(site, depth + 1, child, siteId);
+				}
+			}
+		}
+
+		private int addNode() {
+			if (4 * (nodes + 1) > next.length) {
+				int old = next.length;
+				next = Arrays.copyOf(next, old * 2);
+				Arrays.fill(next, old, next.length, -1);
+			}
+			outputs.add(null);
+			return nodes++;
+		}
+
+		// breadth-first failure links, folded into a complete transition table
+		private void link() {
+			int[] fail = new int[nodes];
+			Queue<Integer> queue = new ArrayDeque<>();
+			for (int base = 0; base < 4; base++) {
+				int child = next[base];
+				if (child < 0) {
+					next[base] = 0;
+				} else {
+					fail[child] = 0;
+					queue.add(child);
+				}
+			}
+			while (!queue.isEmpty()) {
+				int node = queue.poll();
+				outputs.set(node, append(outputs.get(node), outputs.get(fail[node])));
+				for (int base = 0; base < 4; base++) {
+					int child = next[4 * node + base];
+					if (child < 0) {
+						next[4 * node + base] = next[4 * fail[node] + base];
+					} else {
+						fail[child] = next[4 * fail[node] + base];
+						queue.add(child);
+					}
+				}
+			}
+		}
+
+		private static int[] append(int[] a, int[] b) {
+			if (a == null || b == null) {
+				return a == null ? b : a;
+			}
+			int[] both = Arrays.copyOf(a, a.length + b.length);
+			System.arraycopy(b, 0, both, a.length, b.length);
+			return both;
+		}
+
+		/**
+		 * @return {site id, 0-based start} of matches starting in [from, to)
+		 */
+		List<int[]> scan(byte[] bases, boolean circular, int from, int to) {
+			List<int[]> found = new ArrayList<>();
+			int n = bases.length;
+			long limit = circular ? (long) to + maxLength - 1 : Math.min(n, (long) to + maxLength - 1);
+			int state = 0;
+			for (long p = from; p < limit; p++) {
+				int base = BASE_CODE[bases[(int) (p % n)] & 0xFF];
+				if (base < 0) {
+					state = 0;
+					continue;
+				}
+				state = next[4 * state + base];
+				int[] output = outputs.get(state);
+				if (output != null) {
+					for (int siteId : output) {
+						int length = enzymes.get(siteId >> 1).getSite().length();
+						long start = p - length + 1;
+						if (start < to && length <= n) {
+							found.add(new int[] { siteId, (int) start });
+						}
+					}
+				}
+			}
+			return found;
+		}
+
+		/**
+		 * @return the site, or null if the enzyme would cut beyond the ends of a
+		 *         linear sequence
+		 */
+		RestrictionSite site(int siteId, int start, int n, boolean circular) {
+			RestrictionEnzyme enzyme = enzymes.get(siteId >> 1);
+			int length = enzyme.getSite().length();
+			boolean forward = (siteId & 1) == 0;
+			int top = forward ? start + enzyme.getTopCut() : start + length - enzyme.getBottomCut();
+			int bottom = forward ? start + enzyme.getBottomCut() : start + length - enzyme.getTopCut();
+			if (!circular) {
+				if (top <= 0 || top >= n || bottom <= 0 || bottom >= n) {
+					return null;
+				}
+				return new RestrictionSite(enzyme, start + 1, start + length, forward, top, bottom);
+			}
+			return new RestrictionSite(enzyme, start + 1, (start + length - 1) % n + 1, forward,
+					Math.floorMod(top - 1, n) + 1, Math.floorMod(bottom - 1, n) + 1);
+		}
+	}
+
+}
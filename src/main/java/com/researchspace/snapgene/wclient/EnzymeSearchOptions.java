@@ -0,0 +1,135 @@
+package com.researchspace.snapgene.wclient;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.researchspace.zmq.snapgene.requests.ReportEnzymesConfig;
+
+import lombok.Builder;
+import lombok.Value;
+
+/**
+ * Settings for a local restriction site search by {@link EnzymeFinder}.
+ */
+@Value
+@Builder(toBuilder = true)
+public class EnzymeSearchOptions {
+
+	private static final ObjectMapper MAPPER = new ObjectMapper();
+	private static final String ENZYME_DATABASE = "enzymes.txt";
+
+	/**
+	 * Enzymes to scan for; defaults to the bundled database of commercially
+	 * available enzymes
+	 */
+	@Builder.Default
+	List<RestrictionEnzyme> enzymes = BundledEnzymes.ENZYMES;
+
+	/**
+	 * Enzymes with shorter recognition sites are not scanned for
+	 */
+	@Builder.Default
+	int minimumSiteLength = 0;
+
+	/**
+	 * Enzymes cutting more often than this are not reported
+	 */
+	@Builder.Default
+	int maximumCuts = Integer.MAX_VALUE;
+
+	/**
+	 * Name of the enzyme set, e.g. 'Unique & Dual Cutters'
+	 */
+	@Builder.Default
+	String setName = "All Cutters";
+
+	public static EnzymeSearchOptions defaults() {
+		return builder().build();
+	}
+
+	/**
+	 * Reads the enzyme set from the config's JSON form: sets named 'UNIQUE' are
+	 * limited to 1 cut, 'DUAL' to 2 cuts, and 'SIX_PLUS' to sites of 6 or more
+	 * bases; other sets report every enzyme that cuts.
+	 */
+	public static EnzymeSearchOptions from(ReportEnzymesConfig config) {
+		JsonNode set = config == null ? null : MAPPER.valueToTree(config).get("enzymeSet");
+		if (set == null || !set.isTextual()) {
+			return defaults();
+		}
+		return forEnzymeSet(set.asText());
+	}
+
+	// e.g. UNIQUE, UNIQUE_AND_DUAL
+	static EnzymeSearchOptions forEnzymeSet(String enzymeSet) {
+		EnzymeSearchOptionsBuilder builder = builder();
+		String name = enzymeSet.toUpperCase(Locale.ROOT);
+		boolean unique = name.contains("UNIQUE");
+		boolean dual = name.contains("DUAL");
+		boolean sixPlus = name.contains("SIX") || name.contains("6");
+		if (unique || dual) {
+			builder.maximumCuts(dual ? 2 : 1);
+		}
+		if (sixPlus) {
+			builder.minimumSiteLength(6);
+		}
+		return builder.setName(setName(name, unique, dual, sixPlus)).build();
+	}
+
+	// e.g. 'Unique & Dual 6+ Cutters'
+	private static String setName(String enumName, boolean unique, boolean dual, boolean sixPlus) {
+		if (!unique && !dual) {
+			StringBuilder sb = new StringBuilder();
+			for (String word : enumName.toLowerCase(Locale.ROOT).split("_")) {
+				if (!word.isEmpty()) {
+					sb.append(sb.length() > 0 ? " " : "").append(Character.toUpperCase(word.charAt(0)))
+							.append(word.substring(1));
+				}
+			}
+			return sb.toString();
+		}
+		String cutters = unique && dual ? "Unique & Dual" : unique ? "Unique" : "Dual";
+		return cutters + (sixPlus ? " 6+" : "") + " Cutters";
+	}
+
+	/**
+	 * Loads the bundled enzyme database on first use.
+	 */
+	static final class BundledEnzymes {
+		static final List<RestrictionEnzyme> ENZYMES = load();
+
+		private BundledEnzymes() {
+		}
+
+		private static List<RestrictionEnzyme> load() {
+			List<RestrictionEnzyme> enzymes = new ArrayList<>();
+			try (InputStream in = EnzymeSearchOptions.class.getResourceAsStream(ENZYME_DATABASE)) {
+				if (in == null) {
+					throw new IllegalStateException("Missing enzyme database " + ENZYME_DATABASE);
+				}
+				BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.US_ASCII));
+				String line;
+				while ((line = reader.readLine()) != null) {
+					if (!line.trim().isEmpty() && !line.startsWith("#")) {
+						String[] fields = line.trim().split("\\s+");
+						enzymes.add(RestrictionEnzyme.parse(fields[0], fields[1]));
+					}
+				}
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+			return Collections.unmodifiableList(enzymes);
+		}
+	}
+
+}
@@ -0,0 +1,19 @@
+package com.researchspace.snapgene.wclient;
+
+/**
+ * Order in which a bounded cache tier discards entries when full.
+ */
+public enum EvictionPolicy {
+	/**
+	 * Least recently read or written entries are evicted first.
+	 */
+	LRU,
+	/**
+	 * Entries are evicted in the order they were added, regardless of reads.
+	 */
+	FIFO;
+
+	boolean isAccessOrdered() {
+		return this == LRU;
+	}
+}
@@ -0,0 +1,41 @@
+package com.researchspace.snapgene.wclient;
+
+import lombok.Builder;
+import lombok.Value;
+
+/**
+ * Settings for a {@link SnapgeneHealthMonitor}.
+ */
+@Value
+@Builder(toBuilder = true)
+public class HealthMonitorConfig {
+
+	@Builder.Default
+	long pollIntervalMillis = 10_000;
+
+	/**
+	 * Consecutive failed polls after which the service is considered down; one
+	 * successful poll brings it back up.
+	 */
+	@Builder.Default
+	int downAfterFailures = 2;
+
+	/**
+	 * Longest wait for a status response; a probe that takes longer counts as
+	 * a failed poll.
+	 */
+	@Builder.Default
+	long probeTimeoutMillis = 5_000;
+
+	/**
+	 * If <code>true</code>, calls made while the service is down fail
+	 * immediately with a 503 ApiError instead of being sent.
+	 */
+	@Builder.Default
+	boolean failFast = true;
+
+	public static HealthMonitorConfig defaults() {
+		return builder().build();
+	}
+
+}
@@ -0,0 +1,65 @@
+package com.researchspace.snapgene.wclient;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Size-bounded in-memory map of byte arrays.
+ */
+class HeapStore {
+
+	private final long maxBytes;
+	// in eviction order (next to evict first)
+	private final LinkedHashMap<String, byte[]> entries;
+	private long currentBytes;
+	private long evictionCount;
+
+	HeapStore(long maxBytes, EvictionPolicy policy) {
+		if (maxBytes <= 0) {
+			throw new IllegalArgumentException("maxBytes must be > 0 but was " + maxBytes);
+		}
+		this.maxBytes = maxBytes;
+		this.entries = new LinkedHashMap<>(16, 0.75f, policy.isAccessOrdered());
+	}
+
+	synchronized byte[] get(String key) {
+		return entries.get(key);
+	}
+
+	/**
+	 * Entries larger than the whole store are not stored.
+	 */
+	synchronized void put(String key, byte[] content) {
+		if (content.length > maxBytes) {
+			return;
+		}
+		// re-inserted, so a replaced entry is the newest in FIFO order too
+		byte[] previous = entries.remove(key);
+		entries.put(key, content);
+		if (previous != null) {
+			currentBytes -= previous.length;
+		}
+		currentBytes += content.length;
+		Iterator<Map.Entry<String, byte[]>> it = entries.entrySet().iterator();
+		while (currentBytes > maxBytes && it.hasNext()) {
+			Map.Entry<String, byte[]> eldest = it.next();
+			it.remove();
+			currentBytes -= eldest.getValue().length;
+			evictionCount++;
+		}
+	}
+
+	synchronized int getEntryCount() {
+		return entries.size();
+	}
+
+	synchronized long getSizeBytes() {
+		return currentBytes;
+	}
+
+	synchronized long getEvictionCount() {
+		return evictionCount;
+	}
+
+}
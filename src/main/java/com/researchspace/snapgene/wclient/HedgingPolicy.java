@@ -0,0 +1,53 @@
+package com.researchspace.snapgene.wclient;
+
+import lombok.Builder;
+import lombok.Value;
+
+/**
+ * Settings for a {@link RequestHedger}: when a call has not completed within a
+ * percentile of recent latencies, a second identical call is started and the
+ * first successful response is used.
+ */
+@Value
+@Builder(toBuilder = true)
+public class HedgingPolicy {
+
+	/**
+	 * Percentile of recent latencies, 1 to 99, after which a hedge is sent.
+	 */
+	@Builder.Default
+	double delayPercentile = 95;
+
+	/**
+	 * Hedge delay used until {@link #minSamples} latencies have been recorded.
+	 */
+	@Builder.Default
+	long defaultDelayMillis = 1000;
+
+	/**
+	 * Lower bound on the hedge delay.
+	 */
+	@Builder.Default
+	long minDelayMillis = 10;
+
+	@Builder.Default
+	int minSamples = 20;
+
+	/**
+	 * Number of recent latencies the percentile is calculated over.
+	 */
+	@Builder.Default
+	int windowSize = 200;
+
+	/**
+	 * Maximum fraction of calls, 0 to 1, that may be hedged, bounding the extra
+	 * load on the server.
+	 */
+	@Builder.Default
+	double maxHedgeRate = 0.05;
+
+	public static HedgingPolicy defaults() {
+		return builder().build();
+	}
+
+}
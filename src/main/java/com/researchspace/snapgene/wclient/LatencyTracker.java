@@ -0,0 +1,46 @@
+package com.researchspace.snapgene.wclient;
+
+import java.util.Arrays;
+
+/**
+ * Sliding window of the most recent latencies, for estimating percentiles.
+ */
+class LatencyTracker {
+
+	private final long[] window;
+	// guarded by this
+	private int next;
+	private int size;
+
+	LatencyTracker(int windowSize) {
+		this.window = new long[windowSize];
+	}
+
+	synchronized void record(long latencyNanos) {
+		window[next] = latencyNanos;
+		next = (next + 1) % window.length;
+		size = Math.min(size + 1, window.length);
+	}
+
+	synchronized int size() {
+		return size;
+	}
+
+	/**
+	 * @param percentile 0 to 100
+	 * @return latency at the percentile, or -1 if nothing has been recorded
+	 */
+	long percentileNanos(double percentile) {
+		long[] sorted;
+		synchronized (this) {
+			if (size == 0) {
+				return -1;
+			}
+			sorted = Arrays.copyOf(window, size);
+		}
+		Arrays.sort(sorted);
+		int index = (int) Math.ceil(percentile / 100 * sorted.length) - 1;
+		return sorted[Math.max(0, Math.min(index, sorted.length - 1))];
+	}
+
+}
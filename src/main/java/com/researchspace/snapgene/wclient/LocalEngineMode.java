@@ -0,0 +1,23 @@
+package com.researchspace.snapgene.wclient;
+
+/**
+ * Where an analysis that can also be computed in-process is run.
+ */
+public enum LocalEngineMode {
+	/**
+	 * Always call the Snapgene server.
+	 */
+	SERVER,
+	/**
+	 * Always compute locally; inputs that cannot be handled locally fail.
+	 */
+	LOCAL,
+	/**
+	 * Compute locally where possible, else call the Snapgene server.
+	 */
+	LOCAL_WITH_SERVER_FALLBACK;
+
+	boolean triesLocal() {
+		return this != SERVER;
+	}
+}
@@ -0,0 +1,66 @@
+package com.researchspace.snapgene.wclient;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.Optional;
+
+/**
+ * Reads the first sequence from FASTA, GenBank, EMBL and native .dna inputs,
+ * for local analysis. Other formats are left to the server.
+ */
+final class LocalSequenceReader {
+
+	private LocalSequenceReader() {
+	}
+
+	/**
+	 * @param format as detected from the input's content
+	 * @return the sequence, or empty if the format can't be read locally
+	 */
+	static Optional<DnaSequence> read(SnapgeneInput input, SequenceFormat format) throws IOException {
+		if (format == SequenceFormat.SNAPGENE) {
+			return Optional.of(SnapgeneFile.of(input).getSequence());
+		}
+		if (!SequenceRecordParser.canParse(format)) {
+			return Optional.empty();
+		}
+		FirstRecord first = new FirstRecord();
+		try (BufferedReader reader = new BufferedReader(
+				new InputStreamReader(input.openStream(), StandardCharsets.ISO_8859_1))) {
+			if (SequenceRecordParser.parse(reader, format, first) == 0) {
+				throw new IOException("No sequence record in " + input.getFileName());
+			}
+		}
+		return Optional.of(new DnaSequence(first.name, first.bases.toByteArray(), first.circular));
+	}
+
+	private static final class FirstRecord implements SequenceRecordParser.Handler {
+		private final ByteArrayOutputStream bases = new ByteArrayOutputStream();
+		private String name;
+		private boolean circular;
+
+		@Override
+		public void startRecord(String name, boolean circular) {
+			this.name = name;
+			this.circular = circular;
+		}
+
+		@Override
+		public void feature(SequenceRecordParser.Feature feature) {
+		}
+
+		@Override
+		public void bases(byte[] chunk, int length) {
+			bases.write(chunk, 0, length);
+		}
+
+		@Override
+		public boolean endRecord() {
+			return false;
+		}
+	}
+
+}
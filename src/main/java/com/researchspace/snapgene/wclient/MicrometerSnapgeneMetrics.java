@@ -0,0 +1,98 @@
+package com.researchspace.snapgene.wclient;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReference;
+
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+/**
+ * {@link SnapgeneMetrics} backed by a Micrometer {@link MeterRegistry}.
+ * Requires micrometer-core on the classpath. Meters, all tagged by
+ * 'endpoint':
+ * <ul>
+ * <li>snapgene.client.requests - timer, also tagged by 'outcome' and 'status'
+ * <li>snapgene.client.attempts, snapgene.client.retries - counters
+ * <li>snapgene.client.limiter.rejections - calls rejected by a concurrency
+ * limiter
+ * <li>snapgene.client.payload - bytes, tagged by 'direction' (upload/download)
+ * <li>snapgene.client.circuitbreaker.state - 1 for the current state of each
+ * breaker, 0 for the others; tagged by 'name' and 'state' instead of endpoint
+ * </ul>
+ */
+public class MicrometerSnapgeneMetrics implements SnapgeneMetrics {
+
+	static final String PREFIX = "snapgene.client.";
+
+	private final MeterRegistry registry;
+	private final Map<String, AtomicReference<CircuitBreaker.State>> breakerStates = new ConcurrentHashMap<>();
+
+	public MicrometerSnapgeneMetrics(MeterRegistry registry) {
+		this.registry = registry;
+	}
+
+	@Override
+	public void recordCall(SnapgeneCallRecord call) {
+		String endpoint = call.getEndpoint().getPath();
+		Timer.builder(PREFIX + "requests").tag("endpoint", endpoint).tag("outcome", outcome(call))
+				.tag("status", call.isRejected() ? "NONE" : Integer.toString(call.getHttpStatus()))
+				.publishPercentileHistogram().register(registry).record(call.getDuration());
+		Counter.builder(PREFIX + "attempts").tag("endpoint", endpoint).register(registry)
+				.increment(call.getAttempts());
+		if (call.getRetries() > 0) {
+			Counter.builder(PREFIX + "retries").tag("endpoint", endpoint).register(registry)
+					.increment(call.getRetries());
+		}
+	}
+
+	@Override
+	public void recordUploadBytes(SnapgeneEndpoint endpoint, long bytes) {
+		payload(endpoint, "upload").record(bytes);
+	}
+
+	@Override
+	public void recordDownloadBytes(SnapgeneEndpoint endpoint, long bytes) {
+		payload(endpoint, "download").record(bytes);
+	}
+
+	@Override
+	public void recordLimiterRejection(SnapgeneEndpoint endpoint) {
+		Counter.builder(PREFIX + "limiter.rejections").tag("endpoint", endpoint.getPath()).register(registry)
+				.increment();
+	}
+
+	@Override
+	public void recordCircuitBreakerState(String breakerName, CircuitBreaker.State state) {
+		breakerStates.computeIfAbsent(breakerName, this::registerBreakerGauges).set(state);
+	}
+
+	private AtomicReference<CircuitBreaker.State> registerBreakerGauges(String breakerName) {
+		AtomicReference<CircuitBreaker.State> current = new AtomicReference<>();
+		for (CircuitBreaker.State state : CircuitBreaker.State.values()) {
+			Gauge.builder(PREFIX + "circuitbreaker.state", current, ref -> ref.get() == state ? 1 : 0)
+					.tag("name", breakerName).tag("state", state.name()).register(registry);
+		}
+		return current;
+	}
+
+	private DistributionSummary payload(SnapgeneEndpoint endpoint, String direction) {
+		return DistributionSummary.builder(PREFIX + "payload").baseUnit("bytes")
+				.tag("endpoint", endpoint.getPath()).tag("direction", direction).register(registry);
+	}
+
+	private static String outcome(SnapgeneCallRecord call) {
+		if (call.isRejected()) {
+			return "REJECTED";
+		}
+		if (call.isSuccess()) {
+			return "SUCCESS";
+		}
+		return call.getHttpStatus() >= 400 && call.getHttpStatus() < 500 ? "CLIENT_ERROR" : "SERVER_ERROR";
+	}
+
+}
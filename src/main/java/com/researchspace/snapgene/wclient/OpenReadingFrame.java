@@ -0,0 +1,33 @@
+package com.researchspace.snapgene.wclient;
+
+import lombok.Value;
+
+/**
+ * An ORF found by {@link OrfFinder}. Positions are 1-based and inclusive, on
+ * the forward strand, and include the stop codon.
+ */
+@Value
+public class OpenReadingFrame {
+	/**
+	 * Lower bound on the forward strand; greater than <code>end</code> if the
+	 * ORF spans the origin of a circular sequence
+	 */
+	int start;
+	int end;
+	/**
+	 * 1, 2 or 3 for forward ORFs, -1, -2 or -3 for reverse ORFs
+	 */
+	int frame;
+	/**
+	 * Length in codons, excluding the stop codon
+	 */
+	int lengthCodons;
+
+	public boolean isForward() {
+		return frame > 0;
+	}
+
+	public boolean spansOrigin() {
+		return start > end;
+	}
+}
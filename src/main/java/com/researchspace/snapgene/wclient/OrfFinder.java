@@ -0,0 +1,200 @@
+package com.researchspace.snapgene.wclient;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Finds open reading frames locally. <br>
+ * An ORF runs from the first start codon after a stop codon (or the start of
+ * a linear sequence) to the next in-frame stop codon; ORFs without a stop
+ * codon are not reported. Codons are scanned as 6-bit codes straight from the
+ * sequence bytes, reading the reverse strand in place, and frames of long
+ * sequences are scanned in parallel. In circular sequences ORFs may span the
+ * origin, and if the length is not a multiple of 3 the frames run into each
+ * other across it.
+ */
+public final class OrfFinder {
+
+	/**
+	 * Sequences at least this long have their frames scanned in parallel.
+	 */
+	static final int PARALLEL_THRESHOLD = 100_000;
+
+	private static final int[] BASE_CODE = new int[256];
+	private static final Comparator<OpenReadingFrame> BY_POSITION = Comparator.comparingInt(OpenReadingFrame::getStart)
+			.thenComparingInt(OpenReadingFrame::getFrame);
+
+	static {
+		Arrays.fill(BASE_CODE, -1);
+		String[] bases = { "Aa", "Cc", "Gg", "TtUu" };
+		for (int code = 0; code < bases.length; code++) {
+			for (char c : bases[code].toCharArray()) {
+				BASE_CODE[c] = code;
+			}
+		}
+	}
+
+	private OrfFinder() {
+	}
+
+	/**
+	 * @return ORFs ordered by start position
+	 */
+	public static List<OpenReadingFrame> find(DnaSequence sequence, OrfSearchOptions options) {
+		Scanner scanner = new Scanner(sequence, options);
+		List<int[]> frames = new ArrayList<>();
+		for (int strand : new int[] { 1, -1 }) {
+			for (int offset = 0; offset < 3; offset++) {
+				// a circular sequence whose length isn't a multiple of 3 is a single cycle through all 3 frames
+				boolean singleCycle = sequence.isCircular() && sequence.length() % 3 != 0;
+				if (singleCycle ? offset == 0 && scanner.anyFrameOn(strand)
+						: options.getFrames().contains(strand * (offset + 1))) {
+					frames.add(new int[] { strand, offset });
+				}
+			}
+		}
+		Stream<int[]> scans = sequence.length() >= PARALLEL_THRESHOLD ? frames.parallelStream() : frames.stream();
+		return scans.flatMap(frame -> scanner.scan(frame[0], frame[1]).stream()).sorted(BY_POSITION)
+				.collect(Collectors.toList());
+	}
+
+	private static final class Scanner {
+		private final byte[] bases;
+		private final int n;
+		private final boolean circular;
+		private final OrfSearchOptions options;
+		private final boolean[] start = new boolean[64];
+		private final boolean[] stop = new boolean[64];
+
+		Scanner(DnaSequence sequence, OrfSearchOptions options) {
+			this.bases = sequence.getBases();
+			this.n = bases.length;
+			this.circular = sequence.isCircular();
+			this.options = options;
+			options.getStartCodons().forEach(codon -> start[encode(codon)] = true);
+			options.getStopCodons().forEach(codon -> stop[encode(codon)] = true);
+		}
+
+		boolean anyFrameOn(int strand) {
+			return options.getFrames().stream().anyMatch(frame -> Integer.signum(frame) == strand);
+		}
+
+		List<OpenReadingFrame> scan(int strand, int offset) {
+			List<OpenReadingFrame> found = new ArrayList<>();
+			if (n < 3) {
+				return found;
+			}
+			if (circular) {
+				scanCircular(strand, offset, found);
+			} else {
+				scanLinear(strand, offset, found);
+			}
+			return found;
+		}
+
+		private void scanLinear(int strand, int offset, List<OpenReadingFrame> found) {
+			long open = -1;
+			for (int p = offset; p + 3 <= n; p += 3) {
+				int codon = codon(strand, p);
+				if (codon < 0) {
+					continue;
+				}
+				if (stop[codon]) {
+					if (open >= 0) {
+						emit(strand, open, p, found);
+					}
+					open = -1;
+				} else if (open < 0 && start[codon]) {
+					open = p;
+				}
+			}
+		}
+
+		// starts after the first stop, so the state at the origin is known, and goes once round the cycle
+		private void scanCircular(int strand, int offset, List<OpenReadingFrame> found) {
+			long period = n % 3 == 0 ? n / 3 : n;
+			long firstStop = -1;
+			for (long k = 0; k < period && firstStop < 0; k++) {
+				int codon = codon(strand, offset + 3 * k);
+				if (codon >= 0 && stop[codon]) {
+					firstStop = k;
+				}
+			}
+			if (firstStop < 0) {
+				return;
+			}
+			long open = -1;
+			for (long k = firstStop + 1; k <= firstStop + period; k++) {
+				long p = offset + 3 * k;
+				int codon = codon(strand, p);
+				if (codon < 0) {
+					continue;
+				}
+				if (stop[codon]) {
+					if (open >= 0) {
+						emit(strand, open, p, found);
+					}
+					open = -1;
+				} else if (open < 0 && start[codon]) {
+					open = p;
+				}
+			}
+		}
+
+		// positions are on the scanned strand, unrolled for circular sequences
+		private void emit(int strand, long open, long stopCodon, List<OpenReadingFrame> found) {
+			int codons = (int) ((stopCodon - open) / 3);
+			if (codons < options.getMinimumCodons() || stopCodon + 3 - open > n) {
+				return;
+			}
+			int first = (int) (open % n);
+			int last = (int) ((stopCodon + 2) % n);
+			int frame = strand * (first % 3 + 1);
+			if (!options.getFrames().contains(frame)) {
+				return;
+			}
+			if (strand > 0) {
+				found.add(new OpenReadingFrame(first + 1, last + 1, frame, codons));
+			} else {
+				found.add(new OpenReadingFrame(n - last, n - first, frame, codons));
+			}
+		}
+
+		private int codon(int strand, long position) {
+			int a = base(strand, position);
+			int b = base(strand, position + 1);
+			int c = base(strand, position + 2);
+			return (a | b | c) < 0 ? -1 : a << 4 | b << 2 | c;
+		}
+
+		// the reverse strand is read backwards from the end, complemented
+		private int base(int strand, long position) {
+			int i = (int) (position < n ? position : position % n);
+			if (strand > 0) {
+				return BASE_CODE[bases[i] & 0xFF];
+			}
+			int code = BASE_CODE[bases[n - 1 - i] & 0xFF];
+			return code < 0 ? code : 3 - code;
+		}
+
+		private static int encode(String codon) {
+			if (codon.length() != 3) {
+				throw new IllegalArgumentException("Not a codon: " + codon);
+			}
+			int code = 0;
+			for (char c : codon.toCharArray()) {
+				int base = c < 256 ? BASE_CODE[c] : -1;
+				if (base < 0) {
+					throw new IllegalArgumentException("Not a codon: " + codon);
+				}
+				code = code << 2 | base;
+			}
+			return code;
+		}
+	}
+
+}
@@ -0,0 +1,84 @@
+package com.researchspace.snapgene.wclient;
+
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+import com.researchspace.zmq.snapgene.requests.ReadingFrame;
+import com.researchspace.zmq.snapgene.requests.ReportORFsConfig;
+
+import lombok.Builder;
+import lombok.Value;
+
+/**
+ * Settings for a local ORF search by {@link OrfFinder}.
+ */
+@Value
+@Builder(toBuilder = true)
+public class OrfSearchOptions {
+
+	private static final Set<Integer> ALL_FRAMES = setOf(1, 2, 3, -1, -2, -3);
+
+	/**
+	 * Frames to search: 1, 2, 3 on the forward strand, -1, -2, -3 on the reverse
+	 * strand, counted from the strand's 5' end.
+	 */
+	@Builder.Default
+	Set<Integer> frames = ALL_FRAMES;
+
+	/**
+	 * Minimum ORF length in codons, excluding the stop codon. The default
+	 * matches the ORFs reported by the Snapgene server for its default
+	 * settings.
+	 */
+	@Builder.Default
+	int minimumCodons = 40;
+
+	@Builder.Default
+	Set<String> startCodons = Collections.singleton("ATG");
+
+	@Builder.Default
+	Set<String> stopCodons = setOf("TAA", "TAG", "TGA");
+
+	public static OrfSearchOptions defaults() {
+		return builder().build();
+	}
+
+	/**
+	 * Searches the frames selected by the config's reading frame, with default
+	 * lengths and codons.
+	 * 
+	 * @throws IllegalArgumentException if the reading frame is not one the local
+	 *                                  engine supports
+	 */
+	public static OrfSearchOptions from(ReportORFsConfig config) {
+		OrfSearchOptionsBuilder builder = builder();
+		if (config != null && config.getReadingFrame() != null) {
+			builder.frames(framesFor(config.getReadingFrame()));
+		}
+		return builder.build();
+	}
+
+	static Set<Integer> framesFor(ReadingFrame readingFrame) {
+		switch (readingFrame) {
+		case FIRST_FORWARD_FRAME:
+			return setOf(1);
+		case ALL_FORWARD_FRAMES:
+			return setOf(1, 2, 3);
+		case ALL_FRAMES:
+			return ALL_FRAMES;
+		default:
+			throw new IllegalArgumentException("Unsupported reading frame " + readingFrame);
+		}
+	}
+
+	@SafeVarargs
+	private static <T> Set<T> setOf(T... values) {
+		Set<T> set = new LinkedHashSet<>();
+		for (T value : values) {
+			set.add(value);
+		}
+		return Collections.unmodifiableSet(set);
+	}
+
+}
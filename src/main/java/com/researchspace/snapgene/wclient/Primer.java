@@ -0,0 +1,31 @@
+package com.researchspace.snapgene.wclient;
+
+import java.util.List;
+
+import lombok.Value;
+
+/**
+ * A primer stored in a native .dna file, see {@link SnapgeneFile}.
+ */
+@Value
+public class Primer {
+	String name;
+	/**
+	 * Primer bases, 5' to 3'
+	 */
+	String sequence;
+	List<BindingSite> bindingSites;
+
+	/**
+	 * Where the primer anneals. Positions are 1-based and inclusive.
+	 */
+	@Value
+	public static class BindingSite {
+		int start;
+		int end;
+		/**
+		 * 0 for a forward primer, matching the top strand; 1 for a reverse primer
+		 */
+		int boundStrand;
+	}
+}
@@ -0,0 +1,161 @@
+package com.researchspace.snapgene.wclient;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.io.IOUtils;
+
+import com.researchspace.zmq.snapgene.responses.SnapgeneResponse;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Two-tier cache of rendered PNG/SVG maps, keyed by {@link RenderKey}. <br>
+ * A small on-heap tier holds hot previews; a larger, optional disk tier holds
+ * the rest and survives restarts. Each tier is bounded in bytes and has its own
+ * {@link EvictionPolicy}. Disk hits are promoted to the heap tier. <br>
+ * So that <code>convertToPngFile</code>/<code>convertToSvgFile</code> followed
+ * by <code>downloadFile</code> can be served from the cache, the cache also
+ * remembers which server output file names hold which rendered content.
+ */
+@Slf4j
+public class RenderCache {
+
+	static final String SUFFIX = ".render";
+	private static final int MAX_TRACKED_OUTPUTS = 10_000;
+
+	private final HeapStore heap;
+	private final DiskStore disk;
+
+	private final Map<RenderKey, SnapgeneResponse> responses = boundedMap(MAX_TRACKED_OUTPUTS);
+	private final Map<String, RenderKey> outputFileKeys = boundedMap(MAX_TRACKED_OUTPUTS);
+
+	private final AtomicLong heapHits = new AtomicLong();
+	private final AtomicLong diskHits = new AtomicLong();
+	private final AtomicLong misses = new AtomicLong();
+
+	/**
+	 * Heap-only cache.
+	 */
+	public RenderCache(long maxHeapBytes, EvictionPolicy heapPolicy) {
+		this.heap = new HeapStore(maxHeapBytes, heapPolicy);
+		this.disk = null;
+	}
+
+	/**
+	 * Heap and disk tiers.
+	 * 
+	 * @param diskDirectory directory for the disk tier, created if it doesn't
+	 *                      exist. Should not be shared with other content.
+	 */
+	public RenderCache(long maxHeapBytes, EvictionPolicy heapPolicy, Path diskDirectory, long maxDiskBytes,
+			EvictionPolicy diskPolicy) throws IOException {
+		this.heap = new HeapStore(maxHeapBytes, heapPolicy);
+		this.disk = new DiskStore(diskDirectory, SUFFIX, maxDiskBytes, diskPolicy);
+	}
+
+	/**
+	 * @return the rendered content, or empty if in neither tier
+	 */
+	public Optional<byte[]> get(RenderKey key) {
+		byte[] content = heap.get(key.asFileName());
+		if (content != null) {
+			heapHits.incrementAndGet();
+			return Optional.of(content);
+		}
+		if (disk != null) {
+			Optional<InputStream> stored = disk.open(key.asFileName());
+			if (stored.isPresent()) {
+				try (InputStream in = stored.get()) {
+					content = IOUtils.toByteArray(in);
+					heap.put(key.asFileName(), content);
+					diskHits.incrementAndGet();
+					return Optional.of(content);
+				} catch (IOException e) {
+					log.warn("Could not read cached render {} - {}", key, e.getMessage());
+				}
+			}
+		}
+		misses.incrementAndGet();
+		return Optional.empty();
+	}
+
+	/**
+	 * Stores rendered content in both tiers. Failure to write to disk is logged
+	 * but not propagated, as the cache is an optimisation only.
+	 */
+	public void put(RenderKey key, byte[] content) {
+		heap.put(key.asFileName(), content);
+		if (disk != null) {
+			try {
+				disk.put(key.asFileName(), content);
+			} catch (IOException e) {
+				log.warn("Could not write cached render {} - {}", key, e.getMessage());
+			}
+		}
+	}
+
+	/**
+	 * Remembers the server response for a render request, so that a repeat
+	 * request can be answered without contacting the server as long as the
+	 * rendered content is cached.
+	 */
+	public void putResponse(RenderKey key, SnapgeneResponse response) {
+		synchronized (responses) {
+			responses.put(key, response);
+		}
+		synchronized (outputFileKeys) {
+			outputFileKeys.put(response.getOutputFileName(), key);
+		}
+	}
+
+	/**
+	 * @return a previous server response for this render request, if its
+	 *         rendered content is still cached
+	 */
+	public Optional<SnapgeneResponse> getResponse(RenderKey key) {
+		SnapgeneResponse response;
+		synchronized (responses) {
+			response = responses.get(key);
+		}
+		if (response == null) {
+			misses.incrementAndGet();
+			return Optional.empty();
+		}
+		return get(key).map(content -> response);
+	}
+
+	/**
+	 * @return the render key whose output is stored on the server under this
+	 *         file name, if known
+	 */
+	public Optional<RenderKey> getKeyForOutputFile(String outputFileName) {
+		synchronized (outputFileKeys) {
+			return Optional.ofNullable(outputFileKeys.get(outputFileName));
+		}
+	}
+
+	public RenderCacheStats getStats() {
+		return new RenderCacheStats(heapHits.get(), diskHits.get(), misses.get(), heap.getEvictionCount(),
+				disk == null ? 0 : disk.getEvictionCount(), heap.getEntryCount(), heap.getSizeBytes(),
+				disk == null ? 0 : disk.getEntryCount(), disk == null ? 0 : disk.getSizeBytes());
+	}
+
+	private static <K, V> Map<K, V> boundedMap(int maxEntries) {
+		// access-ordered, so callers must synchronize reads as well as writes
+		return new LinkedHashMap<K, V>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<K, V> eldest) {
+				return size() > maxEntries;
+			}
+		};
+	}
+
+}
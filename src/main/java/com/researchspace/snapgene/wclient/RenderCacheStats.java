@@ -0,0 +1,28 @@
+package com.researchspace.snapgene.wclient;
+
+import lombok.Value;
+
+/**
+ * Point-in-time statistics of a {@link RenderCache}, for sizing its tiers.
+ */
+@Value
+public class RenderCacheStats {
+	long heapHits;
+	long diskHits;
+	long misses;
+	long heapEvictions;
+	long diskEvictions;
+	int heapEntries;
+	long heapBytes;
+	int diskEntries;
+	long diskBytes;
+
+	/**
+	 * @return proportion of lookups served from either tier, or 0 if there have
+	 *         been no lookups
+	 */
+	public double getHitRate() {
+		long lookups = heapHits + diskHits + misses;
+		return lookups == 0 ? 0 : (double) (heapHits + diskHits) / lookups;
+	}
+}
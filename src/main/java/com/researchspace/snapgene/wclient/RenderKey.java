@@ -0,0 +1,72 @@
+package com.researchspace.snapgene.wclient;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.MapperFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+
+import lombok.EqualsAndHashCode;
+
+/**
+ * Identifies a rendered map by input content, output type and render
+ * configuration. Two configs with the same property values produce the same
+ * key, regardless of property order.
+ */
+@EqualsAndHashCode
+public final class RenderKey {
+
+	private static final ObjectMapper CANONICAL_MAPPER = JsonMapper.builder()
+			.enable(MapperFeature.SORT_PROPERTIES_ALPHABETICALLY)
+			.enable(SerializationFeature.ORDER_MAP_ENTRIES_BY_KEYS).build();
+
+	private final String value;
+
+	private RenderKey(String value) {
+		this.value = value;
+	}
+
+	/**
+	 * @param renderType  e.g. 'png' or 'svg'
+	 * @param contentHash hash of the sequence file being rendered, see
+	 *                    {@link ContentHash}
+	 * @param config      a render config such as GeneratePngMapConfig, may be
+	 *                    null
+	 */
+	public static RenderKey of(String renderType, String contentHash, Object config) {
+		String configHash = ContentHash.sha256Hex(canonicalJson(config).getBytes(StandardCharsets.UTF_8));
+		return new RenderKey(renderType + "-" + contentHash + "-" + configHash);
+	}
+
+	/**
+	 * Convenience method which hashes the file's content.
+	 */
+	public static RenderKey of(String renderType, File file, Object config) throws IOException {
+		return of(renderType, ContentHash.sha256Hex(file), config);
+	}
+
+	static String canonicalJson(Object config) {
+		try {
+			return CANONICAL_MAPPER.writeValueAsString(config);
+		} catch (JsonProcessingException e) {
+			throw new IllegalArgumentException("Render config could not be serialized", e);
+		}
+	}
+
+	/**
+	 * @return a string safe for use as a file name
+	 */
+	String asFileName() {
+		return ContentHash.sha256Hex(value.getBytes(StandardCharsets.UTF_8));
+	}
+
+	@Override
+	public String toString() {
+		return value;
+	}
+
+}
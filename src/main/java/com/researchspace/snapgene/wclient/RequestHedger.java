@@ -0,0 +1,148 @@
+package com.researchspace.snapgene.wclient;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+import org.springframework.http.HttpStatus;
+
+import com.researchspace.apiutils.ApiError;
+
+import io.vavr.control.Either;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Sends a second attempt of an idempotent call if the first is slower than
+ * usual, returning whichever succeeds first. The other attempt is cancelled;
+ * as blocking HTTP reads can't always be interrupted, its response may still
+ * be read, then discarded.
+ */
+@Slf4j
+public class RequestHedger {
+
+	private final HedgingPolicy policy;
+	private final ExecutorService executor;
+	private final LatencyTracker latencies;
+	private final AtomicLong calls = new AtomicLong();
+	private final AtomicLong hedges = new AtomicLong();
+	private final AtomicLong hedgeWins = new AtomicLong();
+
+	/**
+	 * @param executor runs both attempts; needs up to two threads per concurrent
+	 *                 call
+	 */
+	public RequestHedger(HedgingPolicy policy, ExecutorService executor) {
+		this.policy = policy;
+		this.executor = executor;
+		this.latencies = new LatencyTracker(policy.getWindowSize());
+	}
+
+	public <T> Either<ApiError, T> execute(Supplier<Either<ApiError, T>> call) {
+		calls.incrementAndGet();
+		CompletableFuture<Either<ApiError, T>> result = new CompletableFuture<>();
+		AtomicInteger outstanding = new AtomicInteger(1);
+		AtomicBoolean won = new AtomicBoolean();
+		Future<?> primary;
+		Future<?> hedge = null;
+		try {
+			primary = executor.submit(() -> attempt(call, result, outstanding, won, false));
+		} catch (RejectedExecutionException e) {
+			return call.get();
+		}
+		try {
+			try {
+				return result.get(hedgeDelayNanos(), TimeUnit.NANOSECONDS);
+			} catch (TimeoutException e) {
+				if (mayHedge()) {
+					outstanding.incrementAndGet();
+					log.debug("Sending hedge request");
+					hedge = executor.submit(() -> attempt(call, result, outstanding, won, true));
+				}
+				return result.get();
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return Either.left(new ApiError(HttpStatus.INTERNAL_SERVER_ERROR, 500, "Interrupted",
+					"Interrupted while waiting for response"));
+		} catch (ExecutionException e) {
+			return Either.left(new ApiError(HttpStatus.INTERNAL_SERVER_ERROR, 500, e.getCause().getMessage(),
+					"Unexpected error making request"));
+		} finally {
+			primary.cancel(true);
+			if (hedge != null) {
+				hedge.cancel(true);
+			}
+		}
+	}
+
+	// a success completes the result; a failure only if no other attempt is outstanding
+	private <T> void attempt(Supplier<Either<ApiError, T>> call, CompletableFuture<Either<ApiError, T>> result,
+			AtomicInteger outstanding, AtomicBoolean won, boolean isHedge) {
+		long start = System.nanoTime();
+		Either<ApiError, T> response;
+		try {
+			response = call.get();
+		} catch (RuntimeException e) {
+			response = Either.left(new ApiError(HttpStatus.INTERNAL_SERVER_ERROR, 500, e.getMessage(),
+					"Unexpected error making request"));
+		}
+		if (response.isRight()) {
+			latencies.record(System.nanoTime() - start);
+			// claim the win before completing, so stats are up to date when the caller returns
+			if (won.compareAndSet(false, true)) {
+				if (isHedge) {
+					hedgeWins.incrementAndGet();
+				}
+				result.complete(response);
+			}
+		} else if (outstanding.decrementAndGet() == 0) {
+			result.complete(response);
+		}
+	}
+
+	private long hedgeDelayNanos() {
+		long delayNanos = latencies.size() < policy.getMinSamples()
+				? TimeUnit.MILLISECONDS.toNanos(policy.getDefaultDelayMillis())
+				: latencies.percentileNanos(policy.getDelayPercentile());
+		return Math.max(TimeUnit.MILLISECONDS.toNanos(policy.getMinDelayMillis()), delayNanos);
+	}
+
+	private boolean mayHedge() {
+		while (true) {
+			long sent = hedges.get();
+			if (sent + 1 > policy.getMaxHedgeRate() * calls.get()) {
+				return false;
+			}
+			if (hedges.compareAndSet(sent, sent + 1)) {
+				return true;
+			}
+		}
+	}
+
+	public long getCallCount() {
+		return calls.get();
+	}
+
+	/**
+	 * @return number of hedge requests sent
+	 */
+	public long getHedgeCount() {
+		return hedges.get();
+	}
+
+	/**
+	 * @return number of calls answered by the hedge request rather than the first
+	 */
+	public long getHedgeWinCount() {
+		return hedgeWins.get();
+	}
+
+}
@@ -0,0 +1,51 @@
+package com.researchspace.snapgene.wclient;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import lombok.EqualsAndHashCode;
+
+/**
+ * Identifies a Snapgene call by operation, input content and configuration,
+ * for coalescing identical concurrent calls with {@link SingleFlight}.
+ */
+@EqualsAndHashCode
+public final class RequestKey {
+
+	private final String value;
+
+	private RequestKey(String value) {
+		this.value = value;
+	}
+
+	/**
+	 * @param operation   endpoint name, e.g. 'exportPng'
+	 * @param contentHash hash of the uploaded content, see {@link ContentHash}
+	 * @param config      the request config, may be null
+	 */
+	public static RequestKey of(String operation, String contentHash, Object config) {
+		String configHash = ContentHash
+				.sha256Hex(RenderKey.canonicalJson(config).getBytes(StandardCharsets.UTF_8));
+		return new RequestKey(operation + "-" + contentHash + "-" + configHash);
+	}
+
+	/**
+	 * @throws IllegalStateException if the input is not replayable
+	 */
+	public static RequestKey of(String operation, SnapgeneInput input, Object config) throws IOException {
+		return of(operation, input.contentHash(), config);
+	}
+
+	/**
+	 * Key for a call identified by a name alone, e.g. a download.
+	 */
+	public static RequestKey of(String operation, String name) {
+		return new RequestKey(operation + ":" + name);
+	}
+
+	@Override
+	public String toString() {
+		return value;
+	}
+
+}
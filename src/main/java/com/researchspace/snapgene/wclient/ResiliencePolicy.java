@@ -0,0 +1,68 @@
+package com.researchspace.snapgene.wclient;
+
+import lombok.Builder;
+import lombok.Value;
+
+/**
+ * Retry and circuit breaker settings for one Snapgene endpoint. <br>
+ * Retries wait for an exponentially growing, randomized interval: attempt
+ * <em>n</em> waits about
+ * <code>initialBackoffMillis * backoffMultiplier^(n-1)</code>, plus or minus
+ * <code>backoffRandomization</code> of that. Only errors that may succeed on a
+ * second attempt are retried.
+ */
+@Value
+@Builder(toBuilder = true)
+public class ResiliencePolicy {
+
+	/**
+	 * Maximum attempts per call, including the first; 1 disables retries.
+	 */
+	@Builder.Default
+	int maxAttempts = 3;
+
+	/**
+	 * Wait before the first retry; at least 10.
+	 */
+	@Builder.Default
+	long initialBackoffMillis = 500;
+
+	@Builder.Default
+	double backoffMultiplier = 2;
+
+	/**
+	 * Jitter, between 0 and 1, as a fraction of each backoff interval.
+	 */
+	@Builder.Default
+	double backoffRandomization = 0.5;
+
+	/**
+	 * Percentage of server faults (5xx or I/O errors) in the sliding window at
+	 * which the breaker opens.
+	 */
+	@Builder.Default
+	float failureRateThreshold = 50;
+
+	/**
+	 * Number of recent calls the failure rate is calculated over.
+	 */
+	@Builder.Default
+	int slidingWindowSize = 50;
+
+	/**
+	 * Calls needed before the failure rate is evaluated.
+	 */
+	@Builder.Default
+	int minimumNumberOfCalls = 20;
+
+	/**
+	 * Time the breaker stays open before letting trial calls through.
+	 */
+	@Builder.Default
+	long openStateMillis = 30_000;
+
+	public static ResiliencePolicy defaults() {
+		return builder().build();
+	}
+
+}
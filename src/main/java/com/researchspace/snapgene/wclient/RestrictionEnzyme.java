@@ -0,0 +1,79 @@
+package com.researchspace.snapgene.wclient;
+
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import lombok.Value;
+
+/**
+ * A restriction enzyme for local site scanning by {@link EnzymeFinder}.
+ */
+@Value
+public class RestrictionEnzyme {
+
+	private static final Pattern OFFSET_NOTATION = Pattern.compile("([A-Za-z]+)\\((-?\\d+)/(-?\\d+)\\)");
+	private static final String IUPAC = "ACGTRYSWKMBDHVN";
+	private static final String IUPAC_COMPLEMENT = "TGCAYRSWMKVHDBN";
+
+	String name;
+	/**
+	 * Recognition site, 5' to 3', in upper-case IUPAC letters
+	 */
+	String site;
+	/**
+	 * Top-strand cut, as the number of bases from the start of the site; may be
+	 * negative or beyond the site for enzymes cutting outside it
+	 */
+	int topCut;
+	/**
+	 * Bottom-strand cut, in the same top-strand coordinates as
+	 * <code>topCut</code>
+	 */
+	int bottomCut;
+
+	/**
+	 * Parses REBASE-style site notation: either the site with a <code>^</code>
+	 * at the top-strand cut, e.g. <code>G^AATTC</code>, where the bottom strand
+	 * is cut symmetrically, or the site followed by cut offsets after its 3'
+	 * end on each strand, e.g. <code>GGTCTC(1/5)</code>.
+	 *
+	 * @throws IllegalArgumentException if the notation can't be parsed
+	 */
+	public static RestrictionEnzyme parse(String name, String notation) {
+		Matcher offsets = OFFSET_NOTATION.matcher(notation);
+		if (offsets.matches()) {
+			String site = checkedSite(name, offsets.group(1));
+			return new RestrictionEnzyme(name, site, site.length() + Integer.parseInt(offsets.group(2)),
+					site.length() + Integer.parseInt(offsets.group(3)));
+		}
+		int cut = notation.indexOf('^');
+		if (cut < 0 || cut != notation.lastIndexOf('^')) {
+			throw new IllegalArgumentException("No single cut position in site " + notation + " of " + name);
+		}
+		String site = checkedSite(name, notation.replace("^", ""));
+		return new RestrictionEnzyme(name, site, cut, site.length() - cut);
+	}
+
+	public boolean isPalindromic() {
+		return site.equals(reverseComplement(site));
+	}
+
+	static String reverseComplement(String iupacSite) {
+		StringBuilder sb = new StringBuilder(iupacSite.length());
+		for (int i = iupacSite.length() - 1; i >= 0; i--) {
+			sb.append(IUPAC_COMPLEMENT.charAt(IUPAC.indexOf(iupacSite.charAt(i))));
+		}
+		return sb.toString();
+	}
+
+	private static String checkedSite(String name, String site) {
+		String upper = site.toUpperCase();
+		for (char c : upper.toCharArray()) {
+			if (IUPAC.indexOf(c) < 0) {
+				throw new IllegalArgumentException("Not an IUPAC base '" + c + "' in site of " + name);
+			}
+		}
+		return upper;
+	}
+
+}
@@ -0,0 +1,38 @@
+package com.researchspace.snapgene.wclient;
+
+import lombok.Value;
+
+/**
+ * A restriction site found by {@link EnzymeFinder}. Positions are 1-based and
+ * inclusive, on the forward strand.
+ */
+@Value
+public class RestrictionSite {
+	RestrictionEnzyme enzyme;
+	/**
+	 * First base of the recognition site on the forward strand
+	 */
+	int start;
+	/**
+	 * Last base of the recognition site; less than <code>start</code> if the
+	 * site spans the origin of a circular sequence
+	 */
+	int end;
+	/**
+	 * Whether the site reads 5' to 3' on the forward strand; always true for
+	 * palindromic sites
+	 */
+	boolean forward;
+	/**
+	 * Top-strand cut, after this many bases
+	 */
+	int topCut;
+	/**
+	 * Bottom-strand cut, after this many top-strand bases
+	 */
+	int bottomCut;
+
+	public boolean spansOrigin() {
+		return start > end;
+	}
+}
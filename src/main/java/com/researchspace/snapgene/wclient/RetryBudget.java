@@ -0,0 +1,91 @@
+package com.researchspace.snapgene.wclient;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Limits retries across all endpoints to a fraction of calls, so that when the
+ * server is struggling, retries don't multiply its load. Each call deposits
+ * <code>retryRatio</code> tokens and each retry withdraws one; in addition,
+ * <code>minRetriesPerSecond</code> tokens are added over time so occasional
+ * failures can always be retried.
+ */
+public class RetryBudget {
+
+	private final double retryRatio;
+	private final double minRetriesPerSecond;
+	private final double maxBalance;
+
+	// guarded by this
+	private double balance;
+	private long lastRefillNanos;
+	private long exhausted;
+
+	/**
+	 * @param retryRatio          retries allowed per call, e.g. 0.2 for one
+	 *                            retry per 5 calls
+	 * @param minRetriesPerSecond retries always allowed regardless of call volume
+	 */
+	public RetryBudget(double retryRatio, double minRetriesPerSecond) {
+		this.retryRatio = retryRatio;
+		this.minRetriesPerSecond = minRetriesPerSecond;
+		this.maxBalance = Math.max(1, minRetriesPerSecond * 10);
+		this.balance = maxBalance;
+		this.lastRefillNanos = System.nanoTime();
+	}
+
+	/**
+	 * 20% retries, plus 2 per second.
+	 */
+	public static RetryBudget defaults() {
+		return new RetryBudget(0.2, 2);
+	}
+
+	/**
+	 * No limit on retries beyond each policy's maximum attempts.
+	 */
+	public static RetryBudget unlimited() {
+		return new RetryBudget(0, 0) {
+			@Override
+			public boolean tryRetry() {
+				return true;
+			}
+		};
+	}
+
+	/**
+	 * Records a call.
+	 */
+	public synchronized void onCall() {
+		refill();
+		balance = Math.min(maxBalance, balance + retryRatio);
+	}
+
+	/**
+	 * @return <code>true</code> if a retry may be made, withdrawing from the
+	 *         budget
+	 */
+	public synchronized boolean tryRetry() {
+		refill();
+		if (balance >= 1) {
+			balance -= 1;
+			return true;
+		}
+		exhausted++;
+		return false;
+	}
+
+	/**
+	 * @return number of retries refused because the budget was exhausted
+	 */
+	public synchronized long getExhaustedCount() {
+		return exhausted;
+	}
+
+	private void refill() {
+		long now = System.nanoTime();
+		double seconds = (now - lastRefillNanos) / (double) TimeUnit.SECONDS.toNanos(1);
+		lastRefillNanos = now;
+		balance = Math.min(maxBalance, balance + seconds * minRetriesPerSecond);
+	}
+
+}
@@ -0,0 +1,107 @@
+package com.researchspace.snapgene.wclient;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A reference-counted file in a {@link ScratchSpace}. The file is deleted,
+ * and its bytes returned to the quota, when the last reference is closed.
+ */
+public final class ScratchFile implements Closeable {
+
+	private static final int COPY_BUFFER_SIZE = 64 * 1024;
+
+	private final ScratchSpace space;
+	private final Path path;
+	private final long createdAtMillis;
+	private final AtomicInteger references = new AtomicInteger(1);
+	// bytes charged to the quota, guarded by space
+	long size;
+
+	ScratchFile(ScratchSpace space, Path path, long createdAtMillis) {
+		this.space = space;
+		this.path = path;
+		this.createdAtMillis = createdAtMillis;
+	}
+
+	public Path getPath() {
+		return path;
+	}
+
+	long getCreatedAtMillis() {
+		return createdAtMillis;
+	}
+
+	/**
+	 * Adds a reference, which must be closed separately.
+	 *
+	 * @throws IllegalStateException if the file has already been released
+	 */
+	public ScratchFile retain() {
+		int current;
+		do {
+			current = references.get();
+			if (current <= 0) {
+				throw new IllegalStateException("Scratch file " + path + " has been released");
+			}
+		} while (!references.compareAndSet(current, current + 1));
+		return this;
+	}
+
+	/**
+	 * Replaces the file's content with the stream's, which is read to the end
+	 * but not closed.
+	 *
+	 * @return number of bytes written
+	 * @throws IOException including if the scratch space byte quota is exceeded,
+	 *                     in which case the content is incomplete
+	 */
+	public long write(InputStream content) throws IOException {
+		space.resize(this, 0);
+		long written = 0;
+		byte[] buffer = new byte[COPY_BUFFER_SIZE];
+		try (OutputStream out = Files.newOutputStream(path)) {
+			int read;
+			while ((read = content.read(buffer)) != -1) {
+				space.resize(this, written + read);
+				out.write(buffer, 0, read);
+				written += read;
+			}
+		}
+		return written;
+	}
+
+	/**
+	 * Charges the current size of a file written by other means to the quota.
+	 *
+	 * @return the file size
+	 * @throws IOException if the scratch space byte quota is exceeded
+	 */
+	public long recordSize() throws IOException {
+		long current = Files.size(path);
+		space.resize(this, current);
+		return current;
+	}
+
+	/**
+	 * Releases one reference, deleting the file if it was the last.
+	 * Closing more times than retained has no effect.
+	 */
+	@Override
+	public void close() {
+		if (references.getAndUpdate(n -> Math.max(n - 1, 0)) == 1) {
+			space.discard(this);
+		}
+	}
+
+	@Override
+	public String toString() {
+		return path.toString();
+	}
+
+}
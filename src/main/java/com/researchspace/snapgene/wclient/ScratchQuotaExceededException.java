@@ -0,0 +1,18 @@
+package com.researchspace.snapgene.wclient;
+
+import java.io.IOException;
+
+/**
+ * Thrown when a {@link ScratchSpace} file count or byte quota would be
+ * exceeded. This is a local condition: repeating the request to the server
+ * won't help.
+ */
+public class ScratchQuotaExceededException extends IOException {
+
+	private static final long serialVersionUID = 1L;
+
+	public ScratchQuotaExceededException(String message) {
+		super(message);
+	}
+
+}
@@ -0,0 +1,242 @@
+package com.researchspace.snapgene.wclient;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.io.FilenameUtils;
+import org.apache.commons.io.IOUtils;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Quota-limited directory for intermediate files, such as downloads spooled
+ * before being written to a caller's stream and native .dna conversions
+ * passed to a second upload. <br>
+ * Each {@link ScratchFile} is reference-counted and deleted when its last
+ * reference is closed. A background sweeper deletes files left behind by
+ * earlier processes; files still referenced are only deleted if
+ * <code>reapHeldFiles</code> is configured.
+ */
+@Slf4j
+public class ScratchSpace implements Closeable {
+
+	static final String PREFIX = "snapgene-scratch-";
+
+	private final ScratchSpaceConfig config;
+	private final Map<Path, ScratchFile> live = new ConcurrentHashMap<>();
+	// guarded by this
+	private long usedBytes;
+	private final AtomicLong sweptCount = new AtomicLong();
+	private final AtomicLong quotaRejectionCount = new AtomicLong();
+	private ScheduledExecutorService sweeper;
+
+	public ScratchSpace(ScratchSpaceConfig config) throws IOException {
+		this.config = config;
+		Files.createDirectories(config.getDirectory());
+	}
+
+	/**
+	 * Starts sweeping for orphaned files on a daemon thread, immediately and
+	 * then at the configured interval.
+	 */
+	public synchronized void startSweeper() {
+		if (sweeper == null) {
+			sweeper = Executors.newSingleThreadScheduledExecutor(
+					SnapgeneExecutors.daemonThreadFactory("snapgene-scratch-sweeper-"));
+			sweeper.scheduleWithFixedDelay(this::sweep, 0, config.getSweepIntervalMillis(), TimeUnit.MILLISECONDS);
+		}
+	}
+
+	/**
+	 * @param size content length, or -1 if not known
+	 * @return <code>true</code> if content of this size should be kept in memory
+	 */
+	public boolean fitsInMemory(long size) {
+		return size >= 0 && size <= config.getInMemoryThresholdBytes();
+	}
+
+	/**
+	 * Creates a new, empty scratch file with one reference, held by the caller.
+	 *
+	 * @param suffix file name suffix, e.g. '.dna'
+	 * @throws ScratchQuotaExceededException if the file count or byte quota is
+	 *                                        exhausted
+	 */
+	public ScratchFile allocate(String suffix) throws IOException {
+		synchronized (this) {
+			if (live.size() >= config.getMaxFiles()) {
+				throw quotaExceeded("file count " + config.getMaxFiles());
+			}
+			if (usedBytes >= config.getMaxBytes()) {
+				throw quotaExceeded(config.getMaxBytes() + " bytes");
+			}
+			Path path = Files.createTempFile(config.getDirectory(), PREFIX, suffix);
+			ScratchFile file = new ScratchFile(this, path, System.currentTimeMillis());
+			live.put(path, file);
+			return file;
+		}
+	}
+
+	/**
+	 * Holds streamed content as an upload input: in memory if its length is
+	 * known and within the in-memory threshold, else in a scratch file that is
+	 * released when the returned input is closed.
+	 *
+	 * @param fileName      name the server should see
+	 * @param contentLength length in bytes, or -1 if not known
+	 * @throws ScratchQuotaExceededException if the content would exceed a quota,
+	 *                                        checked up front if its length is
+	 *                                        known and else while writing
+	 */
+	public SnapgeneInput hold(String fileName, long contentLength, InputStream content) throws IOException {
+		if (fitsInMemory(contentLength)) {
+			return SnapgeneInput.of(fileName, IOUtils.toByteArray(content, contentLength));
+		}
+		checkFits(contentLength);
+		String extension = FilenameUtils.getExtension(fileName);
+		ScratchFile file = allocate(extension.isEmpty() ? ".tmp" : "." + extension);
+		try {
+			file.write(content);
+			return SnapgeneInput.of(fileName, file);
+		} catch (IOException | RuntimeException e) {
+			file.close();
+			throw e;
+		}
+	}
+
+	/**
+	 * Fails fast if content of this length could not be written within the byte
+	 * quota.
+	 *
+	 * @param contentLength length in bytes, or -1 if not known
+	 */
+	public synchronized void checkFits(long contentLength) throws ScratchQuotaExceededException {
+		if (contentLength >= 0 && usedBytes + contentLength > config.getMaxBytes()) {
+			throw quotaExceeded(config.getMaxBytes() + " bytes");
+		}
+	}
+
+	/**
+	 * Deletes unreferenced scratch files older than the maximum age: orphans
+	 * from earlier processes or interrupted writes. Files still referenced are
+	 * kept, unless <code>reapHeldFiles</code> is configured.
+	 *
+	 * @return number of files deleted
+	 */
+	public int sweep() {
+		long cutoff = System.currentTimeMillis() - config.getOrphanMaxAgeMillis();
+		int deleted = 0;
+		try (DirectoryStream<Path> files = Files.newDirectoryStream(config.getDirectory(), PREFIX + "*")) {
+			for (Path path : files) {
+				ScratchFile held = live.get(path);
+				if (held != null) {
+					if (config.isReapHeldFiles() && held.getCreatedAtMillis() <= cutoff) {
+						log.warn("Scratch file {} held for more than {} ms, assuming it was leaked", path,
+								config.getOrphanMaxAgeMillis());
+						discard(held);
+						deleted++;
+					}
+				} else if (Files.getLastModifiedTime(path).toMillis() <= cutoff) {
+					Files.deleteIfExists(path);
+					deleted++;
+				}
+			}
+		} catch (IOException e) {
+			log.warn("Could not sweep scratch directory {} - {}", config.getDirectory(), e.getMessage());
+		}
+		if (deleted > 0) {
+			log.info("Swept {} orphaned scratch files from {}", deleted, config.getDirectory());
+		}
+		sweptCount.addAndGet(deleted);
+		return deleted;
+	}
+
+	/**
+	 * @return number of live scratch files
+	 */
+	public int getFileCount() {
+		return live.size();
+	}
+
+	/**
+	 * @return total size in bytes of live scratch files
+	 */
+	public synchronized long getUsedBytes() {
+		return usedBytes;
+	}
+
+	/**
+	 * @return number of files deleted by the sweeper
+	 */
+	public long getSweptCount() {
+		return sweptCount.get();
+	}
+
+	/**
+	 * @return number of allocations or writes refused because a quota was
+	 *         exhausted
+	 */
+	public long getQuotaRejectionCount() {
+		return quotaRejectionCount.get();
+	}
+
+	/**
+	 * Stops the sweeper and deletes all live scratch files.
+	 */
+	@Override
+	public void close() {
+		synchronized (this) {
+			if (sweeper != null) {
+				sweeper.shutdownNow();
+				sweeper = null;
+			}
+		}
+		for (ScratchFile file : new ArrayList<>(live.values())) {
+			discard(file);
+		}
+	}
+
+	// accounts for a change in a file's size, refusing growth beyond the byte quota
+	synchronized void resize(ScratchFile file, long newSize) throws IOException {
+		if (!live.containsKey(file.getPath())) {
+			throw new IOException("Scratch file " + file.getPath() + " has been released");
+		}
+		long delta = newSize - file.size;
+		if (delta > 0 && usedBytes + delta > config.getMaxBytes()) {
+			throw quotaExceeded(config.getMaxBytes() + " bytes");
+		}
+		usedBytes += delta;
+		file.size = newSize;
+	}
+
+	void discard(ScratchFile file) {
+		synchronized (this) {
+			if (!live.remove(file.getPath(), file)) {
+				return;
+			}
+			usedBytes -= file.size;
+		}
+		try {
+			Files.deleteIfExists(file.getPath());
+		} catch (IOException e) {
+			log.warn("Could not delete scratch file {} - {}", file.getPath(), e.getMessage());
+		}
+	}
+
+	private ScratchQuotaExceededException quotaExceeded(String quota) {
+		quotaRejectionCount.incrementAndGet();
+		return new ScratchQuotaExceededException("Scratch space quota of " + quota + " exceeded in " + config.getDirectory());
+	}
+
+}
@@ -0,0 +1,65 @@
+package com.researchspace.snapgene.wclient;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+import lombok.Builder;
+import lombok.Value;
+
+/**
+ * Settings for a {@link ScratchSpace}.
+ */
+@Value
+@Builder(toBuilder = true)
+public class ScratchSpaceConfig {
+
+	/**
+	 * Directory for scratch files, created if it doesn't exist. Should not be
+	 * shared with other content.
+	 */
+	@Builder.Default
+	Path directory = Paths.get(System.getProperty("java.io.tmpdir"), "snapgene-scratch");
+
+	/**
+	 * Maximum total size of live scratch files; allocations beyond this fail.
+	 */
+	@Builder.Default
+	long maxBytes = 1024L * 1024 * 1024;
+
+	/**
+	 * Maximum number of live scratch files.
+	 */
+	@Builder.Default
+	int maxFiles = 1000;
+
+	/**
+	 * Intermediates of known size up to this many bytes are kept in memory and
+	 * never written to disk; 0 to always use disk.
+	 */
+	@Builder.Default
+	long inMemoryThresholdBytes = 1024 * 1024;
+
+	/**
+	 * Unreferenced scratch files, e.g. left behind by an earlier process, older
+	 * than this are deleted by the sweeper.
+	 */
+	@Builder.Default
+	long orphanMaxAgeMillis = 60 * 60 * 1000;
+
+	/**
+	 * If <code>true</code>, the sweeper also deletes files still referenced
+	 * after <code>orphanMaxAgeMillis</code>, assuming their references were
+	 * leaked. Off by default, as a long batch or slow upload may still be
+	 * reading them.
+	 */
+	@Builder.Default
+	boolean reapHeldFiles = false;
+
+	@Builder.Default
+	long sweepIntervalMillis = 5 * 60 * 1000;
+
+	public static ScratchSpaceConfig defaults() {
+		return builder().build();
+	}
+
+}
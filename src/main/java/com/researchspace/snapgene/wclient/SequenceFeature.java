@@ -0,0 +1,35 @@
+package com.researchspace.snapgene.wclient;
+
+import java.util.Map;
+
+import lombok.Value;
+
+/**
+ * A feature annotated in a native .dna file, see {@link SnapgeneFile}.
+ * Positions are 1-based and inclusive.
+ */
+@Value
+public class SequenceFeature {
+	String name;
+	/**
+	 * Feature key, e.g. 'CDS', 'promoter'
+	 */
+	String type;
+	/**
+	 * 0 none, 1 forward, 2 reverse, 3 both directions
+	 */
+	int directionality;
+	/**
+	 * Start of the first segment
+	 */
+	int start;
+	/**
+	 * End of the last segment; less than <code>start</code> if the feature spans
+	 * the origin of a circular sequence
+	 */
+	int end;
+	/**
+	 * First value of each qualifier, e.g. 'product', 'note'
+	 */
+	Map<String, String> qualifiers;
+}
@@ -0,0 +1,65 @@
+package com.researchspace.snapgene.wclient;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Sequence file formats recognised locally by {@link SequenceFormatDetector}.
+ */
+public enum SequenceFormat {
+	/**
+	 * Native SnapGene .dna; needs no import.
+	 */
+	SNAPGENE("dna"),
+	FASTA("fasta", "fa", "fas", "fna", "ffn", "fsa"),
+	GENBANK("gb", "gbk", "gbff", "genbank", "ape"),
+	EMBL("embl", "emb"),
+	ABI("ab1", "abi", "ab"),
+	/**
+	 * DNASTAR Lasergene .seq, a GenBank-like text format.
+	 */
+	LASERGENE("seq"),
+	SEQBUILDER("sbd"),
+	/**
+	 * Content not recognised as any of the above.
+	 */
+	UNKNOWN;
+
+	private final List<String> extensions;
+
+	SequenceFormat(String... extensions) {
+		this.extensions = Collections.unmodifiableList(Arrays.asList(extensions));
+	}
+
+	/**
+	 * @return lower-case file name extensions usually used for this format, the
+	 *         preferred one first; empty for UNKNOWN
+	 */
+	public List<String> getExtensions() {
+		return extensions;
+	}
+
+	/**
+	 * @return <code>true</code> if this is native .dna content
+	 */
+	public boolean isNative() {
+		return this == SNAPGENE;
+	}
+
+	/**
+	 * @return <code>true</code> if the Snapgene server can import this format
+	 *         to .dna
+	 */
+	public boolean isImportable() {
+		return this != SNAPGENE && this != UNKNOWN;
+	}
+
+	/**
+	 * @return <code>true</code> if the extension is commonly used by any known
+	 *         format
+	 */
+	static boolean isKnownExtension(String extension) {
+		return Arrays.stream(values()).anyMatch(format -> format.extensions.contains(extension));
+	}
+}
@@ -0,0 +1,138 @@
+package com.researchspace.snapgene.wclient;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Recognises sequence file formats from the first few KB of content, so that
+ * native files can skip import and unrecognised files can be rejected without
+ * contacting the server. File names are not considered.
+ */
+public final class SequenceFormatDetector {
+
+	/**
+	 * Number of leading bytes examined.
+	 */
+	public static final int HEADER_BYTES = 4096;
+
+	// 9 = cookie segment, 14 = segment length, then the magic string
+	private static final byte[] SNAPGENE_MAGIC = concat(new byte[] { 9, 0, 0, 0, 14 }, ascii("SnapGene"));
+	private static final byte[] ABI_MAGIC = ascii("ABIF");
+	private static final byte[] SEQBUILDER_MAGIC = new byte[] { 0, 0, 0, 1 };
+	private static final byte[] SEQBUILDER_SIGNATURE = ascii("Written by SeqBuilder");
+	private static final byte[] FASTA_MARKER = ascii(">");
+	private static final byte[] GENBANK_MARKER = ascii("LOCUS ");
+	private static final byte[] EMBL_MARKER = ascii("ID   ");
+	private static final byte[] UTF8_BOM = new byte[] { (byte) 0xEF, (byte) 0xBB, (byte) 0xBF };
+	// DNASTAR-specific qualifier and sequence terminator in otherwise GenBank-like files
+	private static final byte[] LASERGENE_QUALIFIER = ascii("/dnas_");
+	private static final byte[] LASERGENE_TERMINATOR = ascii("^^");
+
+	private SequenceFormatDetector() {
+	}
+
+	/**
+	 * Reads at most {@link #HEADER_BYTES} from the start of the input; stream
+	 * inputs are not consumed.
+	 */
+	public static SequenceFormat detect(SnapgeneInput input) throws IOException {
+		return detect(input.readHeader(HEADER_BYTES));
+	}
+
+	/**
+	 * Reads at most {@link #HEADER_BYTES} from the start of the file with a
+	 * positioned read.
+	 */
+	public static SequenceFormat detect(Path file) throws IOException {
+		return detect(readHeader(file, HEADER_BYTES));
+	}
+
+	/**
+	 * @param header the first bytes of the content; only the first
+	 *               {@link #HEADER_BYTES} are examined
+	 */
+	public static SequenceFormat detect(byte[] header) {
+		int length = Math.min(header.length, HEADER_BYTES);
+		if (startsWith(header, length, 0, SNAPGENE_MAGIC)) {
+			return SequenceFormat.SNAPGENE;
+		}
+		if (startsWith(header, length, 0, ABI_MAGIC)) {
+			return SequenceFormat.ABI;
+		}
+		if (startsWith(header, length, 0, SEQBUILDER_MAGIC) && contains(header, length, SEQBUILDER_SIGNATURE)) {
+			return SequenceFormat.SEQBUILDER;
+		}
+		int start = startsWith(header, length, 0, UTF8_BOM) ? UTF8_BOM.length : 0;
+		while (start < length && isWhitespace(header[start])) {
+			start++;
+		}
+		if (startsWith(header, length, start, FASTA_MARKER)) {
+			return SequenceFormat.FASTA;
+		}
+		if (startsWith(header, length, start, GENBANK_MARKER)) {
+			return contains(header, length, LASERGENE_QUALIFIER) || contains(header, length, LASERGENE_TERMINATOR)
+					? SequenceFormat.LASERGENE
+					: SequenceFormat.GENBANK;
+		}
+		if (startsWith(header, length, start, EMBL_MARKER)) {
+			return SequenceFormat.EMBL;
+		}
+		return SequenceFormat.UNKNOWN;
+	}
+
+	static byte[] readHeader(Path file, int maxBytes) throws IOException {
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			ByteBuffer buffer = ByteBuffer.allocate((int) Math.min(maxBytes, channel.size()));
+			// positioned reads don't move the channel, so track progress in the buffer
+			int read;
+			do {
+				read = channel.read(buffer, buffer.position());
+			} while (read > 0 && buffer.hasRemaining());
+			byte[] header = new byte[buffer.position()];
+			buffer.flip();
+			buffer.get(header);
+			return header;
+		}
+	}
+
+	private static boolean startsWith(byte[] content, int length, int offset, byte[] prefix) {
+		if (length - offset < prefix.length) {
+			return false;
+		}
+		for (int i = 0; i < prefix.length; i++) {
+			if (content[offset + i] != prefix[i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static boolean contains(byte[] content, int length, byte[] target) {
+		for (int i = 0; i <= length - target.length; i++) {
+			if (startsWith(content, length, i, target)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private static boolean isWhitespace(byte b) {
+		return b == ' ' || b == '\t' || b == '\r' || b == '\n';
+	}
+
+	private static byte[] ascii(String s) {
+		return s.getBytes(StandardCharsets.US_ASCII);
+	}
+
+	private static byte[] concat(byte[] a, byte[] b) {
+		byte[] result = new byte[a.length + b.length];
+		System.arraycopy(a, 0, result, 0, a.length);
+		System.arraycopy(b, 0, result, a.length, b.length);
+		return result;
+	}
+
+}
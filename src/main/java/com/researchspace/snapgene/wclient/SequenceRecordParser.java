@@ -0,0 +1,297 @@
+package com.researchspace.snapgene.wclient;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import lombok.Value;
+
+/**
+ * Incremental parser for FASTA, GenBank and EMBL files. Input is read line by
+ * line and bases are passed on in chunks as they are read, so no record is
+ * held in memory as a whole; only feature tables are.
+ */
+final class SequenceRecordParser {
+
+	private static final int CHUNK_SIZE = 8192;
+	// GenBank feature table columns; EMBL's are the same after the 'FT' prefix
+	private static final int FEATURE_KEY_COLUMN = 5;
+	private static final int FEATURE_LOCATION_COLUMN = 21;
+
+	/**
+	 * Receives the records of a file in order: the header, then any features,
+	 * then the bases in chunks.
+	 */
+	interface Handler {
+		void startRecord(String name, boolean circular) throws IOException;
+
+		void feature(Feature feature) throws IOException;
+
+		/**
+		 * @param chunk ASCII letters; only valid until this method returns
+		 */
+		void bases(byte[] chunk, int length) throws IOException;
+
+		/**
+		 * @return <code>true</code> to go on to the next record
+		 */
+		boolean endRecord() throws IOException;
+	}
+
+	/**
+	 * A feature table entry as written in the file.
+	 */
+	@Value
+	static class Feature {
+		String key;
+		/**
+		 * Location in INSDC syntax, e.g. <code>complement(join(1..10,20..30))</code>
+		 */
+		String location;
+		List<Map.Entry<String, String>> qualifiers;
+	}
+
+	private final BufferedReader reader;
+	private final SequenceFormat format;
+	private final Handler handler;
+	private final byte[] chunk = new byte[CHUNK_SIZE];
+	private int chunkLength;
+	private boolean inRecord;
+
+	private SequenceRecordParser(BufferedReader reader, SequenceFormat format, Handler handler) {
+		this.reader = reader;
+		this.format = format;
+		this.handler = handler;
+	}
+
+	/**
+	 * @return number of records parsed
+	 * @throws IllegalArgumentException if the format isn't FASTA, GenBank or
+	 *                                  EMBL
+	 */
+	static int parse(BufferedReader reader, SequenceFormat format, Handler handler) throws IOException {
+		SequenceRecordParser parser = new SequenceRecordParser(reader, format, handler);
+		switch (format) {
+		case FASTA:
+			return parser.parseFasta();
+		case GENBANK:
+		case EMBL:
+			return parser.parseFlatFile();
+		default:
+			throw new IllegalArgumentException("Cannot parse " + format + " files locally");
+		}
+	}
+
+	static boolean canParse(SequenceFormat format) {
+		return format == SequenceFormat.FASTA || format == SequenceFormat.GENBANK || format == SequenceFormat.EMBL;
+	}
+
+	/**
+	 * @return <code>true</code> if the line is the header of a new record:
+	 *         '&gt;' in FASTA, LOCUS in GenBank, ID in EMBL
+	 */
+	static boolean startsRecord(String line, SequenceFormat format) {
+		return line.startsWith(format == SequenceFormat.FASTA ? ">" : headerTag(format) + " ");
+	}
+
+	/**
+	 * @return <code>true</code> if the line closes a GenBank or EMBL record;
+	 *         FASTA records end at the next header
+	 */
+	static boolean endsRecord(String line, SequenceFormat format) {
+		return format != SequenceFormat.FASTA && line.startsWith("//");
+	}
+
+	/**
+	 * @param header a line for which {@link #startsRecord(String, SequenceFormat)}
+	 *               is <code>true</code>
+	 * @return the record's name or accession, or empty string if none
+	 */
+	static String recordName(String header, SequenceFormat format) {
+		String text = format == SequenceFormat.FASTA ? header.substring(1).trim()
+				: header.substring(headerTag(format).length()).trim();
+		return text.isEmpty() ? "" : text.split(format == SequenceFormat.FASTA ? "\\s+" : "[\\s;]+", 2)[0];
+	}
+
+	private static String headerTag(SequenceFormat format) {
+		return format == SequenceFormat.GENBANK ? "LOCUS" : "ID";
+	}
+
+	private int parseFasta() throws IOException {
+		int records = 0;
+		String line;
+		while ((line = reader.readLine()) != null) {
+			if (startsRecord(line, format)) {
+				if (inRecord && !endRecord()) {
+					return records;
+				}
+				startRecord(recordName(line, format), line.toLowerCase().contains("topology=circular"));
+				records++;
+			} else if (inRecord && !line.startsWith(";")) {
+				appendLetters(line);
+			}
+		}
+		if (inRecord) {
+			endRecord();
+		}
+		return records;
+	}
+
+	// GenBank: sequence between ORIGIN and '//'; EMBL: sequence between SQ and '//'
+	private int parseFlatFile() throws IOException {
+		boolean genbank = format == SequenceFormat.GENBANK;
+		String sequenceTag = genbank ? "ORIGIN" : "SQ";
+		int records = 0;
+		boolean inSequence = false;
+		boolean inFeatures = false;
+		FeatureBuilder feature = null;
+		String line;
+		while ((line = reader.readLine()) != null) {
+			if (endsRecord(line, format)) {
+				emit(feature);
+				feature = null;
+				if (inRecord && !endRecord()) {
+					return records;
+				}
+				inSequence = false;
+				inFeatures = false;
+				continue;
+			}
+			if (inSequence) {
+				appendLetters(line);
+			} else if (startsRecord(line, format)) {
+				if (inRecord && !endRecord()) {
+					return records;
+				}
+				startRecord(recordName(line, format), line.toLowerCase().contains("circular"));
+				records++;
+			} else if (!inRecord) {
+				continue;
+			} else if (genbank ? line.startsWith("FEATURES") : line.startsWith("FH")) {
+				inFeatures = true;
+			} else if (genbank ? inFeatures && line.startsWith(" ") : line.startsWith("FT")) {
+				feature = readFeatureLine(genbank ? line : "  " + line.substring(2), feature);
+			} else {
+				emit(feature);
+				feature = null;
+				inFeatures = false;
+				inSequence = line.startsWith(sequenceTag);
+			}
+		}
+		emit(feature);
+		if (inRecord) {
+			endRecord();
+		}
+		return records;
+	}
+
+	// a new feature if there's a key, else a location or qualifier continuation of the current one
+	private FeatureBuilder readFeatureLine(String line, FeatureBuilder current) throws IOException {
+		if (line.length() > FEATURE_KEY_COLUMN && line.charAt(FEATURE_KEY_COLUMN) != ' ') {
+			emit(current);
+			int split = Math.min(line.length(), FEATURE_LOCATION_COLUMN);
+			return new FeatureBuilder(line.substring(FEATURE_KEY_COLUMN, split).trim(),
+					line.substring(split).trim());
+		}
+		if (current != null) {
+			current.continueWith(line.trim());
+		}
+		return current;
+	}
+
+	private void emit(FeatureBuilder feature) throws IOException {
+		if (feature != null) {
+			flushBases();
+			handler.feature(feature.build());
+		}
+	}
+
+	private void startRecord(String name, boolean circular) throws IOException {
+		handler.startRecord(name, circular);
+		inRecord = true;
+	}
+
+	private boolean endRecord() throws IOException {
+		flushBases();
+		inRecord = false;
+		return handler.endRecord();
+	}
+
+	private void appendLetters(String line) throws IOException {
+		for (int i = 0; i < line.length(); i++) {
+			char c = line.charAt(i);
+			if ((c >= 'A' && c <= 'Z') || (c >= 'a' && c <= 'z')) {
+				if (chunkLength == chunk.length) {
+					flushBases();
+				}
+				chunk[chunkLength++] = (byte) c;
+			}
+		}
+	}
+
+	private void flushBases() throws IOException {
+		if (chunkLength > 0) {
+			handler.bases(chunk, chunkLength);
+			chunkLength = 0;
+		}
+	}
+
+	private static final class FeatureBuilder {
+		private final String key;
+		private final StringBuilder location;
+		private final List<Map.Entry<String, String>> qualifiers = new ArrayList<>();
+		private String qualifier;
+		private StringBuilder value;
+
+		FeatureBuilder(String key, String location) {
+			this.key = key;
+			this.location = new StringBuilder(location);
+		}
+
+		void continueWith(String text) {
+			if (text.startsWith("/") && !inQuotes()) {
+				addQualifier();
+				int equals = text.indexOf('=');
+				qualifier = equals < 0 ? text.substring(1) : text.substring(1, equals);
+				value = new StringBuilder(equals < 0 ? "" : text.substring(equals + 1));
+			} else if (qualifier != null) {
+				// translations are wrapped without spaces
+				value.append(qualifier.equals("translation") ? "" : " ").append(text);
+			} else {
+				location.append(text);
+			}
+		}
+
+		private boolean inQuotes() {
+			if (value == null || value.length() == 0 || value.charAt(0) != '"') {
+				return false;
+			}
+			int quotes = 0;
+			for (int i = 0; i < value.length(); i++) {
+				quotes += value.charAt(i) == '"' ? 1 : 0;
+			}
+			return quotes % 2 != 0;
+		}
+
+		private void addQualifier() {
+			if (qualifier != null) {
+				String text = value.toString();
+				if (text.length() >= 2 && text.startsWith("\"") && text.endsWith("\"")) {
+					text = text.substring(1, text.length() - 1).replace("\"\"", "\"");
+				}
+				qualifiers.add(new AbstractMap.SimpleImmutableEntry<>(qualifier, text));
+			}
+		}
+
+		Feature build() {
+			addQualifier();
+			qualifier = null;
+			return new Feature(key, location.toString(), Collections.unmodifiableList(new ArrayList<>(qualifiers)));
+		}
+	}
+
+}
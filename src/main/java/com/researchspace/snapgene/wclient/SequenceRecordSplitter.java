@@ -0,0 +1,160 @@
+package com.researchspace.snapgene.wclient;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import org.apache.commons.io.FilenameUtils;
+
+/**
+ * Splits a multi-record FASTA, GenBank or EMBL file into one input per record,
+ * e.g. to convert each record of a primer set or clone library separately with
+ * {@link SnapgeneBatchConverter}. <br>
+ * The file is read incrementally: a record is read only when
+ * {@link #next()} is called, so only the record being returned is held in
+ * memory, never the whole file. Records are named
+ * <code>&lt;file&gt;-&lt;n&gt;-&lt;record name&gt;.&lt;extension&gt;</code>,
+ * numbered from 1. Text outside records, e.g. before the first FASTA header,
+ * is dropped.
+ */
+public final class SequenceRecordSplitter implements Iterator<SnapgeneInput>, Closeable {
+
+	private static final int MAX_NAME_LENGTH = 64;
+
+	private final BufferedReader reader;
+	private final SequenceFormat format;
+	private final String baseName;
+	private final String extension;
+	private final long maxRecordBytes;
+	private String header;
+	private int records;
+	private boolean closed;
+
+	private SequenceRecordSplitter(SnapgeneInput input, SequenceFormat format, long maxRecordBytes)
+			throws IOException {
+		this.reader = new BufferedReader(new InputStreamReader(input.openStream(), StandardCharsets.ISO_8859_1));
+		this.format = format;
+		this.baseName = FilenameUtils.getBaseName(input.getFileName());
+		this.extension = input.getExtension().isEmpty() ? format.getExtensions().get(0) : input.getExtension();
+		this.maxRecordBytes = maxRecordBytes;
+	}
+
+	/**
+	 * As {@link #open(SnapgeneInput, SequenceFormat, long)} with no limit on
+	 * record size.
+	 */
+	public static SequenceRecordSplitter open(SnapgeneInput input, SequenceFormat format) throws IOException {
+		return open(input, format, Long.MAX_VALUE);
+	}
+
+	/**
+	 * @param format         as detected from the input's content
+	 * @param maxRecordBytes largest record to hold in memory; reading a larger
+	 *                       record fails
+	 * @throws IllegalArgumentException if the format isn't FASTA, GenBank or
+	 *                                  EMBL
+	 */
+	public static SequenceRecordSplitter open(SnapgeneInput input, SequenceFormat format, long maxRecordBytes)
+			throws IOException {
+		if (!SequenceRecordParser.canParse(format)) {
+			throw new IllegalArgumentException("Cannot split " + format + " files into records");
+		}
+		return new SequenceRecordSplitter(input, format, maxRecordBytes);
+	}
+
+	/**
+	 * @throws UncheckedIOException if the file can't be read
+	 */
+	@Override
+	public boolean hasNext() {
+		if (header == null && !closed) {
+			header = readUntilHeader();
+		}
+		return header != null;
+	}
+
+	/**
+	 * @return the next record, as an in-memory input
+	 * @throws UncheckedIOException if the file can't be read or the record is
+	 *                              larger than the limit
+	 */
+	@Override
+	public SnapgeneInput next() {
+		if (!hasNext()) {
+			throw new NoSuchElementException();
+		}
+		String name = recordFileName(SequenceRecordParser.recordName(header, format));
+		ByteArrayOutputStream record = new ByteArrayOutputStream();
+		String line = header;
+		header = null;
+		try {
+			do {
+				append(record, line, name);
+				if (SequenceRecordParser.endsRecord(line, format)) {
+					break;
+				}
+				line = reader.readLine();
+				if (line != null && SequenceRecordParser.startsRecord(line, format)) {
+					// start of the next record
+					header = line;
+					break;
+				}
+			} while (line != null);
+		} catch (IOException e) {
+			throw new UncheckedIOException("Could not read record " + name, e);
+		}
+		return SnapgeneInput.of(name, record.toByteArray());
+	}
+
+	/**
+	 * @return number of records returned so far
+	 */
+	public int getRecordCount() {
+		return records;
+	}
+
+	@Override
+	public void close() throws IOException {
+		closed = true;
+		header = null;
+		reader.close();
+	}
+
+	private String readUntilHeader() {
+		try {
+			String line;
+			while ((line = reader.readLine()) != null) {
+				if (SequenceRecordParser.startsRecord(line, format)) {
+					return line;
+				}
+			}
+			return null;
+		} catch (IOException e) {
+			throw new UncheckedIOException("Could not read " + baseName + "." + extension, e);
+		}
+	}
+
+	private void append(ByteArrayOutputStream record, String line, String name) throws IOException {
+		if (record.size() + line.length() + 1L > maxRecordBytes) {
+			throw new IOException(name + " is larger than " + maxRecordBytes + " bytes");
+		}
+		byte[] bytes = line.getBytes(StandardCharsets.ISO_8859_1);
+		record.write(bytes, 0, bytes.length);
+		record.write('\n');
+	}
+
+	private String recordFileName(String recordName) {
+		String name = recordName.replaceAll("[^A-Za-z0-9._-]", "_");
+		if (name.length() > MAX_NAME_LENGTH) {
+			name = name.substring(0, MAX_NAME_LENGTH);
+		}
+		return baseName + "-" + ++records + (name.isEmpty() ? "" : "-" + name) + "." + extension;
+	}
+
+}
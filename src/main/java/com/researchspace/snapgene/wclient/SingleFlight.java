@@ -0,0 +1,104 @@
+package com.researchspace.snapgene.wclient;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Coalesces concurrent identical calls: while a call for a key is in flight,
+ * further calls with an equal key wait for and share its result (or
+ * exception) instead of making their own call. Once the call completes the key
+ * is released, so results are never cached. <br>
+ * Callers of the same key must expect the same result type.
+ */
+public class SingleFlight {
+
+	private final ConcurrentHashMap<Object, CompletableFuture<Object>> inFlight = new ConcurrentHashMap<>();
+	private final AtomicLong coalescedCount = new AtomicLong();
+
+	/**
+	 * Runs <code>call</code> on this thread, unless an equal call is already in
+	 * flight, in which case waits for its result.
+	 */
+	@SuppressWarnings("unchecked")
+	public <V> V execute(Object key, Supplier<V> call) {
+		CompletableFuture<Object> mine = new CompletableFuture<>();
+		CompletableFuture<Object> existing = inFlight.putIfAbsent(key, mine);
+		if (existing != null) {
+			coalescedCount.incrementAndGet();
+			return (V) join(existing);
+		}
+		try {
+			V result = call.get();
+			mine.complete(result);
+			return result;
+		} catch (RuntimeException | Error e) {
+			mine.completeExceptionally(e);
+			throw e;
+		} finally {
+			inFlight.remove(key, mine);
+		}
+	}
+
+	/**
+	 * Starts <code>call</code>, unless an equal call is already in flight, in
+	 * which case returns a future completing with its result. No thread is
+	 * blocked waiting for the shared call.
+	 */
+	@SuppressWarnings("unchecked")
+	public <V> CompletableFuture<V> executeAsync(Object key, Supplier<CompletableFuture<V>> call) {
+		CompletableFuture<Object> mine = new CompletableFuture<>();
+		CompletableFuture<Object> existing = inFlight.putIfAbsent(key, mine);
+		if (existing != null) {
+			coalescedCount.incrementAndGet();
+			// a copy, so one caller cancelling doesn't affect the others
+			return (CompletableFuture<V>) existing.thenApply(v -> v);
+		}
+		try {
+			call.get().whenComplete((result, e) -> {
+				inFlight.remove(key, mine);
+				if (e != null) {
+					mine.completeExceptionally(e);
+				} else {
+					mine.complete(result);
+				}
+			});
+		} catch (RuntimeException e) {
+			inFlight.remove(key, mine);
+			mine.completeExceptionally(e);
+		}
+		return (CompletableFuture<V>) mine.thenApply(v -> v);
+	}
+
+	/**
+	 * @return number of calls which shared another call's result
+	 */
+	public long getCoalescedCount() {
+		return coalescedCount.get();
+	}
+
+	/**
+	 * @return number of distinct calls currently in flight
+	 */
+	public int getInFlightCount() {
+		return inFlight.size();
+	}
+
+	private static Object join(CompletableFuture<Object> future) {
+		try {
+			return future.join();
+		} catch (CompletionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof RuntimeException) {
+				throw (RuntimeException) cause;
+			}
+			if (cause instanceof Error) {
+				throw (Error) cause;
+			}
+			throw e;
+		}
+	}
+
+}
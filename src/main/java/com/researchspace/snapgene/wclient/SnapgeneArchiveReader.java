@@ -0,0 +1,171 @@
+package com.researchspace.snapgene.wclient;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+import org.apache.commons.io.FilenameUtils;
+import org.apache.commons.io.IOUtils;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Reads the sequence files in a ZIP archive stream one entry at a time,
+ * without extracting it to disk, e.g. to convert them all with
+ * {@link SnapgeneBatchConverter}. <br>
+ * Directories, and entries whose content {@link SequenceFormatDetector} does
+ * not recognise, are skipped after reading only their first bytes. Each other
+ * entry is read into memory when {@link #next()} is called and returned as an
+ * input named after the entry's file name; entries larger than
+ * <code>maxEntryBytes</code> are skipped too. The archive stream is closed by
+ * {@link #close()}.
+ */
+@Slf4j
+public final class SnapgeneArchiveReader implements Iterator<SnapgeneInput>, Closeable {
+
+	/**
+	 * Default limit on the uncompressed size of an entry
+	 */
+	public static final long DEFAULT_MAX_ENTRY_BYTES = 64L * 1024 * 1024;
+
+	private final ZipInputStream zip;
+	private final long maxEntryBytes;
+	// read by result handlers while entries are still being read
+	private final List<String> entryNames = Collections.synchronizedList(new ArrayList<>());
+	private final List<String> skippedEntries = Collections.synchronizedList(new ArrayList<>());
+	private final List<String> skipReasons = Collections.synchronizedList(new ArrayList<>());
+	private SnapgeneInput nextInput;
+	private boolean finished;
+
+	private SnapgeneArchiveReader(InputStream archive, long maxEntryBytes) {
+		this.zip = new ZipInputStream(archive);
+		this.maxEntryBytes = maxEntryBytes;
+	}
+
+	/**
+	 * As {@link #open(InputStream, long)} with
+	 * {@link #DEFAULT_MAX_ENTRY_BYTES}
+	 */
+	public static SnapgeneArchiveReader open(InputStream archive) {
+		return open(archive, DEFAULT_MAX_ENTRY_BYTES);
+	}
+
+	/**
+	 * @param archive       ZIP content; read once
+	 * @param maxEntryBytes largest uncompressed entry to read into memory
+	 */
+	public static SnapgeneArchiveReader open(InputStream archive, long maxEntryBytes) {
+		return new SnapgeneArchiveReader(archive, maxEntryBytes);
+	}
+
+	/**
+	 * @throws UncheckedIOException if the archive can't be read
+	 */
+	@Override
+	public boolean hasNext() {
+		if (nextInput == null && !finished) {
+			try {
+				nextInput = readNextSequenceEntry();
+			} catch (IOException e) {
+				throw new UncheckedIOException("Could not read archive", e);
+			}
+			finished = nextInput == null;
+		}
+		return nextInput != null;
+	}
+
+	/**
+	 * @return the next sequence entry, as an in-memory input
+	 */
+	@Override
+	public SnapgeneInput next() {
+		if (!hasNext()) {
+			throw new NoSuchElementException();
+		}
+		SnapgeneInput input = nextInput;
+		nextInput = null;
+		return input;
+	}
+
+	/**
+	 * @param index 0-based position of an input returned by {@link #next()}
+	 * @return the full path of its entry in the archive
+	 */
+	public String entryName(int index) {
+		return entryNames.get(index);
+	}
+
+	/**
+	 * @return paths of entries skipped so far, as not sequence files or too
+	 *         large
+	 */
+	public List<String> getSkippedEntries() {
+		synchronized (skippedEntries) {
+			return Collections.unmodifiableList(new ArrayList<>(skippedEntries));
+		}
+	}
+
+	/**
+	 * @param index position in {@link #getSkippedEntries()}
+	 * @return why that entry was skipped
+	 */
+	String skipReason(int index) {
+		return skipReasons.get(index);
+	}
+
+	@Override
+	public void close() throws IOException {
+		finished = true;
+		nextInput = null;
+		zip.close();
+	}
+
+	private SnapgeneInput readNextSequenceEntry() throws IOException {
+		ZipEntry entry;
+		while ((entry = zip.getNextEntry()) != null) {
+			if (entry.isDirectory()) {
+				continue;
+			}
+			String name = entry.getName();
+			byte[] header = new byte[SequenceFormatDetector.HEADER_BYTES];
+			int headerLength = IOUtils.read(zip, header);
+			SequenceFormat format = SequenceFormatDetector.detect(Arrays.copyOf(header, headerLength));
+			if (format == SequenceFormat.UNKNOWN || isMetadata(name)) {
+				skip(name, "not a sequence file");
+				continue;
+			}
+			ByteArrayOutputStream content = new ByteArrayOutputStream(headerLength);
+			content.write(header, 0, headerLength);
+			if (headerLength > maxEntryBytes
+					|| headerLength + IOUtils.copyLarge(zip, content, 0, maxEntryBytes + 1 - headerLength) > maxEntryBytes) {
+				skip(name, "larger than " + maxEntryBytes + " bytes");
+				continue;
+			}
+			entryNames.add(name);
+			return SnapgeneInput.of(FilenameUtils.getName(name), content.toByteArray());
+		}
+		return null;
+	}
+
+	// resource forks and other files added by archivers on macOS
+	private static boolean isMetadata(String name) {
+		return name.startsWith("__MACOSX/") || FilenameUtils.getName(name).startsWith("._");
+	}
+
+	private void skip(String name, String reason) {
+		log.debug("Skipping archive entry {} - {}", name, reason);
+		skippedEntries.add(name);
+		skipReasons.add(reason);
+	}
+
+}
@@ -0,0 +1,340 @@
+package com.researchspace.snapgene.wclient;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Stream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import org.apache.commons.io.FilenameUtils;
+import org.springframework.http.HttpStatus;
+
+import com.researchspace.apiutils.ApiError;
+
+import io.vavr.control.Either;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Runs a Snapgene operation, e.g.
+ * <code>in -> client.convertToPngFile(in, config)</code>, over many inputs with
+ * at most <code>maxConcurrency</code> calls in flight. <br>
+ * Inputs are pulled from the source only when a slot is free, so streamed
+ * inputs are never read far ahead of the server. A failing item, including one
+ * that throws, produces a <code>Left</code> result and does not affect the
+ * others. <br>
+ * Multi-record sequence files can be split and run record by record with
+ * {@link #convertRecords(SnapgeneInput, Function)}, and the sequence files in
+ * a ZIP archive with {@link #convertArchive(InputStream, Function)}.
+ */
+@Slf4j
+public class SnapgeneBatchConverter {
+
+	private final Executor executor;
+	private final int maxConcurrency;
+	private BatchProgressListener progressListener = progress -> {
+	};
+	private long maxRecordBytes = Long.MAX_VALUE;
+
+	/**
+	 * @param executor       runs the calls; should have at least
+	 *                       <code>maxConcurrency</code> threads
+	 * @param maxConcurrency maximum number of calls in flight
+	 */
+	public SnapgeneBatchConverter(Executor executor, int maxConcurrency) {
+		if (maxConcurrency < 1) {
+			throw new IllegalArgumentException("maxConcurrency must be >= 1 but was " + maxConcurrency);
+		}
+		this.executor = executor;
+		this.maxConcurrency = maxConcurrency;
+	}
+
+	public void setProgressListener(BatchProgressListener progressListener) {
+		this.progressListener = progressListener;
+	}
+
+	/**
+	 * Largest record {@link #convertRecords(SnapgeneInput, Function)} reads
+	 * into memory; a larger record fails the batch. Unlimited by default.
+	 */
+	public void setMaxRecordBytes(long maxRecordBytes) {
+		this.maxRecordBytes = maxRecordBytes;
+	}
+
+	/**
+	 * Runs the operation on all inputs and waits for completion.
+	 * 
+	 * @return a result per input, in input order
+	 */
+	public <T> List<BatchItemResult<T>> convertAll(Collection<SnapgeneInput> inputs,
+			Function<SnapgeneInput, Either<ApiError, T>> operation) throws InterruptedException {
+		List<BatchItemResult<T>> results = new ArrayList<>(Collections.nCopies(inputs.size(), null));
+		convertEach(inputs.iterator(), operation, result -> results.set(result.getIndex(), result));
+		return results;
+	}
+
+	/**
+	 * As {@link #convertEach(Iterator, Function, Consumer)}
+	 */
+	public <T> BatchProgress convertEach(Stream<SnapgeneInput> inputs,
+			Function<SnapgeneInput, Either<ApiError, T>> operation, Consumer<BatchItemResult<T>> onResult)
+			throws InterruptedException {
+		return convertEach(inputs.iterator(), operation, onResult);
+	}
+
+	/**
+	 * Runs the operation on each input, passing results to
+	 * <code>onResult</code> in completion order. Calls to <code>onResult</code>
+	 * are serialized. Returns when all items have completed.
+	 * 
+	 * @return final progress of the batch
+	 */
+	public <T> BatchProgress convertEach(Iterator<SnapgeneInput> inputs,
+			Function<SnapgeneInput, Either<ApiError, T>> operation, Consumer<BatchItemResult<T>> onResult)
+			throws InterruptedException {
+		Semaphore slots = new Semaphore(maxConcurrency);
+		Progress progress = new Progress();
+		int index = 0;
+		try {
+			while (inputs.hasNext()) {
+				slots.acquire();
+				SnapgeneInput input;
+				try {
+					input = inputs.next();
+				} catch (RuntimeException e) {
+					slots.release();
+					throw e;
+				}
+				int itemIndex = index++;
+				progress.submitted();
+				try {
+					executor.execute(() -> {
+						try {
+							progress.complete(run(itemIndex, input, operation), onResult);
+						} finally {
+							slots.release();
+						}
+					});
+				} catch (RejectedExecutionException e) {
+					slots.release();
+					progress.complete(new BatchItemResult<>(itemIndex, input.getFileName(),
+							Either.left(failure(input, e)), 0), onResult);
+				}
+			}
+		} finally {
+			// wait for in-flight items, even if interrupted or the source failed
+			slots.acquireUninterruptibly(maxConcurrency);
+			slots.release(maxConcurrency);
+		}
+		return progress.snapshot();
+	}
+
+	/**
+	 * Splits a multi-record FASTA, GenBank or EMBL file with
+	 * {@link SequenceRecordSplitter} and runs the operation on each record, as
+	 * its own call. Records are read only as slots free up, so at most
+	 * <code>maxConcurrency + 1</code> records are held in memory at once.
+	 * 
+	 * @return a result per record, in file order
+	 * @throws IOException if the file can't be read, isn't FASTA, GenBank or
+	 *                     EMBL, or has a record larger than the maximum; thrown
+	 *                     once records already running have completed
+	 */
+	public <T> List<BatchItemResult<T>> convertRecords(SnapgeneInput input,
+			Function<SnapgeneInput, Either<ApiError, T>> operation) throws IOException, InterruptedException {
+		List<BatchItemResult<T>> results = new ArrayList<>();
+		convertEachRecord(input, operation, results::add);
+		results.sort(Comparator.comparingInt(BatchItemResult::getIndex));
+		return results;
+	}
+
+	/**
+	 * As {@link #convertRecords(SnapgeneInput, Function)}, passing results to
+	 * <code>onResult</code> in completion order as
+	 * {@link #convertEach(Iterator, Function, Consumer)} does.
+	 * 
+	 * @return final progress of the batch
+	 */
+	public <T> BatchProgress convertEachRecord(SnapgeneInput input,
+			Function<SnapgeneInput, Either<ApiError, T>> operation, Consumer<BatchItemResult<T>> onResult)
+			throws IOException, InterruptedException {
+		SequenceFormat format = SequenceFormatDetector.detect(input);
+		if (!SequenceRecordParser.canParse(format)) {
+			throw new IOException(input.getFileName() + " is " + format
+					+ " and can't be split into records; only FASTA, GenBank and EMBL files can");
+		}
+		try (SequenceRecordSplitter records = SequenceRecordSplitter.open(input, format, maxRecordBytes)) {
+			BatchProgress progress = convertEach(records, operation, onResult);
+			log.info("Converted {} records of {}: {} failed", records.getRecordCount(), input.describe(),
+					progress.getFailed());
+			return progress;
+		} catch (UncheckedIOException e) {
+			throw e.getCause();
+		}
+	}
+
+	/**
+	 * Reads the sequence files in a ZIP archive with
+	 * {@link SnapgeneArchiveReader} and runs the operation on each, without
+	 * extracting the archive to disk. Entries are read only as slots free up,
+	 * so at most <code>maxConcurrency + 1</code> entries are held in memory at
+	 * once. The archive stream is closed.
+	 * 
+	 * @return a result per sequence entry, in archive order, named with the
+	 *         entry's path, followed by a 422 <code>Left</code> result per
+	 *         skipped entry, see {@link SnapgeneArchiveReader}
+	 * @throws IOException if the archive can't be read
+	 */
+	public <T> List<BatchItemResult<T>> convertArchive(InputStream archive,
+			Function<SnapgeneInput, Either<ApiError, T>> operation) throws IOException, InterruptedException {
+		List<BatchItemResult<T>> results = new ArrayList<>();
+		try (SnapgeneArchiveReader entries = SnapgeneArchiveReader.open(archive)) {
+			convertEntries(entries, operation, results::add);
+		}
+		results.sort(Comparator.comparingInt(BatchItemResult::getIndex));
+		return results;
+	}
+
+	/**
+	 * As {@link #convertArchive(InputStream, Function)}, for an operation that
+	 * renders a file, e.g.
+	 * <code>in -> client.uploadAndDownloadPng(in, config)</code>. Each output is
+	 * written to a ZIP on <code>target</code> as soon as it completes, named
+	 * after its entry with <code>outputExtension</code>, e.g.
+	 * <code>plasmids/pUC19.png</code>. <code>target</code> is not closed.
+	 * 
+	 * @return a result per sequence entry, in archive order, with the name of
+	 *         the output entry if successful, followed by a <code>Left</code>
+	 *         result per skipped entry
+	 * @throws IOException if the archive can't be read or the output can't be
+	 *                     written
+	 */
+	public List<BatchItemResult<String>> renderArchive(InputStream archive,
+			Function<SnapgeneInput, Either<ApiError, byte[]>> render, String outputExtension, OutputStream target)
+			throws IOException, InterruptedException {
+		List<BatchItemResult<String>> results = new ArrayList<>();
+		Set<String> outputNames = new HashSet<>();
+		IOException[] writeFailure = new IOException[1];
+		ZipOutputStream zip = new ZipOutputStream(target);
+		try (SnapgeneArchiveReader entries = SnapgeneArchiveReader.open(archive)) {
+			convertEntries(entries, render, result -> {
+				Either<ApiError, String> written = result.getResult().flatMap(output -> {
+					String name = outputName(result.getFileName(), outputExtension, outputNames);
+					try {
+						zip.putNextEntry(new ZipEntry(name));
+						zip.write(output);
+						zip.closeEntry();
+						return Either.right(name);
+					} catch (IOException e) {
+						writeFailure[0] = writeFailure[0] != null ? writeFailure[0] : e;
+						return Either.left(new ApiError(HttpStatus.INTERNAL_SERVER_ERROR, 500, e.getMessage(),
+								"Could not write " + name + " to archive"));
+					}
+				});
+				results.add(new BatchItemResult<>(result.getIndex(), result.getFileName(), written,
+						result.getDurationMillis()));
+			});
+		}
+		if (writeFailure[0] != null) {
+			throw writeFailure[0];
+		}
+		zip.finish();
+		results.sort(Comparator.comparingInt(BatchItemResult::getIndex));
+		return results;
+	}
+
+	// results are renamed from the entry's file name to its path in the archive;
+	// skipped entries are reported after the sequence entries
+	private <T> void convertEntries(SnapgeneArchiveReader entries,
+			Function<SnapgeneInput, Either<ApiError, T>> operation, Consumer<BatchItemResult<T>> onResult)
+			throws IOException, InterruptedException {
+		try {
+			BatchProgress progress = convertEach(entries, operation,
+					result -> onResult.accept(new BatchItemResult<>(result.getIndex(),
+							entries.entryName(result.getIndex()), result.getResult(), result.getDurationMillis())));
+			List<String> skipped = entries.getSkippedEntries();
+			for (int i = 0; i < skipped.size(); i++) {
+				onResult.accept(new BatchItemResult<>((int) progress.getSubmitted() + i, skipped.get(i),
+						Either.left(new ApiError(HttpStatus.UNPROCESSABLE_ENTITY, 422, entries.skipReason(i),
+								"Skipped archive entry " + skipped.get(i))),
+						0));
+			}
+			log.info("Converted {} archive entries, skipped {}: {} failed", progress.getSubmitted(), skipped.size(),
+					progress.getFailed());
+		} catch (UncheckedIOException e) {
+			throw e.getCause();
+		}
+	}
+
+	// entry path with the output extension, made unique within the archive
+	private static String outputName(String entryPath, String extension, Set<String> used) {
+		String base = FilenameUtils.removeExtension(entryPath);
+		String name = base + "." + extension;
+		for (int i = 2; !used.add(name); i++) {
+			name = base + "-" + i + "." + extension;
+		}
+		return name;
+	}
+
+	private <T> BatchItemResult<T> run(int index, SnapgeneInput input,
+			Function<SnapgeneInput, Either<ApiError, T>> operation) {
+		long start = System.currentTimeMillis();
+		Either<ApiError, T> result;
+		try {
+			result = operation.apply(input);
+		} catch (RuntimeException e) {
+			log.warn("Batch item {} ({}) failed - {}", index, input.describe(), e.getMessage());
+			result = Either.left(failure(input, e));
+		}
+		return new BatchItemResult<>(index, input.getFileName(), result, System.currentTimeMillis() - start);
+	}
+
+	private ApiError failure(SnapgeneInput input, Exception e) {
+		return new ApiError(HttpStatus.INTERNAL_SERVER_ERROR, 500, e.getMessage(),
+				"Batch conversion of " + input.getFileName() + " failed");
+	}
+
+	private class Progress {
+		private final long start = System.currentTimeMillis();
+		private long submitted;
+		private long succeeded;
+		private long failed;
+
+		synchronized void submitted() {
+			submitted++;
+		}
+
+		synchronized <T> void complete(BatchItemResult<T> result, Consumer<BatchItemResult<T>> onResult) {
+			if (result.isSuccess()) {
+				succeeded++;
+			} else {
+				failed++;
+			}
+			try {
+				onResult.accept(result);
+				progressListener.onProgress(snapshot());
+			} catch (RuntimeException e) {
+				log.warn("Batch result handler failed for item {} - {}", result.getIndex(), e.getMessage());
+			}
+		}
+
+		synchronized BatchProgress snapshot() {
+			return new BatchProgress(submitted, succeeded, failed, System.currentTimeMillis() - start);
+		}
+	}
+
+}
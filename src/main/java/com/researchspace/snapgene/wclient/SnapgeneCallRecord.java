@@ -0,0 +1,39 @@
+package com.researchspace.snapgene.wclient;
+
+import java.time.Duration;
+
+import lombok.Value;
+
+/**
+ * Outcome of one logical call to a Snapgene endpoint, including any retries.
+ */
+@Value
+public class SnapgeneCallRecord {
+	SnapgeneEndpoint endpoint;
+	/**
+	 * Total time including retries and waits between them
+	 */
+	Duration duration;
+	/**
+	 * Requests actually sent; 0 if the call was rejected by an open circuit
+	 * breaker
+	 */
+	int attempts;
+	/**
+	 * HTTP status of the final response, or of the error reported for it
+	 */
+	int httpStatus;
+	boolean success;
+
+	public int getRetries() {
+		return Math.max(0, attempts - 1);
+	}
+
+	/**
+	 * @return <code>true</code> if no request was sent, because the circuit
+	 *         breaker was open
+	 */
+	public boolean isRejected() {
+		return attempts == 0;
+	}
+}
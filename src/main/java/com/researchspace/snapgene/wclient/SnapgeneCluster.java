@@ -0,0 +1,241 @@
+package com.researchspace.snapgene.wclient;
+
+import java.io.Closeable;
+import java.net.URI;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * A set of Snapgene servers that calls are balanced across, to the node with
+ * the fewest outstanding calls. <br>
+ * Nodes failing periodic health probes are ejected until probes succeed again;
+ * if all nodes are ejected, all are used. Nodes are probed concurrently, each
+ * probe bounded by <code>probeTimeoutMillis</code>, so one hung node can't
+ * hold up the others. Downloads are routed to the node that
+ * produced the output file, and the steps of a multi-step call can be pinned
+ * to one node.
+ */
+@Slf4j
+public class SnapgeneCluster implements Closeable {
+
+	private final List<SnapgeneNode> nodes;
+	private final SnapgeneClusterConfig config;
+	private final Map<String, SnapgeneNode> outputFileNodes;
+	private final ThreadLocal<SnapgeneNode> pinnedNode = new ThreadLocal<>();
+	private ScheduledExecutorService prober;
+	private ExecutorService probeWorkers;
+	// nodes with a probe still running, possibly hung past its timeout
+	private final Set<SnapgeneNode> probing = ConcurrentHashMap.newKeySet();
+	private boolean closed;
+
+	public SnapgeneCluster(List<URI> nodeUrls, SnapgeneClusterConfig config) {
+		if (nodeUrls.isEmpty()) {
+			throw new IllegalArgumentException("At least one Snapgene node is required");
+		}
+		this.nodes = Collections.unmodifiableList(nodeUrls.stream().map(SnapgeneNode::new).collect(Collectors.toList()));
+		this.config = config;
+		this.outputFileNodes = new LinkedHashMap<String, SnapgeneNode>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, SnapgeneNode> eldest) {
+				return size() > config.getMaxTrackedOutputFiles();
+			}
+		};
+	}
+
+	static SnapgeneCluster singleNode(URI url) {
+		return new SnapgeneCluster(Collections.singletonList(url),
+				SnapgeneClusterConfig.builder().probeIntervalMillis(0).build());
+	}
+
+	public List<SnapgeneNode> getNodes() {
+		return nodes;
+	}
+
+	/**
+	 * Starts periodic health probes, if configured and there is more than one
+	 * node.
+	 * 
+	 * @param probe returns <code>true</code> if the node is healthy
+	 */
+	synchronized void startProbing(Predicate<SnapgeneNode> probe) {
+		if (prober != null || nodes.size() < 2 || config.getProbeIntervalMillis() <= 0) {
+			return;
+		}
+		prober = Executors.newSingleThreadScheduledExecutor(SnapgeneExecutors.daemonThreadFactory("snapgene-probe-"));
+		prober.scheduleWithFixedDelay(() -> probeAll(probe), 0, config.getProbeIntervalMillis(),
+				TimeUnit.MILLISECONDS);
+	}
+
+	void probeAll(Predicate<SnapgeneNode> probe) {
+		Map<SnapgeneNode, Future<Boolean>> probes = new LinkedHashMap<>();
+		for (SnapgeneNode node : nodes) {
+			if (!probing.add(node)) {
+				// the previous probe is still hung
+				recordProbe(node, false);
+				continue;
+			}
+			try {
+				probes.put(node, probeWorkers().submit(() -> {
+					try {
+						return probe.test(node);
+					} finally {
+						probing.remove(node);
+					}
+				}));
+			} catch (RuntimeException e) {
+				probing.remove(node);
+				recordProbe(node, false);
+			}
+		}
+		long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(config.getProbeTimeoutMillis());
+		for (Map.Entry<SnapgeneNode, Future<Boolean>> entry : probes.entrySet()) {
+			Future<Boolean> result = entry.getValue();
+			boolean success;
+			try {
+				success = result.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+			} catch (TimeoutException e) {
+				log.debug("Probe of Snapgene node {} timed out", entry.getKey());
+				result.cancel(true);
+				success = false;
+			} catch (ExecutionException e) {
+				success = false;
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				probes.values().forEach(pending -> pending.cancel(true));
+				return;
+			}
+			recordProbe(entry.getKey(), success);
+		}
+	}
+
+	private void recordProbe(SnapgeneNode node, boolean success) {
+		if (node.onProbe(success, config)) {
+			log.warn("Snapgene node {} is now {}", node, node.isHealthy() ? "healthy" : "ejected");
+		}
+	}
+
+	private synchronized ExecutorService probeWorkers() {
+		if (closed) {
+			throw new IllegalStateException("Cluster is closed");
+		}
+		if (probeWorkers == null) {
+			probeWorkers = Executors
+					.newCachedThreadPool(SnapgeneExecutors.daemonThreadFactory("snapgene-node-probe-"));
+		}
+		return probeWorkers;
+	}
+
+	/**
+	 * Chooses a node for a call; must be followed by {@link #release}.
+	 */
+	SnapgeneNode acquire() {
+		SnapgeneNode pinned = pinnedNode.get();
+		SnapgeneNode node = pinned != null && pinned.isHealthy() ? pinned : leastOutstanding();
+		node.acquired();
+		return node;
+	}
+
+	/**
+	 * Chooses the node that produced the file if known, else any node; must be
+	 * followed by {@link #release}.
+	 */
+	SnapgeneNode acquireFor(String outputFileName) {
+		Optional<SnapgeneNode> producer = getNodeFor(outputFileName);
+		if (producer.isPresent()) {
+			producer.get().acquired();
+			return producer.get();
+		}
+		return acquire();
+	}
+
+	void release(SnapgeneNode node) {
+		node.released();
+	}
+
+	/**
+	 * Remembers which node produced an output file.
+	 */
+	void recordOutput(String outputFileName, SnapgeneNode node) {
+		if (nodes.size() > 1 && outputFileName != null) {
+			synchronized (outputFileNodes) {
+				outputFileNodes.put(outputFileName, node);
+			}
+		}
+	}
+
+	Optional<SnapgeneNode> getNodeFor(String outputFileName) {
+		synchronized (outputFileNodes) {
+			return Optional.ofNullable(outputFileNodes.get(outputFileName));
+		}
+	}
+
+	/**
+	 * Runs all calls made by <code>steps</code> on this thread on one node.
+	 * Nested calls join the outer pin.
+	 */
+	<T> T pinned(Supplier<T> steps) {
+		if (nodes.size() == 1 || pinnedNode.get() != null) {
+			return steps.get();
+		}
+		pinnedNode.set(leastOutstanding());
+		try {
+			return steps.get();
+		} finally {
+			pinnedNode.remove();
+		}
+	}
+
+	private SnapgeneNode leastOutstanding() {
+		if (nodes.size() == 1) {
+			return nodes.get(0);
+		}
+		List<SnapgeneNode> candidates = nodes.stream().filter(SnapgeneNode::isHealthy).collect(Collectors.toList());
+		if (candidates.isEmpty()) {
+			candidates = nodes;
+		}
+		// random start so ties are spread evenly
+		int start = ThreadLocalRandom.current().nextInt(candidates.size());
+		SnapgeneNode best = null;
+		for (int i = 0; i < candidates.size(); i++) {
+			SnapgeneNode node = candidates.get((start + i) % candidates.size());
+			if (best == null || node.getOutstanding() < best.getOutstanding()) {
+				best = node;
+			}
+		}
+		return best;
+	}
+
+	@Override
+	public synchronized void close() {
+		closed = true;
+		if (prober != null) {
+			prober.shutdownNow();
+			prober = null;
+		}
+		if (probeWorkers != null) {
+			probeWorkers.shutdownNow();
+			probeWorkers = null;
+		}
+	}
+
+}
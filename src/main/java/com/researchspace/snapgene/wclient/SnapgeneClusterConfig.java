@@ -0,0 +1,50 @@
+package com.researchspace.snapgene.wclient;
+
+import lombok.Builder;
+import lombok.Value;
+
+/**
+ * Load balancing and health checking settings for a {@link SnapgeneCluster}.
+ */
+@Value
+@Builder(toBuilder = true)
+public class SnapgeneClusterConfig {
+
+	/**
+	 * Interval between status() probes of each node; 0 disables probing.
+	 */
+	@Builder.Default
+	long probeIntervalMillis = 5000;
+
+	/**
+	 * Longest wait for a node's status response; a probe that takes longer
+	 * counts as failed, and no new probe of the node starts until it returns.
+	 */
+	@Builder.Default
+	long probeTimeoutMillis = 2_000;
+
+	/**
+	 * Consecutive failed probes after which a node stops receiving calls.
+	 */
+	@Builder.Default
+	int ejectAfterFailures = 2;
+
+	/**
+	 * Consecutive successful probes after which an ejected node receives calls
+	 * again.
+	 */
+	@Builder.Default
+	int readmitAfterSuccesses = 2;
+
+	/**
+	 * Number of recent output file names remembered for routing downloads to the
+	 * node that produced them.
+	 */
+	@Builder.Default
+	int maxTrackedOutputFiles = 10_000;
+
+	public static SnapgeneClusterConfig defaults() {
+		return builder().build();
+	}
+
+}
@@ -0,0 +1,29 @@
+package com.researchspace.snapgene.wclient;
+
+/**
+ * The Snapgene server endpoints called by {@link SnapgeneWSClientImpl}.
+ */
+public enum SnapgeneEndpoint {
+	STATUS("status"),
+	EXPORT_SVG("exportSvg"),
+	EXPORT_PNG("exportPng"),
+	IMPORT_DNA_FILE("importDNAFile"),
+	EXPORT_DNA_FILE("exportDNAFile"),
+	REPORT_ENZYMES("reportEnzymes"),
+	REPORT_ORFS("reportORFs"),
+	DOWNLOAD_FILE("downloadFile");
+
+	private final String path;
+
+	SnapgeneEndpoint(String path) {
+		this.path = path;
+	}
+
+	/**
+	 * @return the path segment after '/snapgene/', also used as the endpoint's
+	 *         name in metrics
+	 */
+	public String getPath() {
+		return path;
+	}
+}
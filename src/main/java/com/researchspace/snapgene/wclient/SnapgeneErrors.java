@@ -0,0 +1,70 @@
+package com.researchspace.snapgene.wclient;
+
+import java.net.SocketTimeoutException;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.client.HttpStatusCodeException;
+import org.springframework.web.client.ResourceAccessException;
+
+import com.researchspace.apiutils.ApiError;
+
+import io.github.resilience4j.circuitbreaker.CallNotPermittedException;
+
+/**
+ * Classifies exceptions thrown by RestTemplate calls to the Snapgene server.
+ */
+final class SnapgeneErrors {
+
+	private SnapgeneErrors() {
+	}
+
+	/**
+	 * @return <code>true</code> if the same request may succeed if sent again:
+	 *         I/O errors, 408, 429 and 5xx responses other than 501
+	 */
+	static boolean isRetryable(Throwable e) {
+		if (e instanceof HttpStatusCodeException) {
+			int status = ((HttpStatusCodeException) e).getRawStatusCode();
+			return status == 408 || status == 429 || (status >= 500 && status != 501);
+		}
+		return e instanceof ResourceAccessException;
+	}
+
+	/**
+	 * @return <code>true</code> if the error indicates a problem with the server
+	 *         rather than the request, so should count towards opening a circuit
+	 *         breaker
+	 */
+	static boolean isServerFault(Throwable e) {
+		if (e instanceof HttpStatusCodeException) {
+			return ((HttpStatusCodeException) e).getRawStatusCode() >= 500;
+		}
+		return e instanceof ResourceAccessException;
+	}
+
+	/**
+	 * @return <code>true</code> for timeouts and 'too busy' responses
+	 */
+	static boolean isOverload(Throwable e) {
+		if (e instanceof HttpStatusCodeException) {
+			int status = ((HttpStatusCodeException) e).getRawStatusCode();
+			return status == 429 || status == 503 || status == 504;
+		}
+		return e instanceof ResourceAccessException && e.getCause() instanceof SocketTimeoutException;
+	}
+
+	static ApiError toApiError(Throwable e) {
+		if (e instanceof HttpStatusCodeException) {
+			HttpStatusCodeException httpError = (HttpStatusCodeException) e;
+			HttpStatus status = HttpStatus.resolve(httpError.getRawStatusCode());
+			return new ApiError(status != null ? status : HttpStatus.INTERNAL_SERVER_ERROR,
+					httpError.getRawStatusCode(), httpError.getStatusText(), e.getMessage());
+		}
+		if (e instanceof CallNotPermittedException) {
+			return new ApiError(HttpStatus.SERVICE_UNAVAILABLE, 503, "Snapgene server unavailable", e.getMessage());
+		}
+		return new ApiError(HttpStatus.INTERNAL_SERVER_ERROR, 500, "Error calling Snapgene server",
+				String.valueOf(e.getMessage()));
+	}
+
+}
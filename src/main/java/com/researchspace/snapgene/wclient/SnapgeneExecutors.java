@@ -0,0 +1,61 @@
+package com.researchspace.snapgene.wclient;
+
+import java.lang.reflect.Method;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Executors suited to running blocking Snapgene calls.
+ */
+@Slf4j
+public final class SnapgeneExecutors {
+
+	private SnapgeneExecutors() {
+	}
+
+	/**
+	 * A fixed pool of daemon threads named <code>snapgene-N</code>.
+	 */
+	public static ExecutorService fixed(int threads) {
+		return Executors.newFixedThreadPool(threads, daemonThreadFactory("snapgene-"));
+	}
+
+	/**
+	 * @return a new virtual-thread-per-task executor if running on a JVM that
+	 *         supports virtual threads (Java 21+), else empty
+	 */
+	public static Optional<ExecutorService> virtualThreads() {
+		try {
+			Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+			return Optional.of((ExecutorService) factory.invoke(null));
+		} catch (ReflectiveOperationException e) {
+			return Optional.empty();
+		}
+	}
+
+	/**
+	 * Virtual threads if supported, else a fixed pool of
+	 * <code>fallbackThreads</code> platform threads.
+	 */
+	public static ExecutorService virtualThreadsOrFixed(int fallbackThreads) {
+		return virtualThreads().orElseGet(() -> {
+			log.info("Virtual threads not available, using {} platform threads", fallbackThreads);
+			return fixed(fallbackThreads);
+		});
+	}
+
+	static ThreadFactory daemonThreadFactory(String prefix) {
+		AtomicInteger count = new AtomicInteger();
+		return r -> {
+			Thread t = new Thread(r, prefix + count.incrementAndGet());
+			t.setDaemon(true);
+			return t;
+		};
+	}
+
+}
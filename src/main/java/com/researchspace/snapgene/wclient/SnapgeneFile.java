@@ -0,0 +1,343 @@
+package com.researchspace.snapgene.wclient;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Consumer;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import org.apache.commons.io.FilenameUtils;
+import org.apache.commons.io.IOUtils;
+
+import lombok.Getter;
+import lombok.Value;
+
+/**
+ * A native SnapGene .dna file, read without a server round trip. <br>
+ * Files are memory-mapped and only segment headers are read when opening:
+ * each segment is a type byte and a big-endian length. The sequence, features
+ * and primers are decoded on first use, so length and topology queries never
+ * copy the bases onto the heap.
+ */
+public final class SnapgeneFile {
+
+	static final int SEQUENCE_SEGMENT = 0;
+	static final int PRIMERS_SEGMENT = 5;
+	static final int COOKIE_SEGMENT = 9;
+	static final int FEATURES_SEGMENT = 10;
+	private static final byte[] COOKIE = "SnapGene".getBytes(StandardCharsets.US_ASCII);
+	private static final XMLInputFactory XML = newXmlInputFactory();
+
+	@Getter
+	private final String name;
+	private final ByteBuffer content;
+	private final List<Segment> segments;
+
+	@Getter(lazy = true)
+	private final DnaSequence sequence = decodeSequence();
+	@Getter(lazy = true)
+	private final List<SequenceFeature> features = decodeFeatures();
+	@Getter(lazy = true)
+	private final List<Primer> primers = decodePrimers();
+
+	private SnapgeneFile(String name, ByteBuffer content) throws IOException {
+		this.name = name;
+		this.content = content;
+		this.segments = walkSegments(content);
+		if (segments.isEmpty() || segments.get(0).getType() != COOKIE_SEGMENT || !hasCookie(segments.get(0))) {
+			throw new IOException(name + " is not a SnapGene .dna file");
+		}
+		if (!segment(SEQUENCE_SEGMENT).filter(sequence -> sequence.getLength() > 0).isPresent()) {
+			throw new IOException("No sequence segment in .dna file " + name);
+		}
+	}
+
+	/**
+	 * Maps the file read-only; the mapping stays valid after the file is closed.
+	 */
+	public static SnapgeneFile open(Path path) throws IOException {
+		return map(path, FilenameUtils.getBaseName(path.toString()));
+	}
+
+	/**
+	 * Maps file inputs; other inputs are read into memory.
+	 */
+	public static SnapgeneFile of(SnapgeneInput input) throws IOException {
+		String name = FilenameUtils.getBaseName(input.getFileName());
+		Optional<Path> path = input.localPath();
+		if (path.isPresent()) {
+			return map(path.get(), name);
+		}
+		try (InputStream in = input.openStream()) {
+			return new SnapgeneFile(name, ByteBuffer.wrap(IOUtils.toByteArray(in)));
+		}
+	}
+
+	private static SnapgeneFile map(Path path, String name) throws IOException {
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+			if (channel.size() > Integer.MAX_VALUE) {
+				throw new IOException("Too large for a .dna file: " + path);
+			}
+			return new SnapgeneFile(name, channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+		}
+	}
+
+	/**
+	 * @return sequence length in bases
+	 */
+	public int length() {
+		return segment(SEQUENCE_SEGMENT).get().getLength() - 1;
+	}
+
+	public boolean isCircular() {
+		return (content.get(segment(SEQUENCE_SEGMENT).get().getOffset()) & 1) != 0;
+	}
+
+	/**
+	 * @return a read-only view of the bases as ASCII letters, without copying
+	 */
+	public ByteBuffer bases() {
+		Segment sequence = segment(SEQUENCE_SEGMENT).get();
+		return slice(sequence.getOffset() + 1, sequence.getLength() - 1);
+	}
+
+	/**
+	 * @return types of the segments in the file, in file order
+	 */
+	public List<Integer> segmentTypes() {
+		List<Integer> types = new ArrayList<>();
+		segments.forEach(segment -> types.add(segment.getType()));
+		return types;
+	}
+
+	private DnaSequence decodeSequence() {
+		byte[] bases = new byte[length()];
+		bases().get(bases);
+		return new DnaSequence(name, bases, isCircular());
+	}
+
+	private List<SequenceFeature> decodeFeatures() {
+		List<SequenceFeature> features = new ArrayList<>();
+		parseXml(FEATURES_SEGMENT, xml -> {
+			try {
+				while (xml.hasNext()) {
+					if (xml.next() == XMLStreamConstants.START_ELEMENT && xml.getLocalName().equals("Feature")) {
+						features.add(readFeature(xml));
+					}
+				}
+			} catch (XMLStreamException e) {
+				throw new IllegalStateException("Invalid features in .dna file " + name, e);
+			}
+		});
+		return Collections.unmodifiableList(features);
+	}
+
+	// reads up to the end of the Feature element
+	private static SequenceFeature readFeature(XMLStreamReader xml) throws XMLStreamException {
+		String featureName = xml.getAttributeValue(null, "name");
+		String type = xml.getAttributeValue(null, "type");
+		int directionality = parseInt(xml.getAttributeValue(null, "directionality"), 0);
+		int start = 0;
+		int end = 0;
+		Map<String, String> qualifiers = new LinkedHashMap<>();
+		String qualifier = null;
+		while (xml.hasNext()) {
+			int event = xml.next();
+			if (event == XMLStreamConstants.END_ELEMENT && xml.getLocalName().equals("Feature")) {
+				break;
+			}
+			if (event != XMLStreamConstants.START_ELEMENT) {
+				continue;
+			}
+			switch (xml.getLocalName()) {
+			case "Segment":
+				int[] range = parseRange(xml.getAttributeValue(null, "range"));
+				start = start == 0 ? range[0] : start;
+				end = range[1];
+				break;
+			case "Q":
+				qualifier = xml.getAttributeValue(null, "name");
+				break;
+			case "V":
+				if (qualifier != null && !qualifiers.containsKey(qualifier)) {
+					String text = xml.getAttributeValue(null, "text");
+					qualifiers.put(qualifier, text != null ? text : xml.getAttributeValue(null, "int"));
+				}
+				break;
+			default:
+				break;
+			}
+		}
+		return new SequenceFeature(featureName, type, directionality, start, end,
+				Collections.unmodifiableMap(qualifiers));
+	}
+
+	private List<Primer> decodePrimers() {
+		List<Primer> primers = new ArrayList<>();
+		parseXml(PRIMERS_SEGMENT, xml -> {
+			try {
+				String primerName = null;
+				String bases = null;
+				List<Primer.BindingSite> sites = null;
+				while (xml.hasNext()) {
+					int event = xml.next();
+					if (event == XMLStreamConstants.START_ELEMENT && xml.getLocalName().equals("Primer")) {
+						primerName = xml.getAttributeValue(null, "name");
+						bases = xml.getAttributeValue(null, "sequence");
+						sites = new ArrayList<>();
+					} else if (event == XMLStreamConstants.START_ELEMENT && xml.getLocalName().equals("BindingSite")
+							&& sites != null && !"1".equals(xml.getAttributeValue(null, "simplified"))) {
+						int[] range = parseRange(xml.getAttributeValue(null, "location"));
+						sites.add(new Primer.BindingSite(range[0], range[1],
+								parseInt(xml.getAttributeValue(null, "boundStrand"), 0)));
+					} else if (event == XMLStreamConstants.END_ELEMENT && xml.getLocalName().equals("Primer")) {
+						primers.add(new Primer(primerName, bases, Collections.unmodifiableList(sites)));
+						sites = null;
+					}
+				}
+			} catch (XMLStreamException e) {
+				throw new IllegalStateException("Invalid primers in .dna file " + name, e);
+			}
+		});
+		return Collections.unmodifiableList(primers);
+	}
+
+	private void parseXml(int segmentType, Consumer<XMLStreamReader> handler) {
+		Optional<Segment> segment = segment(segmentType);
+		if (!segment.isPresent()) {
+			return;
+		}
+		ByteBuffer xml = slice(segment.get().getOffset(), segment.get().getLength());
+		XMLStreamReader reader = null;
+		try {
+			reader = XML.createXMLStreamReader(new ByteBufferInputStream(xml), StandardCharsets.UTF_8.name());
+			handler.accept(reader);
+		} catch (XMLStreamException e) {
+			throw new IllegalStateException("Invalid XML in segment " + segmentType + " of .dna file " + name, e);
+		} finally {
+			closeQuietly(reader);
+		}
+	}
+
+	private Optional<Segment> segment(int type) {
+		return segments.stream().filter(segment -> segment.getType() == type).findFirst();
+	}
+
+	private ByteBuffer slice(int offset, int length) {
+		ByteBuffer view = content.asReadOnlyBuffer();
+		view.position(offset);
+		view.limit(offset + length);
+		return view.slice();
+	}
+
+	private boolean hasCookie(Segment cookie) {
+		if (cookie.getLength() < COOKIE.length) {
+			return false;
+		}
+		for (int i = 0; i < COOKIE.length; i++) {
+			if (content.get(cookie.getOffset() + i) != COOKIE[i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static List<Segment> walkSegments(ByteBuffer content) throws IOException {
+		List<Segment> segments = new ArrayList<>();
+		int position = 0;
+		int limit = content.limit();
+		while (position < limit) {
+			if (limit - position < 5) {
+				throw new IOException("Truncated segment header at byte " + position);
+			}
+			int type = content.get(position) & 0xFF;
+			long length = content.getInt(position + 1) & 0xFFFFFFFFL;
+			if (position + 5 + length > limit) {
+				throw new IOException("Truncated segment of type " + type + " at byte " + position);
+			}
+			segments.add(new Segment(type, position + 5, (int) length));
+			position += 5 + (int) length;
+		}
+		return segments;
+	}
+
+	// e.g. '1653-1655'
+	private static int[] parseRange(String range) {
+		if (range == null) {
+			return new int[] { 0, 0 };
+		}
+		String[] bounds = range.split("-");
+		int start = parseInt(bounds[0], 0);
+		return new int[] { start, bounds.length > 1 ? parseInt(bounds[1], start) : start };
+	}
+
+	private static int parseInt(String value, int defaultValue) {
+		try {
+			return value == null ? defaultValue : Integer.parseInt(value.trim());
+		} catch (NumberFormatException e) {
+			return defaultValue;
+		}
+	}
+
+	private static void closeQuietly(XMLStreamReader reader) {
+		if (reader != null) {
+			try {
+				reader.close();
+			} catch (XMLStreamException e) {
+				// nothing to release
+			}
+		}
+	}
+
+	private static XMLInputFactory newXmlInputFactory() {
+		XMLInputFactory factory = XMLInputFactory.newInstance();
+		factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+		factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+		return factory;
+	}
+
+	@Value
+	private static class Segment {
+		int type;
+		int offset;
+		int length;
+	}
+
+	private static final class ByteBufferInputStream extends InputStream {
+		private final ByteBuffer buffer;
+
+		ByteBufferInputStream(ByteBuffer buffer) {
+			this.buffer = buffer;
+		}
+
+		@Override
+		public int read() {
+			return buffer.hasRemaining() ? buffer.get() & 0xFF : -1;
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) {
+			if (!buffer.hasRemaining()) {
+				return -1;
+			}
+			int n = Math.min(len, buffer.remaining());
+			buffer.get(b, off, n);
+			return n;
+		}
+	}
+
+}
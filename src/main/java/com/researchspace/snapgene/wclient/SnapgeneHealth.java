@@ -0,0 +1,124 @@
+package com.researchspace.snapgene.wclient;
+
+import java.time.Instant;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import lombok.Value;
+
+/**
+ * Snapgene service state as last seen by a {@link SnapgeneHealthMonitor}.
+ */
+@Value
+public class SnapgeneHealth {
+
+	public enum State {
+		/**
+		 * Not yet polled
+		 */
+		UNKNOWN,
+		UP,
+		/**
+		 * Polls have failed repeatedly
+		 */
+		DOWN
+	}
+
+	private static final ObjectMapper MAPPER = new ObjectMapper();
+	private static final String[] QUEUE_FIELDS = { "queueLength", "queueSize", "queued", "pending" };
+	private static final String[] ACTIVE_FIELDS = { "activeRequests", "active", "running", "busy" };
+
+	State state;
+	/**
+	 * Time of the last poll, or null if not yet polled
+	 */
+	Instant checkedAt;
+	long latencyMillis;
+	/**
+	 * Consecutive failed polls, 0 if the last poll succeeded
+	 */
+	int consecutiveFailures;
+	/**
+	 * The 'status' field of the server's response, or its whole body if not
+	 * JSON; null if the last poll failed
+	 */
+	String serverStatus;
+	/**
+	 * Top-level scalar fields of the server's JSON response
+	 */
+	Map<String, Object> details;
+	/**
+	 * Error message of the last failed poll, else null
+	 */
+	String error;
+
+	public static SnapgeneHealth unknown() {
+		return new SnapgeneHealth(State.UNKNOWN, null, 0, 0, null, Collections.emptyMap(), null);
+	}
+
+	static SnapgeneHealth up(Instant checkedAt, long latencyMillis, String body) {
+		Map<String, Object> details = new LinkedHashMap<>();
+		String serverStatus = body == null ? "" : body.trim();
+		try {
+			JsonNode json = MAPPER.readTree(serverStatus);
+			if (json != null && json.isObject()) {
+				json.fields().forEachRemaining(field -> {
+					JsonNode value = field.getValue();
+					if (value.isNumber()) {
+						details.put(field.getKey(), value.numberValue());
+					} else if (value.isBoolean()) {
+						details.put(field.getKey(), value.booleanValue());
+					} else if (value.isTextual()) {
+						details.put(field.getKey(), value.textValue());
+					}
+				});
+				serverStatus = json.path("status").asText(null);
+			}
+		} catch (Exception e) {
+			// not JSON, keep the raw body
+		}
+		return new SnapgeneHealth(State.UP, checkedAt, latencyMillis, 0, serverStatus,
+				Collections.unmodifiableMap(details), null);
+	}
+
+	static SnapgeneHealth failed(SnapgeneHealth previous, Instant checkedAt, long latencyMillis, String error,
+			int downAfterFailures) {
+		int failures = previous.getConsecutiveFailures() + 1;
+		State state = failures >= downAfterFailures ? State.DOWN : previous.getState();
+		return new SnapgeneHealth(state, checkedAt, latencyMillis, failures, null, Collections.emptyMap(), error);
+	}
+
+	public boolean isDown() {
+		return state == State.DOWN;
+	}
+
+	/**
+	 * @return number of queued jobs, if the server reports it
+	 */
+	public Optional<Long> getQueueLength() {
+		return firstNumber(QUEUE_FIELDS);
+	}
+
+	/**
+	 * @return number of jobs in progress, if the server reports it
+	 */
+	public Optional<Long> getActiveRequests() {
+		return firstNumber(ACTIVE_FIELDS);
+	}
+
+	private Optional<Long> firstNumber(String[] fields) {
+		for (String field : fields) {
+			Object value = details.get(field);
+			if (value instanceof Number) {
+				return Optional.of(((Number) value).longValue());
+			}
+		}
+		return Optional.empty();
+	}
+
+}
@@ -0,0 +1,181 @@
+package com.researchspace.snapgene.wclient;
+
+import java.io.Closeable;
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+import org.springframework.http.HttpStatus;
+
+import com.researchspace.apiutils.ApiError;
+
+import io.vavr.control.Either;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Polls the Snapgene status endpoint in the background and keeps the latest
+ * {@link SnapgeneHealth}, so callers can check availability without making a
+ * request. <br>
+ * Each probe runs on its own thread and is abandoned after
+ * <code>probeTimeoutMillis</code>, so a hung status call can't freeze the
+ * monitor in its current state; no new probe starts until a hung one returns.
+ */
+@Slf4j
+public class SnapgeneHealthMonitor implements Closeable {
+
+	private final Supplier<Either<ApiError, String>> statusCall;
+	private final HealthMonitorConfig config;
+	private final List<Consumer<SnapgeneHealth>> listeners = new CopyOnWriteArrayList<>();
+	private volatile SnapgeneHealth health = SnapgeneHealth.unknown();
+	private final AtomicBoolean probing = new AtomicBoolean();
+	private ScheduledExecutorService poller;
+	private ExecutorService prober;
+	private boolean closed;
+
+	/**
+	 * @param statusCall fetches the status body; should not itself be subject to
+	 *                   fail-fast, or the monitor could never see the service
+	 *                   recover
+	 */
+	public SnapgeneHealthMonitor(Supplier<Either<ApiError, String>> statusCall, HealthMonitorConfig config) {
+		this.statusCall = statusCall;
+		this.config = config;
+	}
+
+	/**
+	 * Starts polling on a daemon thread, immediately and then at the configured
+	 * interval.
+	 */
+	public synchronized void start() {
+		if (poller == null) {
+			poller = Executors.newSingleThreadScheduledExecutor(SnapgeneExecutors.daemonThreadFactory("snapgene-health-"));
+			// an exception would cancel the schedule, and stop polling for good
+			poller.scheduleWithFixedDelay(() -> {
+				try {
+					poll();
+				} catch (RuntimeException e) {
+					log.warn("Snapgene health poll failed - {}", e.getMessage());
+				}
+			}, 0, config.getPollIntervalMillis(), TimeUnit.MILLISECONDS);
+		}
+	}
+
+	/**
+	 * Polls once, waiting at most <code>probeTimeoutMillis</code> for the
+	 * status.
+	 * 
+	 * @return the new snapshot
+	 */
+	public SnapgeneHealth poll() {
+		long start = System.nanoTime();
+		Either<ApiError, String> response = probe();
+		long latencyMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+		SnapgeneHealth previous = health;
+		SnapgeneHealth current = response.isRight() ? SnapgeneHealth.up(Instant.now(), latencyMillis, response.get())
+				: SnapgeneHealth.failed(previous, Instant.now(), latencyMillis, response.getLeft().getMessage(),
+						config.getDownAfterFailures());
+		health = current;
+		if (current.getState() != previous.getState()) {
+			log.info("Snapgene service is now {}", current.getState());
+			for (Consumer<SnapgeneHealth> listener : listeners) {
+				try {
+					listener.accept(current);
+				} catch (RuntimeException e) {
+					log.warn("Snapgene health listener failed - {}", e.getMessage());
+				}
+			}
+		}
+		return current;
+	}
+
+	private Either<ApiError, String> probe() {
+		if (!probing.compareAndSet(false, true)) {
+			return Either.left(timedOut("Previous status probe has not returned"));
+		}
+		Future<Either<ApiError, String>> probe;
+		try {
+			probe = prober().submit(() -> {
+				try {
+					return statusCall.get();
+				} finally {
+					probing.set(false);
+				}
+			});
+		} catch (RuntimeException e) {
+			probing.set(false);
+			return Either.left(SnapgeneErrors.toApiError(e));
+		}
+		try {
+			return probe.get(config.getProbeTimeoutMillis(), TimeUnit.MILLISECONDS);
+		} catch (TimeoutException e) {
+			probe.cancel(true);
+			return Either.left(timedOut("Status probe timed out after " + config.getProbeTimeoutMillis() + " ms"));
+		} catch (ExecutionException e) {
+			return Either.left(SnapgeneErrors.toApiError(e.getCause()));
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			probe.cancel(true);
+			return Either.left(timedOut("Interrupted while waiting for status probe"));
+		}
+	}
+
+	private synchronized ExecutorService prober() {
+		if (closed) {
+			throw new IllegalStateException("Health monitor is closed");
+		}
+		if (prober == null) {
+			prober = Executors.newSingleThreadExecutor(SnapgeneExecutors.daemonThreadFactory("snapgene-health-probe-"));
+		}
+		return prober;
+	}
+
+	private static ApiError timedOut(String message) {
+		return new ApiError(HttpStatus.GATEWAY_TIMEOUT, 504, message, "Snapgene status probe failed");
+	}
+
+	/**
+	 * @return the latest snapshot; state UNKNOWN until the first poll completes
+	 */
+	public SnapgeneHealth getHealth() {
+		return health;
+	}
+
+	/**
+	 * @return <code>true</code> if calls should fail fast because the service is
+	 *         known to be down
+	 */
+	public boolean shouldFailFast() {
+		return config.isFailFast() && health.isDown();
+	}
+
+	/**
+	 * Notified on the polling thread when the state changes.
+	 */
+	public void addListener(Consumer<SnapgeneHealth> listener) {
+		listeners.add(listener);
+	}
+
+	@Override
+	public synchronized void close() {
+		closed = true;
+		if (poller != null) {
+			poller.shutdownNow();
+			poller = null;
+		}
+		if (prober != null) {
+			prober.shutdownNow();
+			prober = null;
+		}
+	}
+
+}
@@ -0,0 +1,410 @@
+package com.researchspace.snapgene.wclient;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Optional;
+
+import org.apache.commons.io.FilenameUtils;
+import org.apache.commons.io.IOUtils;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.InputStreamResource;
+import org.springframework.core.io.Resource;
+
+/**
+ * A sequence file to upload to the Snapgene server: a file on disk, an
+ * in-memory byte array or a stream, plus the file name the server should see.
+ * <br>
+ * File and byte array inputs are <em>replayable</em>: they can be uploaded
+ * more than once (e.g. on retry) and hashed for caching. Stream inputs are
+ * read once, directly into the upload; if an upload from a stream fails after
+ * it has started, retries will fail too.
+ * <br>
+ * Inputs returned by the client, e.g. from
+ * <code>convertToNativeFileIfRequired</code>, may hold scratch space and
+ * should be closed once no longer needed.
+ */
+public abstract class SnapgeneInput implements Closeable {
+
+	private volatile String contentHash;
+
+	private SnapgeneInput() {
+	}
+
+	public static SnapgeneInput of(File file) {
+		return of(file.toPath());
+	}
+
+	public static SnapgeneInput of(Path path) {
+		return new PathInput(path);
+	}
+
+	/**
+	 * @param fileName name including extension, e.g. 'pUC19.fasta'. The content
+	 *                 is not copied.
+	 */
+	public static SnapgeneInput of(String fileName, byte[] content) {
+		return new BytesInput(fileName, content);
+	}
+
+	/**
+	 * @param fileName name including extension, e.g. 'pUC19.fasta'. The stream is
+	 *                 read once, and closed after upload.
+	 */
+	public static SnapgeneInput of(String fileName, InputStream content) {
+		return new StreamInput(fileName, content);
+	}
+
+	// content held in scratch space, released when the input is closed
+	static SnapgeneInput of(String fileName, ScratchFile file) {
+		return new ScratchInput(fileName, file);
+	}
+
+	/**
+	 * @return the file name, as seen by the server
+	 */
+	public abstract String getFileName();
+
+	/**
+	 * @return <code>true</code> if the content can be read more than once
+	 */
+	public abstract boolean isReplayable();
+
+	/**
+	 * @return content length in bytes, or -1 if not known in advance
+	 */
+	public abstract long contentLength();
+
+	/**
+	 * @return lower-case file name extension, or empty string if none
+	 */
+	public String getExtension() {
+		return FilenameUtils.getExtension(getFileName()).toLowerCase();
+	}
+
+	/**
+	 * @return <code>true</code> if this is a native Snapgene .dna file
+	 */
+	public boolean isNativeDnaFile() {
+		return getExtension().equals("dna");
+	}
+
+	/**
+	 * @return description for log messages
+	 */
+	public String describe() {
+		return getFileName();
+	}
+
+	/**
+	 * Hash of the content, computed once.
+	 * 
+	 * @throws IllegalStateException if this input is not replayable
+	 */
+	public String contentHash() throws IOException {
+		if (!isReplayable()) {
+			throw new IllegalStateException("Cannot hash single-use stream input " + getFileName());
+		}
+		if (contentHash == null) {
+			try (InputStream in = openStream()) {
+				contentHash = ContentHash.sha256Hex(in);
+			}
+		}
+		return contentHash;
+	}
+
+	/**
+	 * Opens the content for reading; for stream inputs this may only be called
+	 * once.
+	 */
+	public abstract InputStream openStream() throws IOException;
+
+	/**
+	 * @return a Resource for use as a multipart request part
+	 */
+	abstract Resource asResource();
+
+	/**
+	 * Reads up to <code>maxBytes</code> from the start of the content without
+	 * consuming it, so that stream inputs can still be uploaded.
+	 */
+	abstract byte[] readHeader(int maxBytes) throws IOException;
+
+	/**
+	 * @return the same content under a different file name, as seen by the
+	 *         server
+	 */
+	abstract SnapgeneInput withFileName(String fileName);
+
+	/**
+	 * @return the file holding the content, if it is on the local file system
+	 */
+	Optional<Path> localPath() {
+		return Optional.empty();
+	}
+
+	/**
+	 * Releases any scratch space held by this input. Does not close
+	 * caller-supplied files or streams.
+	 */
+	@Override
+	public void close() {
+	}
+
+	@Override
+	public String toString() {
+		return describe();
+	}
+
+	private static final class PathInput extends SnapgeneInput {
+		private final Path path;
+		private final String fileName;
+
+		PathInput(Path path) {
+			this(path, path.getFileName().toString());
+		}
+
+		PathInput(Path path, String fileName) {
+			this.path = path;
+			this.fileName = fileName;
+		}
+
+		@Override
+		public String getFileName() {
+			return fileName;
+		}
+
+		@Override
+		public boolean isReplayable() {
+			return true;
+		}
+
+		@Override
+		public long contentLength() {
+			return path.toFile().length();
+		}
+
+		@Override
+		public String describe() {
+			return path.toAbsolutePath().toString();
+		}
+
+		@Override
+		public InputStream openStream() throws IOException {
+			return Files.newInputStream(path);
+		}
+
+		@Override
+		Resource asResource() {
+			return new FileSystemResource(path.toAbsolutePath().toString()) {
+				@Override
+				public String getFilename() {
+					return fileName;
+				}
+			};
+		}
+
+		@Override
+		byte[] readHeader(int maxBytes) throws IOException {
+			return SequenceFormatDetector.readHeader(path, maxBytes);
+		}
+
+		@Override
+		SnapgeneInput withFileName(String fileName) {
+			return new PathInput(path, fileName);
+		}
+
+		@Override
+		Optional<Path> localPath() {
+			return Optional.of(path);
+		}
+	}
+
+	private static final class ScratchInput extends SnapgeneInput {
+		private final String fileName;
+		private final ScratchFile file;
+
+		ScratchInput(String fileName, ScratchFile file) {
+			this.fileName = fileName;
+			this.file = file;
+		}
+
+		@Override
+		public String getFileName() {
+			return fileName;
+		}
+
+		@Override
+		public boolean isReplayable() {
+			return true;
+		}
+
+		@Override
+		public long contentLength() {
+			return file.getPath().toFile().length();
+		}
+
+		@Override
+		public String describe() {
+			return fileName + " (" + file + ")";
+		}
+
+		@Override
+		public InputStream openStream() throws IOException {
+			return Files.newInputStream(file.getPath());
+		}
+
+		@Override
+		Resource asResource() {
+			return new FileSystemResource(file.getPath().toAbsolutePath().toString()) {
+				@Override
+				public String getFilename() {
+					return fileName;
+				}
+			};
+		}
+
+		@Override
+		byte[] readHeader(int maxBytes) throws IOException {
+			return SequenceFormatDetector.readHeader(file.getPath(), maxBytes);
+		}
+
+		// each input holds its own reference
+		@Override
+		SnapgeneInput withFileName(String fileName) {
+			return new ScratchInput(fileName, file.retain());
+		}
+
+		@Override
+		Optional<Path> localPath() {
+			return Optional.of(file.getPath());
+		}
+
+		@Override
+		public void close() {
+			file.close();
+		}
+	}
+
+	private static final class BytesInput extends SnapgeneInput {
+		private final String fileName;
+		private final byte[] content;
+
+		BytesInput(String fileName, byte[] content) {
+			this.fileName = fileName;
+			this.content = content;
+		}
+
+		@Override
+		public String getFileName() {
+			return fileName;
+		}
+
+		@Override
+		public boolean isReplayable() {
+			return true;
+		}
+
+		@Override
+		public long contentLength() {
+			return content.length;
+		}
+
+		@Override
+		public InputStream openStream() {
+			return new ByteArrayInputStream(content);
+		}
+
+		@Override
+		Resource asResource() {
+			return new ByteArrayResource(content) {
+				@Override
+				public String getFilename() {
+					return fileName;
+				}
+			};
+		}
+
+		@Override
+		byte[] readHeader(int maxBytes) {
+			return Arrays.copyOf(content, Math.min(maxBytes, content.length));
+		}
+
+		@Override
+		SnapgeneInput withFileName(String fileName) {
+			return new BytesInput(fileName, content);
+		}
+	}
+
+	private static final class StreamInput extends SnapgeneInput {
+		private final String fileName;
+		private final InputStream content;
+
+		StreamInput(String fileName, InputStream content) {
+			this.fileName = fileName;
+			// buffered so the header can be read and reset
+			this.content = content.markSupported() ? content : new BufferedInputStream(content);
+		}
+
+		@Override
+		public String getFileName() {
+			return fileName;
+		}
+
+		@Override
+		public boolean isReplayable() {
+			return false;
+		}
+
+		@Override
+		public long contentLength() {
+			return -1;
+		}
+
+		@Override
+		public InputStream openStream() {
+			return content;
+		}
+
+		@Override
+		Resource asResource() {
+			return new InputStreamResource(content) {
+				@Override
+				public String getFilename() {
+					return fileName;
+				}
+
+				// unknown, and must not be computed by reading the stream
+				@Override
+				public long contentLength() {
+					return -1;
+				}
+			};
+		}
+
+		@Override
+		byte[] readHeader(int maxBytes) throws IOException {
+			content.mark(maxBytes);
+			try {
+				byte[] header = new byte[maxBytes];
+				int read = IOUtils.read(content, header);
+				return Arrays.copyOf(header, read);
+			} finally {
+				content.reset();
+			}
+		}
+
+		@Override
+		SnapgeneInput withFileName(String fileName) {
+			return new StreamInput(fileName, content);
+		}
+	}
+
+}
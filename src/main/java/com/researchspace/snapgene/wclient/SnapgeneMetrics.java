@@ -0,0 +1,50 @@
+package com.researchspace.snapgene.wclient;
+
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+
+/**
+ * Receives measurements from {@link SnapgeneWSClientImpl}. All methods default
+ * to doing nothing; implementations must be thread-safe and should not block.
+ * 
+ * @see MicrometerSnapgeneMetrics
+ */
+public interface SnapgeneMetrics {
+
+	/**
+	 * Discards all measurements; the default.
+	 */
+	SnapgeneMetrics NOOP = new SnapgeneMetrics() {
+	};
+
+	/**
+	 * Called once per logical call, after its final attempt.
+	 */
+	default void recordCall(SnapgeneCallRecord call) {
+	}
+
+	/**
+	 * Called with the size of each file sent to the server, if known in advance.
+	 */
+	default void recordUploadBytes(SnapgeneEndpoint endpoint, long bytes) {
+	}
+
+	/**
+	 * Called with the size of each file received from the server.
+	 */
+	default void recordDownloadBytes(SnapgeneEndpoint endpoint, long bytes) {
+	}
+
+	/**
+	 * Called when a call is rejected by an {@link AdaptiveConcurrencyLimiter}
+	 * without being sent.
+	 */
+	default void recordLimiterRejection(SnapgeneEndpoint endpoint) {
+	}
+
+	/**
+	 * Called with the initial state of a monitored circuit breaker and on each
+	 * transition.
+	 */
+	default void recordCircuitBreakerState(String breakerName, CircuitBreaker.State state) {
+	}
+}
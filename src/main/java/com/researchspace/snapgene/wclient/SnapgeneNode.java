@@ -0,0 +1,95 @@
+package com.researchspace.snapgene.wclient;
+
+import java.net.URI;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.springframework.web.util.UriComponentsBuilder;
+
+/**
+ * One Snapgene server in a {@link SnapgeneCluster}, with its endpoint URIs and
+ * load and health state.
+ */
+public class SnapgeneNode {
+
+	private final URI baseUrl;
+	private final Map<SnapgeneEndpoint, URI> endpointUris = new EnumMap<>(SnapgeneEndpoint.class);
+	private final AtomicInteger outstanding = new AtomicInteger();
+	private volatile boolean healthy = true;
+	// updated only by the health probe thread
+	private int consecutiveProbeFailures;
+	private int consecutiveProbeSuccesses;
+
+	SnapgeneNode(URI baseUrl) {
+		this.baseUrl = baseUrl;
+		for (SnapgeneEndpoint endpoint : SnapgeneEndpoint.values()) {
+			if (endpoint != SnapgeneEndpoint.DOWNLOAD_FILE) {
+				endpointUris.put(endpoint,
+						baseUri().path("/snapgene/" + endpoint.getPath()).build().encode().toUri());
+			}
+		}
+	}
+
+	public URI getBaseUrl() {
+		return baseUrl;
+	}
+
+	/**
+	 * @return number of calls currently in progress on this node
+	 */
+	public int getOutstanding() {
+		return outstanding.get();
+	}
+
+	/**
+	 * @return <code>false</code> if ejected after failed health probes
+	 */
+	public boolean isHealthy() {
+		return healthy;
+	}
+
+	URI getUri(SnapgeneEndpoint endpoint) {
+		return endpointUris.get(endpoint);
+	}
+
+	UriComponentsBuilder baseUri() {
+		return UriComponentsBuilder.fromUri(baseUrl);
+	}
+
+	void acquired() {
+		outstanding.incrementAndGet();
+	}
+
+	void released() {
+		outstanding.decrementAndGet();
+	}
+
+	/**
+	 * @return <code>true</code> if the node's health changed
+	 */
+	boolean onProbe(boolean success, SnapgeneClusterConfig config) {
+		if (success) {
+			consecutiveProbeFailures = 0;
+			consecutiveProbeSuccesses++;
+			if (!healthy && consecutiveProbeSuccesses >= config.getReadmitAfterSuccesses()) {
+				healthy = true;
+				return true;
+			}
+		} else {
+			consecutiveProbeSuccesses = 0;
+			consecutiveProbeFailures++;
+			if (healthy && consecutiveProbeFailures >= config.getEjectAfterFailures()) {
+				healthy = false;
+				return true;
+			}
+		}
+		return false;
+	}
+
+	@Override
+	public String toString() {
+		return baseUrl.toString();
+	}
+
+}
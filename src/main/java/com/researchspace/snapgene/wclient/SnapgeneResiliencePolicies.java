@@ -0,0 +1,68 @@
+package com.researchspace.snapgene.wclient;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+
+/**
+ * An independent {@link EndpointResilience} per Snapgene endpoint, so that
+ * failures of one operation, e.g. slow renders, don't open the breaker for
+ * others such as status() or downloads. All endpoints share one
+ * {@link RetryBudget}.
+ */
+public class SnapgeneResiliencePolicies {
+
+	private final Map<SnapgeneEndpoint, EndpointResilience> endpoints = new EnumMap<>(SnapgeneEndpoint.class);
+	private final RetryBudget retryBudget;
+
+	/**
+	 * @param defaultPolicy policy for endpoints without an override
+	 * @param overrides     per-endpoint policies, may be empty
+	 */
+	public SnapgeneResiliencePolicies(ResiliencePolicy defaultPolicy, Map<SnapgeneEndpoint, ResiliencePolicy> overrides,
+			RetryBudget retryBudget) {
+		this.retryBudget = retryBudget;
+		for (SnapgeneEndpoint endpoint : SnapgeneEndpoint.values()) {
+			ResiliencePolicy policy = overrides.getOrDefault(endpoint, defaultPolicy);
+			endpoints.put(endpoint, new EndpointResilience("snapgene-" + endpoint.getPath(), policy, retryBudget));
+		}
+	}
+
+	/**
+	 * Default policy for all endpoints, except that status() is not retried as
+	 * it's used for health checks; default retry budget.
+	 */
+	public static SnapgeneResiliencePolicies defaults() {
+		Map<SnapgeneEndpoint, ResiliencePolicy> overrides = new EnumMap<>(SnapgeneEndpoint.class);
+		overrides.put(SnapgeneEndpoint.STATUS, ResiliencePolicy.builder().maxAttempts(1).build());
+		return new SnapgeneResiliencePolicies(ResiliencePolicy.defaults(), overrides, RetryBudget.defaults());
+	}
+
+	/**
+	 * The same policy for every endpoint, each with its own circuit breaker.
+	 */
+	public static SnapgeneResiliencePolicies of(ResiliencePolicy policy, RetryBudget retryBudget) {
+		return new SnapgeneResiliencePolicies(policy, Collections.emptyMap(), retryBudget);
+	}
+
+	public EndpointResilience forEndpoint(SnapgeneEndpoint endpoint) {
+		return endpoints.get(endpoint);
+	}
+
+	public RetryBudget getRetryBudget() {
+		return retryBudget;
+	}
+
+	/**
+	 * For registering with {@link SnapgeneWSClientImpl#monitorCircuitBreaker}.
+	 */
+	public Collection<CircuitBreaker> getCircuitBreakers() {
+		return endpoints.values().stream().map(EndpointResilience::getCircuitBreaker)
+				.collect(Collectors.toList());
+	}
+
+}
@@ -0,0 +1,88 @@
+package com.researchspace.snapgene.wclient;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.DefaultConnectionKeepAliveStrategy;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.pool.PoolStats;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
+import org.springframework.http.client.SimpleClientHttpRequestFactory;
+import org.springframework.web.client.RestTemplate;
+
+/**
+ * Creates the RestTemplate used to talk to the Snapgene server from a
+ * {@link SnapgeneTransportConfig}, and owns any underlying connection pool.
+ */
+public class SnapgeneTransport implements Closeable {
+
+	private static final int UPLOAD_CHUNK_SIZE = 64 * 1024;
+
+	private final RestTemplate restTemplate;
+	private final PoolingHttpClientConnectionManager connectionManager;
+	private final CloseableHttpClient httpClient;
+
+	public SnapgeneTransport(SnapgeneTransportConfig config) {
+		if (config.isPooled()) {
+			connectionManager = new PoolingHttpClientConnectionManager(config.getConnectionTtlMillis(),
+					TimeUnit.MILLISECONDS);
+			connectionManager.setMaxTotal(config.getMaxTotalConnections());
+			connectionManager.setDefaultMaxPerRoute(config.getMaxConnectionsPerRoute());
+			RequestConfig requestConfig = RequestConfig.custom().setConnectTimeout(config.getConnectTimeoutMillis())
+					.setSocketTimeout(config.getReadTimeoutMillis())
+					.setConnectionRequestTimeout(config.getConnectionRequestTimeoutMillis()).build();
+			// retries are handled by the resilience facade
+			httpClient = HttpClients.custom().setConnectionManager(connectionManager)
+					.setDefaultRequestConfig(requestConfig)
+					.setKeepAliveStrategy(DefaultConnectionKeepAliveStrategy.INSTANCE)
+					.evictIdleConnections(config.getIdleEvictionMillis(), TimeUnit.MILLISECONDS)
+					.evictExpiredConnections().disableAutomaticRetries().build();
+			HttpComponentsClientHttpRequestFactory rf = new HttpComponentsClientHttpRequestFactory(httpClient);
+			rf.setBufferRequestBody(!config.isStreamingUploads());
+			restTemplate = new RestTemplate(rf);
+		} else {
+			connectionManager = null;
+			httpClient = null;
+			SimpleClientHttpRequestFactory rf = new SimpleClientHttpRequestFactory();
+			rf.setConnectTimeout(config.getConnectTimeoutMillis());
+			rf.setReadTimeout(config.getReadTimeoutMillis());
+			if (config.isStreamingUploads()) {
+				rf.setBufferRequestBody(false);
+				rf.setChunkSize(UPLOAD_CHUNK_SIZE);
+			}
+			restTemplate = new RestTemplate(rf);
+		}
+	}
+
+	public RestTemplate getRestTemplate() {
+		return restTemplate;
+	}
+
+	/**
+	 * @return current pool utilisation, or empty if this transport is not pooled
+	 */
+	public Optional<TransportPoolStats> getPoolStats() {
+		if (connectionManager == null) {
+			return Optional.empty();
+		}
+		PoolStats stats = connectionManager.getTotalStats();
+		return Optional.of(new TransportPoolStats(stats.getLeased(), stats.getAvailable(), stats.getPending(),
+				stats.getMax()));
+	}
+
+	/**
+	 * Closes pooled connections and stops the idle-connection evictor.
+	 */
+	@Override
+	public void close() throws IOException {
+		if (httpClient != null) {
+			httpClient.close();
+		}
+	}
+
+}
@@ -0,0 +1,84 @@
+package com.researchspace.snapgene.wclient;
+
+import lombok.Builder;
+import lombok.Value;
+
+/**
+ * HTTP transport settings for {@link SnapgeneWSClientImpl}. <br>
+ * By default a pooled, keep-alive connection manager is used. Set
+ * <code>pooled(false)</code> (or use {@link #simple()}) for a new
+ * HttpURLConnection per request, as in earlier versions. <br>
+ * All durations are in milliseconds; 0 means no timeout.
+ */
+@Value
+@Builder(toBuilder = true)
+public class SnapgeneTransportConfig {
+
+	/**
+	 * Use a pooled Apache HttpClient connection manager rather than a new
+	 * HttpURLConnection per request.
+	 */
+	@Builder.Default
+	boolean pooled = true;
+
+	/**
+	 * Maximum open connections in total (pooled only).
+	 */
+	@Builder.Default
+	int maxTotalConnections = 20;
+
+	/**
+	 * Maximum open connections per Snapgene server (pooled only).
+	 */
+	@Builder.Default
+	int maxConnectionsPerRoute = 10;
+
+	@Builder.Default
+	int connectTimeoutMillis = 2000;
+
+	/**
+	 * Maximum time waiting for data on an open connection. Renders of large
+	 * maps can take several seconds, so this should be generous.
+	 */
+	@Builder.Default
+	int readTimeoutMillis = 60_000;
+
+	/**
+	 * Maximum time to wait for a connection from the pool (pooled only).
+	 */
+	@Builder.Default
+	int connectionRequestTimeoutMillis = 2000;
+
+	/**
+	 * Connections idle for longer than this are closed by a background thread
+	 * (pooled only).
+	 */
+	@Builder.Default
+	long idleEvictionMillis = 30_000;
+
+	/**
+	 * Maximum lifetime of a pooled connection, after which it is not re-used
+	 * (pooled only).
+	 */
+	@Builder.Default
+	long connectionTtlMillis = 5 * 60_000;
+
+	/**
+	 * Stream multipart request bodies rather than buffering them in memory.
+	 */
+	@Builder.Default
+	boolean streamingUploads = false;
+
+	/**
+	 * Unpooled transport with a 2s connect timeout and no read timeout, matching
+	 * earlier versions.
+	 */
+	public static SnapgeneTransportConfig simple() {
+		return builder().pooled(false).readTimeoutMillis(0).build();
+	}
+
+	public static SnapgeneTransportConfig defaults() {
+		return builder().build();
+	}
+
+}
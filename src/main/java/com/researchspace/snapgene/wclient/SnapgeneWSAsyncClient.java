@@ -0,0 +1,64 @@
+package com.researchspace.snapgene.wclient;
+
+import java.nio.file.Path;
+import java.util.concurrent.CompletableFuture;
+
+import com.researchspace.apiutils.ApiError;
+import com.researchspace.zmq.snapgene.requests.ExportDnaFileConfig;
+import com.researchspace.zmq.snapgene.requests.GeneratePngMapConfig;
+import com.researchspace.zmq.snapgene.requests.GenerateSVGMapConfig;
+import com.researchspace.zmq.snapgene.requests.ReportEnzymesConfig;
+import com.researchspace.zmq.snapgene.requests.ReportORFsConfig;
+import com.researchspace.zmq.snapgene.responses.SnapgeneResponse;
+
+import io.vavr.control.Either;
+
+/**
+ * Non-blocking companion to {@link SnapgeneWSClient}. Each method returns
+ * immediately; the returned future completes with the same result the
+ * equivalent blocking method would return. Futures are never completed
+ * exceptionally for API errors, which are returned as <code>Left</code>
+ * values. <br>
+ * Retry and circuit breaker protection apply to each call individually.
+ */
+public interface SnapgeneWSAsyncClient {
+
+	CompletableFuture<Either<ApiError, SnapgeneResponse>> convertToSvgFile(SnapgeneInput input,
+			GenerateSVGMapConfig config);
+
+	CompletableFuture<Either<ApiError, SnapgeneResponse>> convertToPngFile(SnapgeneInput input,
+			GeneratePngMapConfig config);
+
+	CompletableFuture<Either<ApiError, String>> enzymes(SnapgeneInput input, ReportEnzymesConfig config);
+
+	CompletableFuture<Either<ApiError, String>> orfs(SnapgeneInput input, ReportORFsConfig config);
+
+	CompletableFuture<Either<ApiError, SnapgeneResponse>> exportDnaFile(SnapgeneInput input,
+			ExportDnaFileConfig config);
+
+	CompletableFuture<Either<ApiError, SnapgeneResponse>> importDnaFile(SnapgeneInput input);
+
+	CompletableFuture<Either<ApiError, SnapgeneInput>> convertToNativeFileIfRequired(SnapgeneInput input);
+
+	CompletableFuture<Either<ApiError, byte[]>> downloadFile(String outputFileName);
+
+	CompletableFuture<Either<ApiError, Long>> downloadFile(String outputFileName, Path target);
+
+	/**
+	 * Converts to native .dna if necessary, renders a PNG and downloads it, as
+	 * one task running the blocking facade, so rendered images are served from
+	 * and added to its render cache.
+	 */
+	CompletableFuture<Either<ApiError, byte[]>> uploadAndDownloadPng(SnapgeneInput input,
+			GeneratePngMapConfig pngConfig);
+
+	/**
+	 * As {@link #uploadAndDownloadPng(SnapgeneInput, GeneratePngMapConfig)},
+	 * rendering an SVG.
+	 */
+	CompletableFuture<Either<ApiError, byte[]>> uploadAndDownloadSvg(SnapgeneInput input,
+			GenerateSVGMapConfig svgConfig);
+
+	CompletableFuture<Either<ApiError, String>> status();
+
+}
@@ -0,0 +1,147 @@
+package com.researchspace.snapgene.wclient;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.function.Supplier;
+
+import org.springframework.http.HttpStatus;
+
+import com.researchspace.apiutils.ApiError;
+import com.researchspace.zmq.snapgene.requests.ExportDnaFileConfig;
+import com.researchspace.zmq.snapgene.requests.GeneratePngMapConfig;
+import com.researchspace.zmq.snapgene.requests.GenerateSVGMapConfig;
+import com.researchspace.zmq.snapgene.requests.ReportEnzymesConfig;
+import com.researchspace.zmq.snapgene.requests.ReportORFsConfig;
+import com.researchspace.zmq.snapgene.responses.SnapgeneResponse;
+
+import io.vavr.control.Either;
+import io.vavr.control.Try;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Runs each call of a blocking {@link SnapgeneWSClient} as a task on an
+ * executor. Retry and circuit breaker protection come from the blocking
+ * client, and so apply per call. <br>
+ * The executor bounds how many Snapgene calls run at once; see
+ * {@link SnapgeneExecutors} for suitable executors, including virtual threads.
+ */
+@Slf4j
+public class SnapgeneWSAsyncClientImpl implements SnapgeneWSAsyncClient {
+
+	private final SnapgeneWSClient client;
+	private final Executor executor;
+	private SingleFlight singleFlight;
+
+	public SnapgeneWSAsyncClientImpl(SnapgeneWSClient client, Executor executor) {
+		this.client = client;
+		this.executor = executor;
+	}
+
+	/**
+	 * If enabled, concurrent calls with the same operation, input content and
+	 * config share one task and its result, so duplicates don't occupy executor
+	 * threads. Inputs are hashed on the calling thread.
+	 */
+	public void setRequestCoalescing(boolean enabled) {
+		this.singleFlight = enabled ? new SingleFlight() : null;
+	}
+
+	@Override
+	public CompletableFuture<Either<ApiError, SnapgeneResponse>> convertToSvgFile(SnapgeneInput input,
+			GenerateSVGMapConfig config) {
+		return submitCoalesced("exportSvg", input, config, () -> client.convertToSvgFile(input, config));
+	}
+
+	@Override
+	public CompletableFuture<Either<ApiError, SnapgeneResponse>> convertToPngFile(SnapgeneInput input,
+			GeneratePngMapConfig config) {
+		return submitCoalesced("exportPng", input, config, () -> client.convertToPngFile(input, config));
+	}
+
+	@Override
+	public CompletableFuture<Either<ApiError, String>> enzymes(SnapgeneInput input, ReportEnzymesConfig config) {
+		return submitCoalesced("reportEnzymes", input, config, () -> client.enzymes(input, config));
+	}
+
+	@Override
+	public CompletableFuture<Either<ApiError, String>> orfs(SnapgeneInput input, ReportORFsConfig config) {
+		return submitCoalesced("reportORFs", input, config, () -> client.orfs(input, config));
+	}
+
+	@Override
+	public CompletableFuture<Either<ApiError, SnapgeneResponse>> exportDnaFile(SnapgeneInput input,
+			ExportDnaFileConfig config) {
+		return submitCoalesced("exportDNAFile", input, config, () -> client.exportDnaFile(input, config));
+	}
+
+	@Override
+	public CompletableFuture<Either<ApiError, SnapgeneResponse>> importDnaFile(SnapgeneInput input) {
+		return submitCoalesced("importDNAFile", input, null, () -> client.importDnaFile(input));
+	}
+
+	@Override
+	public CompletableFuture<Either<ApiError, SnapgeneInput>> convertToNativeFileIfRequired(SnapgeneInput input) {
+		// the blocking client decides by content, not by file name
+		return submit(() -> client.convertToNativeFileIfRequired(input));
+	}
+
+	@Override
+	public CompletableFuture<Either<ApiError, byte[]>> downloadFile(String outputFileName) {
+		if (singleFlight != null) {
+			return singleFlight.executeAsync(RequestKey.of("downloadFile", outputFileName),
+					() -> submit(() -> client.downloadFile(outputFileName)));
+		}
+		return submit(() -> client.downloadFile(outputFileName));
+	}
+
+	@Override
+	public CompletableFuture<Either<ApiError, Long>> downloadFile(String outputFileName, Path target) {
+		return submit(() -> client.downloadFile(outputFileName, target));
+	}
+
+	@Override
+	public CompletableFuture<Either<ApiError, byte[]>> uploadAndDownloadPng(SnapgeneInput input,
+			GeneratePngMapConfig pngConfig) {
+		// one blocking call, so the render cache is consulted and filled as for synchronous callers
+		return submitCoalesced("uploadAndDownloadPng", input, pngConfig,
+				() -> Try.of(() -> client.uploadAndDownloadPng(input, pngConfig)).getOrElseGet(this::unexpectedError));
+	}
+
+	@Override
+	public CompletableFuture<Either<ApiError, byte[]>> uploadAndDownloadSvg(SnapgeneInput input,
+			GenerateSVGMapConfig svgConfig) {
+		return submitCoalesced("uploadAndDownloadSvg", input, svgConfig,
+				() -> client.uploadAndDownloadSvg(input, svgConfig));
+	}
+
+	@Override
+	public CompletableFuture<Either<ApiError, String>> status() {
+		return submit(client::status);
+	}
+
+	private <T> CompletableFuture<Either<ApiError, T>> submit(Supplier<Either<ApiError, T>> call) {
+		return CompletableFuture.supplyAsync(call, executor).exceptionally(this::unexpectedError);
+	}
+
+	private <T> CompletableFuture<Either<ApiError, T>> submitCoalesced(String operation, SnapgeneInput input,
+			Object config, Supplier<Either<ApiError, T>> call) {
+		if (singleFlight == null || !input.isReplayable()) {
+			return submit(call);
+		}
+		try {
+			return singleFlight.executeAsync(RequestKey.of(operation, input, config), () -> submit(call));
+		} catch (IOException e) {
+			log.warn("Could not hash {}, not coalescing - {}", input.describe(), e.getMessage());
+			return submit(call);
+		}
+	}
+
+	private <T> Either<ApiError, T> unexpectedError(Throwable e) {
+		log.warn("Async Snapgene call failed unexpectedly - {}", e.getMessage());
+		return Either.left(new ApiError(HttpStatus.INTERNAL_SERVER_ERROR, 500, e.getMessage(),
+				"Unexpected error running asynchronous Snapgene call"));
+	}
+
+}
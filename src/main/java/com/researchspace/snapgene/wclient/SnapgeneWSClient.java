@@ -3,6 +3,9 @@ package com.researchspace.snapgene.wclient;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
 
 import com.researchspace.apiutils.ApiError;
 import com.researchspace.zmq.snapgene.requests.ExportDnaFileConfig;
@@ -15,7 +18,10 @@ import com.researchspace.zmq.snapgene.responses.SnapgeneResponse;
 import io.vavr.control.Either;
 
 /**
- * Interface for making calls to Snapgene webservice
+ * Interface for making calls to Snapgene webservice. <br>
+ * Methods which upload a file accept either a {@link File} or a
+ * {@link SnapgeneInput}, which can also wrap a Path, a byte array or an
+ * InputStream.
  */
 public interface SnapgeneWSClient {
 
@@ -26,7 +32,14 @@ public interface SnapgeneWSClient {
 	 * @return A ResponseEntity<SnapgeneResponse> with output file name
 	 *         getOutputFileName() set if successful.
 	 */
-	Either<ApiError, SnapgeneResponse> convertToSvgFile(File file, GenerateSVGMapConfig config);
+	default Either<ApiError, SnapgeneResponse> convertToSvgFile(File file, GenerateSVGMapConfig config) {
+		return convertToSvgFile(SnapgeneInput.of(file), config);
+	}
+
+	/**
+	 * As {@link #convertToSvgFile(File, GenerateSVGMapConfig)}
+	 */
+	Either<ApiError, SnapgeneResponse> convertToSvgFile(SnapgeneInput input, GenerateSVGMapConfig config);
 
 	/**
 	 * Uploads the file to Snapgene server and performs export to PNG.
@@ -34,7 +47,14 @@ public interface SnapgeneWSClient {
 	 * @return A ResponseEntity<SnapgeneResponse> with output file name
 	 *         getOutputFileName() set if successful
 	 */
-	Either<ApiError, SnapgeneResponse> convertToPngFile(File file, GeneratePngMapConfig config);
+	default Either<ApiError, SnapgeneResponse> convertToPngFile(File file, GeneratePngMapConfig config) {
+		return convertToPngFile(SnapgeneInput.of(file), config);
+	}
+
+	/**
+	 * As {@link #convertToPngFile(File, GeneratePngMapConfig)}
+	 */
+	Either<ApiError, SnapgeneResponse> convertToPngFile(SnapgeneInput input, GeneratePngMapConfig config);
 
 	/**
 	 * Uploads a file to Snapgene server calculates enzymes. IF the file is not a
@@ -43,7 +63,14 @@ public interface SnapgeneWSClient {
 	 * @return Either<ApiError, String> with output file name getOutputFileName()
 	 *         set if successful
 	 */
-	Either<ApiError, String> enzymes(File file, ReportEnzymesConfig config);
+	default Either<ApiError, String> enzymes(File file, ReportEnzymesConfig config) {
+		return enzymes(SnapgeneInput.of(file), config);
+	}
+
+	/**
+	 * As {@link #enzymes(File, ReportEnzymesConfig)}
+	 */
+	Either<ApiError, String> enzymes(SnapgeneInput input, ReportEnzymesConfig config);
 
 	/**
 	 * Uploads a file to Snapgene server and reports on ORFs. IF the file is not a
@@ -52,7 +79,14 @@ public interface SnapgeneWSClient {
 	 * @return Either<ApiError, String> with output file name getOutputFileName()
 	 *         set if successful
 	 */
-	Either<ApiError, String> orfs(File file, ReportORFsConfig config);
+	default Either<ApiError, String> orfs(File file, ReportORFsConfig config) {
+		return orfs(SnapgeneInput.of(file), config);
+	}
+
+	/**
+	 * As {@link #orfs(File, ReportORFsConfig)}
+	 */
+	Either<ApiError, String> orfs(SnapgeneInput input, ReportORFsConfig config);
 
 	/**
 	 * Uploads the .dna file to Snapgene server and exports to a format.
@@ -60,7 +94,14 @@ public interface SnapgeneWSClient {
 	 * @return A ResponseEntity<SnapgeneResponse> with output file name
 	 *         getOutputFileName() set if successful
 	 */
-	Either<ApiError, SnapgeneResponse> exportDnaFile(File file, ExportDnaFileConfig config);
+	default Either<ApiError, SnapgeneResponse> exportDnaFile(File file, ExportDnaFileConfig config) {
+		return exportDnaFile(SnapgeneInput.of(file), config);
+	}
+
+	/**
+	 * As {@link #exportDnaFile(File, ExportDnaFileConfig)}
+	 */
+	Either<ApiError, SnapgeneResponse> exportDnaFile(SnapgeneInput input, ExportDnaFileConfig config);
 
 	/**
 	 * Uploads the file to Snapgene server and imports as DNA file.
@@ -68,7 +109,14 @@ public interface SnapgeneWSClient {
 	 * @return Either<ApiError, SnapgeneResponse> with output .dna file name
 	 *         getOutputFileName() set if successful
 	 */
-	Either<ApiError, SnapgeneResponse> importDnaFile(File file);
+	default Either<ApiError, SnapgeneResponse> importDnaFile(File file) {
+		return importDnaFile(SnapgeneInput.of(file));
+	}
+
+	/**
+	 * As {@link #importDnaFile(File)}
+	 */
+	Either<ApiError, SnapgeneResponse> importDnaFile(SnapgeneInput input);
 
 	/**
 	 * Given a filename (obtained from a previous API call) retrieves the file.
@@ -76,6 +124,36 @@ public interface SnapgeneWSClient {
    */
 	Either<ApiError, byte[]> downloadFile(String outputFileName);
 
+	/**
+	 * Given a filename (obtained from a previous API call) streams the file to
+	 * <code>target</code>, without holding the whole file in memory. <br>
+	 * The file is written to a temporary file alongside <code>target</code> and
+	 * moved into place once complete, so a failed or retried download never
+	 * leaves a partial file at <code>target</code>.
+	 * 
+	 * @return Either<ApiError, Long> with the number of bytes written
+	 */
+	Either<ApiError, Long> downloadFile(String outputFileName, Path target);
+
+	/**
+	 * Given a filename (obtained from a previous API call) streams the file to
+	 * <code>target</code>, without holding the whole file in memory. <br>
+	 * Nothing is written to <code>target</code> until the download has
+	 * completed, so retries always start cleanly. The stream is not closed.
+	 * 
+	 * @return Either<ApiError, Long> with the number of bytes written
+	 */
+	Either<ApiError, Long> downloadFile(String outputFileName, OutputStream target);
+
+	/**
+	 * As {@link #downloadFile(String, OutputStream)}, writing to a channel. If
+	 * <code>target</code> is a FileChannel the content is transferred without
+	 * copying through the heap. The channel is not closed.
+	 * 
+	 * @return Either<ApiError, Long> with the number of bytes written
+	 */
+	Either<ApiError, Long> downloadFile(String outputFileName, WritableByteChannel target);
+
 	/**
 	 * Facade method which uploads file, converts to native .DNA format if
 	 * necessary, then generates a PNG file and downloads it. <br>
@@ -86,8 +164,47 @@ public interface SnapgeneWSClient {
 	 *                       genbank etc) or a native .dna file.
 	 * @return Either<ApiError, byte[]>
    */
-	Either<ApiError, byte[]> uploadAndDownloadPng(File fileToConvert, GeneratePngMapConfig pngConfig)
-			throws FileNotFoundException, IOException;
+	default Either<ApiError, byte[]> uploadAndDownloadPng(File fileToConvert, GeneratePngMapConfig pngConfig)
+			throws FileNotFoundException, IOException {
+		return uploadAndDownloadPng(SnapgeneInput.of(fileToConvert), pngConfig);
+	}
+
+	/**
+	 * As {@link #uploadAndDownloadPng(File, GeneratePngMapConfig)}
+	 */
+	Either<ApiError, byte[]> uploadAndDownloadPng(SnapgeneInput input, GeneratePngMapConfig pngConfig)
+			throws IOException;
+
+	/**
+	 * Returns the input unchanged if it is already a native .dna file, otherwise
+	 * imports it on the Snapgene server and returns the downloaded .dna file.
+	 * This is the first step of the facade methods and of
+	 * enzymes/orfs/exportDnaFile for non-native input. The format is decided by
+	 * content, not file name, see {@link SequenceFormatDetector}. The returned
+	 * input should be closed when no longer needed.
+	 * 
+	 * @return Either<ApiError, SnapgeneInput> with native .dna content
+	 */
+	Either<ApiError, SnapgeneInput> convertToNativeFileIfRequired(SnapgeneInput input);
+
+	/**
+	 * Facade method which uploads file, converts to native .DNA format if
+	 * necessary, then generates an SVG file and downloads it. <br>
+	 * This facade method makes several API calls, returning immediately after any
+	 * call fails.
+	 * 
+	 * @param fileToConvert Any DNA file acceptable for importDNAFile (fasta,
+	 *                      genbank etc) or a native .dna file.
+	 * @return Either<ApiError, byte[]>
+	 */
+	default Either<ApiError, byte[]> uploadAndDownloadSvg(File fileToConvert, GenerateSVGMapConfig svgConfig) {
+		return uploadAndDownloadSvg(SnapgeneInput.of(fileToConvert), svgConfig);
+	}
+
+	/**
+	 * As {@link #uploadAndDownloadSvg(File, GenerateSVGMapConfig)}
+	 */
+	Either<ApiError, byte[]> uploadAndDownloadSvg(SnapgeneInput input, GenerateSVGMapConfig svgConfig);
 
 	/**
 	 * Checks status of Snapgene service. If running will return a JSON string of
@@ -97,4 +214,4 @@ public interface SnapgeneWSClient {
 	 */
 	Either<ApiError, String> status();
 
-}
\ No newline at end of file
+}
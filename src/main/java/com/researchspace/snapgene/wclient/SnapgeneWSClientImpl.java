@@ -1,27 +1,49 @@
 package com.researchspace.snapgene.wclient;
 
 import java.io.File;
-import java.io.FileNotFoundException;
-import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
 import java.util.function.Supplier;
 
 import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
 
-import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.FilenameUtils;
 import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang3.StringUtils;
-import org.springframework.core.io.FileSystemResource;
 import org.springframework.http.HttpEntity;
 import org.springframework.http.HttpMethod;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
-import org.springframework.http.client.SimpleClientHttpRequestFactory;
 import org.springframework.util.LinkedMultiValueMap;
+import org.springframework.web.client.ResponseExtractor;
 import org.springframework.web.client.RestTemplate;
-import org.springframework.web.util.UriComponentsBuilder;
 
 import com.researchspace.apiutils.ApiError;
 import com.researchspace.apiutils.rest.utils.SimpleResilienceFacade;
@@ -33,6 +55,7 @@ import com.researchspace.zmq.snapgene.requests.ReportEnzymesConfig;
 import com.researchspace.zmq.snapgene.requests.ReportORFsConfig;
 import com.researchspace.zmq.snapgene.responses.SnapgeneResponse;
 
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
 import io.vavr.control.Either;
 import io.vavr.control.Try;
 import lombok.extern.slf4j.Slf4j;
@@ -44,34 +67,261 @@ import lombok.extern.slf4j.Slf4j;
 @Slf4j
 public class SnapgeneWSClientImpl implements SnapgeneWSClient {
 
+	/**
+	 * Uses a single retry and circuit breaker facade for all endpoints, replacing
+	 * any per-endpoint policies.
+	 */
 	public void setFacade(SimpleResilienceFacade facade) {
 		this.facade = facade;
+		this.resiliencePolicies = null;
+	}
+
+	/**
+	 * Uses independent retry and circuit breaker policies per endpoint; the
+	 * default for clients created with a public constructor. The policies'
+	 * circuit breakers are reported to the metrics set by
+	 * {@link #setMetrics(SnapgeneMetrics)}.
+	 */
+	public void setResiliencePolicies(SnapgeneResiliencePolicies resiliencePolicies) {
+		this.resiliencePolicies = resiliencePolicies;
+		monitorCircuitBreakers(resiliencePolicies);
+	}
+
+	/**
+	 * Optional cache of native .dna conversions; if set, non-native files that
+	 * have already been converted are not re-imported.
+	 */
+	public void setConversionCache(DnaConversionCache conversionCache) {
+		this.conversionCache = conversionCache;
+	}
+
+	/**
+	 * Optional cache of rendered PNG and SVG maps; if set, repeat renders of the
+	 * same content with the same config are served without contacting the
+	 * server.
+	 */
+	public void setRenderCache(RenderCache renderCache) {
+		this.renderCache = renderCache;
+	}
+
+	/**
+	 * If enabled (the default), files whose content is not recognised by
+	 * {@link SequenceFormatDetector} are rejected with a 415 ApiError instead of
+	 * being uploaded for import. Disable to send other formats the server can
+	 * import, which are then identified by file extension as before.
+	 */
+	public void setRejectUnrecognisedFormats(boolean rejectUnrecognisedFormats) {
+		this.rejectUnrecognisedFormats = rejectUnrecognisedFormats;
+	}
+
+	/**
+	 * Where FASTA, GenBank and EMBL files are converted to .dna files before
+	 * upload; the default is the server's importDNAFile. Locally written files,
+	 * see {@link DnaFileImporter}, hold only the sequence and features. Other
+	 * formats are always imported by the server, as are multi-record files
+	 * unless the mode is LOCAL, and stream inputs in fallback mode, which can
+	 * only be read once.
+	 */
+	public void setImportMode(LocalEngineMode importMode) {
+		this.importMode = importMode;
+	}
+
+	/**
+	 * Keeps intermediate files, such as native .dna conversions and spooled
+	 * downloads, in the given scratch space instead of in memory and the JVM temp
+	 * directory. Small conversions are still kept in memory, see
+	 * {@link ScratchSpaceConfig#getInMemoryThresholdBytes()}. The scratch space
+	 * is not closed by this client.
+	 * 
+	 * @param scratchSpace or <code>null</code> to disable
+	 */
+	public void setScratchSpace(ScratchSpace scratchSpace) {
+		this.scratchSpace = scratchSpace;
+	}
+
+	/**
+	 * If enabled, concurrent calls with the same operation, input content and
+	 * config share a single server call and all receive its result, including
+	 * errors. Concurrent downloads of the same file are also shared; callers
+	 * receiving a shared byte[] must not modify it.
+	 */
+	public void setRequestCoalescing(boolean enabled) {
+		this.singleFlight = enabled ? new SingleFlight() : null;
+	}
+
+	/**
+	 * Receives per-endpoint latency, attempt, outcome and payload size
+	 * measurements; defaults to {@link SnapgeneMetrics#NOOP}.
+	 */
+	public void setMetrics(SnapgeneMetrics metrics) {
+		this.metrics = metrics == null ? SnapgeneMetrics.NOOP : metrics;
+		monitorCircuitBreakers(resiliencePolicies);
+	}
+
+	/**
+	 * Reports the breaker's current state and subsequent transitions to the
+	 * metrics set by {@link #setMetrics(SnapgeneMetrics)}, including metrics
+	 * set later. The breakers of per-endpoint resilience policies are
+	 * monitored automatically.
+	 */
+	public void monitorCircuitBreaker(CircuitBreaker circuitBreaker) {
+		if (monitoredBreakers.add(circuitBreaker)) {
+			circuitBreaker.getEventPublisher().onStateTransition(event -> metrics
+					.recordCircuitBreakerState(event.getCircuitBreakerName(), event.getStateTransition().getToState()));
+		}
+		metrics.recordCircuitBreakerState(circuitBreaker.getName(), circuitBreaker.getState());
+	}
+
+	private void monitorCircuitBreakers(SnapgeneResiliencePolicies policies) {
+		if (policies != null) {
+			policies.getCircuitBreakers().forEach(this::monitorCircuitBreaker);
+		}
+	}
+
+	/**
+	 * Limits concurrent calls to the given endpoints, e.g. all render endpoints,
+	 * with a shared limiter. Calls that can't get a permit in time fail with a
+	 * 503 ApiError without contacting the server.
+	 * 
+	 * @param limiter   the limiter, or <code>null</code> to remove limiting from
+	 *                  these endpoints
+	 * @param endpoints endpoints to limit; all endpoints if none are given
+	 */
+	public void setConcurrencyLimiter(AdaptiveConcurrencyLimiter limiter, SnapgeneEndpoint... endpoints) {
+		for (SnapgeneEndpoint endpoint : endpoints.length == 0 ? SnapgeneEndpoint.values() : endpoints) {
+			if (limiter == null) {
+				limiters.remove(endpoint);
+			} else {
+				limiters.put(endpoint, limiter);
+			}
+		}
+	}
+
+	/**
+	 * Hedges status() and downloadFile(String) calls: if a call is slower than
+	 * usual, a second identical request is sent and the first successful
+	 * response used.
+	 * 
+	 * @param policy hedging settings, or <code>null</code> to disable hedging
+	 */
+	public void setHedging(HedgingPolicy policy) {
+		hedgers.clear();
+		if (policy == null) {
+			return;
+		}
+		if (hedgeExecutor == null) {
+			hedgeExecutor = Executors.newCachedThreadPool(SnapgeneExecutors.daemonThreadFactory("snapgene-hedge-"));
+		}
+		hedgers.put(SnapgeneEndpoint.STATUS, new RequestHedger(policy, hedgeExecutor));
+		hedgers.put(SnapgeneEndpoint.DOWNLOAD_FILE, new RequestHedger(policy, hedgeExecutor));
+	}
+
+	/**
+	 * @return hedging statistics for the endpoint, or empty if it is not hedged
+	 */
+	public Optional<RequestHedger> getHedger(SnapgeneEndpoint endpoint) {
+		return Optional.ofNullable(hedgers.get(endpoint));
+	}
+
+	/**
+	 * Starts polling the status endpoint in the background, replacing any
+	 * previous monitor. If the config enables fail-fast, calls made while the
+	 * service is known to be down return a 503 ApiError without being sent.
+	 */
+	public SnapgeneHealthMonitor startHealthMonitor(HealthMonitorConfig config) {
+		if (healthMonitor != null) {
+			healthMonitor.close();
+		}
+		SnapgeneHealthMonitor monitor = new SnapgeneHealthMonitor(this::probeStatus, config);
+		monitor.start();
+		healthMonitor = monitor;
+		return monitor;
+	}
+
+	/**
+	 * @return latest health snapshot, or empty if no health monitor was started
+	 */
+	public Optional<SnapgeneHealth> getHealth() {
+		SnapgeneHealthMonitor monitor = healthMonitor;
+		return monitor == null ? Optional.empty() : Optional.of(monitor.getHealth());
+	}
+
+	/**
+	 * @return number of calls that shared another in-flight call's result, or 0
+	 *         if coalescing is disabled
+	 */
+	public long getCoalescedCallCount() {
+		return singleFlight == null ? 0 : singleFlight.getCoalescedCount();
 	}
 
-	private URI snapgeneServerUrl;
-	private URI statusUri;
-	private URI exportSvgUri;
-	private URI exportPngUri;
-	private URI importDnaFile;
-	private URI exportDnaFile;
-	private URI reportEnzymes;
-	private URI reportORFs;
+	private SnapgeneCluster cluster;
 
 	private RestTemplate template;
+	private SnapgeneTransport transport;
 	private SimpleResilienceFacade facade;
+	private SnapgeneResiliencePolicies resiliencePolicies;
+	private DnaConversionCache conversionCache;
+	private RenderCache renderCache;
+	private ScratchSpace scratchSpace;
+	private boolean rejectUnrecognisedFormats = true;
+	private LocalEngineMode importMode = LocalEngineMode.SERVER;
+	private SingleFlight singleFlight;
+	private volatile SnapgeneMetrics metrics = SnapgeneMetrics.NOOP;
+	// each breaker gets one transition listener, which reports to the current metrics
+	private final Set<CircuitBreaker> monitoredBreakers = Collections
+			.synchronizedSet(Collections.newSetFromMap(new WeakHashMap<>()));
+	private final Map<SnapgeneEndpoint, RequestHedger> hedgers = new EnumMap<>(SnapgeneEndpoint.class);
+	private ExecutorService hedgeExecutor;
+	private volatile SnapgeneHealthMonitor healthMonitor;
+	private final Map<SnapgeneEndpoint, AdaptiveConcurrencyLimiter> limiters = new EnumMap<>(
+			SnapgeneEndpoint.class);
 	private String customerID = "UNDEFINED_CUSTOMER";
 	private Supplier<String> customerIDSupplier;
-	private static final int CONNECTION_TIMEOUT = 2000;
+	private static final long TRANSFER_CHUNK_SIZE = 1024 * 1024;
+	private static final String RENDER_PNG = "png";
+	private static final String RENDER_SVG = "svg";
 
 	public SnapgeneWSClientImpl(URI url, Supplier<String> customerIDSupplier) {
-		this(url, createRestTemplate(), customerIDSupplier);
+		this(url, SnapgeneTransportConfig.simple(), customerIDSupplier);
+	}
+
+	/**
+	 * @param streamingUploads if <code>true</code>, multipart request bodies are
+	 *                         streamed to the server with chunked transfer
+	 *                         encoding rather than buffered in memory first.
+	 */
+	public SnapgeneWSClientImpl(URI url, Supplier<String> customerIDSupplier, boolean streamingUploads) {
+		this(url, SnapgeneTransportConfig.simple().toBuilder().streamingUploads(streamingUploads).build(),
+				customerIDSupplier);
+	}
+
+	/**
+	 * @param transportConfig HTTP connection settings, e.g.
+	 *                        {@link SnapgeneTransportConfig#defaults()} for a
+	 *                        pooled keep-alive transport
+	 */
+	public SnapgeneWSClientImpl(URI url, SnapgeneTransportConfig transportConfig,
+			Supplier<String> customerIDSupplier) {
+		this(SnapgeneCluster.singleNode(url), new SnapgeneTransport(transportConfig), customerIDSupplier);
+	}
+
+	/**
+	 * Balances calls across several Snapgene servers.
+	 * 
+	 * @param nodeUrls      base URLs of the Snapgene servers
+	 * @param clusterConfig load balancing and health probe settings
+	 */
+	public SnapgeneWSClientImpl(List<URI> nodeUrls, SnapgeneClusterConfig clusterConfig,
+			SnapgeneTransportConfig transportConfig, Supplier<String> customerIDSupplier) {
+		this(new SnapgeneCluster(nodeUrls, clusterConfig), new SnapgeneTransport(transportConfig),
+				customerIDSupplier);
 	}
 
-	private static RestTemplate createRestTemplate() {
-		RestTemplate template = new RestTemplate();
-		SimpleClientHttpRequestFactory rf = (SimpleClientHttpRequestFactory) template.getRequestFactory();
-		rf.setConnectTimeout(CONNECTION_TIMEOUT);
-		return template;
+	private SnapgeneWSClientImpl(SnapgeneCluster cluster, SnapgeneTransport transport,
+			Supplier<String> customerIDSupplier) {
+		this(cluster, transport.getRestTemplate(), null, customerIDSupplier);
+		this.transport = transport;
+		this.resiliencePolicies = SnapgeneResiliencePolicies.defaults();
 	}
 
 	/*
@@ -86,7 +336,12 @@ public class SnapgeneWSClientImpl implements SnapgeneWSClient {
 	 */
 	SnapgeneWSClientImpl(URI url, RestTemplate restTemplate, SimpleResilienceFacade facade,
 			Supplier<String> customerIDSupplier) {
-		this.snapgeneServerUrl = url;
+		this(SnapgeneCluster.singleNode(url), restTemplate, facade, customerIDSupplier);
+	}
+
+	private SnapgeneWSClientImpl(SnapgeneCluster cluster, RestTemplate restTemplate, SimpleResilienceFacade facade,
+			Supplier<String> customerIDSupplier) {
+		this.cluster = cluster;
 		this.template = restTemplate;
 		this.facade = facade;
 		this.customerIDSupplier = customerIDSupplier;
@@ -94,29 +349,81 @@ public class SnapgeneWSClientImpl implements SnapgeneWSClient {
 
 	@PostConstruct
 	public void init() {
-		statusUri = doBuild("status");
-		exportSvgUri = doBuild("exportSvg");
-		exportPngUri = doBuild("exportPng");
-		importDnaFile = doBuild("importDNAFile");
-		exportDnaFile = doBuild("exportDNAFile");
-		reportEnzymes = doBuild("reportEnzymes");
-		reportORFs = doBuild("reportORFs");
 		if (StringUtils.isBlank(customerID) || customerID.equals("UNDEFINED_CUSTOMER")) {
 			this.customerID = customerIDSupplier.get();
 		}
+		cluster.startProbing(this::probe);
+	}
+
+	/**
+	 * Releases pooled HTTP connections, hedging and health probe threads, if
+	 * any.
+	 */
+	@PreDestroy
+	public void destroy() throws IOException {
+		if (healthMonitor != null) {
+			healthMonitor.close();
+		}
+		cluster.close();
+		if (hedgeExecutor != null) {
+			hedgeExecutor.shutdownNow();
+		}
+		if (transport != null) {
+			transport.close();
+		}
+	}
+
+	/**
+	 * @return HTTP connection pool utilisation, or empty if the transport is not
+	 *         pooled
+	 */
+	public Optional<TransportPoolStats> getTransportPoolStats() {
+		return transport == null ? Optional.empty() : transport.getPoolStats();
 	}
 
-	private URI doBuild(String path) {
-		return baseUri().path("/snapgene/" + path).build().encode().toUri();
+	/**
+	 * @return the Snapgene servers used by this client, with their load and
+	 *         health
+	 */
+	public SnapgeneCluster getCluster() {
+		return cluster;
+	}
+
+	// health probes bypass resilience policies, limiters and metrics
+	private boolean probe(SnapgeneNode node) {
+		return template.getForEntity(node.getUri(SnapgeneEndpoint.STATUS), String.class).getStatusCode()
+				.is2xxSuccessful();
 	}
 
-	private UriComponentsBuilder baseUri() {
-		return UriComponentsBuilder.fromUri(snapgeneServerUrl);
+	// the service is up while any node answers, so nodes are tried in turn, ejected ones last;
+	// each is a single attempt bypassing fail-fast, resilience policies, limiters and hedging
+	private Either<ApiError, String> probeStatus() {
+		List<SnapgeneNode> nodes = new ArrayList<>(cluster.getNodes());
+		nodes.sort(Comparator.comparing(node -> !node.isHealthy()));
+		Either<ApiError, String> result = null;
+		for (SnapgeneNode node : nodes) {
+			result = Try.ofSupplier(
+					() -> template.getForEntity(node.getUri(SnapgeneEndpoint.STATUS), String.class).getBody())
+					.toEither().mapLeft(SnapgeneErrors::toApiError);
+			if (result.isRight()) {
+				return result;
+			}
+		}
+		return result;
 	}
 
 	@Override
 	public Either<ApiError, String> status() {
-		return makeApiCall(() -> template.getForEntity(statusUri, String.class));
+		return hedged(SnapgeneEndpoint.STATUS, () -> onNode(cluster.acquire(), node -> makeApiCall(
+				SnapgeneEndpoint.STATUS, () -> template.getForEntity(node.getUri(SnapgeneEndpoint.STATUS), String.class))));
+	}
+
+	private <T> T onNode(SnapgeneNode node, Function<SnapgeneNode, T> call) {
+		try {
+			return call.apply(node);
+		} finally {
+			cluster.release(node);
+		}
 	}
 
 	/**
@@ -127,11 +434,9 @@ public class SnapgeneWSClientImpl implements SnapgeneWSClient {
 	 *         getOutputFileName() set if successful.
 	 */
 	@Override
-	public Either<ApiError, SnapgeneResponse> convertToSvgFile(File file, GenerateSVGMapConfig config) {
-		LinkedMultiValueMap<String, Object> map = createFileMap(file, config);
-		HttpEntity<LinkedMultiValueMap<String, Object>> requestEntity = createFilePostRequestEntity(map);
-		return makeApiCall(
-				() -> template.exchange(exportSvgUri, HttpMethod.POST, requestEntity, SnapgeneResponse.class));
+	public Either<ApiError, SnapgeneResponse> convertToSvgFile(SnapgeneInput input, GenerateSVGMapConfig config) {
+		return renderViaCache(renderKey(RENDER_SVG, input, config),
+				() -> upload(SnapgeneEndpoint.EXPORT_SVG, input, config, SnapgeneResponse.class));
 	}
 
 	/**
@@ -141,11 +446,36 @@ public class SnapgeneWSClientImpl implements SnapgeneWSClient {
 	 *         getOutputFileName() set if successful
 	 */
 	@Override
-	public Either<ApiError, SnapgeneResponse> convertToPngFile(File file, GeneratePngMapConfig config) {
-		LinkedMultiValueMap<String, Object> map = createFileMap(file, config);
-		HttpEntity<LinkedMultiValueMap<String, Object>> requestEntity = createFilePostRequestEntity(map);
-		return makeApiCall(
-				() -> template.exchange(exportPngUri, HttpMethod.POST, requestEntity, SnapgeneResponse.class));
+	public Either<ApiError, SnapgeneResponse> convertToPngFile(SnapgeneInput input, GeneratePngMapConfig config) {
+		return renderViaCache(renderKey(RENDER_PNG, input, config),
+				() -> upload(SnapgeneEndpoint.EXPORT_PNG, input, config, SnapgeneResponse.class));
+	}
+
+	// serves a cached render response if available, else renders and records the response
+	private Either<ApiError, SnapgeneResponse> renderViaCache(Optional<RenderKey> key,
+			Supplier<Either<ApiError, SnapgeneResponse>> render) {
+		if (!key.isPresent()) {
+			return render.get();
+		}
+		Optional<SnapgeneResponse> cached = renderCache.getResponse(key.get());
+		if (cached.isPresent()) {
+			log.debug("Using cached render {}", key.get());
+			return Either.right(cached.get());
+		}
+		return render.get().peek(response -> renderCache.putResponse(key.get(), response));
+	}
+
+	// empty if there is no render cache or the input can't be hashed
+	private Optional<RenderKey> renderKey(String renderType, SnapgeneInput input, Object config) {
+		if (renderCache == null || !input.isReplayable()) {
+			return Optional.empty();
+		}
+		try {
+			return Optional.of(RenderKey.of(renderType, input.contentHash(), config));
+		} catch (IOException e) {
+			log.warn("Could not hash {}, bypassing render cache - {}", input.describe(), e.getMessage());
+			return Optional.empty();
+		}
 	}
 
 	/**
@@ -155,14 +485,22 @@ public class SnapgeneWSClientImpl implements SnapgeneWSClient {
 	 *         set if successful
 	 */
 	@Override
-	public Either<ApiError, String> enzymes(File file, ReportEnzymesConfig config) {
-		Either<ApiError, File> nativeDnaFile = convertToNativeFileIfNeeded(file);
-		if (nativeDnaFile.isLeft()) {
-			return Either.left(nativeDnaFile.getLeft());
-		}
-		LinkedMultiValueMap<String, Object> map = createFileMap(nativeDnaFile.get(), config);
-		HttpEntity<LinkedMultiValueMap<String, Object>> requestEntity = createFilePostRequestEntity(map);
-		return makeApiCall(() -> template.exchange(reportEnzymes, HttpMethod.POST, requestEntity, String.class));
+	public Either<ApiError, String> enzymes(SnapgeneInput input, ReportEnzymesConfig config) {
+		return withNativeInput(input, dna -> upload(SnapgeneEndpoint.REPORT_ENZYMES, dna, config, String.class));
+	}
+
+	/**
+	 * Scans a FASTA, GenBank, EMBL or native .dna file for restriction sites
+	 * in-process, without a server call, see {@link EnzymeFinder}. The bundled
+	 * enzyme database is not the server's, so results differ from
+	 * {@link #enzymes(SnapgeneInput, ReportEnzymesConfig)}.
+	 * 
+	 * @return sites ordered by start position, or a 501 error if the format can
+	 *         only be read by the server
+	 */
+	public Either<ApiError, List<RestrictionSite>> restrictionSites(SnapgeneInput input,
+			EnzymeSearchOptions options) {
+		return readLocally(input).map(sequence -> EnzymeFinder.find(sequence, options));
 	}
 
 	/**
@@ -172,18 +510,41 @@ public class SnapgeneWSClientImpl implements SnapgeneWSClient {
 	 *         set if successful
 	 */
 	@Override
-	public Either<ApiError, String> orfs(File file, ReportORFsConfig config) {
-		Either<ApiError, File> nativeDnaFile = convertToNativeFileIfNeeded(file);
-		if (nativeDnaFile.isLeft()) {
-			return Either.left(nativeDnaFile.getLeft());
-		}
-		LinkedMultiValueMap<String, Object> map = createFileMap(nativeDnaFile.get(), config);
-		HttpEntity<LinkedMultiValueMap<String, Object>> requestEntity = createFilePostRequestEntity(map);
-		return makeApiCall(() -> template.exchange(reportORFs, HttpMethod.POST, requestEntity, String.class));
+	public Either<ApiError, String> orfs(SnapgeneInput input, ReportORFsConfig config) {
+		return withNativeInput(input, dna -> upload(SnapgeneEndpoint.REPORT_ORFS, dna, config, String.class));
 	}
 
-	private Either<ApiError, File> convertToNativeFileIfNeeded(File file) {
-		return Try.ofCallable(() -> doConvertToNativeFileIfRequired(file))
+	/**
+	 * Searches a FASTA, GenBank, EMBL or native .dna file for open reading
+	 * frames in-process, without a server call, see {@link OrfFinder}. Use
+	 * {@link OrfSearchOptions#from(ReportORFsConfig)} to search the frames of
+	 * an {@link #orfs(SnapgeneInput, ReportORFsConfig)} request.
+	 * 
+	 * @return ORFs ordered by start position, or a 501 error if the format can
+	 *         only be read by the server
+	 */
+	public Either<ApiError, List<OpenReadingFrame>> openReadingFrames(SnapgeneInput input,
+			OrfSearchOptions options) {
+		return readLocally(input).map(sequence -> OrfFinder.find(sequence, options));
+	}
+
+	// the sequence of a file that can be read in-process, without import
+	private Either<ApiError, DnaSequence> readLocally(SnapgeneInput input) {
+		return detectFormat(input).flatMap(format -> {
+			try {
+				return LocalSequenceReader.read(input, format).<Either<ApiError, DnaSequence>>map(Either::right)
+						.orElseGet(() -> Either.left(new ApiError(HttpStatus.NOT_IMPLEMENTED, 501,
+								"Not supported locally", format + " files can only be analysed by the server")));
+			} catch (IOException e) {
+				return Either.left(new ApiError(HttpStatus.BAD_REQUEST, 400, e.getMessage(),
+						"Could not read sequence file - IO exception before analysis"));
+			}
+		});
+	}
+
+	@Override
+	public Either<ApiError, SnapgeneInput> convertToNativeFileIfRequired(SnapgeneInput input) {
+		return Try.ofCallable(() -> doConvertToNativeFileIfRequired(input))
 				.getOrElseGet(e -> Either.left(new ApiError(HttpStatus.BAD_REQUEST, 400, e.getMessage(),
 						"Could not convert file to native .dna file - IO exception before sending")));
 	}
@@ -196,15 +557,8 @@ public class SnapgeneWSClientImpl implements SnapgeneWSClient {
 	 *         getOutputFileName() set if successful
 	 */
 	@Override
-	public Either<ApiError, SnapgeneResponse> exportDnaFile(File file, ExportDnaFileConfig config) {
-		Either<ApiError, File> nativeDnaFile = convertToNativeFileIfNeeded(file);
-		if (nativeDnaFile.isLeft()) {
-			return Either.left(nativeDnaFile.getLeft());
-		}
-		LinkedMultiValueMap<String, Object> map = createFileMap(nativeDnaFile.get(), config);
-		HttpEntity<LinkedMultiValueMap<String, Object>> requestEntity = createFilePostRequestEntity(map);
-		return makeApiCall(
-				() -> template.exchange(exportDnaFile, HttpMethod.POST, requestEntity, SnapgeneResponse.class));
+	public Either<ApiError, SnapgeneResponse> exportDnaFile(SnapgeneInput input, ExportDnaFileConfig config) {
+		return withNativeInput(input, dna -> upload(SnapgeneEndpoint.EXPORT_DNA_FILE, dna, config, SnapgeneResponse.class));
 	}
 
 	/**
@@ -214,18 +568,238 @@ public class SnapgeneWSClientImpl implements SnapgeneWSClient {
 	 *         getOutputFileName() set if successful
 	 */
 	@Override
-	public Either<ApiError, SnapgeneResponse> importDnaFile(File file) {
-		LinkedMultiValueMap<String, Object> map = createFileMap(file, buildImportDnaConfig());
-		HttpEntity<LinkedMultiValueMap<String, Object>> requestEntity = createFilePostRequestEntity(map);
-		return makeApiCall(
-				() -> template.exchange(importDnaFile, HttpMethod.POST, requestEntity, SnapgeneResponse.class));
+	public Either<ApiError, SnapgeneResponse> importDnaFile(SnapgeneInput input) {
+		return detectFormat(input).flatMap(format -> importDnaFile(input, format));
+	}
+
+	private Either<ApiError, SnapgeneResponse> importDnaFile(SnapgeneInput input, SequenceFormat format) {
+		return upload(SnapgeneEndpoint.IMPORT_DNA_FILE, withRecognisedName(input, format), buildImportDnaConfig(),
+				SnapgeneResponse.class);
+	}
+
+	// reads only the first few KB; unrecognised content is rejected here, before any network call
+	private Either<ApiError, SequenceFormat> detectFormat(SnapgeneInput input) {
+		SequenceFormat format;
+		try {
+			format = SequenceFormatDetector.detect(input);
+		} catch (IOException e) {
+			return Either.left(new ApiError(HttpStatus.BAD_REQUEST, 400, e.getMessage(),
+					"Could not read file to detect its format - IO exception before sending"));
+		}
+		if (format == SequenceFormat.UNKNOWN && rejectUnrecognisedFormats) {
+			log.info("Rejecting {} - content is not a recognised sequence format", input.describe());
+			return Either.left(new ApiError(HttpStatus.UNSUPPORTED_MEDIA_TYPE, 415,
+					"Unrecognised sequence file format", input.getFileName() + " is not a recognised sequence file"));
+		}
+		return Either.right(format);
+	}
+
+	// the server goes by file extension, so content in a known format is given a matching one if needed
+	private static SnapgeneInput withRecognisedName(SnapgeneInput input, SequenceFormat format) {
+		String extension = input.getExtension();
+		boolean matches = format.getExtensions().contains(extension)
+				|| (format.isImportable() && SequenceFormat.isKnownExtension(extension) && !input.isNativeDnaFile());
+		if (format == SequenceFormat.UNKNOWN || matches) {
+			return input;
+		}
+		return input.withFileName(input.getFileName() + "." + format.getExtensions().get(0));
 	}
 
 	@Override
 	public Either<ApiError, byte[]> downloadFile(String outputFileName) {
-		URI uri = baseUri().path("/snapgene/downloadFile").queryParam("fileName", outputFileName)
+		Optional<RenderKey> renderKey = renderCache == null ? Optional.empty()
+				: renderCache.getKeyForOutputFile(outputFileName);
+		if (renderKey.isPresent()) {
+			Optional<byte[]> cached = renderCache.get(renderKey.get());
+			if (cached.isPresent()) {
+				return Either.right(cached.get());
+			}
+		}
+		Either<ApiError, byte[]> downloaded = download(outputFileName);
+		renderKey.ifPresent(key -> downloaded.peek(content -> renderCache.put(key, content)));
+		return downloaded;
+	}
+
+	// bypasses the render cache
+	private Either<ApiError, byte[]> download(String outputFileName) {
+		Optional<RequestKey> downloadKey = singleFlight == null ? Optional.empty()
+				: Optional.of(RequestKey.of("downloadFile", outputFileName));
+		return coalesced(downloadKey,
+				() -> hedged(SnapgeneEndpoint.DOWNLOAD_FILE,
+						() -> onNode(cluster.acquireFor(outputFileName), node -> makeApiCall(
+								SnapgeneEndpoint.DOWNLOAD_FILE,
+								() -> template.getForEntity(downloadUri(node, outputFileName), byte[].class))
+										.peek(content -> metrics.recordDownloadBytes(SnapgeneEndpoint.DOWNLOAD_FILE,
+												content.length)))));
+	}
+
+	@Override
+	public Either<ApiError, Long> downloadFile(String outputFileName, Path target) {
+		Optional<byte[]> cached = cachedRender(outputFileName);
+		if (cached.isPresent()) {
+			return writeLocally(() -> {
+				Files.write(target, cached.get());
+				return (long) cached.get().length;
+			});
+		}
+		// each attempt streams into its own part-file, so a retry restarts cleanly
+		return onNode(cluster.acquireFor(outputFileName), node -> makeApiCall(SnapgeneEndpoint.DOWNLOAD_FILE,
+				() -> ResponseEntity.ok(template.execute(downloadUri(node, outputFileName), HttpMethod.GET, null,
+						response -> transferToFile(response.getBody(), target))))
+				.peek(size -> metrics.recordDownloadBytes(SnapgeneEndpoint.DOWNLOAD_FILE, size)));
+	}
+
+	@Override
+	public Either<ApiError, Long> downloadFile(String outputFileName, OutputStream target) {
+		return downloadFile(outputFileName, Channels.newChannel(target));
+	}
+
+	@Override
+	public Either<ApiError, Long> downloadFile(String outputFileName, WritableByteChannel target) {
+		Optional<byte[]> cached = cachedRender(outputFileName);
+		if (cached.isPresent()) {
+			return writeLocally(() -> writeFully(ByteBuffer.wrap(cached.get()), target));
+		}
+		// spool to disk so nothing reaches the caller's stream until download is complete
+		if (scratchSpace != null) {
+			return spoolToScratch(outputFileName, target);
+		}
+		Path spool;
+		try {
+			spool = Files.createTempFile("snapgene-", ".download");
+		} catch (IOException e) {
+			return Either.left(localWriteError(e));
+		}
+		try {
+			return downloadFile(outputFileName, spool).flatMap(size -> writeLocally(() -> transferFromFile(spool, target)));
+		} finally {
+			deleteQuietly(spool);
+		}
+	}
+
+	// the spool is charged to the byte quota as it is written
+	private Either<ApiError, Long> spoolToScratch(String outputFileName, WritableByteChannel target) {
+		try (ScratchFile spool = scratchSpace.allocate(".download")) {
+			return downloadToScratch(outputFileName, response -> {
+				scratchSpace.checkFits(response.getHeaders().getContentLength());
+				return spool.write(response.getBody());
+			}).peek(size -> metrics.recordDownloadBytes(SnapgeneEndpoint.DOWNLOAD_FILE, size))
+					.flatMap(size -> writeLocally(() -> transferFromFile(spool.getPath(), target)));
+		} catch (ScratchQuotaExceededException e) {
+			return Either.left(quotaExceededError(e));
+		} catch (IOException e) {
+			return Either.left(localWriteError(e));
+		}
+	}
+
+	// downloads an intermediate file for a further upload; held in scratch space if configured
+	private Either<ApiError, SnapgeneInput> downloadIntermediate(String outputFileName) {
+		if (scratchSpace == null) {
+			return downloadFile(outputFileName).map(content -> SnapgeneInput.of(outputFileName, content));
+		}
+		return downloadToScratch(outputFileName,
+				response -> scratchSpace.hold(outputFileName, response.getHeaders().getContentLength(),
+						response.getBody()))
+				.peek(input -> metrics.recordDownloadBytes(SnapgeneEndpoint.DOWNLOAD_FILE, input.contentLength()));
+	}
+
+	// quota failures are returned rather than thrown, so they are neither retried nor counted as server faults
+	private <T> Either<ApiError, T> downloadToScratch(String outputFileName, ResponseExtractor<T> write) {
+		ResponseExtractor<Either<ApiError, T>> extractor = response -> {
+			try {
+				return Either.right(write.extractData(response));
+			} catch (ScratchQuotaExceededException e) {
+				return Either.left(quotaExceededError(e));
+			}
+		};
+		return onNode(cluster.acquireFor(outputFileName), node -> makeApiCall(SnapgeneEndpoint.DOWNLOAD_FILE,
+				() -> ResponseEntity.ok(template.execute(downloadUri(node, outputFileName), HttpMethod.GET, null,
+						extractor)))).flatMap(written -> written);
+	}
+
+	private ApiError quotaExceededError(ScratchQuotaExceededException e) {
+		return new ApiError(HttpStatus.INSUFFICIENT_STORAGE, 507, e.getMessage(),
+				"Scratch space quota exceeded - download was not retried");
+	}
+
+	private URI downloadUri(SnapgeneNode node, String outputFileName) {
+		return node.baseUri().path("/snapgene/downloadFile").queryParam("fileName", outputFileName)
 				.queryParam("customerId", customerID).build().encode().toUri();
-		return makeApiCall(() -> template.getForEntity(uri, byte[].class));
+	}
+
+	private Optional<byte[]> cachedRender(String outputFileName) {
+		if (renderCache == null) {
+			return Optional.empty();
+		}
+		return renderCache.getKeyForOutputFile(outputFileName).flatMap(renderCache::get);
+	}
+
+	private static long transferToFile(InputStream body, Path target) throws IOException {
+		Path part = Files.createTempFile(target.toAbsolutePath().getParent(), target.getFileName().toString(), ".part");
+		try {
+			long written = 0;
+			try (ReadableByteChannel in = Channels.newChannel(body);
+					FileChannel out = FileChannel.open(part, StandardOpenOption.WRITE,
+							StandardOpenOption.TRUNCATE_EXISTING)) {
+				long transferred;
+				while ((transferred = out.transferFrom(in, written, TRANSFER_CHUNK_SIZE)) > 0) {
+					written += transferred;
+				}
+			}
+			try {
+				Files.move(part, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+			} catch (AtomicMoveNotSupportedException e) {
+				Files.move(part, target, StandardCopyOption.REPLACE_EXISTING);
+			}
+			return written;
+		} finally {
+			Files.deleteIfExists(part);
+		}
+	}
+
+	private static long transferFromFile(Path source, WritableByteChannel target) throws IOException {
+		try (FileChannel in = FileChannel.open(source, StandardOpenOption.READ)) {
+			long size = in.size();
+			long position = 0;
+			while (position < size) {
+				position += in.transferTo(position, size - position, target);
+			}
+			return size;
+		}
+	}
+
+	private static long writeFully(ByteBuffer content, WritableByteChannel target) throws IOException {
+		long written = 0;
+		while (content.hasRemaining()) {
+			written += target.write(content);
+		}
+		return written;
+	}
+
+	@FunctionalInterface
+	private interface LocalWrite {
+		long write() throws IOException;
+	}
+
+	private Either<ApiError, Long> writeLocally(LocalWrite write) {
+		try {
+			return Either.right(write.write());
+		} catch (IOException e) {
+			return Either.left(localWriteError(e));
+		}
+	}
+
+	private ApiError localWriteError(IOException e) {
+		return new ApiError(HttpStatus.INTERNAL_SERVER_ERROR, 500, e.getMessage(),
+				"Could not write downloaded file - IO exception after receiving");
+	}
+
+	private static void deleteQuietly(Path path) {
+		try {
+			Files.deleteIfExists(path);
+		} catch (IOException e) {
+			log.warn("Could not delete temporary file {} - {}", path, e.getMessage());
+		}
 	}
 
 	/**
@@ -239,65 +813,207 @@ public class SnapgeneWSClientImpl implements SnapgeneWSClient {
 	 * @return Either<ApiError, byte[]>
    */
 	@Override
-	public Either<ApiError, byte[]> uploadAndDownloadPng(File fileToConvert, GeneratePngMapConfig pngConfig)
-			throws FileNotFoundException, IOException {
-		Either<ApiError, File> nativeDnaFile = doConvertToNativeFileIfRequired(fileToConvert);
-		if (nativeDnaFile.isLeft()) {
-			return Either.left(nativeDnaFile.getLeft());
-		}
-		Either<ApiError, SnapgeneResponse> convertToPngResponse = convertToPngFile(nativeDnaFile.get(), pngConfig)
-				.peek(r -> downloadFile(r.getOutputFileName()));
-		if (convertToPngResponse.isLeft()) {
-			log.warn("Conversion to PNG failed - {}", convertToPngResponse.getLeft().getMessage());
-			return convertToPngResponse.map(sr -> new byte[0]);
-		} else {
-			String pngFileName = convertToPngResponse.get().getOutputFileName();
-			return downloadFile(pngFileName);
+	public Either<ApiError, byte[]> uploadAndDownloadPng(SnapgeneInput fileToConvert, GeneratePngMapConfig pngConfig) {
+		return cluster.pinned(() -> renderAndDownload(renderKey(RENDER_PNG, fileToConvert, pngConfig),
+				() -> withNativeInput(fileToConvert,
+						dna -> upload(SnapgeneEndpoint.EXPORT_PNG, dna, pngConfig, SnapgeneResponse.class))));
+	}
+
+	/**
+	 * Facade method which uploads file, converts to DNA if necessary then generates
+	 * an SVG file and downloads it. <br>
+	 * This facade method makes several API calls, returning after the first
+	 * failure.
+	 */
+	@Override
+	public Either<ApiError, byte[]> uploadAndDownloadSvg(SnapgeneInput fileToConvert, GenerateSVGMapConfig svgConfig) {
+		return cluster.pinned(() -> renderAndDownload(renderKey(RENDER_SVG, fileToConvert, svgConfig),
+				() -> withNativeInput(fileToConvert,
+						dna -> upload(SnapgeneEndpoint.EXPORT_SVG, dna, svgConfig, SnapgeneResponse.class))));
+	}
+
+	// each step's output is passed straight to the next step; each file is downloaded once.
+	// The render cache is only looked up and filled here, under the key of the caller's input
+	private Either<ApiError, byte[]> renderAndDownload(Optional<RenderKey> renderKey,
+			Supplier<Either<ApiError, SnapgeneResponse>> render) {
+		if (renderKey.isPresent()) {
+			Optional<byte[]> cached = renderCache.get(renderKey.get());
+			if (cached.isPresent()) {
+				log.debug("Using cached render {}", renderKey.get());
+				return Either.right(cached.get());
+			}
+		}
+		Either<ApiError, SnapgeneResponse> rendered = render.get();
+		if (rendered.isLeft()) {
+			log.warn("Conversion to image failed - {}", rendered.getLeft().getMessage());
+			return Either.left(rendered.getLeft());
 		}
+		Either<ApiError, byte[]> image = download(rendered.get().getOutputFileName());
+		renderKey.ifPresent(key -> image.peek(content -> renderCache.put(key, content)));
+		return image;
+	}
 
+	// first step of multi-step calls: the native .dna content is handed directly to the next upload,
+	// on the same node, and any scratch space it holds is released once that upload completes
+	private <T> Either<ApiError, T> withNativeInput(SnapgeneInput input,
+			Function<SnapgeneInput, Either<ApiError, T>> next) {
+		return cluster.pinned(() -> {
+			Either<ApiError, SnapgeneInput> nativeInput = convertToNativeFileIfRequired(input);
+			try {
+				return nativeInput.flatMap(next);
+			} finally {
+				if (nativeInput.isRight() && nativeInput.get() != input) {
+					nativeInput.get().close();
+				}
+			}
+		});
 	}
 
 	// if is not already a native file, will convert to .dna and return a .dna file.
-	private Either<ApiError, File> doConvertToNativeFileIfRequired(File fileToConvert)
+	private Either<ApiError, SnapgeneInput> doConvertToNativeFileIfRequired(SnapgeneInput fileToConvert)
 			throws IOException {
-		File nativeDnaFile;
-		if (isAlreadyANativeSnapgeneFile(fileToConvert)) {
-			log.info("{} is already a .dna file", fileToConvert.getAbsolutePath());
-			nativeDnaFile = fileToConvert;
+		Either<ApiError, SequenceFormat> format = detectFormat(fileToConvert);
+		if (format.isLeft()) {
+			return Either.left(format.getLeft());
+		}
+		SnapgeneInput nativeDnaFile;
+		if (isAlreadyANativeSnapgeneFile(fileToConvert, format.get())) {
+			log.info("{} is already a .dna file", fileToConvert.describe());
+			nativeDnaFile = withRecognisedName(fileToConvert, format.get());
 		} else {
-			Either<ApiError, SnapgeneResponse> resp = importDnaFile(fileToConvert);
+			if (importMode.triesLocal() && DnaFileImporter.canImport(format.get())
+					&& (fileToConvert.isReplayable() || importMode == LocalEngineMode.LOCAL)) {
+				Either<ApiError, SnapgeneInput> local = importLocally(fileToConvert, format.get());
+				if (local.isRight() || importMode == LocalEngineMode.LOCAL) {
+					return local;
+				}
+				log.debug("Local import not possible for {} - {}", fileToConvert.describe(),
+						local.getLeft().getMessage());
+			}
+			String contentHash = null;
+			if (conversionCache != null && fileToConvert.isReplayable()) {
+				contentHash = fileToConvert.contentHash();
+				Optional<InputStream> cached = conversionCache.open(contentHash);
+				if (cached.isPresent()) {
+					log.info("Using cached .dna conversion of {}", fileToConvert.describe());
+					return Either.right(holdCachedConversion(contentHash + DnaConversionCache.SUFFIX, cached.get()));
+				}
+			}
+			Either<ApiError, SnapgeneResponse> resp = importDnaFile(fileToConvert, format.get());
 			if (resp.isLeft()) {
 				log.warn("Importing non-native file failed - {}", resp.getLeft().getMessage());
 				return Either.left(resp.getLeft());
 			}
 
 			String dnaOutfileName = resp.get().getOutputFileName();
-			Either<ApiError, byte[]> nativeDnaFileEither = downloadFile(dnaOutfileName);
+			Either<ApiError, SnapgeneInput> nativeDnaFileEither = downloadIntermediate(dnaOutfileName);
 
 			if (nativeDnaFileEither.isLeft()) {
 				log.warn("Downloading converted file failed - {}", nativeDnaFileEither.getLeft().getMessage());
 				return Either.left(nativeDnaFileEither.getLeft());
-			} else {
-				FileUtils.getTempDirectory();
-				nativeDnaFile = new File(FileUtils.getTempDirectory(), dnaOutfileName);
-				IOUtils.write(nativeDnaFileEither.get(), new FileOutputStream(nativeDnaFile));
+			}
+			// kept in memory, or in scratch space if configured, for the next upload
+			nativeDnaFile = nativeDnaFileEither.get();
+			if (contentHash != null) {
+				try (InputStream content = nativeDnaFile.openStream()) {
+					conversionCache.put(contentHash, content);
+				} catch (IOException e) {
+					nativeDnaFile.close();
+					throw e;
+				}
 			}
 		}
 		return Either.right(nativeDnaFile);
 	}
 
-	private boolean isAlreadyANativeSnapgeneFile(File fileToConvert) {
-		return FilenameUtils.getExtension(fileToConvert.getName()).equalsIgnoreCase("dna");
+	// copied out of the conversion cache, so a later eviction can't delete it before it's uploaded
+	private SnapgeneInput holdCachedConversion(String fileName, InputStream cached) throws IOException {
+		try (InputStream content = cached) {
+			return scratchSpace == null ? SnapgeneInput.of(fileName, IOUtils.toByteArray(content))
+					: scratchSpace.hold(fileName, -1, content);
+		}
 	}
 
-	private HttpEntity<LinkedMultiValueMap<String, Object>> createFilePostRequestEntity(
+	// in memory, or in scratch space if configured and the input is large
+	private Either<ApiError, SnapgeneInput> importLocally(SnapgeneInput input, SequenceFormat format) {
+		String fileName = FilenameUtils.getBaseName(input.getFileName()) + ".dna";
+		try {
+			if (scratchSpace == null || scratchSpace.fitsInMemory(input.contentLength())) {
+				return Either.right(SnapgeneInput.of(fileName, DnaFileImporter.toBytes(input, format)));
+			}
+			ScratchFile file = scratchSpace.allocate(".dna");
+			try {
+				DnaFileImporter.toFile(input, format, file.getPath());
+				file.recordSize();
+				return Either.right(SnapgeneInput.of(fileName, file));
+			} catch (IOException | RuntimeException e) {
+				file.close();
+				throw e;
+			}
+		} catch (IOException e) {
+			return Either.left(new ApiError(HttpStatus.BAD_REQUEST, 400, e.getMessage(),
+					"Could not convert file to native .dna file locally"));
+		}
+	}
+
+	// by content; by extension only if the content wasn't recognised and rejection is disabled
+	private boolean isAlreadyANativeSnapgeneFile(SnapgeneInput fileToConvert, SequenceFormat format) {
+		return format.isNative() || (format == SequenceFormat.UNKNOWN && fileToConvert.isNativeDnaFile());
+	}
+
+	// package-private for benchmarks
+	HttpEntity<LinkedMultiValueMap<String, Object>> createFilePostRequestEntity(
 			LinkedMultiValueMap<String, Object> map) {
 		return new HttpEntity<>(map);
 	}
 
-	private LinkedMultiValueMap<String, Object> createFileMap(File file, Object config) {
+	private <T> Either<ApiError, T> upload(SnapgeneEndpoint endpoint, SnapgeneInput input, Object config,
+			Class<T> responseType) {
+		return coalesced(requestKey(endpoint, input, config), () -> {
+			LinkedMultiValueMap<String, Object> map = createFileMap(input, config);
+			HttpEntity<LinkedMultiValueMap<String, Object>> requestEntity = createFilePostRequestEntity(map);
+			long size = input.contentLength();
+			if (size >= 0) {
+				metrics.recordUploadBytes(endpoint, size);
+			}
+			return onNode(cluster.acquire(), node -> makeApiCall(endpoint,
+					() -> template.exchange(node.getUri(endpoint), HttpMethod.POST, requestEntity, responseType))
+							.peek(response -> recordOutputNode(response, node)));
+		});
+	}
+
+	// so the output file is later downloaded from the node that produced it
+	private void recordOutputNode(Object response, SnapgeneNode node) {
+		if (response instanceof SnapgeneResponse) {
+			cluster.recordOutput(((SnapgeneResponse) response).getOutputFileName(), node);
+		}
+	}
+
+	private <T> Either<ApiError, T> hedged(SnapgeneEndpoint endpoint, Supplier<Either<ApiError, T>> call) {
+		RequestHedger hedger = hedgers.get(endpoint);
+		return hedger == null ? call.get() : hedger.execute(call);
+	}
+
+	private <T> Either<ApiError, T> coalesced(Optional<RequestKey> key, Supplier<Either<ApiError, T>> call) {
+		return key.isPresent() ? singleFlight.execute(key.get(), call) : call.get();
+	}
+
+	// empty if coalescing is off or the input can't be hashed
+	private Optional<RequestKey> requestKey(SnapgeneEndpoint endpoint, SnapgeneInput input, Object config) {
+		if (singleFlight == null || !input.isReplayable()) {
+			return Optional.empty();
+		}
+		try {
+			return Optional.of(RequestKey.of(endpoint.getPath(), input, config));
+		} catch (IOException e) {
+			log.warn("Could not hash {}, not coalescing - {}", input.describe(), e.getMessage());
+			return Optional.empty();
+		}
+	}
+
+	LinkedMultiValueMap<String, Object> createFileMap(SnapgeneInput input, Object config) {
 		LinkedMultiValueMap<String, Object> map = new LinkedMultiValueMap<>();
-		map.add("file", new FileSystemResource(file.getAbsolutePath()));
+		map.add("file", input.asResource());
 		map.add("cfg", config);
 		map.add("customerId", customerID);
 		return map;
@@ -307,8 +1023,67 @@ public class SnapgeneWSClientImpl implements SnapgeneWSClient {
 		return ImportDnaFileConfig.builder().build();
 	}
 
-	private <T> Either<ApiError, T> makeApiCall(Supplier<ResponseEntity<T>> restClient) {
-		return facade.makeApiCall(restClient);
+	private <T> Either<ApiError, T> makeApiCall(SnapgeneEndpoint endpoint, Supplier<ResponseEntity<T>> restClient) {
+		SnapgeneHealthMonitor monitor = healthMonitor;
+		if (monitor != null && monitor.shouldFailFast()) {
+			return Either.left(new ApiError(HttpStatus.SERVICE_UNAVAILABLE, 503, "Snapgene unavailable",
+					"Snapgene service is down according to the health monitor - request was not sent"));
+		}
+		AdaptiveConcurrencyLimiter limiter = limiters.get(endpoint);
+		if (limiter != null && !acquirePermit(limiter)) {
+			metrics.recordLimiterRejection(endpoint);
+			return Either.left(new ApiError(HttpStatus.SERVICE_UNAVAILABLE, 503,
+					"Too many concurrent requests to " + endpoint.getPath(),
+					"Concurrency limit reached - request was not sent"));
+		}
+		try {
+			return doMakeApiCall(endpoint, limiter, restClient);
+		} finally {
+			if (limiter != null) {
+				limiter.release();
+			}
+		}
+	}
+
+	private <T> Either<ApiError, T> doMakeApiCall(SnapgeneEndpoint endpoint, AdaptiveConcurrencyLimiter limiter,
+			Supplier<ResponseEntity<T>> restClient) {
+		AtomicInteger attempts = new AtomicInteger();
+		AtomicInteger lastStatus = new AtomicInteger();
+		long start = System.nanoTime();
+		// the facade or policy retries this supplier, so each invocation is one attempt
+		Supplier<ResponseEntity<T>> attempt = () -> {
+			attempts.incrementAndGet();
+			long attemptStart = System.nanoTime();
+			try {
+				ResponseEntity<T> response = restClient.get();
+				lastStatus.set(response.getStatusCodeValue());
+				if (limiter != null) {
+					limiter.onSample(System.nanoTime() - attemptStart, false);
+				}
+				return response;
+			} catch (RuntimeException e) {
+				if (limiter != null) {
+					limiter.onSample(System.nanoTime() - attemptStart, SnapgeneErrors.isOverload(e));
+				}
+				throw e;
+			}
+		};
+		Either<ApiError, T> result = resiliencePolicies != null
+				? resiliencePolicies.forEndpoint(endpoint).makeApiCall(attempt)
+				: facade.makeApiCall(attempt);
+		int httpStatus = result.isRight() ? lastStatus.get() : result.getLeft().getHttpCode();
+		metrics.recordCall(new SnapgeneCallRecord(endpoint, Duration.ofNanos(System.nanoTime() - start),
+				attempts.get(), httpStatus, result.isRight()));
+		return result;
+	}
+
+	private static boolean acquirePermit(AdaptiveConcurrencyLimiter limiter) {
+		try {
+			return limiter.tryAcquire();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return false;
+		}
 	}
 
 }
@@ -0,0 +1,27 @@
+package com.researchspace.snapgene.wclient;
+
+import lombok.Value;
+
+/**
+ * Point-in-time connection pool utilisation of a pooled
+ * {@link SnapgeneTransport}.
+ */
+@Value
+public class TransportPoolStats {
+	/**
+	 * Connections currently in use
+	 */
+	int leased;
+	/**
+	 * Open connections idle in the pool
+	 */
+	int available;
+	/**
+	 * Requests waiting for a connection
+	 */
+	int pending;
+	/**
+	 * Maximum connections in total
+	 */
+	int max;
+}
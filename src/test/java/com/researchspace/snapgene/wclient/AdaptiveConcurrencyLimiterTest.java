@@ -0,0 +1,122 @@
+package com.researchspace.snapgene.wclient;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+import com.researchspace.apiutils.ApiError;
+import com.researchspace.snapgene.wclient.FakeSnapgeneServer.Behaviour;
+import com.researchspace.snapgene.wclient.FakeSnapgeneServer.LatencyModel;
+
+import io.vavr.control.Either;
+
+class AdaptiveConcurrencyLimiterTest {
+
+	static final long FAST = TimeUnit.MILLISECONDS.toNanos(10);
+
+	@Test
+	void limitGrowsWhileUsedAndShrinksOnOverload() throws InterruptedException {
+		AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(
+				ConcurrencyLimitConfig.builder().initialLimit(2).maxLimit(4).build());
+		assertTrue(limiter.tryAcquire());
+		assertTrue(limiter.tryAcquire());
+		for (int i = 0; i < 5; i++) {
+			limiter.onSample(FAST, false);
+		}
+		assertEquals(4, limiter.getLimit(), "capped at maxLimit");
+
+		limiter.onSample(FAST, true);
+		assertEquals(3, limiter.getLimit());
+		limiter.onSample(TimeUnit.SECONDS.toNanos(10), false);
+		assertEquals(3, limiter.getLimit(), "slow call: 3.6 * 0.9 = 3.24");
+		for (int i = 0; i < 50; i++) {
+			limiter.onSample(FAST, true);
+		}
+		assertEquals(1, limiter.getLimit(), "never below minLimit");
+	}
+
+	@Test
+	void limitDoesNotGrowWhenUnderused() {
+		AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(
+				ConcurrencyLimitConfig.builder().initialLimit(10).build());
+		limiter.onSample(FAST, false);
+		assertEquals(10, limiter.getLimit());
+	}
+
+	@Test
+	void rejectsWhenQueueFullOrTimedOut() throws Exception {
+		AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(ConcurrencyLimitConfig.builder()
+				.initialLimit(1).maxLimit(1).maxQueueSize(1).queueTimeoutMillis(200).build());
+		assertTrue(limiter.tryAcquire());
+		ExecutorService executor = SnapgeneExecutors.fixed(1);
+		try {
+			Future<Boolean> queued = executor.submit(limiter::tryAcquire);
+			waitUntilQueued(limiter, 1);
+			assertFalse(limiter.tryAcquire(), "queue is full");
+			assertFalse(queued.get(5, TimeUnit.SECONDS), "timed out in queue");
+			assertEquals(2, limiter.getRejectedCount());
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	@Test
+	void queuedCallerGetsReleasedPermit() throws Exception {
+		AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(
+				ConcurrencyLimitConfig.builder().initialLimit(1).maxLimit(1).build());
+		assertTrue(limiter.tryAcquire());
+		ExecutorService executor = SnapgeneExecutors.fixed(1);
+		try {
+			Future<Boolean> queued = executor.submit(limiter::tryAcquire);
+			waitUntilQueued(limiter, 1);
+			limiter.release();
+			assertTrue(queued.get(5, TimeUnit.SECONDS));
+			assertEquals(1, limiter.getInFlight());
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	@Test
+	void clientRejectsCallsOverTheLimitWithoutSendingThem() throws Exception {
+		try (FakeSnapgeneServer server = new FakeSnapgeneServer(
+				Behaviour.builder().latency(LatencyModel.fixed(300)).build())) {
+			SnapgeneWSClientImpl client = new SnapgeneWSClientImpl(server.getUri(),
+					SnapgeneTransportConfig.defaults(), () -> "AdaptiveConcurrencyLimiterTest");
+			client.init();
+			AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(
+					ConcurrencyLimitConfig.builder().initialLimit(1).maxLimit(1).maxQueueSize(0).build());
+			client.setConcurrencyLimiter(limiter, SnapgeneEndpoint.STATUS);
+			try {
+				CompletableFuture<Either<ApiError, String>> first = CompletableFuture.supplyAsync(client::status);
+				while (limiter.getInFlight() == 0) {
+					Thread.sleep(5);
+				}
+				Either<ApiError, String> second = client.status();
+
+				assertEquals(503, second.getLeft().getHttpCode());
+				assertTrue(first.get(5, TimeUnit.SECONDS).isRight());
+				assertEquals(1, server.getRequestCount("status"));
+				assertEquals(0, limiter.getInFlight());
+			} finally {
+				client.destroy();
+			}
+		}
+	}
+
+	private static void waitUntilQueued(AdaptiveConcurrencyLimiter limiter, int expected)
+			throws InterruptedException {
+		long deadline = System.currentTimeMillis() + 5000;
+		while (limiter.getQueued() < expected && System.currentTimeMillis() < deadline) {
+			Thread.sleep(5);
+		}
+	}
+
+}
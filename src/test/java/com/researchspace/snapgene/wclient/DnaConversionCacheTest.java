@@ -0,0 +1,141 @@
+package com.researchspace.snapgene.wclient;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.file.Path;
+import java.util.Optional;
+
+import org.apache.commons.io.IOUtils;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.client.RestTemplate;
+
+import com.researchspace.apiutils.ApiError;
+import com.researchspace.apiutils.rest.utils.SimpleResilienceFacade;
+import com.researchspace.zmq.snapgene.requests.EnzymeSet;
+import com.researchspace.zmq.snapgene.requests.ReportEnzymesConfig;
+import com.researchspace.zmq.snapgene.responses.SnapgeneResponse;
+
+import io.vavr.control.Either;
+
+@ExtendWith(MockitoExtension.class)
+class DnaConversionCacheTest {
+
+	@TempDir
+	Path cacheDir;
+	@Mock
+	RestTemplate template;
+	File testGenbank = new File("src/test/resources/alpha-2-macroglobulin.gb");
+
+	SnapgeneWSClientImpl wsClient;
+
+	@BeforeEach
+	void before() throws URISyntaxException {
+		wsClient = new SnapgeneWSClientImpl(new URI("http://somewhere.com"), template,
+				new SimpleResilienceFacade(10, 20), () -> "DnaConversionCacheTest");
+		wsClient.init();
+	}
+
+	@Test
+	void evictsLeastRecentlyUsed() throws IOException {
+		DnaConversionCache cache = new DnaConversionCache(cacheDir, 10);
+		cache.put("a", new byte[4]);
+		cache.put("b", new byte[4]);
+		// access 'a' so 'b' becomes eldest
+		assertTrue(isCached(cache, "a"));
+		cache.put("c", new byte[4]);
+
+		assertTrue(isCached(cache, "a"));
+		assertFalse(isCached(cache, "b"));
+		assertTrue(isCached(cache, "c"));
+		assertEquals(8, cache.getSizeBytes());
+		assertFalse(cacheDir.resolve("b" + DnaConversionCache.SUFFIX).toFile().exists());
+	}
+
+	@Test
+	void openedEntryStaysReadableWhenEvicted() throws IOException {
+		DnaConversionCache cache = new DnaConversionCache(cacheDir, 10);
+		cache.put("a", new byte[] { 1, 2, 3, 4 });
+		try (InputStream a = cache.open("a").get()) {
+			cache.put("b", new byte[8]);
+			assertFalse(isCached(cache, "a"));
+			assertArrayEquals(new byte[] { 1, 2, 3, 4 }, IOUtils.toByteArray(a));
+		}
+	}
+
+	@Test
+	void replacedEntryIsNotEvictedFirst() throws IOException {
+		DnaConversionCache cache = new DnaConversionCache(cacheDir, 10);
+		cache.put("a", new byte[4]);
+		cache.put("b", new byte[4]);
+		cache.put("a", new byte[7]);
+		assertTrue(isCached(cache, "a"));
+		assertFalse(isCached(cache, "b"));
+		assertEquals(7, cache.getSizeBytes());
+	}
+
+	@Test
+	void reloadsIndexFromDisk() throws IOException {
+		DnaConversionCache cache = new DnaConversionCache(cacheDir, 100);
+		cache.put("a", new byte[4]);
+		cache.put("b", new byte[5]);
+
+		DnaConversionCache reloaded = new DnaConversionCache(cacheDir, 100);
+		assertEquals(2, reloaded.getEntryCount());
+		assertEquals(9, reloaded.getSizeBytes());
+		assertTrue(isCached(reloaded, "b"));
+	}
+
+	@Test
+	void repeatedConversionOfSameFileImportsOnce() throws IOException {
+		wsClient.setConversionCache(new DnaConversionCache(cacheDir, 1_000_000));
+		SnapgeneResponse importResponse = Mockito.mock(SnapgeneResponse.class);
+		Mockito.when(importResponse.getOutputFileName()).thenReturn("converted.dna");
+		Mockito.when(template.exchange(any(URI.class), eq(HttpMethod.POST), any(HttpEntity.class),
+				eq(SnapgeneResponse.class))).thenReturn(ResponseEntity.ok(importResponse));
+		Mockito.when(template.getForEntity(any(URI.class), eq(byte[].class)))
+				.thenReturn(ResponseEntity.ok(new byte[] { 9, 0, 0, 0, 14 }));
+		Mockito.when(template.exchange(any(URI.class), eq(HttpMethod.POST), any(HttpEntity.class), eq(String.class)))
+				.thenReturn(ResponseEntity.ok("{}"));
+
+		for (int i = 0; i < 3; i++) {
+			Either<ApiError, String> resp = wsClient.enzymes(testGenbank,
+					new ReportEnzymesConfig(EnzymeSet.UNIQUE_AND_DUAL));
+			assertTrue(resp.isRight());
+		}
+
+		Mockito.verify(template, Mockito.times(1)).exchange(any(URI.class), eq(HttpMethod.POST),
+				any(HttpEntity.class), eq(SnapgeneResponse.class));
+		Mockito.verify(template, Mockito.times(1)).getForEntity(any(URI.class), eq(byte[].class));
+		Mockito.verify(template, Mockito.times(3)).exchange(any(URI.class), eq(HttpMethod.POST),
+				any(HttpEntity.class), eq(String.class));
+	}
+
+	private static boolean isCached(DnaConversionCache cache, String contentHash) throws IOException {
+		Optional<InputStream> content = cache.open(contentHash);
+		if (content.isPresent()) {
+			content.get().close();
+		}
+		return content.isPresent();
+	}
+
+}
@@ -0,0 +1,190 @@
+package com.researchspace.snapgene.wclient;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.core.io.Resource;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.ResponseEntity;
+import org.springframework.util.LinkedMultiValueMap;
+import org.springframework.web.client.RestTemplate;
+
+import com.researchspace.apiutils.rest.utils.SimpleResilienceFacade;
+import com.researchspace.zmq.snapgene.requests.GeneratePngMapConfig;
+import com.researchspace.zmq.snapgene.responses.SnapgeneResponse;
+
+@ExtendWith(MockitoExtension.class)
+class DnaFileImporterTest {
+
+	@Mock
+	RestTemplate template;
+	SnapgeneWSClientImpl wsClient;
+	Path resources = Paths.get("src/test/resources");
+
+	@BeforeEach
+	void before() throws URISyntaxException {
+		wsClient = new SnapgeneWSClientImpl(new URI("http://somewhere.com"), template,
+				new SimpleResilienceFacade(10, 20), () -> "DnaFileImporterTest");
+		wsClient.init();
+	}
+
+	@Test
+	void importsGenbankSequenceAndFeatures() throws IOException {
+		SnapgeneFile imported = importResource("alpha-2-macroglobulin.gb", SequenceFormat.GENBANK);
+		SnapgeneFile exported = SnapgeneFile.open(resources.resolve("alpha-2-macroglobulin.dna"));
+		assertEquals(exported.length(), imported.length());
+		assertFalse(imported.isCircular());
+		assertEquals(upper(exported.getSequence().getBases()), upper(imported.getSequence().getBases()));
+		assertEquals(exported.getFeatures().size(), imported.getFeatures().size());
+
+		SequenceFeature gene = imported.getFeatures().get(1);
+		assertEquals("A2M", gene.getName());
+		assertEquals("gene", gene.getType());
+		assertEquals(4734, gene.getStart());
+		assertEquals(53255, gene.getEnd());
+		assertEquals("A2MD; CPAMD5; FWP007; S863-7", gene.getQualifiers().get("gene_synonym"));
+	}
+
+	@Test
+	void importsFastaAndEmbl() throws IOException {
+		SnapgeneFile fasta = importResource("pUC19.fasta", SequenceFormat.FASTA);
+		assertEquals(2686, fasta.length());
+		assertTrue(fasta.isCircular());
+		assertTrue(fasta.getFeatures().isEmpty());
+
+		SnapgeneFile embl = importResource("Embl.embl", SequenceFormat.EMBL);
+		assertEquals(101, embl.length());
+		assertEquals(1, embl.getFeatures().size());
+		assertEquals("SeqBuilder", embl.getFeatures().get(0).getQualifiers().get("dnas_title"));
+	}
+
+	@Test
+	void multiLineQualifiersAndLocationsSpanningOrigin() throws IOException {
+		String genbank = "LOCUS       test                      30 bp    DNA     circular\n"
+				+ "FEATURES             Location/Qualifiers\n"
+				+ "     CDS             complement(join(25..30,\n"
+				+ "                     1..6))\n"
+				+ "                     /label=\"a \"\"quoted\"\"\n"
+				+ "                     label\"\n"
+				+ "                     /translation=\"MAA\n"
+				+ "                     KK\"\n"
+				+ "     misc_feature    J00194.1:100..202\n"
+				+ "ORIGIN\n"
+				+ "        1 atgaaacccg ggtttaaacc cgggttttaa\n"
+				+ "//\n";
+		SnapgeneFile file = SnapgeneFile.of(SnapgeneInput.of("test.dna",
+				DnaFileImporter.toBytes(SnapgeneInput.of("test.gb", genbank.getBytes()), SequenceFormat.GENBANK)));
+		assertTrue(file.isCircular());
+		assertEquals(1, file.getFeatures().size());
+		SequenceFeature cds = file.getFeatures().get(0);
+		assertEquals("a \"quoted\" label", cds.getName());
+		assertEquals(2, cds.getDirectionality());
+		assertEquals(25, cds.getStart());
+		assertEquals(6, cds.getEnd());
+		assertEquals("MAAKK", cds.getQualifiers().get("translation"));
+	}
+
+	@Test
+	void writesFileInChunksWithSameContentAsInMemory(@TempDir Path dir) throws IOException {
+		StringBuilder fasta = new StringBuilder(">long\n");
+		Random random = new Random(3);
+		for (int line = 0; line < 5000; line++) {
+			for (int i = 0; i < 70; i++) {
+				fasta.append("ACGT".charAt(random.nextInt(4)));
+			}
+			fasta.append('\n');
+		}
+		SnapgeneInput input = SnapgeneInput.of("long.fa", fasta.toString().getBytes(StandardCharsets.US_ASCII));
+		Path target = dir.resolve("long.dna");
+		DnaFileImporter.toFile(input, SequenceFormat.FASTA, target);
+		assertArrayEquals(DnaFileImporter.toBytes(input, SequenceFormat.FASTA), Files.readAllBytes(target));
+		assertEquals(350_000, SnapgeneFile.open(target).length());
+	}
+
+	@Test
+	void rejectsMultiRecordAndEmptyFiles() {
+		assertThrows(IOException.class, () -> DnaFileImporter
+				.toBytes(SnapgeneInput.of("two.fasta", ">a\nACGT\n>b\nTTTT\n".getBytes()), SequenceFormat.FASTA));
+		assertThrows(IOException.class, () -> DnaFileImporter
+				.toBytes(SnapgeneInput.of("empty.fasta", ">a\n".getBytes()), SequenceFormat.FASTA));
+		assertThrows(IOException.class,
+				() -> DnaFileImporter.toBytes(SnapgeneInput.of("x.ab1", new byte[1]), SequenceFormat.ABI));
+	}
+
+	@Test
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	void convertsLocallyAndFallsBackToServerImport() throws IOException {
+		List<String> uploaded = new ArrayList<>();
+		SnapgeneResponse response = Mockito.mock(SnapgeneResponse.class);
+		Mockito.when(response.getOutputFileName()).thenReturn("out.dna");
+		Mockito.when(template.exchange(any(URI.class), eq(HttpMethod.POST), any(HttpEntity.class),
+				eq(SnapgeneResponse.class))).thenAnswer(invocation -> {
+					HttpEntity<LinkedMultiValueMap<String, Object>> upload = invocation.getArgument(2);
+					uploaded.add(invocation.getArgument(0).toString().replaceAll(".*/", "") + " "
+							+ ((Resource) upload.getBody().getFirst("file")).getFilename());
+					return ResponseEntity.ok(response);
+				});
+		Mockito.when(template.getForEntity(any(URI.class), eq(byte[].class)))
+				.thenReturn(ResponseEntity.ok(new byte[] { 1 }));
+
+		// the server imports by default
+		assertTrue(wsClient.uploadAndDownloadPng(resources.resolve("alpha-2-macroglobulin.gb").toFile(),
+				GeneratePngMapConfig.builder().build()).isRight());
+		assertTrue(uploaded.get(0).contains("importDNAFile"), uploaded.get(0));
+
+		wsClient.setImportMode(LocalEngineMode.LOCAL_WITH_SERVER_FALLBACK);
+		uploaded.clear();
+		assertTrue(wsClient.uploadAndDownloadPng(resources.resolve("alpha-2-macroglobulin.gb").toFile(),
+				GeneratePngMapConfig.builder().build()).isRight());
+		assertEquals(1, uploaded.size());
+		assertTrue(uploaded.get(0).endsWith(" alpha-2-macroglobulin.dna"), uploaded.get(0));
+
+		// multi-record files are left to the server
+		uploaded.clear();
+		assertTrue(wsClient.uploadAndDownloadPng(SnapgeneInput.of("two.fasta", ">a\nACGT\n>b\nTTTT\n".getBytes()),
+				GeneratePngMapConfig.builder().build()).isRight());
+		assertEquals(2, uploaded.size());
+		assertTrue(uploaded.get(0).contains("importDNAFile"), uploaded.get(0));
+
+		wsClient.setImportMode(LocalEngineMode.LOCAL);
+		uploaded.clear();
+		assertEquals(400, wsClient.uploadAndDownloadPng(
+				SnapgeneInput.of("two.fasta", ">a\nACGT\n>b\nTTTT\n".getBytes()), GeneratePngMapConfig.builder().build())
+				.getLeft().getHttpCode());
+		assertTrue(uploaded.isEmpty());
+	}
+
+	private SnapgeneFile importResource(String name, SequenceFormat format) throws IOException {
+		byte[] dna = DnaFileImporter.toBytes(SnapgeneInput.of(resources.resolve(name)), format);
+		return SnapgeneFile.of(SnapgeneInput.of(name + ".dna", dna));
+	}
+
+	private static String upper(byte[] bases) {
+		return new String(bases, StandardCharsets.US_ASCII).toUpperCase();
+	}
+
+}
@@ -0,0 +1,132 @@
+package com.researchspace.snapgene.wclient;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.HttpServerErrorException;
+
+import com.researchspace.apiutils.ApiError;
+import com.researchspace.snapgene.wclient.FakeSnapgeneServer.Behaviour;
+import com.researchspace.zmq.snapgene.requests.GeneratePngMapConfig;
+
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.vavr.control.Either;
+
+class EndpointResilienceTest {
+
+	static final ResiliencePolicy FAST_RETRIES = ResiliencePolicy.builder().initialBackoffMillis(10).build();
+
+	AtomicInteger attempts = new AtomicInteger();
+
+	@Test
+	void clientErrorsAreNotRetried() {
+		EndpointResilience resilience = new EndpointResilience("test", FAST_RETRIES, RetryBudget.unlimited());
+
+		Either<ApiError, String> result = resilience.makeApiCall(failing(HttpStatus.BAD_REQUEST));
+
+		assertEquals(400, result.getLeft().getHttpCode());
+		assertEquals(1, attempts.get());
+	}
+
+	@Test
+	void retryableErrorsAreRetriedUpToMaxAttempts() {
+		EndpointResilience resilience = new EndpointResilience("test", FAST_RETRIES, RetryBudget.unlimited());
+		assertEquals(503, resilience.makeApiCall(failing(HttpStatus.SERVICE_UNAVAILABLE)).getLeft().getHttpCode());
+		assertEquals(3, attempts.get());
+
+		attempts.set(0);
+		resilience.makeApiCall(failing(HttpStatus.TOO_MANY_REQUESTS));
+		assertEquals(3, attempts.get());
+
+		attempts.set(0);
+		resilience.makeApiCall(failing(HttpStatus.NOT_IMPLEMENTED));
+		assertEquals(1, attempts.get());
+	}
+
+	@Test
+	void succeedsAfterTransientFailure() {
+		EndpointResilience resilience = new EndpointResilience("test", FAST_RETRIES, RetryBudget.unlimited());
+
+		Either<ApiError, String> result = resilience.makeApiCall(() -> {
+			if (attempts.incrementAndGet() == 1) {
+				throw new HttpServerErrorException(HttpStatus.BAD_GATEWAY);
+			}
+			return ResponseEntity.ok("OK");
+		});
+
+		assertEquals("OK", result.get());
+		assertEquals(2, attempts.get());
+	}
+
+	@Test
+	void retryBudgetLimitsRetriesAcrossCalls() {
+		// 1 token to start with, none added
+		RetryBudget budget = new RetryBudget(0, 0);
+		EndpointResilience resilience = new EndpointResilience("test", FAST_RETRIES, budget);
+
+		resilience.makeApiCall(failing(HttpStatus.SERVICE_UNAVAILABLE));
+		assertEquals(2, attempts.get(), "one retry, then the budget is spent");
+		attempts.set(0);
+		resilience.makeApiCall(failing(HttpStatus.SERVICE_UNAVAILABLE));
+		assertEquals(1, attempts.get());
+		assertEquals(2, budget.getExhaustedCount());
+	}
+
+	@Test
+	void breakersAreIndependentPerEndpointAndIgnoreClientErrors() {
+		SnapgeneResiliencePolicies policies = SnapgeneResiliencePolicies.of(
+				FAST_RETRIES.toBuilder().slidingWindowSize(4).minimumNumberOfCalls(4).build(), RetryBudget.unlimited());
+		EndpointResilience png = policies.forEndpoint(SnapgeneEndpoint.EXPORT_PNG);
+
+		for (int i = 0; i < 4; i++) {
+			png.makeApiCall(failing(HttpStatus.NOT_FOUND));
+		}
+		assertEquals(CircuitBreaker.State.CLOSED, png.getCircuitBreaker().getState());
+
+		for (int i = 0; i < 4; i++) {
+			png.makeApiCall(failing(HttpStatus.INTERNAL_SERVER_ERROR));
+		}
+		assertEquals(CircuitBreaker.State.OPEN, png.getCircuitBreaker().getState());
+		assertEquals(503, png.makeApiCall(() -> ResponseEntity.ok("OK")).getLeft().getHttpCode());
+		assertEquals(CircuitBreaker.State.CLOSED,
+				policies.forEndpoint(SnapgeneEndpoint.STATUS).getCircuitBreaker().getState());
+	}
+
+	@Test
+	void badUploadFailsAfterOneRoundTrip() throws IOException {
+		try (FakeSnapgeneServer server = new FakeSnapgeneServer(
+				Behaviour.builder().errorRate(1).errorStatus(400).build())) {
+			SnapgeneWSClientImpl client = new SnapgeneWSClientImpl(server.getUri(),
+					SnapgeneTransportConfig.defaults(), () -> "EndpointResilienceTest");
+			client.init();
+			try {
+				Either<ApiError, ?> result = client.convertToPngFile(SnapgeneInput.of("seq.dna", new byte[10]),
+						GeneratePngMapConfig.builder().build());
+				assertTrue(result.isLeft());
+				assertEquals(400, result.getLeft().getHttpCode());
+				assertEquals(1, server.getRequestCount("exportPng"));
+			} finally {
+				client.destroy();
+			}
+		}
+	}
+
+	private Supplier<ResponseEntity<String>> failing(HttpStatus status) {
+		return () -> {
+			attempts.incrementAndGet();
+			if (status.is4xxClientError()) {
+				throw new HttpClientErrorException(status);
+			}
+			throw new HttpServerErrorException(status);
+		};
+	}
+
+}
@@ -0,0 +1,192 @@
+package com.researchspace.snapgene.wclient;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.web.client.RestTemplate;
+
+import com.researchspace.apiutils.rest.utils.SimpleResilienceFacade;
+import com.researchspace.zmq.snapgene.requests.EnzymeSet;
+import com.researchspace.zmq.snapgene.requests.ReportEnzymesConfig;
+
+@ExtendWith(MockitoExtension.class)
+class EnzymeFinderTest {
+
+	static final RestrictionEnzyme ECORI = RestrictionEnzyme.parse("EcoRI", "G^AATTC");
+	static final RestrictionEnzyme BSAI = RestrictionEnzyme.parse("BsaI", "GGTCTC(1/5)");
+	static final RestrictionEnzyme ACCI = RestrictionEnzyme.parse("AccI", "GT^MKAC");
+
+	@Mock
+	RestTemplate template;
+	SnapgeneWSClientImpl wsClient;
+
+	@BeforeEach
+	void before() throws URISyntaxException {
+		wsClient = new SnapgeneWSClientImpl(new URI("http://somewhere.com"), template,
+				new SimpleResilienceFacade(10, 20), () -> "EnzymeFinderTest");
+		wsClient.init();
+	}
+
+	@Test
+	void parsesSiteNotation() {
+		assertEquals(new RestrictionEnzyme("EcoRI", "GAATTC", 1, 5), ECORI);
+		assertEquals(new RestrictionEnzyme("BsaI", "GGTCTC", 7, 11), BSAI);
+		assertTrue(ACCI.isPalindromic());
+		assertTrue(!BSAI.isPalindromic());
+		assertThrows(IllegalArgumentException.class, () -> RestrictionEnzyme.parse("X", "GAXTC^"));
+		assertThrows(IllegalArgumentException.class, () -> RestrictionEnzyme.parse("X", "GAATTC"));
+		assertTrue(EnzymeSearchOptions.defaults().getEnzymes().size() > 90);
+	}
+
+	@Test
+	void findsSitesOnBothStrandsWithDegenerateBases() {
+		// BsaI's site reversed at 8..13 cuts the top strand 5 bases before it
+		List<RestrictionSite> sites = find("AAAAAAAGAGACCAAGTATACAAGTCGACAAGAATTCAA", false, BSAI, ACCI, ECORI);
+		assertEquals(Arrays.asList(new RestrictionSite(BSAI, 8, 13, false, 2, 6),
+				new RestrictionSite(ACCI, 16, 21, true, 17, 19), new RestrictionSite(ACCI, 24, 29, true, 25, 27),
+				new RestrictionSite(ECORI, 32, 37, true, 32, 36)), sites);
+	}
+
+	@Test
+	void circularSitesSpanOrigin() {
+		List<RestrictionSite> sites = find("ATTCCCCCCCGA", true, ECORI);
+		assertEquals(Collections.singletonList(new RestrictionSite(ECORI, 11, 4, true, 11, 3)), sites);
+		assertTrue(sites.get(0).spansOrigin());
+		assertEquals(0, find("ATTCCCCCCCGA", false, ECORI).size());
+	}
+
+	@Test
+	void linearSitesCuttingBeyondTheEndsAreIgnored() {
+		assertEquals(0, find("GGTCTCAAA", false, BSAI).size());
+		assertEquals(1, find("GGTCTCAAAAAA", false, BSAI).size());
+	}
+
+	@Test
+	void parallelScanOfLongSequenceMatchesRegexSearch() {
+		byte[] bases = new byte[EnzymeFinder.PARALLEL_THRESHOLD * 3 + 17];
+		Random random = new Random(11);
+		for (int i = 0; i < bases.length; i++) {
+			bases[i] = (byte) "ACGT".charAt(random.nextInt(4));
+		}
+		String sequence = new String(bases, StandardCharsets.US_ASCII);
+		Map<String, Integer> expected = new TreeMap<>();
+		for (RestrictionEnzyme enzyme : EnzymeSearchOptions.defaults().getEnzymes()) {
+			int count = countMatches(enzyme.getSite(), sequence);
+			if (!enzyme.isPalindromic()) {
+				count += countMatches(RestrictionEnzyme.reverseComplement(enzyme.getSite()), sequence);
+			}
+			if (count > 0) {
+				expected.put(enzyme.getName(), count);
+			}
+		}
+		// no cuts near the ends in this sequence, so every match is a site
+		List<RestrictionSite> sites = EnzymeFinder.find(new DnaSequence("s", bases, false),
+				EnzymeSearchOptions.defaults());
+		Map<String, Integer> actual = sites.stream()
+				.collect(Collectors.groupingBy(site -> site.getEnzyme().getName(), TreeMap::new,
+						Collectors.summingInt(site -> 1)));
+		assertEquals(expected, actual);
+	}
+
+	@Test
+	void enzymeSetsFilterByCutsAndSiteLength() {
+		EnzymeSearchOptions unique = EnzymeSearchOptions.forEnzymeSet("UNIQUE");
+		assertEquals("Unique Cutters", unique.getSetName());
+		assertEquals(1, unique.getMaximumCuts());
+		EnzymeSearchOptions dual = EnzymeSearchOptions.from(new ReportEnzymesConfig(EnzymeSet.UNIQUE_AND_DUAL));
+		assertEquals("Unique & Dual Cutters", dual.getSetName());
+		assertEquals(2, dual.getMaximumCuts());
+		EnzymeSearchOptions sixPlus = EnzymeSearchOptions.forEnzymeSet("UNIQUE_AND_DUAL_SIX_PLUS");
+		assertEquals("Unique & Dual 6+ Cutters", sixPlus.getSetName());
+		assertEquals(6, sixPlus.getMinimumSiteLength());
+		assertTrue(EnzymeFinder.automaton(sixPlus).size() < EnzymeFinder.automaton(dual).size());
+		assertSame(EnzymeFinder.automaton(dual), EnzymeFinder.automaton(unique));
+		assertEquals("Commercial", EnzymeSearchOptions.forEnzymeSet("COMMERCIAL").getSetName());
+
+		DnaSequence twoEcoRI = new DnaSequence("s", ascii("AAGAATTCAAAAGAATTCAA"), false);
+		assertEquals(0, EnzymeFinder.find(twoEcoRI, unique).stream()
+				.filter(site -> site.getEnzyme().getName().equals("EcoRI")).count());
+		assertEquals(2, EnzymeFinder.find(twoEcoRI, dual).stream()
+				.filter(site -> site.getEnzyme().getName().equals("EcoRI")).count());
+	}
+
+	@Test
+	void restrictionSitesAreTheSameForAllInputFormats() {
+		EnzymeSearchOptions options = EnzymeSearchOptions.forEnzymeSet("UNIQUE_AND_DUAL");
+		List<RestrictionSite> dna = wsClient
+				.restrictionSites(SnapgeneInput.of(new File("src/test/resources/alpha-2-macroglobulin.dna")), options)
+				.get();
+		List<RestrictionSite> genbank = wsClient
+				.restrictionSites(SnapgeneInput.of(new File("src/test/resources/alpha-2-macroglobulin.gb")), options)
+				.get();
+		assertEquals(dna, genbank);
+		assertTrue(!dna.isEmpty());
+		Map<RestrictionEnzyme, Long> cuts = dna.stream()
+				.collect(Collectors.groupingBy(RestrictionSite::getEnzyme, Collectors.counting()));
+		assertTrue(cuts.values().stream().allMatch(count -> count <= 2), cuts.toString());
+		assertEquals(501, wsClient.restrictionSites(SnapgeneInput.of(new File("src/test/resources/3730.ab1")), options)
+				.getLeft().getHttpCode());
+		Mockito.verifyNoInteractions(template);
+	}
+
+	@Test
+	void automataOfRecentEnzymeListsAreCached() {
+		EnzymeSearchOptions ecoRI = EnzymeSearchOptions.builder().enzymes(Arrays.asList(ECORI)).build();
+		EnzymeFinder.SiteAutomaton cached = EnzymeFinder.automaton(ecoRI);
+		assertSame(cached, EnzymeFinder.automaton(ecoRI.toBuilder().build()));
+		for (int i = 0; i < 20; i++) {
+			EnzymeFinder.automaton(EnzymeSearchOptions.builder()
+					.enzymes(Arrays.asList(RestrictionEnzyme.parse("E" + i, "GAATTC^"))).build());
+		}
+		assertTrue(cached != EnzymeFinder.automaton(ecoRI));
+	}
+
+	private List<RestrictionSite> find(String bases, boolean circular, RestrictionEnzyme... enzymes) {
+		return EnzymeFinder.find(new DnaSequence("s", ascii(bases), circular),
+				EnzymeSearchOptions.builder().enzymes(Arrays.asList(enzymes)).build());
+	}
+
+	// overlapping matches of an IUPAC site
+	private int countMatches(String site, String sequence) {
+		StringBuilder regex = new StringBuilder("(?=");
+		String iupac = "ACGTRYSWKMBDHVN";
+		String[] classes = { "A", "C", "G", "T", "[AG]", "[CT]", "[CG]", "[AT]", "[GT]", "[AC]", "[CGT]", "[AGT]",
+				"[ACT]", "[ACG]", "[ACGT]" };
+		for (char c : site.toCharArray()) {
+			regex.append(classes[iupac.indexOf(c)]);
+		}
+		Matcher matcher = Pattern.compile(regex.append(")").toString()).matcher(sequence);
+		int count = 0;
+		while (matcher.find()) {
+			count++;
+		}
+		return count;
+	}
+
+	private static byte[] ascii(String s) {
+		return s.getBytes(StandardCharsets.US_ASCII);
+	}
+
+}
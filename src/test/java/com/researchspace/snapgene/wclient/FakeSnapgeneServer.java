@@ -0,0 +1,219 @@
+package com.researchspace.snapgene.wclient;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import lombok.Builder;
+import lombok.Value;
+
+/**
+ * Embeddable stand-in for a Snapgene server, implementing the '/snapgene/*'
+ * endpoints called by {@link SnapgeneWSClientImpl}, with configurable latency,
+ * error rate, payload size and slow-drip responses. Runs offline on an
+ * ephemeral localhost port.
+ */
+public class FakeSnapgeneServer implements AutoCloseable {
+
+	/**
+	 * Server processing time per request, in milliseconds.
+	 */
+	@FunctionalInterface
+	public interface LatencyModel {
+		long nextMillis(Random random);
+
+		static LatencyModel none() {
+			return random -> 0;
+		}
+
+		static LatencyModel fixed(long millis) {
+			return random -> millis;
+		}
+
+		static LatencyModel uniform(long minMillis, long maxMillis) {
+			return random -> minMillis + (long) (random.nextDouble() * (maxMillis - minMillis));
+		}
+
+		/**
+		 * Long-tailed latency typical of rendering servers.
+		 */
+		static LatencyModel logNormal(long medianMillis, double sigma) {
+			return random -> (long) (medianMillis * Math.exp(sigma * random.nextGaussian()));
+		}
+	}
+
+	@Value
+	@Builder(toBuilder = true)
+	public static class Behaviour {
+		@Builder.Default
+		LatencyModel latency = LatencyModel.none();
+		/**
+		 * Fraction of requests, 0 to 1, answered with {@link #errorStatus}
+		 */
+		@Builder.Default
+		double errorRate = 0;
+		@Builder.Default
+		int errorStatus = 500;
+		/**
+		 * Size of every downloaded file
+		 */
+		@Builder.Default
+		int payloadBytes = 10 * 1024;
+		/**
+		 * If > 0, download bodies are sent in chunks of this size with
+		 * {@link #dripDelayMillis} between them
+		 */
+		@Builder.Default
+		int dripChunkBytes = 0;
+		@Builder.Default
+		long dripDelayMillis = 0;
+	}
+
+	static {
+		// without this the JDK server's Nagle delay adds ~40ms to each response
+		System.setProperty("sun.net.httpserver.nodelay", "true");
+	}
+
+	private final HttpServer server;
+	private final ExecutorService executor;
+	private final Map<String, AtomicLong> requestCounts = new ConcurrentHashMap<>();
+	private volatile Behaviour behaviour;
+
+	public FakeSnapgeneServer(Behaviour behaviour) throws IOException {
+		this(behaviour, 32);
+	}
+
+	public FakeSnapgeneServer(Behaviour behaviour, int threads) throws IOException {
+		this.behaviour = behaviour;
+		server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+		server.createContext("/snapgene/", this::handle);
+		executor = Executors.newFixedThreadPool(threads, SnapgeneExecutors.daemonThreadFactory("fake-snapgene-"));
+		server.setExecutor(executor);
+		server.start();
+	}
+
+	public URI getUri() {
+		return URI.create("http://localhost:" + server.getAddress().getPort());
+	}
+
+	/**
+	 * Changes behaviour for subsequent requests, e.g. to simulate degradation
+	 * during a run.
+	 */
+	public void setBehaviour(Behaviour behaviour) {
+		this.behaviour = behaviour;
+	}
+
+	/**
+	 * @param endpoint e.g. 'exportPng'
+	 * @return requests received by the endpoint, including failed ones
+	 */
+	public long getRequestCount(String endpoint) {
+		AtomicLong count = requestCounts.get(endpoint);
+		return count == null ? 0 : count.get();
+	}
+
+	@Override
+	public void close() {
+		server.stop(0);
+		executor.shutdownNow();
+	}
+
+	private void handle(HttpExchange exchange) throws IOException {
+		Behaviour current = behaviour;
+		String endpoint = exchange.getRequestURI().getPath().substring("/snapgene/".length());
+		requestCounts.computeIfAbsent(endpoint, e -> new AtomicLong()).incrementAndGet();
+		try (InputStream in = exchange.getRequestBody()) {
+			drain(in);
+		}
+		Random random = ThreadLocalRandom.current();
+		sleep(current.getLatency().nextMillis(random));
+		if (random.nextDouble() < current.getErrorRate()) {
+			respond(exchange, current.getErrorStatus(), "application/json", "{\"message\":\"injected failure\"}");
+			return;
+		}
+		switch (endpoint) {
+		case "status":
+			respond(exchange, 200, "application/json", "{\"status\":\"ok\"}");
+			break;
+		case "downloadFile":
+			download(exchange, current);
+			break;
+		case "reportEnzymes":
+		case "reportORFs":
+			respond(exchange, 200, "application/json", "{\"results\":[]}");
+			break;
+		case "exportSvg":
+		case "exportPng":
+		case "importDNAFile":
+		case "exportDNAFile":
+			String extension = endpoint.equals("exportSvg") ? "svg" : endpoint.equals("exportPng") ? "png" : "dna";
+			respond(exchange, 200, "application/json",
+					"{\"outputFileName\":\"" + UUID.randomUUID() + "." + extension + "\"}");
+			break;
+		default:
+			respond(exchange, 404, "application/json", "{\"message\":\"unknown endpoint\"}");
+		}
+	}
+
+	private void download(HttpExchange exchange, Behaviour current) throws IOException {
+		byte[] payload = new byte[current.getPayloadBytes()];
+		ThreadLocalRandom.current().nextBytes(payload);
+		exchange.getResponseHeaders().add("Content-Type", "application/octet-stream");
+		exchange.sendResponseHeaders(200, payload.length == 0 ? -1 : payload.length);
+		try (OutputStream out = exchange.getResponseBody()) {
+			int chunk = current.getDripChunkBytes() > 0 ? current.getDripChunkBytes() : Math.max(1, payload.length);
+			for (int offset = 0; offset < payload.length; offset += chunk) {
+				if (offset > 0) {
+					sleep(current.getDripDelayMillis());
+				}
+				out.write(payload, offset, Math.min(chunk, payload.length - offset));
+				out.flush();
+			}
+		}
+	}
+
+	private static void respond(HttpExchange exchange, int status, String contentType, String body)
+			throws IOException {
+		byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+		exchange.getResponseHeaders().add("Content-Type", contentType);
+		exchange.sendResponseHeaders(status, bytes.length);
+		try (OutputStream out = exchange.getResponseBody()) {
+			out.write(bytes);
+		}
+	}
+
+	private static void drain(InputStream in) throws IOException {
+		byte[] buffer = new byte[8192];
+		while (in.read(buffer) != -1) {
+			// discard
+		}
+	}
+
+	private static void sleep(long millis) {
+		if (millis <= 0) {
+			return;
+		}
+		try {
+			TimeUnit.MILLISECONDS.sleep(millis);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+}
@@ -0,0 +1,178 @@
+package com.researchspace.snapgene.wclient;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.web.client.RestTemplate;
+
+import com.researchspace.apiutils.ApiError;
+import com.researchspace.apiutils.rest.utils.SimpleResilienceFacade;
+import com.researchspace.zmq.snapgene.requests.ReadingFrame;
+import com.researchspace.zmq.snapgene.requests.ReportORFsConfig;
+
+import io.vavr.control.Either;
+
+@ExtendWith(MockitoExtension.class)
+class OrfFinderTest {
+
+	@Mock
+	RestTemplate template;
+	SnapgeneWSClientImpl wsClient;
+	static final byte[] NATIVE_COOKIE = { 9, 0, 0, 0, 14, 'S', 'n', 'a', 'p', 'G', 'e', 'n', 'e', 0, 1, 0, 15, 0,
+			19 };
+
+	ReportORFsConfig firstFrame = new ReportORFsConfig(ReadingFrame.FIRST_FORWARD_FRAME);
+
+	@BeforeEach
+	void before() throws URISyntaxException {
+		wsClient = new SnapgeneWSClientImpl(new URI("http://somewhere.com"), template,
+				new SimpleResilienceFacade(10, 20), () -> "OrfFinderTest");
+		wsClient.init();
+	}
+
+	@Test
+	void localSearchMatchesServerOrfCountForAllInputFormats() {
+		// 34 is the count the server reports, see SnapgeneWSClientITTest
+		List<List<OpenReadingFrame>> results = new ArrayList<>();
+		for (String name : new String[] { "alpha-2-macroglobulin.dna", "alpha-2-macroglobulin.gb",
+				"alpha-2-macroglobulin.fasta" }) {
+			Either<ApiError, List<OpenReadingFrame>> orfs = wsClient.openReadingFrames(
+					SnapgeneInput.of(new File("src/test/resources/" + name)), OrfSearchOptions.from(firstFrame));
+			assertEquals(34, orfs.get().size(), name);
+			results.add(orfs.get());
+		}
+		assertEquals(1, new HashSet<>(results).size());
+		Mockito.verifyNoInteractions(template);
+	}
+
+	@Test
+	void unreadableInputIsRejected() {
+		OrfSearchOptions options = OrfSearchOptions.from(firstFrame);
+		File ab1 = new File("src/test/resources/3730.ab1");
+		assertEquals(501, wsClient.openReadingFrames(SnapgeneInput.of(ab1), options).getLeft().getHttpCode());
+		// a native file without a sequence segment
+		assertEquals(400, wsClient.openReadingFrames(SnapgeneInput.of("seq.dna", NATIVE_COOKIE), options).getLeft()
+				.getHttpCode());
+		Mockito.verifyNoInteractions(template);
+	}
+
+	@Test
+	void findsOrfsOnBothStrands() {
+		// forward ORF of 3 codons at 4..15, and its reverse complement at 20..31
+		String forward = "CCCATGAAACCCTAGCC";
+		DnaSequence sequence = linear(forward + reverseComplement(forward));
+		List<OpenReadingFrame> orfs = OrfFinder.find(sequence, options(1));
+		assertEquals(Arrays.asList(new OpenReadingFrame(4, 15, 1, 3), new OpenReadingFrame(20, 31, -1, 3)), orfs);
+	}
+
+	@Test
+	void circularOrfSpansOrigin() {
+		// ATG at 10, runs through the origin to the stop at 4..6
+		DnaSequence circular = new DnaSequence("c", ascii("CCCTAAGGGATGCCCCCC"), true);
+		List<OpenReadingFrame> orfs = OrfFinder.find(circular, options(1).toBuilder().frames(setOf(1)).build());
+		assertEquals(Arrays.asList(new OpenReadingFrame(10, 6, 1, 4)), orfs);
+		assertTrue(orfs.get(0).spansOrigin());
+		assertEquals(0, OrfFinder.find(linear("CCCTAAGGGATGCCCCCC"), options(1)).size());
+	}
+
+	@Test
+	void circularSequenceNotMultipleOfThreeRunsFramesTogether() {
+		// length 16: the ATG at 11 is in frame 2, its stop after the origin at 1..3 in frame 1
+		DnaSequence circular = new DnaSequence("c", ascii("TAACCCCCCCATGCCC"), true);
+		assertEquals(Arrays.asList(new OpenReadingFrame(11, 3, 2, 2)), OrfFinder.find(circular, options(1)));
+	}
+
+	@Test
+	void parallelScanOfLongSequenceMatchesNaiveSearch() {
+		byte[] bases = new byte[OrfFinder.PARALLEL_THRESHOLD + 1001];
+		Random random = new Random(7);
+		for (int i = 0; i < bases.length; i++) {
+			bases[i] = (byte) "ACGT".charAt(random.nextInt(4));
+		}
+		String sequence = new String(bases, StandardCharsets.US_ASCII);
+		List<OpenReadingFrame> expected = naiveSearch(sequence, 20);
+		expected.sort(Comparator.comparingInt(OpenReadingFrame::getStart)
+				.thenComparingInt(OpenReadingFrame::getFrame));
+		assertEquals(expected, OrfFinder.find(linear(sequence), options(20)));
+		assertTrue(expected.size() > 100);
+	}
+
+	@Test
+	void optionsFromConfig() {
+		assertEquals(setOf(1), OrfSearchOptions.from(firstFrame).getFrames());
+		assertEquals(setOf(1, 2, 3), OrfSearchOptions.framesFor(ReadingFrame.ALL_FORWARD_FRAMES));
+		assertEquals(setOf(1, 2, 3, -1, -2, -3), OrfSearchOptions.framesFor(ReadingFrame.ALL_FRAMES));
+		assertEquals(OrfSearchOptions.defaults(), OrfSearchOptions.from(null));
+		for (ReadingFrame frame : ReadingFrame.values()) {
+			assertFalse(OrfSearchOptions.framesFor(frame).isEmpty(), frame.name());
+		}
+	}
+
+	private List<OpenReadingFrame> naiveSearch(String forward, int minimumCodons) {
+		List<OpenReadingFrame> found = new ArrayList<>();
+		int n = forward.length();
+		for (int strand : new int[] { 1, -1 }) {
+			String s = strand > 0 ? forward : reverseComplement(forward);
+			for (int offset = 0; offset < 3; offset++) {
+				int open = -1;
+				for (int p = offset; p + 3 <= n; p += 3) {
+					String codon = s.substring(p, p + 3);
+					if (codon.equals("TAA") || codon.equals("TAG") || codon.equals("TGA")) {
+						if (open >= 0 && (p - open) / 3 >= minimumCodons) {
+							int frame = strand * (offset + 1);
+							found.add(strand > 0 ? new OpenReadingFrame(open + 1, p + 3, frame, (p - open) / 3)
+									: new OpenReadingFrame(n - p - 2, n - open, frame, (p - open) / 3));
+						}
+						open = -1;
+					} else if (open < 0 && codon.equals("ATG")) {
+						open = p;
+					}
+				}
+			}
+		}
+		return found;
+	}
+
+	private OrfSearchOptions options(int minimumCodons) {
+		return OrfSearchOptions.builder().minimumCodons(minimumCodons).build();
+	}
+
+	private DnaSequence linear(String bases) {
+		return new DnaSequence("s", ascii(bases), false);
+	}
+
+	private static String reverseComplement(String bases) {
+		StringBuilder sb = new StringBuilder();
+		for (int i = bases.length() - 1; i >= 0; i--) {
+			sb.append("TGCA".charAt("ACGT".indexOf(bases.charAt(i))));
+		}
+		return sb.toString();
+	}
+
+	private static byte[] ascii(String s) {
+		return s.getBytes(StandardCharsets.US_ASCII);
+	}
+
+	private static HashSet<Integer> setOf(Integer... values) {
+		return new HashSet<>(Arrays.asList(values));
+	}
+
+}
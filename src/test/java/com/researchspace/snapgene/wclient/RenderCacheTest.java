@@ -0,0 +1,162 @@
+package com.researchspace.snapgene.wclient;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.file.Path;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.client.RestTemplate;
+
+import com.researchspace.apiutils.ApiError;
+import com.researchspace.apiutils.rest.utils.SimpleResilienceFacade;
+import com.researchspace.zmq.snapgene.requests.GeneratePngMapConfig;
+import com.researchspace.zmq.snapgene.responses.SnapgeneResponse;
+
+import io.vavr.control.Either;
+
+@ExtendWith(MockitoExtension.class)
+class RenderCacheTest {
+
+	@TempDir
+	Path cacheDir;
+	@Mock
+	RestTemplate template;
+	File testNativeDnaFile = new File("src/test/resources/alpha-2-macroglobulin.dna");
+	SnapgeneWSClientImpl wsClient;
+
+	@BeforeEach
+	void before() throws URISyntaxException {
+		wsClient = new SnapgeneWSClientImpl(new URI("http://somewhere.com"), template,
+				new SimpleResilienceFacade(10, 20), () -> "RenderCacheTest");
+		wsClient.init();
+	}
+
+	@Test
+	void keyIndependentOfConfigInstance() {
+		RenderKey k1 = RenderKey.of("png", "abc", pngConfig(true));
+		RenderKey k2 = RenderKey.of("png", "abc", pngConfig(true));
+		assertEquals(k1, k2);
+		assertNotEquals(k1, RenderKey.of("png", "abc", pngConfig(false)));
+		assertNotEquals(k1, RenderKey.of("svg", "abc", pngConfig(true)));
+		assertNotEquals(k1, RenderKey.of("png", "abd", pngConfig(true)));
+	}
+
+	@Test
+	void diskHitsArePromotedToHeap() throws IOException {
+		RenderCache cache = new RenderCache(10, EvictionPolicy.LRU, cacheDir, 100, EvictionPolicy.FIFO);
+		RenderKey a = RenderKey.of("png", "a", null);
+		RenderKey b = RenderKey.of("png", "b", null);
+		cache.put(a, new byte[6]);
+		// evicts 'a' from heap, but not from disk
+		cache.put(b, new byte[6]);
+
+		assertTrue(cache.get(a).isPresent());
+		assertTrue(cache.get(a).isPresent());
+		assertFalse(cache.get(RenderKey.of("png", "c", null)).isPresent());
+
+		RenderCacheStats stats = cache.getStats();
+		assertEquals(1, stats.getDiskHits());
+		assertEquals(1, stats.getHeapHits());
+		assertEquals(1, stats.getMisses());
+		assertEquals(2, stats.getHeapEvictions());
+		assertEquals(2, stats.getDiskEntries());
+	}
+
+	@Test
+	void fifoIgnoresReads() {
+		RenderCache cache = new RenderCache(10, EvictionPolicy.FIFO);
+		RenderKey a = RenderKey.of("png", "a", null);
+		RenderKey b = RenderKey.of("png", "b", null);
+		cache.put(a, new byte[4]);
+		cache.put(b, new byte[4]);
+		cache.get(a);
+		cache.put(RenderKey.of("png", "c", null), new byte[4]);
+		assertFalse(cache.get(a).isPresent());
+		assertTrue(cache.get(b).isPresent());
+	}
+
+	@Test
+	void fifoReplacedEntryIsNotEvictedFirst() throws IOException {
+		RenderCache cache = new RenderCache(10, EvictionPolicy.FIFO, cacheDir, 10, EvictionPolicy.FIFO);
+		RenderKey a = RenderKey.of("png", "a", null);
+		RenderKey b = RenderKey.of("png", "b", null);
+		cache.put(a, new byte[4]);
+		cache.put(b, new byte[4]);
+		cache.put(a, new byte[7]);
+		RenderCacheStats stats = cache.getStats();
+		assertEquals(1, stats.getHeapEntries());
+		assertEquals(1, stats.getDiskEntries());
+		assertTrue(cache.get(a).isPresent());
+		assertFalse(cache.get(b).isPresent());
+	}
+
+	@Test
+	void repeatRenderAndDownloadServedFromCache() {
+		wsClient.setRenderCache(new RenderCache(1_000_000, EvictionPolicy.LRU));
+		byte[] png = new byte[] { 1, 2, 3 };
+		SnapgeneResponse response = Mockito.mock(SnapgeneResponse.class);
+		Mockito.when(response.getOutputFileName()).thenReturn("map.png");
+		Mockito.when(template.exchange(any(URI.class), eq(HttpMethod.POST), any(HttpEntity.class),
+				eq(SnapgeneResponse.class))).thenReturn(ResponseEntity.ok(response));
+		Mockito.when(template.getForEntity(any(URI.class), eq(byte[].class))).thenReturn(ResponseEntity.ok(png));
+
+		for (int i = 0; i < 3; i++) {
+			Either<ApiError, SnapgeneResponse> resp = wsClient.convertToPngFile(testNativeDnaFile, pngConfig(true));
+			assertEquals("map.png", resp.get().getOutputFileName());
+			assertArrayEquals(png, wsClient.downloadFile("map.png").get());
+		}
+
+		Mockito.verify(template, Mockito.times(1)).exchange(any(URI.class), eq(HttpMethod.POST),
+				any(HttpEntity.class), eq(SnapgeneResponse.class));
+		Mockito.verify(template, Mockito.times(1)).getForEntity(any(URI.class), eq(byte[].class));
+	}
+
+	@Test
+	void facadeCountsOneLookupAndStoresOneEntry() throws IOException {
+		RenderCache cache = new RenderCache(1_000_000, EvictionPolicy.LRU);
+		wsClient.setRenderCache(cache);
+		SnapgeneResponse response = Mockito.mock(SnapgeneResponse.class);
+		Mockito.when(response.getOutputFileName()).thenReturn("map.png");
+		Mockito.when(template.exchange(any(URI.class), eq(HttpMethod.POST), any(HttpEntity.class),
+				eq(SnapgeneResponse.class))).thenReturn(ResponseEntity.ok(response));
+		Mockito.when(template.getForEntity(any(URI.class), eq(byte[].class)))
+				.thenReturn(ResponseEntity.ok(new byte[] { 1, 2, 3 }));
+
+		assertTrue(wsClient.uploadAndDownloadPng(testNativeDnaFile, pngConfig(true)).isRight());
+		RenderCacheStats cold = cache.getStats();
+		assertEquals(1, cold.getMisses());
+		assertEquals(0, cold.getHeapHits());
+		assertEquals(1, cold.getHeapEntries());
+		assertEquals(3, cold.getHeapBytes());
+
+		assertTrue(wsClient.uploadAndDownloadPng(testNativeDnaFile, pngConfig(true)).isRight());
+		RenderCacheStats warm = cache.getStats();
+		assertEquals(1, warm.getMisses());
+		assertEquals(1, warm.getHeapHits());
+		assertEquals(1, warm.getHeapEntries());
+	}
+
+	private GeneratePngMapConfig pngConfig(boolean linear) {
+		return GeneratePngMapConfig.builder().linear(linear).showEnzymes(true).build();
+	}
+
+}
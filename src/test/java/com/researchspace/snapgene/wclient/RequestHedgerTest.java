@@ -0,0 +1,141 @@
+package com.researchspace.snapgene.wclient;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+
+import com.researchspace.apiutils.ApiError;
+import com.researchspace.snapgene.wclient.FakeSnapgeneServer.Behaviour;
+
+import io.vavr.control.Either;
+
+class RequestHedgerTest {
+
+	static final HedgingPolicy HEDGE_AFTER_50MS = HedgingPolicy.builder().defaultDelayMillis(50).maxHedgeRate(1)
+			.build();
+
+	ExecutorService executor = SnapgeneExecutors.fixed(4);
+	AtomicInteger attempts = new AtomicInteger();
+
+	@AfterEach
+	void after() {
+		executor.shutdownNow();
+	}
+
+	@Test
+	void slowFirstAttemptIsOvertakenByHedge() {
+		RequestHedger hedger = new RequestHedger(HEDGE_AFTER_50MS, executor);
+
+		long start = System.nanoTime();
+		Either<ApiError, String> result = hedger.execute(firstAttemptTakes(5000));
+
+		assertEquals("attempt 2", result.get());
+		assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < 2000);
+		assertEquals(1, hedger.getHedgeCount());
+		assertEquals(1, hedger.getHedgeWinCount());
+	}
+
+	@Test
+	void fastCallsAreNotHedged() {
+		RequestHedger hedger = new RequestHedger(HEDGE_AFTER_50MS, executor);
+
+		for (int i = 0; i < 10; i++) {
+			assertTrue(hedger.execute(() -> Either.right("OK")).isRight());
+		}
+		assertEquals(10, hedger.getCallCount());
+		assertEquals(0, hedger.getHedgeCount());
+	}
+
+	@Test
+	void hedgeRateIsCapped() {
+		RequestHedger hedger = new RequestHedger(HEDGE_AFTER_50MS.toBuilder().maxHedgeRate(0).build(), executor);
+
+		Either<ApiError, String> result = hedger.execute(firstAttemptTakes(200));
+
+		assertEquals("attempt 1", result.get());
+		assertEquals(1, attempts.get());
+		assertEquals(0, hedger.getHedgeCount());
+	}
+
+	@Test
+	void failureWaitsForOutstandingHedge() {
+		RequestHedger hedger = new RequestHedger(HEDGE_AFTER_50MS, executor);
+
+		Either<ApiError, String> result = hedger.execute(() -> {
+			int attempt = attempts.incrementAndGet();
+			if (attempt == 1) {
+				sleep(200);
+				return Either.left(new ApiError(HttpStatus.BAD_GATEWAY, 502, "failed", "first attempt fails"));
+			}
+			sleep(300);
+			return Either.right("attempt " + attempt);
+		});
+
+		assertEquals("attempt 2", result.get());
+	}
+
+	@Test
+	void percentileOfRecentLatencySetsDelay() {
+		RequestHedger hedger = new RequestHedger(HedgingPolicy.builder().minSamples(5).defaultDelayMillis(10_000)
+				.delayPercentile(50).maxHedgeRate(1).build(), executor);
+		for (int i = 0; i < 5; i++) {
+			hedger.execute(() -> {
+				sleep(20);
+				return Either.right("warm up");
+			});
+		}
+		attempts.set(0);
+
+		long start = System.nanoTime();
+		assertEquals("attempt 2", hedger.execute(firstAttemptTakes(5000)).get());
+		assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < 2000);
+	}
+
+	@Test
+	void clientHedgesDownloads() throws IOException {
+		AtomicInteger downloads = new AtomicInteger();
+		try (FakeSnapgeneServer server = new FakeSnapgeneServer(Behaviour.builder()
+				.latency(random -> downloads.incrementAndGet() == 1 ? 3000 : 0).payloadBytes(100).build())) {
+			SnapgeneWSClientImpl client = new SnapgeneWSClientImpl(server.getUri(),
+					SnapgeneTransportConfig.defaults(), () -> "RequestHedgerTest");
+			client.init();
+			client.setHedging(HEDGE_AFTER_50MS);
+			try {
+				long start = System.nanoTime();
+				assertEquals(100, client.downloadFile("any.png").get().length);
+				assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < 2000);
+				assertEquals(1, client.getHedger(SnapgeneEndpoint.DOWNLOAD_FILE).get().getHedgeWinCount());
+			} finally {
+				client.destroy();
+			}
+		}
+	}
+
+	private Supplier<Either<ApiError, String>> firstAttemptTakes(long millis) {
+		return () -> {
+			int attempt = attempts.incrementAndGet();
+			if (attempt == 1) {
+				sleep(millis);
+			}
+			return Either.right("attempt " + attempt);
+		};
+	}
+
+	private static void sleep(long millis) {
+		try {
+			Thread.sleep(millis);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+}
@@ -0,0 +1,163 @@
+package com.researchspace.snapgene.wclient;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.stream.Stream;
+
+import org.apache.commons.io.IOUtils;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class ScratchSpaceTest {
+
+	@TempDir
+	Path dir;
+
+	@Test
+	void fileIsDeletedWhenLastReferenceIsClosed() throws IOException {
+		ScratchSpace scratch = new ScratchSpace(config().build());
+		ScratchFile file = scratch.allocate(".dna");
+		file.write(new ByteArrayInputStream(new byte[100]));
+		assertEquals(100, scratch.getUsedBytes());
+
+		file.retain();
+		file.close();
+		assertTrue(Files.exists(file.getPath()));
+		file.close();
+		assertFalse(Files.exists(file.getPath()));
+		assertEquals(0, scratch.getFileCount());
+		assertEquals(0, scratch.getUsedBytes());
+		// extra closes are harmless
+		file.close();
+		assertThrows(IllegalStateException.class, file::retain);
+	}
+
+	@Test
+	void fileCountQuota() throws IOException {
+		ScratchSpace scratch = new ScratchSpace(config().maxFiles(2).build());
+		ScratchFile first = scratch.allocate(".tmp");
+		scratch.allocate(".tmp");
+		assertThrows(IOException.class, () -> scratch.allocate(".tmp"));
+		first.close();
+		scratch.allocate(".tmp");
+		assertEquals(1, scratch.getQuotaRejectionCount());
+	}
+
+	@Test
+	void byteQuotaIsEnforcedWhileWriting() throws IOException {
+		ScratchSpace scratch = new ScratchSpace(config().maxBytes(1000).build());
+		ScratchFile file = scratch.allocate(".tmp");
+		assertThrows(ScratchQuotaExceededException.class, () -> file.write(new ByteArrayInputStream(new byte[1001])));
+		file.close();
+		assertEquals(0, scratch.getUsedBytes());
+
+		ScratchFile fits = scratch.allocate(".tmp");
+		assertEquals(1000, fits.write(new ByteArrayInputStream(new byte[1000])));
+		// rewriting replaces rather than adds to the charged size
+		assertEquals(600, fits.write(new ByteArrayInputStream(new byte[600])));
+		assertEquals(600, scratch.getUsedBytes());
+	}
+
+	@Test
+	void contentOfKnownLengthOverQuotaIsRejectedBeforeReading() throws IOException {
+		ScratchSpace scratch = new ScratchSpace(config().maxBytes(1000).inMemoryThresholdBytes(0).build());
+		ByteArrayInputStream content = new ByteArrayInputStream(new byte[1001]);
+		assertThrows(ScratchQuotaExceededException.class, () -> scratch.hold("big.dna", 1001, content));
+		assertEquals(1001, content.available());
+		assertEquals(0, scratch.getFileCount());
+	}
+
+	@Test
+	void smallContentIsHeldInMemory() throws IOException {
+		ScratchSpace scratch = new ScratchSpace(config().inMemoryThresholdBytes(10).build());
+		byte[] small = new byte[] { 1, 2, 3 };
+		try (SnapgeneInput held = scratch.hold("small.dna", small.length, new ByteArrayInputStream(small))) {
+			assertEquals(0, scratch.getFileCount());
+			assertArrayEquals(small, read(held));
+		}
+
+		byte[] large = new byte[11];
+		SnapgeneInput held = scratch.hold("large.dna", large.length, new ByteArrayInputStream(large));
+		assertEquals(1, scratch.getFileCount());
+		assertEquals("large.dna", held.getFileName());
+		assertEquals(11, held.contentLength());
+		assertArrayEquals(large, read(held));
+		held.close();
+		assertEquals(0, scratch.getFileCount());
+	}
+
+	@Test
+	void unknownLengthGoesToDisk() throws IOException {
+		ScratchSpace scratch = new ScratchSpace(config().build());
+		SnapgeneInput held = scratch.hold("x.dna", -1, new ByteArrayInputStream(new byte[3]));
+		assertEquals(1, scratch.getFileCount());
+		held.close();
+		assertEquals(0, scratch.getFileCount());
+	}
+
+	@Test
+	void sweeperDeletesOrphansButNotRecentOrHeldOnes() throws IOException {
+		ScratchSpace scratch = new ScratchSpace(config().orphanMaxAgeMillis(60_000).build());
+		Path orphan = Files.createFile(dir.resolve(ScratchSpace.PREFIX + "from-earlier-run.dna"));
+		Files.setLastModifiedTime(orphan, FileTime.fromMillis(System.currentTimeMillis() - 120_000));
+		Path recentOrphan = Files.createFile(dir.resolve(ScratchSpace.PREFIX + "in-progress.part"));
+		Path unrelated = Files.createFile(dir.resolve("not-ours.dna"));
+		Files.setLastModifiedTime(unrelated, FileTime.fromMillis(0));
+		ScratchFile live = scratch.allocate(".dna");
+
+		assertEquals(1, scratch.sweep());
+		assertFalse(Files.exists(orphan));
+		assertTrue(Files.exists(recentOrphan));
+		assertTrue(Files.exists(unrelated));
+		assertTrue(Files.exists(live.getPath()));
+
+		ScratchSpace impatient = new ScratchSpace(
+				config().directory(dir.resolve("impatient")).orphanMaxAgeMillis(0).build());
+		ScratchFile held = impatient.allocate(".dna");
+		assertEquals(0, impatient.sweep());
+		assertTrue(Files.exists(held.getPath()));
+		held.close();
+	}
+
+	@Test
+	void heldFilesAreOnlyReapedIfConfigured() throws IOException {
+		ScratchSpace impatient = new ScratchSpace(config().orphanMaxAgeMillis(0).reapHeldFiles(true).build());
+		ScratchFile leaked = impatient.allocate(".dna");
+		impatient.sweep();
+		assertFalse(Files.exists(leaked.getPath()));
+		assertEquals(0, impatient.getFileCount());
+		assertThrows(IOException.class, () -> leaked.write(new ByteArrayInputStream(new byte[1])));
+	}
+
+	@Test
+	void closeDeletesLiveFiles() throws IOException {
+		ScratchSpace scratch = new ScratchSpace(config().build());
+		scratch.allocate(".dna");
+		scratch.allocate(".download");
+		scratch.close();
+		try (Stream<Path> files = Files.list(dir)) {
+			assertEquals(0, files.count());
+		}
+	}
+
+	private ScratchSpaceConfig.ScratchSpaceConfigBuilder config() {
+		return ScratchSpaceConfig.builder().directory(dir);
+	}
+
+	private byte[] read(SnapgeneInput input) throws IOException {
+		try (InputStream in = input.openStream()) {
+			return IOUtils.toByteArray(in);
+		}
+	}
+
+}
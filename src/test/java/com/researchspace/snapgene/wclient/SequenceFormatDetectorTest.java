@@ -0,0 +1,133 @@
+package com.researchspace.snapgene.wclient;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.commons.io.IOUtils;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.core.io.Resource;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.ResponseEntity;
+import org.springframework.util.LinkedMultiValueMap;
+import org.springframework.web.client.RestTemplate;
+
+import com.researchspace.apiutils.ApiError;
+import com.researchspace.apiutils.rest.utils.SimpleResilienceFacade;
+import com.researchspace.zmq.snapgene.requests.GeneratePngMapConfig;
+import com.researchspace.zmq.snapgene.responses.SnapgeneResponse;
+
+import io.vavr.control.Either;
+
+@ExtendWith(MockitoExtension.class)
+class SequenceFormatDetectorTest {
+
+	@Mock
+	RestTemplate template;
+	SnapgeneWSClientImpl wsClient;
+	Path resources = Paths.get("src/test/resources");
+
+	@BeforeEach
+	void before() throws URISyntaxException {
+		wsClient = new SnapgeneWSClientImpl(new URI("http://somewhere.com"), template,
+				new SimpleResilienceFacade(10, 20), () -> "SequenceFormatDetectorTest");
+		wsClient.init();
+	}
+
+	@Test
+	void detectsTestResourceFormats() throws IOException {
+		assertFormat(SequenceFormat.SNAPGENE, "alpha-2-macroglobulin.dna");
+		assertFormat(SequenceFormat.SNAPGENE, "pIB2-SEC13-mEGFP.dna");
+		assertFormat(SequenceFormat.FASTA, "alpha-2-macroglobulin.fasta");
+		assertFormat(SequenceFormat.FASTA, "pUC19.fasta");
+		assertFormat(SequenceFormat.GENBANK, "alpha-2-macroglobulin.gb");
+		assertFormat(SequenceFormat.LASERGENE, "U94845.seq");
+		assertFormat(SequenceFormat.EMBL, "Embl.embl");
+		assertFormat(SequenceFormat.ABI, "3730.ab1");
+		assertFormat(SequenceFormat.LASERGENE, "Lasergene.seq");
+		assertFormat(SequenceFormat.SEQBUILDER, "SeqBuilder.sbd");
+		assertFormat(SequenceFormat.UNKNOWN, "not-a-dna-file.xyz");
+	}
+
+	@Test
+	void ignoresLeadingWhitespaceAndEmptyContent() {
+		assertEquals(SequenceFormat.FASTA, SequenceFormatDetector.detect("\r\n  >seq\nACGT".getBytes()));
+		assertEquals(SequenceFormat.UNKNOWN, SequenceFormatDetector.detect(new byte[0]));
+	}
+
+	@Test
+	void detectingStreamInputDoesNotConsumeIt() throws IOException {
+		byte[] fasta = ">seq\nACGT".getBytes(StandardCharsets.US_ASCII);
+		InputStream unbuffered = new InputStream() {
+			final InputStream delegate = new ByteArrayInputStream(fasta);
+
+			@Override
+			public int read() throws IOException {
+				return delegate.read();
+			}
+		};
+		SnapgeneInput input = SnapgeneInput.of("seq.txt", unbuffered);
+		assertEquals(SequenceFormat.FASTA, SequenceFormatDetector.detect(input));
+		try (InputStream in = input.openStream()) {
+			assertArrayEquals(fasta, IOUtils.toByteArray(in));
+		}
+	}
+
+	@Test
+	void unrecognisedFileIsRejectedWithoutNetworkCall() throws IOException {
+		Either<ApiError, byte[]> result = wsClient.uploadAndDownloadPng(
+				resources.resolve("not-a-dna-file.xyz").toFile(), GeneratePngMapConfig.builder().build());
+		assertEquals(415, result.getLeft().getHttpCode());
+		assertTrue(wsClient.importDnaFile(resources.resolve("not-a-dna-file.xyz").toFile()).isLeft());
+		Mockito.verifyNoInteractions(template);
+	}
+
+	@Test
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	void nativeContentUnderAnotherNameSkipsImport(@TempDir Path dir) throws IOException {
+		Path renamed = Files.copy(resources.resolve("alpha-2-macroglobulin.dna"), dir.resolve("plasmid.bin"));
+		List<String> uploaded = new ArrayList<>();
+		SnapgeneResponse rendered = Mockito.mock(SnapgeneResponse.class);
+		Mockito.when(rendered.getOutputFileName()).thenReturn("map.png");
+		Mockito.when(template.exchange(any(URI.class), eq(HttpMethod.POST), any(HttpEntity.class),
+				eq(SnapgeneResponse.class))).thenAnswer(invocation -> {
+					HttpEntity<LinkedMultiValueMap<String, Object>> upload = invocation.getArgument(2);
+					uploaded.add(invocation.getArgument(0).toString() + " "
+							+ ((Resource) upload.getBody().getFirst("file")).getFilename());
+					return ResponseEntity.ok(rendered);
+				});
+		Mockito.when(template.getForEntity(any(URI.class), eq(byte[].class)))
+				.thenReturn(ResponseEntity.ok(new byte[] { 1 }));
+
+		assertTrue(wsClient.uploadAndDownloadPng(renamed.toFile(), GeneratePngMapConfig.builder().build()).isRight());
+		assertEquals(1, uploaded.size());
+		assertTrue(uploaded.get(0).contains("exportPng"), uploaded.get(0));
+		assertTrue(uploaded.get(0).endsWith(" plasmid.bin.dna"), uploaded.get(0));
+	}
+
+	private void assertFormat(SequenceFormat expected, String resource) throws IOException {
+		assertEquals(expected, SequenceFormatDetector.detect(resources.resolve(resource)), resource);
+	}
+
+}
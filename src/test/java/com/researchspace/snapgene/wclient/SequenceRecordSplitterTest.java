@@ -0,0 +1,107 @@
+package com.researchspace.snapgene.wclient;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.io.IOUtils;
+import org.junit.jupiter.api.Test;
+
+class SequenceRecordSplitterTest {
+
+	static final String PRIMERS = "; primer set\n>fwd primer one\nACGTACGT\nACGT\n>rev|2\nTTTTGGGG\n>\nCCCC\n";
+	Path resources = Paths.get("src/test/resources");
+
+	@Test
+	void splitsFastaRecordsWithTheirNames() throws IOException {
+		List<SnapgeneInput> records = split(SnapgeneInput.of("primers.fa", PRIMERS.getBytes()), SequenceFormat.FASTA);
+		assertEquals(3, records.size());
+		assertEquals("primers-1-fwd.fa", records.get(0).getFileName());
+		assertEquals(">fwd primer one\nACGTACGT\nACGT\n", content(records.get(0)));
+		assertEquals("primers-2-rev_2.fa", records.get(1).getFileName());
+		assertEquals("primers-3.fa", records.get(2).getFileName());
+		assertEquals(">\nCCCC\n", content(records.get(2)));
+	}
+
+	@Test
+	void splitsGenbankRecordsThatImportOnTheirOwn() throws IOException {
+		byte[] one = Files.readAllBytes(resources.resolve("alpha-2-macroglobulin.gb"));
+		byte[] two = (new String(one, StandardCharsets.ISO_8859_1) + "\n" + new String(one, StandardCharsets.ISO_8859_1))
+				.getBytes(StandardCharsets.ISO_8859_1);
+		List<SnapgeneInput> records = split(SnapgeneInput.of("library.gb", two), SequenceFormat.GENBANK);
+		assertEquals(2, records.size());
+		assertEquals("library-2-NG_011717.gb", records.get(1).getFileName());
+		for (SnapgeneInput record : records) {
+			DnaSequence sequence = LocalSequenceReader.read(record, SequenceFormat.GENBANK).get();
+			assertEquals(55255, sequence.getBases().length);
+		}
+	}
+
+	@Test
+	void readsOneRecordAtATime() throws IOException {
+		StringBuilder fasta = new StringBuilder();
+		for (int i = 0; i < 5000; i++) {
+			fasta.append(">seq").append(i).append('\n').append("ACGTACGTAC\n");
+		}
+		AtomicLong read = new AtomicLong();
+		ByteArrayInputStream content = new ByteArrayInputStream(fasta.toString().getBytes()) {
+			@Override
+			public synchronized int read(byte[] b, int off, int len) {
+				int n = super.read(b, off, len);
+				read.addAndGet(Math.max(n, 0));
+				return n;
+			}
+		};
+		try (SequenceRecordSplitter splitter = SequenceRecordSplitter.open(SnapgeneInput.of("many.fasta", content),
+				SequenceFormat.FASTA)) {
+			assertEquals("many-1-seq0.fasta", splitter.next().getFileName());
+			assertTrue(read.get() < fasta.length() / 2, "read " + read.get() + " bytes for one record");
+			int count = 1;
+			while (splitter.hasNext()) {
+				splitter.next();
+				count++;
+			}
+			assertEquals(5000, count);
+			assertEquals(5000, splitter.getRecordCount());
+		}
+	}
+
+	@Test
+	void rejectsRecordsOverTheLimitAndOtherFormats() throws IOException {
+		try (SequenceRecordSplitter splitter = SequenceRecordSplitter
+				.open(SnapgeneInput.of("primers.fasta", PRIMERS.getBytes()), SequenceFormat.FASTA, 20)) {
+			assertThrows(UncheckedIOException.class, splitter::next);
+		}
+		assertThrows(IllegalArgumentException.class,
+				() -> SequenceRecordSplitter.open(SnapgeneInput.of("x.ab1", new byte[1]), SequenceFormat.ABI));
+		try (SequenceRecordSplitter empty = SequenceRecordSplitter.open(SnapgeneInput.of("x.gb", new byte[0]),
+				SequenceFormat.GENBANK)) {
+			assertFalse(empty.hasNext());
+		}
+	}
+
+	private List<SnapgeneInput> split(SnapgeneInput input, SequenceFormat format) throws IOException {
+		List<SnapgeneInput> records = new ArrayList<>();
+		try (SequenceRecordSplitter splitter = SequenceRecordSplitter.open(input, format)) {
+			splitter.forEachRemaining(records::add);
+		}
+		return records;
+	}
+
+	private static String content(SnapgeneInput input) throws IOException {
+		return IOUtils.toString(input.openStream(), StandardCharsets.ISO_8859_1);
+	}
+
+}
@@ -0,0 +1,160 @@
+package com.researchspace.snapgene.wclient;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.client.RestTemplate;
+
+import com.researchspace.apiutils.ApiError;
+import com.researchspace.apiutils.rest.utils.SimpleResilienceFacade;
+import com.researchspace.zmq.snapgene.requests.GeneratePngMapConfig;
+import com.researchspace.zmq.snapgene.responses.SnapgeneResponse;
+
+import io.vavr.control.Either;
+
+@ExtendWith(MockitoExtension.class)
+class SingleFlightTest {
+
+	@Mock
+	RestTemplate template;
+	ExecutorService executor;
+
+	@BeforeEach
+	void before() {
+		executor = SnapgeneExecutors.fixed(8);
+	}
+
+	@AfterEach
+	void after() {
+		executor.shutdownNow();
+	}
+
+	@Test
+	void concurrentIdenticalCallsShareOneExecution() throws Exception {
+		SingleFlight singleFlight = new SingleFlight();
+		AtomicInteger executions = new AtomicInteger();
+		CountDownLatch release = new CountDownLatch(1);
+		List<Future<String>> results = new ArrayList<>();
+		for (int i = 0; i < 5; i++) {
+			results.add(executor.submit(() -> singleFlight.execute("key", () -> {
+				executions.incrementAndGet();
+				await(release);
+				return "result";
+			})));
+		}
+		waitUntil(() -> singleFlight.getCoalescedCount() == 4);
+		release.countDown();
+		for (Future<String> result : results) {
+			assertEquals("result", result.get(5, TimeUnit.SECONDS));
+		}
+		assertEquals(1, executions.get());
+		assertEquals(0, singleFlight.getInFlightCount());
+	}
+
+	@Test
+	void exceptionsAreSharedToo() throws Exception {
+		SingleFlight singleFlight = new SingleFlight();
+		CountDownLatch release = new CountDownLatch(1);
+		Future<Object> first = executor.submit(() -> singleFlight.execute("key", () -> {
+			await(release);
+			throw new IllegalStateException("server down");
+		}));
+		waitUntil(() -> singleFlight.getInFlightCount() == 1);
+		Future<Object> second = executor.submit(() -> singleFlight.execute("key", () -> "not called"));
+		waitUntil(() -> singleFlight.getCoalescedCount() == 1);
+		release.countDown();
+		assertThrows(ExecutionException.class, () -> first.get(5, TimeUnit.SECONDS));
+		ExecutionException e = assertThrows(ExecutionException.class, () -> second.get(5, TimeUnit.SECONDS));
+		assertEquals("server down", e.getCause().getMessage());
+	}
+
+	@Test
+	void asyncCallsShareOneFuture() throws Exception {
+		SingleFlight singleFlight = new SingleFlight();
+		CompletableFuture<String> shared = new CompletableFuture<>();
+		AtomicInteger starts = new AtomicInteger();
+		CompletableFuture<String> a = singleFlight.executeAsync("key", () -> {
+			starts.incrementAndGet();
+			return shared;
+		});
+		CompletableFuture<String> b = singleFlight.executeAsync("key", () -> {
+			starts.incrementAndGet();
+			return shared;
+		});
+		shared.complete("done");
+		assertEquals("done", a.get(1, TimeUnit.SECONDS));
+		assertEquals("done", b.get(1, TimeUnit.SECONDS));
+		assertEquals(1, starts.get());
+	}
+
+	@Test
+	void clientCoalescesIdenticalRenders() throws Exception {
+		SnapgeneWSClientImpl wsClient = new SnapgeneWSClientImpl(new URI("http://somewhere.com"), template,
+				new SimpleResilienceFacade(10, 20), () -> "SingleFlightTest");
+		wsClient.init();
+		wsClient.setRequestCoalescing(true);
+		CountDownLatch release = new CountDownLatch(1);
+		SnapgeneResponse response = Mockito.mock(SnapgeneResponse.class);
+		Mockito.when(template.exchange(any(URI.class), eq(HttpMethod.POST), any(HttpEntity.class),
+				eq(SnapgeneResponse.class))).thenAnswer(invocation -> {
+					await(release);
+					return ResponseEntity.ok(response);
+				});
+		byte[] dna = new byte[] { 9, 0, 0, 0, 14 };
+
+		List<Future<Either<ApiError, SnapgeneResponse>>> results = new ArrayList<>();
+		for (int i = 0; i < 4; i++) {
+			// distinct input instances and config instances, same content
+			results.add(executor.submit(() -> wsClient.convertToPngFile(SnapgeneInput.of("seq.dna", dna.clone()),
+					GeneratePngMapConfig.builder().linear(true).build())));
+		}
+		waitUntil(() -> wsClient.getCoalescedCallCount() == 3);
+		release.countDown();
+		for (Future<Either<ApiError, SnapgeneResponse>> result : results) {
+			assertSame(response, result.get(5, TimeUnit.SECONDS).get());
+		}
+		Mockito.verify(template, Mockito.times(1)).exchange(any(URI.class), eq(HttpMethod.POST),
+				any(HttpEntity.class), eq(SnapgeneResponse.class));
+	}
+
+	private static void await(CountDownLatch latch) {
+		try {
+			latch.await(5, TimeUnit.SECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	private static void waitUntil(java.util.function.BooleanSupplier condition) throws InterruptedException {
+		long deadline = System.currentTimeMillis() + 5000;
+		while (!condition.getAsBoolean() && System.currentTimeMillis() < deadline) {
+			Thread.sleep(5);
+		}
+	}
+
+}
@@ -0,0 +1,94 @@
+package com.researchspace.snapgene.wclient;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import org.apache.commons.io.IOUtils;
+import org.junit.jupiter.api.Test;
+
+class SnapgeneArchiveReaderTest {
+
+	static Path resources = Paths.get("src/test/resources");
+
+	@Test
+	void readsSequenceEntriesAndSkipsOthers() throws IOException {
+		byte[] plasmid = Files.readAllBytes(resources.resolve("pIB2-SEC13-mEGFP.dna"));
+		Map<String, byte[]> entries = new LinkedHashMap<>();
+		entries.put("plasmids/", null);
+		entries.put("plasmids/pIB2.dna", plasmid);
+		entries.put("plasmids/readme.txt", "Plasmids for the lab".getBytes());
+		entries.put("__MACOSX/plasmids/._pIB2.dna", plasmid);
+		entries.put("pUC19.fasta", Files.readAllBytes(resources.resolve("pUC19.fasta")));
+
+		List<String> names = new ArrayList<>();
+		try (SnapgeneArchiveReader reader = SnapgeneArchiveReader.open(new ByteArrayInputStream(zip(entries)))) {
+			SnapgeneInput first = reader.next();
+			assertEquals("pIB2.dna", first.getFileName());
+			assertArrayEquals(plasmid, IOUtils.toByteArray(first.openStream()));
+			reader.forEachRemaining(input -> names.add(input.getFileName()));
+			assertEquals(Arrays.asList("pUC19.fasta"), names);
+			assertEquals("plasmids/pIB2.dna", reader.entryName(0));
+			assertEquals("pUC19.fasta", reader.entryName(1));
+			assertEquals(Arrays.asList("plasmids/readme.txt", "__MACOSX/plasmids/._pIB2.dna"),
+					reader.getSkippedEntries());
+		}
+	}
+
+	@Test
+	void skipsEntriesOverTheLimit() throws IOException {
+		Map<String, byte[]> entries = new LinkedHashMap<>();
+		entries.put("big.gb", Files.readAllBytes(resources.resolve("alpha-2-macroglobulin.gb")));
+		entries.put("small.embl", Files.readAllBytes(resources.resolve("Embl.embl")));
+		try (SnapgeneArchiveReader reader = SnapgeneArchiveReader.open(new ByteArrayInputStream(zip(entries)),
+				10_000)) {
+			assertEquals("small.embl", reader.next().getFileName());
+			assertFalse(reader.hasNext());
+			assertEquals(Arrays.asList("big.gb"), reader.getSkippedEntries());
+			assertEquals("larger than 10000 bytes", reader.skipReason(0));
+		}
+	}
+
+	@Test
+	void failsOnCorruptArchive() throws IOException {
+		byte[] archive = zip(Collections.singletonMap("pUC19.fasta",
+				Files.readAllBytes(resources.resolve("pUC19.fasta"))));
+		try (SnapgeneArchiveReader reader = SnapgeneArchiveReader
+				.open(new ByteArrayInputStream(Arrays.copyOf(archive, 200)))) {
+			assertThrows(UncheckedIOException.class, reader::hasNext);
+		}
+	}
+
+	// null content makes a directory entry
+	static byte[] zip(Map<String, byte[]> entries) throws IOException {
+		ByteArrayOutputStream archive = new ByteArrayOutputStream();
+		try (ZipOutputStream zip = new ZipOutputStream(archive)) {
+			for (Map.Entry<String, byte[]> entry : entries.entrySet()) {
+				zip.putNextEntry(new ZipEntry(entry.getKey()));
+				if (entry.getValue() != null) {
+					zip.write(entry.getValue());
+				}
+				zip.closeEntry();
+			}
+		}
+		return archive.toByteArray();
+	}
+
+}
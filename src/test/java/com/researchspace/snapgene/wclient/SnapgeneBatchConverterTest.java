@@ -0,0 +1,218 @@
+package com.researchspace.snapgene.wclient;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+import org.apache.commons.io.IOUtils;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.researchspace.apiutils.ApiError;
+
+import io.vavr.control.Either;
+
+class SnapgeneBatchConverterTest {
+
+	ExecutorService executor;
+	SnapgeneBatchConverter converter;
+	AtomicInteger inFlight = new AtomicInteger();
+	AtomicInteger maxInFlight = new AtomicInteger();
+
+	@BeforeEach
+	void before() {
+		executor = SnapgeneExecutors.fixed(8);
+		converter = new SnapgeneBatchConverter(executor, 3);
+	}
+
+	@AfterEach
+	void after() throws InterruptedException {
+		executor.shutdown();
+		executor.awaitTermination(1, TimeUnit.SECONDS);
+	}
+
+	@Test
+	void resultsInInputOrderAndFailuresIsolated() throws InterruptedException {
+		List<SnapgeneInput> inputs = inputs(20);
+		List<BatchItemResult<String>> results = converter.convertAll(inputs, this::slowUppercase);
+
+		assertEquals(20, results.size());
+		for (int i = 0; i < 20; i++) {
+			BatchItemResult<String> result = results.get(i);
+			assertEquals(i, result.getIndex());
+			if (i == 7) {
+				assertFalse(result.isSuccess());
+			} else {
+				assertEquals("SEQ" + i + ".FASTA", result.getResult().get());
+			}
+		}
+		assertTrue(maxInFlight.get() <= 3, "max in flight was " + maxInFlight.get());
+	}
+
+	@Test
+	void streamedInputIsPulledOnlyWhenASlotIsFree() throws InterruptedException {
+		AtomicInteger pulled = new AtomicInteger();
+		AtomicInteger maxAhead = new AtomicInteger();
+		AtomicInteger completed = new AtomicInteger();
+		Iterator<SnapgeneInput> source = new Iterator<SnapgeneInput>() {
+			@Override
+			public boolean hasNext() {
+				return pulled.get() < 30;
+			}
+
+			@Override
+			public SnapgeneInput next() {
+				int i = pulled.incrementAndGet();
+				maxAhead.accumulateAndGet(i - completed.get(), Math::max);
+				return SnapgeneInput.of("seq" + i + ".fasta", new byte[0]);
+			}
+		};
+		List<BatchProgress> progressUpdates = new ArrayList<>();
+		converter.setProgressListener(progressUpdates::add);
+
+		BatchProgress progress = converter.convertEach(source, this::slowUppercase,
+				result -> completed.incrementAndGet());
+
+		assertEquals(30, progress.getSubmitted());
+		assertEquals(30, progress.getCompleted());
+		assertEquals(30, progressUpdates.size());
+		assertTrue(maxAhead.get() <= 3, "read ahead by " + maxAhead.get());
+	}
+
+	@Test
+	void failingSourceIsRethrownOnceInFlightItemsComplete() {
+		AtomicInteger completed = new AtomicInteger();
+		Iterator<SnapgeneInput> source = new Iterator<SnapgeneInput>() {
+			int pulled;
+
+			@Override
+			public boolean hasNext() {
+				return true;
+			}
+
+			@Override
+			public SnapgeneInput next() {
+				if (++pulled == 2) {
+					throw new UncheckedIOException(new IOException("truncated"));
+				}
+				return SnapgeneInput.of("seq" + pulled + ".fasta", new byte[0]);
+			}
+		};
+		assertTimeoutPreemptively(Duration.ofSeconds(5), () -> assertThrows(UncheckedIOException.class,
+				() -> converter.convertEach(source, this::slowUppercase, result -> completed.incrementAndGet())));
+		assertEquals(1, completed.get());
+	}
+
+	@Test
+	void recordsOfAMultiRecordFileRunSeparately() throws IOException, InterruptedException {
+		StringBuilder fasta = new StringBuilder();
+		for (int i = 0; i < 20; i++) {
+			fasta.append(">seq").append(i).append('\n').append("ACGT\n");
+		}
+		List<BatchItemResult<String>> results = converter.convertRecords(
+				SnapgeneInput.of("library.fasta", new ByteArrayInputStream(fasta.toString().getBytes())),
+				this::slowUppercase);
+
+		assertEquals(20, results.size());
+		assertEquals("LIBRARY-1-SEQ0.FASTA", results.get(0).getResult().get());
+		assertEquals("library-8-seq7.fasta", results.get(7).getFileName());
+		assertFalse(results.get(7).isSuccess());
+		assertEquals(19, results.stream().filter(BatchItemResult::isSuccess).count());
+		assertTrue(maxInFlight.get() <= 3, "max in flight was " + maxInFlight.get());
+
+		assertThrows(IOException.class,
+				() -> converter.convertRecords(SnapgeneInput.of("x.ab1", "ABIF".getBytes()), this::slowUppercase));
+	}
+
+	@Test
+	void recordOverTheLimitFailsWithIOException() {
+		StringBuilder fasta = new StringBuilder();
+		for (int i = 0; i < 10; i++) {
+			fasta.append(">seq").append(i).append('\n').append(i == 5 ? "ACGTACGTACGTACGTACGT" : "ACGT").append('\n');
+		}
+		converter.setMaxRecordBytes(20);
+		SnapgeneInput library = SnapgeneInput.of("library.fasta", fasta.toString().getBytes());
+		assertTimeoutPreemptively(Duration.ofSeconds(5),
+				() -> assertThrows(IOException.class, () -> converter.convertRecords(library, this::slowUppercase)));
+	}
+
+	@Test
+	void sequenceFilesInAnArchiveAreRenderedToAnArchive() throws IOException, InterruptedException {
+		Map<String, byte[]> entries = new LinkedHashMap<>();
+		for (int i = 0; i < 10; i++) {
+			entries.put("plasmids/seq" + i + ".fasta", (">seq" + i + "\nACGT\n").getBytes());
+		}
+		entries.put("plasmids/seq0.gb", "LOCUS       seq0  4 bp  DNA  linear\nORIGIN\n        1 acgt\n//\n".getBytes());
+		entries.put("notes.txt", "not a sequence".getBytes());
+		ByteArrayOutputStream target = new ByteArrayOutputStream();
+
+		List<BatchItemResult<String>> results = converter.renderArchive(
+				new ByteArrayInputStream(SnapgeneArchiveReaderTest.zip(entries)),
+				input -> slowUppercase(input).map(String::getBytes), "png", target);
+
+		assertEquals(12, results.size());
+		assertEquals("plasmids/seq7.fasta", results.get(7).getFileName());
+		assertEquals("notes.txt", results.get(11).getFileName());
+		assertEquals(422, results.get(11).getResult().getLeft().getHttpCode());
+		assertEquals("not a sequence file", results.get(11).getResult().getLeft().getMessage());
+		assertFalse(results.get(7).isSuccess());
+		assertEquals("plasmids/seq0.png", results.get(0).getResult().get());
+		assertEquals("plasmids/seq0-2.png", results.get(10).getResult().get());
+		assertTrue(maxInFlight.get() <= 3, "max in flight was " + maxInFlight.get());
+
+		Map<String, String> outputs = new HashMap<>();
+		try (ZipInputStream zip = new ZipInputStream(new ByteArrayInputStream(target.toByteArray()))) {
+			for (ZipEntry entry = zip.getNextEntry(); entry != null; entry = zip.getNextEntry()) {
+				outputs.put(entry.getName(), IOUtils.toString(zip, StandardCharsets.UTF_8));
+			}
+		}
+		assertEquals(10, outputs.size());
+		assertEquals("SEQ3.FASTA", outputs.get("plasmids/seq3.png"));
+		assertEquals("SEQ0.GB", outputs.get("plasmids/seq0-2.png"));
+	}
+
+	private Either<ApiError, String> slowUppercase(SnapgeneInput input) {
+		int now = inFlight.incrementAndGet();
+		maxInFlight.accumulateAndGet(now, Math::max);
+		try {
+			Thread.sleep(5);
+			if (input.getFileName().equals("seq7.fasta") || input.getFileName().endsWith("-seq7.fasta")) {
+				throw new IllegalStateException("corrupt input");
+			}
+			return Either.right(input.getFileName().toUpperCase());
+		} catch (InterruptedException e) {
+			throw new IllegalStateException(e);
+		} finally {
+			inFlight.decrementAndGet();
+		}
+	}
+
+	private List<SnapgeneInput> inputs(int count) {
+		return IntStream.range(0, count).mapToObj(i -> SnapgeneInput.of("seq" + i + ".fasta", new byte[0]))
+				.collect(Collectors.toList());
+	}
+
+}
@@ -0,0 +1,178 @@
+package com.researchspace.snapgene.wclient;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.net.URI;
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.researchspace.snapgene.wclient.FakeSnapgeneServer.Behaviour;
+import com.researchspace.snapgene.wclient.FakeSnapgeneServer.LatencyModel;
+import com.researchspace.snapgene.wclient.SnapgeneHealth.State;
+import com.researchspace.snapgene.wclient.SnapgeneLoadGenerator.Report;
+import com.researchspace.zmq.snapgene.requests.GeneratePngMapConfig;
+import com.researchspace.zmq.snapgene.responses.SnapgeneResponse;
+
+class SnapgeneClusterTest {
+
+	static final Behaviour HEALTHY = Behaviour.builder().latency(LatencyModel.fixed(5)).payloadBytes(100).build();
+
+	FakeSnapgeneServer nodeA;
+	FakeSnapgeneServer nodeB;
+	SnapgeneWSClientImpl client;
+
+	@BeforeEach
+	void before() throws IOException {
+		nodeA = new FakeSnapgeneServer(HEALTHY);
+		nodeB = new FakeSnapgeneServer(HEALTHY);
+		client = new SnapgeneWSClientImpl(Arrays.asList(nodeA.getUri(), nodeB.getUri()),
+				SnapgeneClusterConfig.builder().probeIntervalMillis(20).ejectAfterFailures(1).readmitAfterSuccesses(1)
+						.build(),
+				SnapgeneTransportConfig.defaults(), () -> "SnapgeneClusterTest");
+		client.init();
+	}
+
+	@AfterEach
+	void after() throws IOException {
+		client.destroy();
+		nodeA.close();
+		nodeB.close();
+	}
+
+	@Test
+	void callsAreSpreadAcrossNodesAndDownloadsFollowTheirOutput() throws InterruptedException {
+		GeneratePngMapConfig config = GeneratePngMapConfig.builder().build();
+		Report report = new SnapgeneLoadGenerator(4).run(40, () -> client
+				.convertToPngFile(SnapgeneInput.of("seq.dna", new byte[100]), config)
+				.map(SnapgeneResponse::getOutputFileName).flatMap(client::downloadFile));
+
+		assertEquals(0, report.getErrors());
+		assertTrue(nodeA.getRequestCount("exportPng") > 0);
+		assertTrue(nodeB.getRequestCount("exportPng") > 0);
+		assertEquals(nodeA.getRequestCount("exportPng"), nodeA.getRequestCount("downloadFile"));
+		assertEquals(nodeB.getRequestCount("exportPng"), nodeB.getRequestCount("downloadFile"));
+	}
+
+	@Test
+	void multiStepCallsStayOnOneNode() {
+		assertTrue(client.uploadAndDownloadPng(SnapgeneInput.of("seq.fasta", ">seq\nACGT".getBytes()),
+				GeneratePngMapConfig.builder().build()).isRight());
+
+		FakeSnapgeneServer used = nodeA.getRequestCount("importDNAFile") == 1 ? nodeA : nodeB;
+		FakeSnapgeneServer unused = used == nodeA ? nodeB : nodeA;
+		assertEquals(1, used.getRequestCount("importDNAFile"));
+		assertEquals(1, used.getRequestCount("exportPng"));
+		assertEquals(2, used.getRequestCount("downloadFile"));
+		assertEquals(0, unused.getRequestCount("importDNAFile") + unused.getRequestCount("exportPng")
+				+ unused.getRequestCount("downloadFile"));
+	}
+
+	@Test
+	void unhealthyNodeIsEjectedAndReadmitted() throws InterruptedException {
+		SnapgeneNode b = client.getCluster().getNodes().get(1);
+		nodeB.setBehaviour(HEALTHY.toBuilder().errorRate(1).build());
+		waitUntil(() -> !b.isHealthy());
+
+		long before = nodeB.getRequestCount("exportPng");
+		for (int i = 0; i < 10; i++) {
+			assertTrue(client.convertToPngFile(SnapgeneInput.of("seq.dna", new byte[10]),
+					GeneratePngMapConfig.builder().build()).isRight());
+		}
+		assertEquals(before, nodeB.getRequestCount("exportPng"));
+
+		nodeB.setBehaviour(HEALTHY);
+		waitUntil(b::isHealthy);
+		assertTrue(b.isHealthy());
+	}
+
+	@Test
+	void allNodesAreUsedIfAllAreEjected() throws InterruptedException {
+		nodeA.setBehaviour(HEALTHY.toBuilder().errorRate(1).build());
+		nodeB.setBehaviour(HEALTHY.toBuilder().errorRate(1).build());
+		waitUntil(() -> client.getCluster().getNodes().stream().noneMatch(SnapgeneNode::isHealthy));
+		assertFalse(client.getCluster().getNodes().get(0).isHealthy());
+
+		nodeA.setBehaviour(HEALTHY);
+		nodeB.setBehaviour(HEALTHY);
+		// the next probe may readmit nodes, but either way the call is made
+		assertTrue(client.convertToPngFile(SnapgeneInput.of("seq.dna", new byte[10]),
+				GeneratePngMapConfig.builder().build()).isRight());
+	}
+
+	@Test
+	void hungProbeOnlyEjectsItsOwnNode() {
+		CountDownLatch hung = new CountDownLatch(1);
+		AtomicInteger probesOfA = new AtomicInteger();
+		try (SnapgeneCluster cluster = new SnapgeneCluster(
+				Arrays.asList(URI.create("http://a.example"), URI.create("http://b.example")),
+				SnapgeneClusterConfig.builder().probeTimeoutMillis(100).ejectAfterFailures(1).build())) {
+			SnapgeneNode a = cluster.getNodes().get(0);
+			SnapgeneNode b = cluster.getNodes().get(1);
+			for (int round = 0; round < 3; round++) {
+				long start = System.currentTimeMillis();
+				cluster.probeAll(node -> {
+					if (node == a) {
+						probesOfA.incrementAndGet();
+						// ignores interrupts, as a blocked socket read does
+						awaitUninterruptibly(hung);
+					}
+					return true;
+				});
+				assertTrue(System.currentTimeMillis() - start < 1000, "probe round took too long");
+			}
+			assertFalse(a.isHealthy());
+			assertTrue(b.isHealthy());
+			assertEquals(1, probesOfA.get(), "no new probe starts while one is hung");
+		} finally {
+			hung.countDown();
+		}
+	}
+
+	private static void awaitUninterruptibly(CountDownLatch latch) {
+		while (true) {
+			try {
+				latch.await();
+				return;
+			} catch (InterruptedException e) {
+				// keep waiting
+			}
+		}
+	}
+
+	@Test
+	void healthIsDownOnlyWhenEveryNodeFails() throws InterruptedException {
+		SnapgeneHealthMonitor monitor = client.startHealthMonitor(
+				HealthMonitorConfig.builder().pollIntervalMillis(20).downAfterFailures(1).build());
+		waitUntil(() -> monitor.getHealth().getState() == State.UP);
+
+		nodeA.setBehaviour(Behaviour.builder().errorRate(1).build());
+		long statusBefore = nodeA.getRequestCount("status");
+		waitUntil(() -> nodeA.getRequestCount("status") > statusBefore + 5);
+		assertEquals(State.UP, monitor.getHealth().getState());
+		assertTrue(client.downloadFile("any.png").isRight());
+
+		nodeB.setBehaviour(Behaviour.builder().errorRate(1).build());
+		waitUntil(() -> monitor.getHealth().isDown());
+		assertEquals(503, client.downloadFile("any.png").getLeft().getHttpCode());
+
+		nodeA.setBehaviour(HEALTHY);
+		waitUntil(() -> monitor.getHealth().getState() == State.UP);
+	}
+
+	private static void waitUntil(BooleanSupplier condition) throws InterruptedException {
+		long deadline = System.currentTimeMillis() + 5000;
+		while (!condition.getAsBoolean() && System.currentTimeMillis() < deadline) {
+			Thread.sleep(10);
+		}
+	}
+
+}
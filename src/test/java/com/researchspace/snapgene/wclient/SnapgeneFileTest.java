@@ -0,0 +1,97 @@
+package com.researchspace.snapgene.wclient;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+class SnapgeneFileTest {
+
+	Path resources = Paths.get("src/test/resources");
+
+	@Test
+	void readsLinearSequenceAndFeatures() throws IOException {
+		SnapgeneFile file = SnapgeneFile.open(resources.resolve("alpha-2-macroglobulin.dna"));
+		assertEquals("alpha-2-macroglobulin", file.getName());
+		assertEquals(55255, file.length());
+		assertFalse(file.isCircular());
+		assertEquals(Arrays.asList(9, 0, 2, 3, 8, 10, 6, 13, 14), file.segmentTypes());
+		assertEquals(56, file.getFeatures().size());
+		assertEquals("source", file.getFeatures().get(0).getType());
+		assertTrue(file.getPrimers().isEmpty());
+
+		DnaSequence genbank = LocalSequenceReader
+				.read(SnapgeneInput.of(resources.resolve("alpha-2-macroglobulin.gb")), SequenceFormat.GENBANK).get();
+		assertEquals(new String(genbank.getBases(), StandardCharsets.US_ASCII).toUpperCase(),
+				new String(file.getSequence().getBases(), StandardCharsets.US_ASCII).toUpperCase());
+	}
+
+	@Test
+	void readsCircularSequenceFeaturesAndPrimers() throws IOException {
+		SnapgeneFile file = SnapgeneFile.open(resources.resolve("pIB2-SEC13-mEGFP.dna"));
+		assertEquals(7235, file.length());
+		assertTrue(file.isCircular());
+
+		SequenceFeature egfp = file.getFeatures().get(0);
+		assertEquals("mEGFP", egfp.getName());
+		assertEquals("CDS", egfp.getType());
+		assertEquals(1, egfp.getDirectionality());
+		assertEquals(1653, egfp.getStart());
+		assertEquals(2372, egfp.getEnd());
+		assertEquals("<html><body>enhanced GFP</body></html>", egfp.getQualifiers().get("product"));
+		assertEquals("1", egfp.getQualifiers().get("codon_start"));
+
+		List<Primer> primers = file.getPrimers();
+		assertEquals(4, primers.size());
+		assertEquals("A206K.REV", primers.get(0).getName());
+		assertEquals("GTTGGGGTCTTTGCTCAGCTTGGACTGGGTGCTCAGGTA", primers.get(0).getSequence());
+		assertEquals(Arrays.asList(new Primer.BindingSite(2252, 2290, 1)), primers.get(0).getBindingSites());
+		assertSame(primers, file.getPrimers());
+	}
+
+	@Test
+	void basesAreAViewOfTheMappedFile() throws IOException {
+		SnapgeneFile file = SnapgeneFile.open(resources.resolve("pIB2-SEC13-mEGFP.dna"));
+		ByteBuffer bases = file.bases();
+		assertTrue(bases.isDirect());
+		assertTrue(bases.isReadOnly());
+		assertEquals(file.length(), bases.remaining());
+		byte[] copy = new byte[bases.remaining()];
+		bases.get(copy);
+		assertArrayEquals(copy, file.getSequence().getBases());
+		assertEquals(file.length(), file.bases().remaining());
+	}
+
+	@Test
+	void inMemoryInputsAreReadToo() throws IOException {
+		byte[] content = Files.readAllBytes(resources.resolve("pIB2-SEC13-mEGFP.dna"));
+		SnapgeneFile file = SnapgeneFile.of(SnapgeneInput.of("plasmid.dna", content));
+		assertEquals("plasmid", file.getName());
+		assertEquals(7235, file.length());
+		assertEquals(8, file.getFeatures().size());
+	}
+
+	@Test
+	void rejectsOtherAndTruncatedFiles() throws IOException {
+		assertThrows(IOException.class, () -> SnapgeneFile.open(resources.resolve("alpha-2-macroglobulin.gb")));
+		byte[] content = Files.readAllBytes(resources.resolve("alpha-2-macroglobulin.dna"));
+		assertThrows(IOException.class,
+				() -> SnapgeneFile.of(SnapgeneInput.of("cut.dna", Arrays.copyOf(content, 1000))));
+		assertThrows(IOException.class,
+				() -> SnapgeneFile.of(SnapgeneInput.of("cookie.dna", OrfFinderTest.NATIVE_COOKIE)));
+	}
+
+}
@@ -0,0 +1,148 @@
+package com.researchspace.snapgene.wclient;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+
+import com.researchspace.apiutils.ApiError;
+import com.researchspace.snapgene.wclient.FakeSnapgeneServer.Behaviour;
+import com.researchspace.snapgene.wclient.SnapgeneHealth.State;
+
+import io.vavr.control.Either;
+
+class SnapgeneHealthMonitorTest {
+
+	Either<ApiError, String> nextStatus;
+
+	@Test
+	void parsesStatusJsonIntoSnapshot() {
+		nextStatus = Either.right("{\"status\":\"ok\",\"queueLength\":3,\"running\":2,\"version\":\"6.0\"}");
+		SnapgeneHealthMonitor monitor = new SnapgeneHealthMonitor(() -> nextStatus, HealthMonitorConfig.defaults());
+		assertEquals(State.UNKNOWN, monitor.getHealth().getState());
+
+		SnapgeneHealth health = monitor.poll();
+
+		assertEquals(State.UP, health.getState());
+		assertEquals("ok", health.getServerStatus());
+		assertEquals(3L, health.getQueueLength().get().longValue());
+		assertEquals(2L, health.getActiveRequests().get().longValue());
+		assertEquals("6.0", health.getDetails().get("version"));
+	}
+
+	@Test
+	void nonJsonStatusIsKeptAsIs() {
+		nextStatus = Either.right("Snapgene server running\n");
+		SnapgeneHealth health = new SnapgeneHealthMonitor(() -> nextStatus, HealthMonitorConfig.defaults()).poll();
+
+		assertEquals(State.UP, health.getState());
+		assertEquals("Snapgene server running", health.getServerStatus());
+		assertFalse(health.getQueueLength().isPresent());
+	}
+
+	@Test
+	void downAfterConsecutiveFailuresAndUpAfterOneSuccess() {
+		SnapgeneHealthMonitor monitor = new SnapgeneHealthMonitor(() -> nextStatus,
+				HealthMonitorConfig.builder().downAfterFailures(2).build());
+		List<State> changes = new ArrayList<>();
+		monitor.addListener(health -> changes.add(health.getState()));
+		nextStatus = Either.right("{}");
+		monitor.poll();
+
+		nextStatus = Either.left(new ApiError(HttpStatus.BAD_GATEWAY, 502, "bad gateway", "proxy error"));
+		assertEquals(State.UP, monitor.poll().getState());
+		assertFalse(monitor.shouldFailFast());
+		SnapgeneHealth down = monitor.poll();
+		assertEquals(State.DOWN, down.getState());
+		assertEquals(2, down.getConsecutiveFailures());
+		assertEquals("bad gateway", down.getError());
+		assertTrue(monitor.shouldFailFast());
+
+		nextStatus = Either.right("{}");
+		assertEquals(State.UP, monitor.poll().getState());
+		assertEquals(3, changes.size(), "UNKNOWN->UP, UP->DOWN, DOWN->UP");
+	}
+
+	@Test
+	void hungProbeTimesOutAndFailingListenerDoesNotStopPolling() throws InterruptedException {
+		CountDownLatch release = new CountDownLatch(1);
+		AtomicBoolean hang = new AtomicBoolean(true);
+		AtomicInteger polls = new AtomicInteger();
+		SnapgeneHealthMonitor monitor = new SnapgeneHealthMonitor(() -> {
+			polls.incrementAndGet();
+			if (hang.get()) {
+				try {
+					release.await();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			}
+			return Either.right("{}");
+		}, HealthMonitorConfig.builder().pollIntervalMillis(10).probeTimeoutMillis(50).downAfterFailures(1).build());
+		monitor.addListener(health -> {
+			throw new IllegalStateException("listener bug");
+		});
+		try {
+			monitor.start();
+			waitUntil(() -> monitor.getHealth().isDown());
+			assertTrue(monitor.getHealth().getError().contains("timed out"), monitor.getHealth().getError());
+
+			hang.set(false);
+			release.countDown();
+			waitUntil(() -> monitor.getHealth().getState() == State.UP);
+			int before = polls.get();
+			waitUntil(() -> polls.get() > before + 2);
+		} finally {
+			monitor.close();
+		}
+	}
+
+	@Test
+	void clientFailsFastWhileDownAndRecovers() throws Exception {
+		try (FakeSnapgeneServer server = new FakeSnapgeneServer(Behaviour.builder().build())) {
+			SnapgeneWSClientImpl client = new SnapgeneWSClientImpl(server.getUri(),
+					SnapgeneTransportConfig.defaults(), () -> "SnapgeneHealthMonitorTest");
+			client.init();
+			try {
+				assertFalse(client.getHealth().isPresent());
+				client.startHealthMonitor(
+						HealthMonitorConfig.builder().pollIntervalMillis(20).downAfterFailures(1).build());
+				waitUntil(() -> client.getHealth().get().getState() == State.UP);
+
+				server.setBehaviour(Behaviour.builder().errorRate(1).build());
+				waitUntil(() -> client.getHealth().get().isDown());
+				long downloadsBefore = server.getRequestCount("downloadFile");
+				long start = System.nanoTime();
+				Either<ApiError, byte[]> result = client.downloadFile("any.png");
+				assertEquals(503, result.getLeft().getHttpCode());
+				assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < 100);
+				assertEquals(downloadsBefore, server.getRequestCount("downloadFile"));
+
+				server.setBehaviour(Behaviour.builder().build());
+				waitUntil(() -> client.getHealth().get().getState() == State.UP);
+				assertTrue(client.downloadFile("any.png").isRight());
+			} finally {
+				client.destroy();
+			}
+		}
+	}
+
+	private static void waitUntil(BooleanSupplier condition) throws InterruptedException {
+		long deadline = System.currentTimeMillis() + 5000;
+		while (!condition.getAsBoolean() && System.currentTimeMillis() < deadline) {
+			Thread.sleep(10);
+		}
+		assertTrue(condition.getAsBoolean(), "timed out waiting for condition");
+	}
+
+}
@@ -0,0 +1,84 @@
+package com.researchspace.snapgene.wclient;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsString;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.FormHttpMessageConverter;
+import org.springframework.mock.http.MockHttpOutputMessage;
+import org.springframework.util.LinkedMultiValueMap;
+
+class SnapgeneInputTest {
+
+	File pUC19fasta = new File("src/test/resources/pUC19.fasta");
+
+	@Test
+	void fileAndBytesInputsHashTheSame() throws IOException {
+		SnapgeneInput fromFile = SnapgeneInput.of(pUC19fasta);
+		SnapgeneInput fromBytes = SnapgeneInput.of("pUC19.fasta", Files.readAllBytes(pUC19fasta.toPath()));
+		assertEquals(fromFile.contentHash(), fromBytes.contentHash());
+		assertEquals(ContentHash.sha256Hex(pUC19fasta), fromFile.contentHash());
+		assertEquals("fasta", fromBytes.getExtension());
+		assertEquals(pUC19fasta.length(), fromFile.contentLength());
+	}
+
+	@Test
+	void streamInputIsSingleUse() {
+		SnapgeneInput input = SnapgeneInput.of("pUC19.fasta", new ByteArrayInputStream(new byte[10]));
+		assertFalse(input.isReplayable());
+		assertEquals(-1, input.contentLength());
+		assertThrows(IllegalStateException.class, input::contentHash);
+	}
+
+	@Test
+	void multipartPartUsesInputFileNameWithoutReadingStreamInAdvance() throws IOException {
+		byte[] content = "ACGT".getBytes(StandardCharsets.UTF_8);
+		CountingStream stream = new CountingStream(content);
+		SnapgeneInput input = SnapgeneInput.of("seq.fasta", stream);
+		assertEquals(-1, input.asResource().contentLength());
+		assertEquals(0, stream.reads, "content length must not be computed by reading the stream");
+
+		LinkedMultiValueMap<String, Object> parts = new LinkedMultiValueMap<>();
+		parts.add("file", input.asResource());
+		MockHttpOutputMessage out = new MockHttpOutputMessage();
+		new FormHttpMessageConverter().write(parts, MediaType.MULTIPART_FORM_DATA, out);
+		String body = out.getBodyAsString(StandardCharsets.UTF_8);
+		assertThat(body, containsString("filename=\"seq.fasta\""));
+		assertThat(body, containsString("ACGT"));
+		assertTrue(stream.reads > 0);
+	}
+
+	static class CountingStream extends InputStream {
+		private final InputStream delegate;
+		int reads;
+
+		CountingStream(byte[] content) {
+			this.delegate = new ByteArrayInputStream(content);
+		}
+
+		@Override
+		public int read() throws IOException {
+			reads++;
+			return delegate.read();
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) throws IOException {
+			reads++;
+			return delegate.read(b, off, len);
+		}
+	}
+
+}
@@ -0,0 +1,107 @@
+package com.researchspace.snapgene.wclient;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import com.researchspace.apiutils.ApiError;
+
+import io.vavr.control.Either;
+import lombok.Value;
+
+/**
+ * Drives a client call at a fixed concurrency and reports throughput, latency
+ * percentiles and errors. Typically run against a {@link FakeSnapgeneServer}.
+ */
+public class SnapgeneLoadGenerator {
+
+	@Value
+	public static class Report {
+		int requests;
+		long elapsedMillis;
+		/**
+		 * Error count by HTTP status
+		 */
+		Map<Integer, Integer> errorsByStatus;
+		/**
+		 * Latency of each call in nanoseconds, sorted
+		 */
+		long[] latenciesNanos;
+
+		public int getErrors() {
+			return errorsByStatus.values().stream().mapToInt(Integer::intValue).sum();
+		}
+
+		public double getErrorRate() {
+			return requests == 0 ? 0 : (double) getErrors() / requests;
+		}
+
+		public double getThroughputPerSecond() {
+			return elapsedMillis == 0 ? 0 : requests * 1000.0 / elapsedMillis;
+		}
+
+		/**
+		 * @param percentile 0 to 100
+		 */
+		public double getLatencyMillis(double percentile) {
+			if (latenciesNanos.length == 0) {
+				return 0;
+			}
+			int index = (int) Math.ceil(percentile / 100 * latenciesNanos.length) - 1;
+			return latenciesNanos[Math.max(0, Math.min(index, latenciesNanos.length - 1))] / 1_000_000.0;
+		}
+
+		@Override
+		public String toString() {
+			return String.format("%d requests in %d ms: %.1f/s, p50 %.1f ms, p99 %.1f ms, error rate %.3f %s",
+					requests, elapsedMillis, getThroughputPerSecond(), getLatencyMillis(50), getLatencyMillis(99),
+					getErrorRate(), errorsByStatus);
+		}
+	}
+
+	private final int concurrency;
+
+	public SnapgeneLoadGenerator(int concurrency) {
+		this.concurrency = concurrency;
+	}
+
+	/**
+	 * Makes <code>totalRequests</code> calls, keeping <code>concurrency</code> in
+	 * flight, and waits for them all to finish.
+	 */
+	public Report run(int totalRequests, Supplier<? extends Either<ApiError, ?>> call) throws InterruptedException {
+		long[] latencies = new long[totalRequests];
+		int[] statuses = new int[totalRequests];
+		AtomicInteger next = new AtomicInteger();
+		ExecutorService workers = SnapgeneExecutors.fixed(concurrency);
+		long start = System.nanoTime();
+		for (int worker = 0; worker < concurrency; worker++) {
+			workers.execute(() -> {
+				int i;
+				while ((i = next.getAndIncrement()) < totalRequests) {
+					long callStart = System.nanoTime();
+					Either<ApiError, ?> result = call.get();
+					latencies[i] = System.nanoTime() - callStart;
+					statuses[i] = result.isRight() ? 0 : result.getLeft().getHttpCode();
+				}
+			});
+		}
+		workers.shutdown();
+		workers.awaitTermination(1, TimeUnit.HOURS);
+		long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+		Map<Integer, Integer> errors = new TreeMap<>();
+		for (int status : statuses) {
+			if (status != 0) {
+				errors.merge(status, 1, Integer::sum);
+			}
+		}
+		Arrays.sort(latencies);
+		return new Report(totalRequests, elapsedMillis, errors, latencies);
+	}
+
+}
@@ -0,0 +1,96 @@
+package com.researchspace.snapgene.wclient;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import com.researchspace.apiutils.rest.utils.SimpleResilienceFacade;
+import com.researchspace.snapgene.wclient.FakeSnapgeneServer.Behaviour;
+import com.researchspace.snapgene.wclient.FakeSnapgeneServer.LatencyModel;
+import com.researchspace.snapgene.wclient.SnapgeneLoadGenerator.Report;
+import com.researchspace.zmq.snapgene.requests.GeneratePngMapConfig;
+
+import lombok.extern.slf4j.Slf4j;
+
+/*
+ * Short load runs against the fake server, sized for CI. Scale up with
+ * -Dsnapgene.load.requests=... -Dsnapgene.load.concurrency=...
+ */
+@Slf4j
+class SnapgeneLoadHarnessTest {
+
+	static final int REQUESTS = Integer.getInteger("snapgene.load.requests", 200);
+	static final int CONCURRENCY = Integer.getInteger("snapgene.load.concurrency", 8);
+
+	FakeSnapgeneServer server;
+	SnapgeneWSClientImpl client;
+
+	@AfterEach
+	void after() throws IOException {
+		client.destroy();
+		server.close();
+	}
+
+	@Test
+	void renderAndDownloadUnderLoad() throws Exception {
+		start(Behaviour.builder().latency(LatencyModel.uniform(1, 5)).payloadBytes(20_000).build());
+		SnapgeneInput dna = SnapgeneInput.of("seq.dna", nativeDnaContent(5000));
+		GeneratePngMapConfig config = GeneratePngMapConfig.builder().build();
+
+		Report report = new SnapgeneLoadGenerator(CONCURRENCY).run(REQUESTS,
+				() -> client.uploadAndDownloadPng(dna, config));
+		log.info("uploadAndDownloadPng: {}", report);
+
+		assertEquals(0, report.getErrors());
+		assertTrue(report.getThroughputPerSecond() > 0);
+		assertTrue(report.getLatencyMillis(99) >= report.getLatencyMillis(50));
+		assertTrue(report.getLatencyMillis(50) >= 2, "a call includes an upload and a download, each >= 1ms");
+		assertEquals(REQUESTS, server.getRequestCount("exportPng"));
+		assertEquals(REQUESTS, server.getRequestCount("downloadFile"));
+	}
+
+	@Test
+	void reportsInjectedErrorsByStatus() throws Exception {
+		start(Behaviour.builder().errorRate(1).errorStatus(503).build());
+		client.setFacade(new SimpleResilienceFacade(1, 1000));
+
+		Report report = new SnapgeneLoadGenerator(4).run(20, client::status);
+
+		assertEquals(1.0, report.getErrorRate());
+		assertEquals(20, report.getErrorsByStatus().get(503).intValue());
+		assertEquals(60, server.getRequestCount("status"), "each call is retried twice");
+	}
+
+	@Test
+	void slowDripDownloads() throws Exception {
+		start(Behaviour.builder().payloadBytes(40_000).dripChunkBytes(10_000).dripDelayMillis(25).build());
+
+		long start = System.nanoTime();
+		byte[] downloaded = client.downloadFile("any.png").get();
+
+		assertEquals(40_000, downloaded.length);
+		assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) >= 75);
+	}
+
+	private void start(Behaviour behaviour) throws IOException {
+		server = new FakeSnapgeneServer(behaviour);
+		client = new SnapgeneWSClientImpl(server.getUri(),
+				SnapgeneTransportConfig.defaults().toBuilder().maxConnectionsPerRoute(CONCURRENCY).build(),
+				() -> "SnapgeneLoadHarnessTest");
+		client.init();
+	}
+
+	// a native .dna header, so the facade skips import
+	private static byte[] nativeDnaContent(int size) {
+		byte[] content = new byte[size];
+		byte[] header = { 9, 0, 0, 0, 14, 'S', 'n', 'a', 'p', 'G', 'e', 'n', 'e' };
+		System.arraycopy(header, 0, content, 0, header.length);
+		return content;
+	}
+
+}
@@ -0,0 +1,128 @@
+package com.researchspace.snapgene.wclient;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.charset.Charset;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.HttpServerErrorException;
+import org.springframework.web.client.RestTemplate;
+
+import com.researchspace.apiutils.rest.utils.SimpleResilienceFacade;
+
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+@ExtendWith(MockitoExtension.class)
+class SnapgeneMetricsTest {
+	@Mock
+	RestTemplate template;
+	SnapgeneWSClientImpl wsClient;
+	SimpleMeterRegistry registry;
+
+	@BeforeEach
+	void before() throws URISyntaxException {
+		wsClient = new SnapgeneWSClientImpl(new URI("http://somewhere.com"), template,
+				new SimpleResilienceFacade(10, 200), () -> "SnapgeneMetricsTest");
+		wsClient.init();
+		registry = new SimpleMeterRegistry();
+		wsClient.setMetrics(new MicrometerSnapgeneMetrics(registry));
+	}
+
+	@Test
+	void recordsLatencyAttemptsAndRetries() {
+		Mockito.when(template.getForEntity(Mockito.any(URI.class), Mockito.eq(String.class)))
+				.thenThrow(serverError()).thenReturn(ResponseEntity.ok("OK"));
+
+		assertTrue(wsClient.status().isRight());
+
+		assertEquals(1, registry.get("snapgene.client.requests").tag("endpoint", "status")
+				.tag("outcome", "SUCCESS").tag("status", "200").timer().count());
+		assertEquals(2, registry.get("snapgene.client.attempts").tag("endpoint", "status").counter().count());
+		assertEquals(1, registry.get("snapgene.client.retries").tag("endpoint", "status").counter().count());
+	}
+
+	@Test
+	void recordsOutcomeByStatusAndDownloadSize() {
+		Mockito.when(template.getForEntity(Mockito.any(URI.class), Mockito.eq(byte[].class)))
+				.thenAnswer(invocation -> {
+					if (invocation.getArgument(0).toString().contains("missing")) {
+						throw new HttpClientErrorException(HttpStatus.NOT_FOUND);
+					}
+					return ResponseEntity.ok(new byte[1000]);
+				});
+
+		assertTrue(wsClient.downloadFile("missing.png").isLeft());
+		assertTrue(wsClient.downloadFile("present.png").isRight());
+
+		assertEquals(1, registry.get("snapgene.client.requests").tag("endpoint", "downloadFile")
+				.tag("outcome", "CLIENT_ERROR").tag("status", "404").timer().count());
+		assertEquals(1000, registry.get("snapgene.client.payload").tag("endpoint", "downloadFile")
+				.tag("direction", "download").summary().totalAmount());
+	}
+
+	@Test
+	void recordsRejectedCallsAndBreakerState() {
+		CircuitBreaker breaker = CircuitBreaker.ofDefaults("test");
+		wsClient.monitorCircuitBreaker(breaker);
+		assertEquals(1, breakerGauge("CLOSED"));
+
+		breaker.transitionToOpenState();
+		assertEquals(1, breakerGauge("OPEN"));
+		assertEquals(0, breakerGauge("CLOSED"));
+
+		SnapgeneMetrics recorded = Mockito.mock(SnapgeneMetrics.class);
+		wsClient.setMetrics(recorded);
+		wsClient.setFacade(new SimpleResilienceFacade(10, 10));
+		Mockito.when(template.getForEntity(Mockito.any(URI.class), Mockito.eq(String.class)))
+				.thenThrow(serverError());
+		// 4 calls x 3 attempts, the 10th failure opens the breaker
+		for (int i = 0; i < 5; i++) {
+			wsClient.status();
+		}
+		Mockito.verify(recorded).recordCall(Mockito.argThat(SnapgeneCallRecord::isRejected));
+	}
+
+	@Test
+	void perEndpointBreakersAreMonitored() {
+		SnapgeneResiliencePolicies policies = SnapgeneResiliencePolicies.defaults();
+		wsClient.setResiliencePolicies(policies);
+		assertEquals(1, breakerGauge(registry, "snapgene-status", "CLOSED"));
+		policies.forEndpoint(SnapgeneEndpoint.STATUS).getCircuitBreaker().transitionToOpenState();
+		assertEquals(1, breakerGauge(registry, "snapgene-status", "OPEN"));
+
+		// metrics set afterwards receive current state and later transitions
+		SimpleMeterRegistry later = new SimpleMeterRegistry();
+		wsClient.setMetrics(new MicrometerSnapgeneMetrics(later));
+		assertEquals(1, breakerGauge(later, "snapgene-status", "OPEN"));
+		policies.forEndpoint(SnapgeneEndpoint.STATUS).getCircuitBreaker().transitionToHalfOpenState();
+		assertEquals(1, breakerGauge(later, "snapgene-status", "HALF_OPEN"));
+		assertEquals(0, breakerGauge(later, "snapgene-status", "OPEN"));
+	}
+
+	private double breakerGauge(String state) {
+		return breakerGauge(registry, "test", state);
+	}
+
+	private static double breakerGauge(SimpleMeterRegistry registry, String name, String state) {
+		return registry.get("snapgene.client.circuitbreaker.state").tag("name", name).tag("state", state).gauge()
+				.value();
+	}
+
+	private HttpServerErrorException serverError() {
+		return new HttpServerErrorException(HttpStatus.INTERNAL_SERVER_ERROR, "Server error", new byte[0],
+				Charset.defaultCharset());
+	}
+
+}
@@ -0,0 +1,86 @@
+package com.researchspace.snapgene.wclient;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
+import org.springframework.http.client.SimpleClientHttpRequestFactory;
+
+import com.sun.net.httpserver.HttpServer;
+
+class SnapgeneTransportTest {
+
+	HttpServer server;
+	Set<Integer> clientPorts = new HashSet<>();
+
+	@BeforeEach
+	void startServer() throws IOException {
+		server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+		server.createContext("/snapgene/status", exchange -> {
+			synchronized (clientPorts) {
+				clientPorts.add(exchange.getRemoteAddress().getPort());
+			}
+			byte[] body = "{\"status\":\"ok\"}".getBytes(StandardCharsets.UTF_8);
+			exchange.getResponseHeaders().add("Content-Type", "application/json");
+			exchange.sendResponseHeaders(200, body.length);
+			try (OutputStream out = exchange.getResponseBody()) {
+				out.write(body);
+			}
+		});
+		server.start();
+	}
+
+	@AfterEach
+	void stopServer() {
+		server.stop(0);
+	}
+
+	@Test
+	void simpleTransportIsNotPooled() throws IOException {
+		try (SnapgeneTransport transport = new SnapgeneTransport(SnapgeneTransportConfig.simple())) {
+			assertTrue(transport.getRestTemplate().getRequestFactory() instanceof SimpleClientHttpRequestFactory);
+			assertFalse(transport.getPoolStats().isPresent());
+		}
+	}
+
+	@Test
+	void pooledTransportReusesConnections() throws IOException {
+		SnapgeneTransportConfig config = SnapgeneTransportConfig.builder().maxTotalConnections(7).build();
+		SnapgeneWSClientImpl client = new SnapgeneWSClientImpl(
+				URI.create("http://localhost:" + server.getAddress().getPort()), config, () -> "SnapgeneTransportTest");
+		client.init();
+		try {
+			for (int i = 0; i < 5; i++) {
+				assertTrue(client.status().isRight());
+			}
+			TransportPoolStats stats = client.getTransportPoolStats().get();
+			assertEquals(7, stats.getMax());
+			assertEquals(0, stats.getLeased());
+			assertEquals(1, stats.getAvailable());
+			assertEquals(1, clientPorts.size(), "all calls should share one keep-alive connection");
+		} finally {
+			client.destroy();
+		}
+	}
+
+	@Test
+	void pooledTransportUsesHttpComponents() throws IOException {
+		try (SnapgeneTransport transport = new SnapgeneTransport(SnapgeneTransportConfig.defaults())) {
+			assertTrue(
+					transport.getRestTemplate().getRequestFactory() instanceof HttpComponentsClientHttpRequestFactory);
+		}
+	}
+
+}
@@ -0,0 +1,102 @@
+package com.researchspace.snapgene.wclient;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.http.HttpStatus;
+
+import com.researchspace.apiutils.ApiError;
+import com.researchspace.zmq.snapgene.requests.GeneratePngMapConfig;
+import com.researchspace.zmq.snapgene.requests.GenerateSVGMapConfig;
+
+import io.vavr.control.Either;
+
+@ExtendWith(MockitoExtension.class)
+class SnapgeneWSAsyncClientTest {
+
+	@Mock
+	SnapgeneWSClient blockingClient;
+	ExecutorService executor;
+	SnapgeneWSAsyncClient asyncClient;
+	GeneratePngMapConfig pngConfig = GeneratePngMapConfig.builder().build();
+
+	@BeforeEach
+	void before() {
+		executor = SnapgeneExecutors.virtualThreadsOrFixed(2);
+		asyncClient = new SnapgeneWSAsyncClientImpl(blockingClient, executor);
+	}
+
+	@AfterEach
+	void after() throws InterruptedException {
+		executor.shutdown();
+		executor.awaitTermination(1, TimeUnit.SECONDS);
+	}
+
+	@Test
+	void uploadAndDownloadPngUsesTheBlockingFacade() throws Exception {
+		SnapgeneInput genbank = SnapgeneInput.of("seq.gb", new byte[] { 1 });
+		Mockito.when(blockingClient.uploadAndDownloadPng(genbank, pngConfig))
+				.thenReturn(Either.right(new byte[] { 3 }));
+
+		Either<ApiError, byte[]> result = asyncClient.uploadAndDownloadPng(genbank, pngConfig).get(5,
+				TimeUnit.SECONDS);
+		assertArrayEquals(new byte[] { 3 }, result.get());
+		Mockito.verify(blockingClient, Mockito.never()).convertToPngFile(any(SnapgeneInput.class), any());
+		Mockito.verify(blockingClient, Mockito.never()).downloadFile(anyString());
+	}
+
+	@Test
+	void uploadAndDownloadSvgUsesTheBlockingFacade() throws Exception {
+		SnapgeneInput genbank = SnapgeneInput.of("seq.gb", new byte[] { 1 });
+		GenerateSVGMapConfig svgConfig = GenerateSVGMapConfig.builder().build();
+		Mockito.when(blockingClient.uploadAndDownloadSvg(genbank, svgConfig))
+				.thenReturn(Either.right(new byte[] { 4 }));
+
+		Either<ApiError, byte[]> result = asyncClient.uploadAndDownloadSvg(genbank, svgConfig).get(5,
+				TimeUnit.SECONDS);
+		assertArrayEquals(new byte[] { 4 }, result.get());
+		Mockito.verify(blockingClient, Mockito.never()).convertToSvgFile(any(SnapgeneInput.class), any());
+	}
+
+	@Test
+	void fileNamedDnaIsStillConvertedByContent() throws Exception {
+		SnapgeneInput misnamed = SnapgeneInput.of("seq.dna", "LOCUS       seq 4 bp DNA linear\n".getBytes());
+		SnapgeneInput dna = SnapgeneInput.of("seq.dna", new byte[] { 2 });
+		Mockito.when(blockingClient.convertToNativeFileIfRequired(misnamed)).thenReturn(Either.right(dna));
+
+		assertEquals(dna, asyncClient.convertToNativeFileIfRequired(misnamed).get(5, TimeUnit.SECONDS).get());
+	}
+
+	@Test
+	void uploadAndDownloadPngReturnsTheFacadeError() throws Exception {
+		SnapgeneInput genbank = SnapgeneInput.of("seq.gb", new byte[] { 1 });
+		Mockito.when(blockingClient.uploadAndDownloadPng(genbank, pngConfig))
+				.thenReturn(Either.left(new ApiError(HttpStatus.BAD_REQUEST, 400, "bad file", "not a sequence")));
+
+		Either<ApiError, byte[]> result = asyncClient.uploadAndDownloadPng(genbank, pngConfig).get(5,
+				TimeUnit.SECONDS);
+		assertEquals(400, result.getLeft().getHttpCode());
+	}
+
+	@Test
+	void unexpectedExceptionsBecomeApiErrors() throws Exception {
+		Mockito.when(blockingClient.status()).thenThrow(new IllegalStateException("boom"));
+		Either<ApiError, String> result = asyncClient.status().get(5, TimeUnit.SECONDS);
+		assertTrue(result.isLeft());
+		assertEquals(500, result.getLeft().getHttpCode());
+	}
+
+}
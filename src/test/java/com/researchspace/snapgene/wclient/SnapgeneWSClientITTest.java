@@ -10,6 +10,7 @@ import static org.junit.jupiter.api.Assertions.assertEquals;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.net.URI;
 import java.nio.charset.Charset;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
@@ -27,6 +28,7 @@ import org.springframework.test.context.ContextConfiguration;
 import org.springframework.test.context.TestPropertySource;
 import org.springframework.test.context.junit4.AbstractJUnit4SpringContextTests;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.researchspace.apiutils.ApiError;
 import com.researchspace.zmq.snapgene.requests.EnzymeSet;
 import com.researchspace.zmq.snapgene.requests.ExportDnaFileConfig;
@@ -214,6 +216,20 @@ public class SnapgeneWSClientITTest extends AbstractJUnit4SpringContextTests {
 		assertOrfResponse(resp);
 	}
 
+	@Test
+	public void localOrfCountsMatchServer() throws IOException {
+		SnapgeneWSClientImpl local = new SnapgeneWSClientImpl(URI.create("http://localhost"), () -> "local");
+		ObjectMapper mapper = new ObjectMapper();
+		for (ReadingFrame frame : ReadingFrame.values()) {
+			ReportORFsConfig config = new ReportORFsConfig(frame);
+			for (File file : new File[] { testNativeDnaFile, testGenbank, pUC19fasta, testEmbl }) {
+				assertEquals(mapper.readTree(client.orfs(file, config).get()).get("ORFs").size(),
+						local.openReadingFrames(SnapgeneInput.of(file), OrfSearchOptions.from(config)).get().size(),
+						file.getName() + " " + frame);
+			}
+		}
+	}
+
 	private void assertOrfResponse(Either<ApiError, String> resp) {
 		assertThat(resp.get(), hasJsonPath("$.ORFs.length()", Matchers.equalTo(34)));
 	}
@@ -0,0 +1,163 @@
+package com.researchspace.snapgene.wclient;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.mock.http.client.MockClientHttpResponse;
+import org.springframework.web.client.ResourceAccessException;
+import org.springframework.web.client.ResponseExtractor;
+import org.springframework.web.client.RestTemplate;
+
+import com.researchspace.apiutils.ApiError;
+import com.researchspace.apiutils.rest.utils.SimpleResilienceFacade;
+
+import io.vavr.control.Either;
+
+@ExtendWith(MockitoExtension.class)
+class StreamingDownloadTest {
+
+	@TempDir
+	Path downloadDir;
+	@Mock
+	RestTemplate template;
+	SnapgeneWSClientImpl wsClient;
+	byte[] content = new byte[3 * 1024 * 1024 + 17];
+
+	@BeforeEach
+	void before() throws URISyntaxException {
+		new Random(1).nextBytes(content);
+		wsClient = new SnapgeneWSClientImpl(new URI("http://somewhere.com"), template,
+				new SimpleResilienceFacade(10, 20), () -> "StreamingDownloadTest");
+		wsClient.init();
+	}
+
+	@Test
+	void streamsToPath() throws IOException {
+		mockDownload(0);
+		Path target = downloadDir.resolve("out.png");
+		Either<ApiError, Long> resp = wsClient.downloadFile("out.png", target);
+		assertEquals(content.length, resp.get());
+		assertArrayEquals(content, Files.readAllBytes(target));
+	}
+
+	@Test
+	void retryAfterPartialDownloadRestartsCleanly() throws IOException {
+		mockDownload(2);
+		Path target = downloadDir.resolve("out.png");
+		Either<ApiError, Long> resp = wsClient.downloadFile("out.png", target);
+		assertEquals(content.length, resp.get());
+		assertArrayEquals(content, Files.readAllBytes(target));
+		try (Stream<Path> files = Files.list(downloadDir)) {
+			assertEquals(1, files.count(), "part-files should be cleaned up");
+		}
+	}
+
+	@Test
+	void streamsToOutputStreamOnlyAfterCompleteDownload() {
+		mockDownload(1);
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		Either<ApiError, Long> resp = wsClient.downloadFile("out.png", out);
+		assertEquals(content.length, resp.get());
+		assertArrayEquals(content, out.toByteArray());
+	}
+
+	@Test
+	void failedDownloadWritesNothing() {
+		mockDownload(3);
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		Either<ApiError, Long> resp = wsClient.downloadFile("out.png", out);
+		assertTrue(resp.isLeft());
+		assertEquals(0, out.size());
+	}
+
+	@Test
+	void spoolsToScratchSpaceIfConfigured(@TempDir Path scratchDir) throws IOException {
+		ScratchSpace scratch = new ScratchSpace(ScratchSpaceConfig.builder().directory(scratchDir).build());
+		wsClient.setScratchSpace(scratch);
+		mockDownload(1);
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		Either<ApiError, Long> resp = wsClient.downloadFile("out.png", out);
+		assertEquals(content.length, resp.get());
+		assertArrayEquals(content, out.toByteArray());
+		assertEquals(0, scratch.getFileCount());
+		try (Stream<Path> files = Files.list(scratchDir)) {
+			assertEquals(0, files.count());
+		}
+	}
+
+	@Test
+	void spoolOverScratchQuotaFailsWithoutRetry(@TempDir Path scratchDir) throws IOException {
+		ScratchSpace scratch = new ScratchSpace(
+				ScratchSpaceConfig.builder().directory(scratchDir).maxBytes(content.length / 2).build());
+		wsClient.setScratchSpace(scratch);
+		mockDownload(0);
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		Either<ApiError, Long> resp = wsClient.downloadFile("out.png", out);
+		assertEquals(507, resp.getLeft().getHttpCode());
+		assertEquals(0, out.size());
+		Mockito.verify(template, Mockito.times(1)).execute(any(URI.class), eq(HttpMethod.GET), any(), any());
+		assertEquals(1, scratch.getQuotaRejectionCount());
+		assertEquals(0, scratch.getUsedBytes());
+	}
+
+	// the first 'failures' attempts fail half way through the response body
+	@SuppressWarnings("unchecked")
+	private void mockDownload(int failures) {
+		AtomicInteger attempt = new AtomicInteger();
+		Mockito.when(template.execute(any(URI.class), eq(HttpMethod.GET), any(), any(ResponseExtractor.class)))
+				.thenAnswer(invocation -> {
+					ResponseExtractor<Long> extractor = invocation.getArgument(3);
+					boolean fail = attempt.incrementAndGet() <= failures;
+					MockClientHttpResponse response = new MockClientHttpResponse(
+							fail ? failingHalfWay(content) : new ByteArrayInputStream(content), HttpStatus.OK);
+					try {
+						return extractor.extractData(response);
+					} catch (IOException e) {
+						// as RestTemplate does
+						throw new ResourceAccessException("I/O error", e);
+					}
+				});
+	}
+
+	private InputStream failingHalfWay(byte[] bytes) {
+		return new FilterInputStream(new ByteArrayInputStream(bytes)) {
+			int read = 0;
+
+			@Override
+			public int read(byte[] b, int off, int len) throws IOException {
+				if (read > bytes.length / 2) {
+					throw new IOException("connection reset");
+				}
+				int n = super.read(b, off, len);
+				read += Math.max(n, 0);
+				return n;
+			}
+		};
+	}
+
+}
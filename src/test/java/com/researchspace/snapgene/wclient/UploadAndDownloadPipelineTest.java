@@ -0,0 +1,144 @@
+package com.researchspace.snapgene.wclient;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.core.io.Resource;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.mock.http.client.MockClientHttpResponse;
+import org.springframework.util.LinkedMultiValueMap;
+import org.springframework.web.client.ResponseExtractor;
+import org.springframework.web.client.RestTemplate;
+
+import com.researchspace.apiutils.ApiError;
+import com.researchspace.apiutils.rest.utils.SimpleResilienceFacade;
+import com.researchspace.zmq.snapgene.requests.GeneratePngMapConfig;
+import com.researchspace.zmq.snapgene.responses.SnapgeneResponse;
+
+import io.vavr.control.Either;
+
+@ExtendWith(MockitoExtension.class)
+class UploadAndDownloadPipelineTest {
+
+	@Mock
+	RestTemplate template;
+	SnapgeneWSClientImpl wsClient;
+	File testGenbank = new File("src/test/resources/alpha-2-macroglobulin.gb");
+	byte[] dna = new byte[] { 9, 0, 0, 0, 14 };
+	byte[] png = new byte[] { (byte) 0x89, 'P', 'N', 'G' };
+
+	@BeforeEach
+	void before() throws URISyntaxException {
+		wsClient = new SnapgeneWSClientImpl(new URI("http://somewhere.com"), template,
+				new SimpleResilienceFacade(10, 20), () -> "UploadAndDownloadPipelineTest");
+		wsClient.init();
+	}
+
+	@Test
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	void convertedDnaIsUploadedFromMemoryAndEachFileDownloadedOnce() throws IOException {
+		SnapgeneResponse imported = response("converted.dna");
+		SnapgeneResponse rendered = response("map.png");
+		ArgumentCaptor<HttpEntity> uploads = ArgumentCaptor.forClass(HttpEntity.class);
+		Mockito.when(template.exchange(any(URI.class), eq(HttpMethod.POST), uploads.capture(),
+				eq(SnapgeneResponse.class))).thenReturn(ResponseEntity.ok(imported), ResponseEntity.ok(rendered));
+		Mockito.when(template.getForEntity(any(URI.class), eq(byte[].class))).thenReturn(ResponseEntity.ok(dna),
+				ResponseEntity.ok(png));
+
+		Either<ApiError, byte[]> result = wsClient.uploadAndDownloadPng(testGenbank,
+				GeneratePngMapConfig.builder().build());
+
+		assertArrayEquals(png, result.get());
+		Mockito.verify(template, Mockito.times(2)).getForEntity(any(URI.class), eq(byte[].class));
+		List<HttpEntity> sent = uploads.getAllValues();
+		assertEquals(2, sent.size());
+		Resource secondUpload = (Resource) ((LinkedMultiValueMap<String, Object>) sent.get(1).getBody())
+				.getFirst("file");
+		assertEquals(ByteArrayResource.class, secondUpload.getClass().getSuperclass());
+		assertEquals("converted.dna", secondUpload.getFilename());
+	}
+
+	@Test
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	void largeConversionIsHeldInScratchSpaceUntilNextUploadCompletes(@TempDir Path scratchDir) throws IOException {
+		ScratchSpace scratch = new ScratchSpace(
+				ScratchSpaceConfig.builder().directory(scratchDir).inMemoryThresholdBytes(0).build());
+		wsClient.setScratchSpace(scratch);
+		SnapgeneResponse imported = response("converted.dna");
+		SnapgeneResponse rendered = response("map.png");
+		List<Integer> scratchFilesDuringUpload = new ArrayList<>();
+		List<String> uploadedNames = new ArrayList<>();
+		Mockito.when(template.exchange(any(URI.class), eq(HttpMethod.POST), any(HttpEntity.class),
+				eq(SnapgeneResponse.class))).thenAnswer(invocation -> {
+					HttpEntity<LinkedMultiValueMap<String, Object>> upload = invocation.getArgument(2);
+					uploadedNames.add(((Resource) upload.getBody().getFirst("file")).getFilename());
+					scratchFilesDuringUpload.add(scratch.getFileCount());
+					return ResponseEntity.ok(uploadedNames.size() == 1 ? imported : rendered);
+				});
+		Mockito.when(template.execute(any(URI.class), eq(HttpMethod.GET), any(), any(ResponseExtractor.class)))
+				.thenAnswer(invocation -> ((ResponseExtractor<?>) invocation.getArgument(3))
+						.extractData(new MockClientHttpResponse(new ByteArrayInputStream(dna), HttpStatus.OK)));
+		Mockito.when(template.getForEntity(any(URI.class), eq(byte[].class))).thenReturn(ResponseEntity.ok(png));
+
+		Either<ApiError, byte[]> result = wsClient.uploadAndDownloadPng(testGenbank,
+				GeneratePngMapConfig.builder().build());
+
+		assertArrayEquals(png, result.get());
+		assertEquals("converted.dna", uploadedNames.get(1));
+		assertEquals(List.of(0, 1), scratchFilesDuringUpload);
+		assertEquals(0, scratch.getFileCount());
+		assertEquals(0, scratch.getUsedBytes());
+	}
+
+	@Test
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	void conversionOverScratchQuotaFailsWithoutRetry(@TempDir Path scratchDir) throws IOException {
+		ScratchSpace scratch = new ScratchSpace(ScratchSpaceConfig.builder().directory(scratchDir)
+				.inMemoryThresholdBytes(0).maxBytes(dna.length - 1).build());
+		wsClient.setScratchSpace(scratch);
+		SnapgeneResponse imported = response("converted.dna");
+		Mockito.when(template.exchange(any(URI.class), eq(HttpMethod.POST), any(HttpEntity.class),
+				eq(SnapgeneResponse.class))).thenReturn(ResponseEntity.ok(imported));
+		Mockito.when(template.execute(any(URI.class), eq(HttpMethod.GET), any(), any(ResponseExtractor.class)))
+				.thenAnswer(invocation -> ((ResponseExtractor<?>) invocation.getArgument(3))
+						.extractData(new MockClientHttpResponse(new ByteArrayInputStream(dna), HttpStatus.OK)));
+
+		Either<ApiError, byte[]> result = wsClient.uploadAndDownloadPng(testGenbank,
+				GeneratePngMapConfig.builder().build());
+
+		assertEquals(507, result.getLeft().getHttpCode());
+		Mockito.verify(template, Mockito.times(1)).execute(any(URI.class), eq(HttpMethod.GET), any(),
+				any(ResponseExtractor.class));
+		assertEquals(0, scratch.getFileCount());
+	}
+
+	private SnapgeneResponse response(String outputFileName) {
+		SnapgeneResponse response = Mockito.mock(SnapgeneResponse.class);
+		Mockito.when(response.getOutputFileName()).thenReturn(outputFileName);
+		return response;
+	}
+
+}